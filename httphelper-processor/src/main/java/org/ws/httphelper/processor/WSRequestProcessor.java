@@ -0,0 +1,399 @@
+package org.ws.httphelper.processor;
+
+import org.ws.httphelper.common.UrlTemplate;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 编译时处理<b>@WSRequest</b>：检查注解，为每个包生成一个RequestDescriptorProvider(包名.WSRequestDescriptors)，
+ * 并写入META-INF/services，运行时RequestDescriptorRegistry加载后不再读取注解。<br/>
+ * 检查：URL模板中没有闭合的{或者空的{}，参数的验证正则无效，编码不存在时编译失败；重复的参数给出警告。<br/>
+ * 私有的内部类和局部类无法在生成的代码中引用，运行时仍然读取注解。<br/>
+ * Created by gz on 16/03/08.
+ */
+@SupportedAnnotationTypes(WSRequestProcessor.WS_REQUEST)
+public class WSRequestProcessor extends AbstractProcessor {
+    static final String WS_REQUEST = "org.ws.httphelper.annotation.WSRequest";
+    static final String PROVIDER = "org.ws.httphelper.request.RequestDescriptorProvider";
+    static final String CLASS_NAME = "WSRequestDescriptors";
+
+    private static final String ANNOTATION_PACKAGE = "org.ws.httphelper.annotation.";
+    /**
+     * 请求类上的其他注解：注解名和Builder中的方法
+     */
+    private static final String[][] RESILIENCE_ANNOTATIONS = {
+            {"Bulkhead", "setBulkhead"},
+            {"CircuitBreaker", "setCircuitBreaker"},
+            {"Retry", "setRetry"},
+            {"Hedge", "setHedge"},
+            {"RateLimit", "setRateLimit"}};
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+    /**
+     * 已经生成的类，每一轮生成的类名不能重复
+     */
+    private final Set<String> generated = new HashSet<String>();
+    private final Set<String> providers = new LinkedHashSet<String>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement wsRequest = elements.getTypeElement(WS_REQUEST);
+        if (wsRequest != null) {
+            // 按包分组，保持源码中的顺序
+            Map<String, List<String>> packageMap = new LinkedHashMap<String, List<String>>();
+            Map<String, List<Element>> originMap = new LinkedHashMap<String, List<Element>>();
+            for (Element element : roundEnv.getElementsAnnotatedWith(wsRequest)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                String code = generateDescriptor(type, findAnnotation(type, WS_REQUEST));
+                if (code == null) {
+                    continue;
+                }
+                String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+                if (!packageMap.containsKey(packageName)) {
+                    packageMap.put(packageName, new ArrayList<String>());
+                    originMap.put(packageName, new ArrayList<Element>());
+                }
+                packageMap.get(packageName).add(elements.getBinaryName(type).toString());
+                packageMap.get(packageName).add(code);
+                originMap.get(packageName).add(type);
+            }
+            for (Map.Entry<String, List<String>> entry : packageMap.entrySet()) {
+                writeProvider(entry.getKey(), entry.getValue(), originMap.get(entry.getKey()));
+            }
+        }
+        if (roundEnv.processingOver() && !providers.isEmpty()) {
+            writeServiceFile();
+        }
+        return false;
+    }
+
+    /**
+     * 检查注解并生成创建描述的表达式
+     * @return 有错误或者无法引用时返回null
+     */
+    private String generateDescriptor(TypeElement type, AnnotationMirror ann) {
+        if (!isAccessible(type)) {
+            messager.printMessage(Diagnostic.Kind.NOTE,
+                    "私有类或局部类无法生成请求描述，运行时读取注解：" + type.getQualifiedName(), type);
+            return null;
+        }
+        Map<String, AnnotationValue> values = getValues(ann);
+        String typeName = type.getQualifiedName().toString();
+        boolean valid = true;
+
+        String url = (String) values.get("url").getValue();
+        String problem = UrlTemplate.check(url);
+        if (problem != null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "URL模板[" + url + "]无效：" + problem,
+                    type, ann, values.get("url"));
+            valid = false;
+        }
+        String charset = (String) values.get("charset").getValue();
+        if (charset.length() > 0 && !isSupported(charset)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "不支持的编码：" + charset, type, ann, values.get("charset"));
+            valid = false;
+        }
+
+        StringBuilder code = new StringBuilder();
+        code.append("RequestDescriptor.builder(").append(typeName).append(".class)\n");
+        appendCall(code, "setName", literal((String) values.get("name").getValue()));
+        appendCall(code, "setUrl", literal(url));
+        appendCall(code, "setDescription", literal((String) values.get("description").getValue()));
+        appendCall(code, "setResponseType", ANNOTATION_PACKAGE + "WSRequest.ResponseType." + enumName(values.get("responseType")));
+        appendCall(code, "setMethod", ANNOTATION_PACKAGE + "WSRequest.MethodType." + enumName(values.get("method")));
+        appendCall(code, "setCharset", literal(charset));
+        TypeMirror resultClass = (TypeMirror) values.get("resultClass").getValue();
+        appendCall(code, "setResultClass", types.erasure(resultClass).toString() + ".class");
+        appendCall(code, "setTransport", literal((String) values.get("transport").getValue()));
+
+        for (AnnotationValue value : getList(values.get("headers"))) {
+            Map<String, AnnotationValue> header = getValues((AnnotationMirror) value.getValue());
+            appendCall(code, "addHeader", literal((String) header.get("name").getValue())
+                    + ", " + literal((String) header.get("value").getValue()));
+        }
+        Set<String> names = new HashSet<String>();
+        for (AnnotationValue value : getList(values.get("parameters"))) {
+            AnnotationMirror parameterMirror = (AnnotationMirror) value.getValue();
+            Map<String, AnnotationValue> parameter = getValues(parameterMirror);
+            String name = (String) parameter.get("name").getValue();
+            if (!names.add(name)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "参数[" + name + "]重复，只使用第一个", type, parameterMirror);
+                continue;
+            }
+            String regex = (String) parameter.get("validateRegex").getValue();
+            if (regex.length() > 0) {
+                try {
+                    Pattern.compile(regex);
+                } catch (PatternSyntaxException e) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "参数[" + name + "]的正则表达式[" + regex + "]无效："
+                            + e.getDescription(), type, parameterMirror, parameter.get("validateRegex"));
+                    valid = false;
+                }
+            }
+            appendCall(code, "addParameter", literal(name)
+                    + ", " + literal((String) parameter.get("description").getValue())
+                    + ", " + literal((String) parameter.get("defaultValue").getValue())
+                    + ", " + ANNOTATION_PACKAGE + "Parameter.Type." + enumName(parameter.get("type"))
+                    + ", " + parameter.get("required").getValue()
+                    + ", " + literal((String) parameter.get("example").getValue())
+                    + ", " + literal(regex));
+        }
+
+        // 其他注解的属性较多，只在存在时读取一次
+        for (String[] resilience : RESILIENCE_ANNOTATIONS) {
+            if (findAnnotation(type, ANNOTATION_PACKAGE + resilience[0]) != null) {
+                appendCall(code, resilience[1], typeName + ".class.getAnnotation(" + ANNOTATION_PACKAGE + resilience[0] + ".class)");
+            }
+        }
+        if (findAnnotation(type, ANNOTATION_PACKAGE + "Coalesce") != null) {
+            appendCall(code, "setCoalesce", "true");
+        }
+        code.append("                .build()");
+        return valid ? code.toString() : null;
+    }
+
+    /**
+     * 生成包中的WSRequestDescriptors
+     * @param classes 完整类名和创建描述的表达式，交替排列
+     */
+    private void writeProvider(String packageName, List<String> classes, List<Element> origins) {
+        String simpleName = CLASS_NAME;
+        String qualifiedName = packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+        for (int i = 2; generated.contains(qualifiedName); i++) {
+            simpleName = CLASS_NAME + i;
+            qualifiedName = packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+        }
+        generated.add(qualifiedName);
+
+        StringBuilder source = new StringBuilder();
+        if (packageName.length() > 0) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import org.ws.httphelper.request.RequestDescriptor;\n");
+        source.append("import ").append(PROVIDER).append(";\n\n");
+        source.append("/**\n * ").append(WSRequestProcessor.class.getSimpleName()).append("生成的请求描述，不要修改\n */\n");
+        source.append("public final class ").append(simpleName).append(" implements RequestDescriptorProvider {\n");
+        source.append("    private static final String[] NAMES = {");
+        for (int i = 0; i < classes.size(); i += 2) {
+            source.append(i == 0 ? "\n            " : ",\n            ").append(literal(classes.get(i)));
+        }
+        source.append("};\n\n");
+        source.append("    @Override\n    public String[] getRequestClassNames() {\n        return NAMES.clone();\n    }\n\n");
+        source.append("    @Override\n    public RequestDescriptor create(int index) {\n        switch (index) {\n");
+        for (int i = 0; i < classes.size(); i += 2) {
+            source.append("            case ").append(i / 2).append(":\n");
+            source.append("                return create").append(i / 2).append("();\n");
+        }
+        source.append("            default:\n                return null;\n        }\n    }\n");
+        for (int i = 0; i < classes.size(); i += 2) {
+            source.append("\n    private static RequestDescriptor create").append(i / 2).append("() {\n");
+            source.append("        return ").append(classes.get(i + 1)).append(";\n    }\n");
+        }
+        source.append("}\n");
+
+        try {
+            JavaFileObject file = filer.createSourceFile(qualifiedName, origins.toArray(new Element[origins.size()]));
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+            providers.add(qualifiedName);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "无法生成" + qualifiedName + "：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 写入META-INF/services，保留增量编译时已有的实现
+     */
+    private void writeServiceFile() {
+        String path = "META-INF/services/" + PROVIDER;
+        Set<String> lines = new LinkedHashSet<String>();
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().length() > 0) {
+                        lines.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // 第一次编译时没有文件
+        }
+        lines.addAll(providers);
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", path);
+            Writer writer = file.openWriter();
+            try {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write("\n");
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "无法生成" + path + "：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 生成的类在同一个包中：外层类都不能是私有的，不能是局部类或匿名类
+     */
+    private boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            TypeElement current = (TypeElement) element;
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            NestingKind nesting = current.getNestingKind();
+            if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = current.getEnclosingElement();
+        }
+        return element instanceof PackageElement;
+    }
+
+    private AnnotationMirror findAnnotation(TypeElement type, String annotationName) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 注解的属性，包括默认值
+     */
+    private Map<String, AnnotationValue> getValues(AnnotationMirror mirror) {
+        Map<String, AnnotationValue> values = new LinkedHashMap<String, AnnotationValue>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<? extends AnnotationValue> getList(AnnotationValue value) {
+        return (List<? extends AnnotationValue>) value.getValue();
+    }
+
+    private static String enumName(AnnotationValue value) {
+        return ((VariableElement) value.getValue()).getSimpleName().toString();
+    }
+
+    private static boolean isSupported(String charset) {
+        try {
+            return Charset.isSupported(charset);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void appendCall(StringBuilder code, String method, String arguments) {
+        code.append("                .").append(method).append('(').append(arguments).append(")\n");
+    }
+
+    /**
+     * Java字符串字面量：非ASCII字符转义，与编译时的源码编码无关
+     */
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
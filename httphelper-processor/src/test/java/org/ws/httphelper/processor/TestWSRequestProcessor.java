@@ -0,0 +1,133 @@
+package org.ws.httphelper.processor;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.request.RequestDescriptor;
+import org.ws.httphelper.request.RequestDescriptorProvider;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 测试编译时生成请求描述：使用当前JDK的编译器编译示例请求类
+ */
+public class TestWSRequestProcessor extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("processor", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    public void testGenerate() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile("demo.DemoRequest",
+                "package demo;\n"
+                        + "import org.ws.httphelper.annotation.*;\n"
+                        + "import org.ws.httphelper.model.WSRequestContext;\n"
+                        + "import org.ws.httphelper.request.WSHttpAbstractRequest;\n"
+                        + "@WSRequest(name = \"示例\", url = \"http://127.0.0.1:1/{type}/{id}\", method = WSRequest.MethodType.POST,\n"
+                        + "        headers = {@Header(name = \"X-A\", value = \"a\\\"b\")},\n"
+                        + "        parameters = {@Parameter(name = \"type\", defaultValue = \"user\"),\n"
+                        + "                @Parameter(name = \"id\", required = true, type = Parameter.Type.INT, validateRegex = \"\\\\d+\"),\n"
+                        + "                @Parameter(name = \"id\")})\n"
+                        + "@Coalesce\n"
+                        + "public class DemoRequest extends WSHttpAbstractRequest {\n"
+                        + "    public void init(WSRequestContext context) {}\n"
+                        + "    static class Inner extends DemoRequest {}\n"
+                        + "    @WSRequest(name = \"hidden\", url = \"http://127.0.0.1:1/\")\n"
+                        + "    private static class Hidden extends DemoRequest {}\n"
+                        + "}\n");
+        TestCase.assertTrue(diagnostics.getDiagnostics().toString(), isSuccess(diagnostics));
+        TestCase.assertTrue(new File(dir, "demo/WSRequestDescriptors.java").isFile());
+        String services = FileUtils.readFileToString(new File(dir, "META-INF/services/" + WSRequestProcessor.PROVIDER));
+        TestCase.assertEquals("demo.WSRequestDescriptors", services.trim());
+        // 重复的参数给出警告
+        TestCase.assertTrue(diagnostics.getDiagnostics().toString().contains("[id]"));
+
+        URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader());
+        RequestDescriptorProvider provider = (RequestDescriptorProvider) loader.loadClass("demo.WSRequestDescriptors").newInstance();
+        // 私有的内部类不生成
+        TestCase.assertEquals(Arrays.asList("demo.DemoRequest"), Arrays.asList(provider.getRequestClassNames()));
+        RequestDescriptor descriptor = provider.create(0);
+        TestCase.assertSame(loader.loadClass("demo.DemoRequest"), descriptor.getRequestClass());
+        TestCase.assertEquals("示例", descriptor.getName());
+        TestCase.assertEquals(WSRequest.MethodType.POST, descriptor.getMethod());
+        TestCase.assertEquals(2, descriptor.getUrlTemplate().getNames().length);
+        TestCase.assertEquals(Arrays.asList("X-A"), descriptor.getHeaderNames());
+        TestCase.assertEquals(2, descriptor.getParameterDefines().size());
+        TestCase.assertTrue(descriptor.getParameterDefine("id").isRequired());
+        TestCase.assertNotNull(descriptor.getParameterDefine("id").getValidatePattern());
+        TestCase.assertNull(provider.create(1));
+    }
+
+    public void testInvalidRegex() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile("demo.BadRegex",
+                "package demo;\n"
+                        + "import org.ws.httphelper.annotation.*;\n"
+                        + "@WSRequest(name = \"bad\", url = \"http://127.0.0.1:1/\",\n"
+                        + "        parameters = {@Parameter(name = \"id\", validateRegex = \"[0-9\")})\n"
+                        + "public class BadRegex {}\n");
+        TestCase.assertFalse(isSuccess(diagnostics));
+        TestCase.assertTrue(diagnostics.getDiagnostics().toString().contains("[0-9"));
+        TestCase.assertFalse(new File(dir, "demo/WSRequestDescriptors.java").exists());
+    }
+
+    public void testInvalidTemplate() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile("demo.BadUrl",
+                "package demo;\n"
+                        + "import org.ws.httphelper.annotation.*;\n"
+                        + "@WSRequest(name = \"bad\", url = \"http://127.0.0.1:1/{id/detail\", charset = \"no-such-charset\")\n"
+                        + "public class BadUrl {}\n");
+        TestCase.assertFalse(isSuccess(diagnostics));
+        String messages = diagnostics.getDiagnostics().toString();
+        TestCase.assertTrue(messages, messages.contains("{id/detail"));
+        TestCase.assertTrue(messages, messages.contains("no-such-charset"));
+    }
+
+    private DiagnosticCollector<JavaFileObject> compile(String className, final String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        TestCase.assertNotNull("需要使用JDK运行", compiler);
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                        "-d", dir.getPath(), "-s", dir.getPath(), "-encoding", "UTF-8"),
+                null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new WSRequestProcessor()));
+        task.call();
+        return diagnostics;
+    }
+
+    private static boolean isSuccess(DiagnosticCollector<JavaFileObject> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
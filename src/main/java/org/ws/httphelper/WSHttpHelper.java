@@ -1,21 +1,50 @@
 package org.ws.httphelper;
 
+import java.io.File;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.FutureFunction;
+import org.ws.httphelper.common.WSFuture;
 import org.ws.httphelper.exception.WSException;
 import org.ws.httphelper.model.ParameterDefine;
 import org.ws.httphelper.model.ResponseResult;
 import org.ws.httphelper.model.WSRequestContext;
 import org.ws.httphelper.request.WSHttpRequest;
+import org.ws.httphelper.request.WSRequestInvocation;
 import org.ws.httphelper.request.handler.CallbackHandler;
 import org.ws.httphelper.request.handler.ResponseProHandler;
+import org.ws.httphelper.request.handler.StreamConsumer;
 import org.ws.httphelper.request.impl.DefaultGetRequest;
 import org.ws.httphelper.request.impl.DefaultPostRequest;
 
 public class WSHttpHelper{
+    /**
+     * 请求定义不保存执行状态，所有调用共用，每次调用创建执行对象
+     */
+    private static final DefaultGetRequest GET_REQUEST = new DefaultGetRequest();
+    private static final DefaultPostRequest POST_REQUEST = new DefaultPostRequest();
+    private static final FutureFunction<ResponseResult,Object> BODY = new FutureFunction<ResponseResult, Object>() {
+        @Override
+        public Object apply(ResponseResult result) throws Exception {
+            return result.getBody();
+        }
+    };
+    private static final FutureFunction<Object,String> TO_STRING = new FutureFunction<Object, String>() {
+        @Override
+        public String apply(Object body) throws Exception {
+            return body==null?null:body.toString();
+        }
+    };
+    private static final FutureFunction<Object,byte[]> TO_BYTE_ARRAY = new FutureFunction<Object, byte[]>() {
+        @Override
+        public byte[] apply(Object body) throws Exception {
+            return (byte[]) body;
+        }
+    };
+
     public static String doGetHtml(String url)throws WSException{
         return doGetHtml(url, null,null, null, null, null);
     }
@@ -51,7 +80,7 @@ public class WSHttpHelper{
     }
 
     public static String doGetHtml(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback)throws WSException{
-        DefaultGetRequest request = new DefaultGetRequest();
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
         return doExecute(request, url, parameters,charset, headers, cookies, callback, WSRequest.ResponseType.HTML).toString();
     }
 
@@ -84,7 +113,7 @@ public class WSHttpHelper{
         return doGetByteArray(url, parameters,charset, headers, null, callback);
     }
     public static byte[] doGetByteArray(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback)throws WSException{
-        DefaultGetRequest request = new DefaultGetRequest();
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
         return (byte[])doExecute(request,url,parameters,charset,headers,cookies,callback, WSRequest.ResponseType.BYTE_ARRAY);
     }
 
@@ -149,7 +178,7 @@ public class WSHttpHelper{
         return doGetJson(url, parameters, charset, headers, null, callback, resultClazz);
     }
     public static <T> T doGetJson(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback,Class<T>resultClazz)throws WSException{
-        DefaultGetRequest request = new DefaultGetRequest();
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
         return doExecute(request, url, parameters,charset, headers, cookies, callback, resultClazz);
     }
 
@@ -188,7 +217,7 @@ public class WSHttpHelper{
     }
 
     public static String doPostHtml(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback)throws WSException{
-        DefaultPostRequest request = new DefaultPostRequest();
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
         return doExecute(request, url, parameters,charset, headers, cookies, callback, WSRequest.ResponseType.HTML).toString();
     }
 
@@ -221,7 +250,7 @@ public class WSHttpHelper{
         return doPostByteArray(url, parameters,charset, headers, null, callback);
     }
     public static byte[] doPostByteArray(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback)throws WSException{
-        DefaultPostRequest request = new DefaultPostRequest();
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
         return (byte[])doExecute(request,url,parameters,charset,headers,cookies,callback, WSRequest.ResponseType.BYTE_ARRAY);
     }
 
@@ -286,10 +315,211 @@ public class WSHttpHelper{
         return doPostJson(url, parameters, charset, headers, null, callback, resultClazz);
     }
     public static <T> T doPostJson(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,final CallbackHandler callback,Class<T>resultClazz)throws WSException{
-        DefaultPostRequest request = new DefaultPostRequest();
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
         return doExecute(request, url, parameters,charset, headers, cookies, callback, resultClazz);
     }
 
+    public static <T> T doGetStream(String url,StreamConsumer<T> consumer)throws WSException{
+        return doGetStream(url, null, null, null, null, consumer);
+    }
+    public static <T> T doGetStream(String url,Map<String,Object> parameters,StreamConsumer<T> consumer)throws WSException{
+        return doGetStream(url, parameters, null, null, null, consumer);
+    }
+    public static <T> T doGetStream(String url,Map<String,Object> parameters,String charset,StreamConsumer<T> consumer)throws WSException{
+        return doGetStream(url, parameters, charset, null, null, consumer);
+    }
+    public static <T> T doGetStream(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,StreamConsumer<T> consumer)throws WSException{
+        return doGetStream(url, parameters, charset, headers, null, consumer);
+    }
+    public static <T> T doGetStream(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,StreamConsumer<T> consumer)throws WSException{
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
+        return doExecute(request, url, parameters, charset, headers, cookies, consumer);
+    }
+
+    public static <T> T doPostStream(String url,StreamConsumer<T> consumer)throws WSException{
+        return doPostStream(url, null, null, null, null, consumer);
+    }
+    public static <T> T doPostStream(String url,Map<String,Object> parameters,StreamConsumer<T> consumer)throws WSException{
+        return doPostStream(url, parameters, null, null, null, consumer);
+    }
+    public static <T> T doPostStream(String url,Map<String,Object> parameters,String charset,StreamConsumer<T> consumer)throws WSException{
+        return doPostStream(url, parameters, charset, null, null, consumer);
+    }
+    public static <T> T doPostStream(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,StreamConsumer<T> consumer)throws WSException{
+        return doPostStream(url, parameters, charset, headers, null, consumer);
+    }
+    public static <T> T doPostStream(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,StreamConsumer<T> consumer)throws WSException{
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
+        return doExecute(request, url, parameters, charset, headers, cookies, consumer);
+    }
+
+    public static ResponseResult doGetFile(String url,File targetFile)throws WSException{
+        return doGetFile(url, null, null, null, null, targetFile);
+    }
+    public static ResponseResult doGetFile(String url,Map<String,Object> parameters,File targetFile)throws WSException{
+        return doGetFile(url, parameters, null, null, null, targetFile);
+    }
+    public static ResponseResult doGetFile(String url,Map<String,Object> parameters,String charset,File targetFile)throws WSException{
+        return doGetFile(url, parameters, charset, null, null, targetFile);
+    }
+    public static ResponseResult doGetFile(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,File targetFile)throws WSException{
+        return doGetFile(url, parameters, charset, headers, null, targetFile);
+    }
+    public static ResponseResult doGetFile(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,File targetFile)throws WSException{
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
+        return doExecute(request, url, parameters, charset, headers, cookies, targetFile);
+    }
+
+    public static ResponseResult doPostFile(String url,File targetFile)throws WSException{
+        return doPostFile(url, null, null, null, null, targetFile);
+    }
+    public static ResponseResult doPostFile(String url,Map<String,Object> parameters,File targetFile)throws WSException{
+        return doPostFile(url, parameters, null, null, null, targetFile);
+    }
+    public static ResponseResult doPostFile(String url,Map<String,Object> parameters,String charset,File targetFile)throws WSException{
+        return doPostFile(url, parameters, charset, null, null, targetFile);
+    }
+    public static ResponseResult doPostFile(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,File targetFile)throws WSException{
+        return doPostFile(url, parameters, charset, headers, null, targetFile);
+    }
+    public static ResponseResult doPostFile(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,File targetFile)throws WSException{
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
+        return doExecute(request, url, parameters, charset, headers, cookies, targetFile);
+    }
+
+    public static WSFuture<String> doGetHtmlAsync(String url)throws WSException{
+        return doGetHtmlAsync(url, null, null, null, null);
+    }
+    public static WSFuture<String> doGetHtmlAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doGetHtmlAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<String> doGetHtmlAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doGetHtmlAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<String> doGetHtmlAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doGetHtmlAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<String> doGetHtmlAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, WSRequest.ResponseType.HTML).then(TO_STRING);
+    }
+
+    public static WSFuture<byte[]> doGetByteArrayAsync(String url)throws WSException{
+        return doGetByteArrayAsync(url, null, null, null, null);
+    }
+    public static WSFuture<byte[]> doGetByteArrayAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doGetByteArrayAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<byte[]> doGetByteArrayAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doGetByteArrayAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<byte[]> doGetByteArrayAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doGetByteArrayAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<byte[]> doGetByteArrayAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, WSRequest.ResponseType.BYTE_ARRAY).then(TO_BYTE_ARRAY);
+    }
+
+    public static WSFuture<Map> doGetMapAsync(String url)throws WSException{
+        return doGetMapAsync(url, null, null, null, null);
+    }
+    public static WSFuture<Map> doGetMapAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doGetMapAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<Map> doGetMapAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doGetMapAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<Map> doGetMapAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doGetMapAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<Map> doGetMapAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        return doGetJsonAsync(url, parameters, charset, headers, cookies, Map.class);
+    }
+
+    public static <T> WSFuture<T> doGetJsonAsync(String url,Class<T>resultClazz)throws WSException{
+        return doGetJsonAsync(url, null, null, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doGetJsonAsync(String url,Map<String,Object> parameters,Class<T>resultClazz)throws WSException{
+        return doGetJsonAsync(url, parameters, null, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doGetJsonAsync(String url,Map<String,Object> parameters,String charset,Class<T>resultClazz)throws WSException{
+        return doGetJsonAsync(url, parameters, charset, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doGetJsonAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Class<T>resultClazz)throws WSException{
+        return doGetJsonAsync(url, parameters, charset, headers, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doGetJsonAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,Class<T>resultClazz)throws WSException{
+        WSRequestInvocation request = GET_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, resultClazz);
+    }
+
+    public static WSFuture<String> doPostHtmlAsync(String url)throws WSException{
+        return doPostHtmlAsync(url, null, null, null, null);
+    }
+    public static WSFuture<String> doPostHtmlAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doPostHtmlAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<String> doPostHtmlAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doPostHtmlAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<String> doPostHtmlAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doPostHtmlAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<String> doPostHtmlAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, WSRequest.ResponseType.HTML).then(TO_STRING);
+    }
+
+    public static WSFuture<byte[]> doPostByteArrayAsync(String url)throws WSException{
+        return doPostByteArrayAsync(url, null, null, null, null);
+    }
+    public static WSFuture<byte[]> doPostByteArrayAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doPostByteArrayAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<byte[]> doPostByteArrayAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doPostByteArrayAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<byte[]> doPostByteArrayAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doPostByteArrayAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<byte[]> doPostByteArrayAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, WSRequest.ResponseType.BYTE_ARRAY).then(TO_BYTE_ARRAY);
+    }
+
+    public static WSFuture<Map> doPostMapAsync(String url)throws WSException{
+        return doPostMapAsync(url, null, null, null, null);
+    }
+    public static WSFuture<Map> doPostMapAsync(String url,Map<String,Object> parameters)throws WSException{
+        return doPostMapAsync(url, parameters, null, null, null);
+    }
+    public static WSFuture<Map> doPostMapAsync(String url,Map<String,Object> parameters,String charset)throws WSException{
+        return doPostMapAsync(url, parameters, charset, null, null);
+    }
+    public static WSFuture<Map> doPostMapAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers)throws WSException{
+        return doPostMapAsync(url, parameters, charset, headers, null);
+    }
+    public static WSFuture<Map> doPostMapAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies)throws WSException{
+        return doPostJsonAsync(url, parameters, charset, headers, cookies, Map.class);
+    }
+
+    public static <T> WSFuture<T> doPostJsonAsync(String url,Class<T>resultClazz)throws WSException{
+        return doPostJsonAsync(url, null, null, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doPostJsonAsync(String url,Map<String,Object> parameters,Class<T>resultClazz)throws WSException{
+        return doPostJsonAsync(url, parameters, null, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doPostJsonAsync(String url,Map<String,Object> parameters,String charset,Class<T>resultClazz)throws WSException{
+        return doPostJsonAsync(url, parameters, charset, null, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doPostJsonAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Class<T>resultClazz)throws WSException{
+        return doPostJsonAsync(url, parameters, charset, headers, null, resultClazz);
+    }
+    public static <T> WSFuture<T> doPostJsonAsync(String url,Map<String,Object> parameters,String charset,Map<String,String> headers,Map<String,String>cookies,Class<T>resultClazz)throws WSException{
+        WSRequestInvocation request = POST_REQUEST.newInvocation();
+        return doExecuteAsync(request, url, parameters, charset, headers, cookies, resultClazz);
+    }
     /**
      * 执行自动解析的请求
      * @param request
@@ -331,6 +561,98 @@ public class WSHttpHelper{
         return request.execute().getBody();
     }
 
+    /**
+     * 执行流式请求：响应内容不缓存，直接交给consumer处理
+     * @param request
+     * @param url
+     * @param parameters
+     * @param charset
+     * @param headers
+     * @param cookies
+     * @param consumer
+     * @param <T>
+     * @return consumer的处理结果
+     * @throws WSException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T doExecute(WSHttpRequest request,String url,Map<String,Object>parameters,String charset,Map<String,String>headers,Map<String,String> cookies,StreamConsumer<T> consumer)throws WSException{
+        if(consumer==null){
+            throw new WSException("该接口必须传入consumer！");
+        }
+        buildRequest(request, url, parameters, charset, headers, cookies, null);
+        request.getContext().setResponseType(WSRequest.ResponseType.STREAM);
+        request.getContext().setStreamConsumer(consumer);
+        return (T) request.execute().getBody();
+    }
+
+    /**
+     * 执行下载请求：响应内容直接写入目标文件
+     * @param request
+     * @param url
+     * @param parameters
+     * @param charset
+     * @param headers
+     * @param cookies
+     * @param targetFile 目标文件
+     * @return 响应结果，body为目标文件，byteCount为文件大小，transferTime为传输时间
+     * @throws WSException
+     */
+    public static ResponseResult doExecute(WSHttpRequest request,String url,Map<String,Object>parameters,String charset,Map<String,String>headers,Map<String,String> cookies,File targetFile)throws WSException{
+        if(targetFile==null){
+            throw new WSException("该接口必须传入targetFile！");
+        }
+        buildRequest(request, url, parameters, charset, headers, cookies, null);
+        request.getContext().setResponseType(WSRequest.ResponseType.FILE);
+        request.getContext().setTargetFile(targetFile);
+        return request.execute();
+    }
+
+    /**
+     * 异步执行自动解析的请求
+     * @param request
+     * @param url
+     * @param parameters
+     * @param charset
+     * @param headers
+     * @param cookies
+     * @param resultClazz
+     * @param <T>
+     * @return 解析结果的Future
+     * @throws WSException
+     */
+    public static <T> WSFuture<T> doExecuteAsync(WSHttpRequest request,String url,Map<String,Object>parameters,String charset,Map<String,String>headers,Map<String,String> cookies,final Class<T> resultClazz)throws WSException{
+        if(resultClazz==null){
+            throw new WSException("该接口必须传入resultClazz！");
+        }
+        buildRequest(request,url,parameters,charset,headers,cookies,null);
+        request.getContext().setResultClass(resultClazz);
+        request.getContext().setResponseType(WSRequest.ResponseType.JSON);
+        return request.executeAsync().then(new FutureFunction<ResponseResult, T>() {
+            @Override
+            public T apply(ResponseResult result) throws Exception {
+                return result.getBody(resultClazz);
+            }
+        });
+    }
+
+    /**
+     * 异步执行请求
+     * @param request
+     * @param url
+     * @param parameters
+     * @param charset
+     * @param headers
+     * @param cookies
+     * @param responseType
+     * @return 响应内容的Future
+     * @throws WSException
+     */
+    public static WSFuture<Object> doExecuteAsync(WSHttpRequest request,String url,Map<String,Object>parameters,String charset,Map<String,String>headers,Map<String,String> cookies,WSRequest.ResponseType responseType)throws WSException{
+        buildRequest(request, url, parameters, charset, headers, cookies, null);
+        request.getContext().setResponseType(responseType);
+        return request.executeAsync().then(BODY);
+    }
+
     private static void buildRequest(WSHttpRequest request,String url,Map<String,Object>parameters,String charset,Map<String,String>headers,Map<String,String> cookies,final CallbackHandler callback)throws WSException
     {
         request.getContext().setUrl(url);
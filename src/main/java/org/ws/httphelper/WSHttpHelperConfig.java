@@ -42,6 +42,48 @@ public class WSHttpHelperConfig {
 	public static int getInt(String key){
 		return Integer.valueOf(getValue(key));
 	}
+
+	/**
+	 * <b>描述：</b> 获取int值，没有配置时返回默认值<br/>
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public static int getInt(String key,int defaultValue){
+		String value=getValue(key);
+		if(value==null || value.trim().length()==0){
+			return defaultValue;
+		}
+		return Integer.valueOf(value.trim());
+	}
+	
+	/**
+	 * <b>描述：</b> 获取long值，没有配置时返回默认值<br/>
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public static long getLong(String key,long defaultValue){
+		String value=getValue(key);
+		if(value==null || value.trim().length()==0){
+			return defaultValue;
+		}
+		return Long.valueOf(value.trim());
+	}
+	
+	/**
+	 * <b>描述：</b> 获取double值，没有配置时返回默认值<br/>
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public static double getDouble(String key,double defaultValue){
+		String value=getValue(key);
+		if(value==null || value.trim().length()==0){
+			return defaultValue;
+		}
+		return Double.valueOf(value.trim());
+	}
 	
 	/**
 	 * <b>描述：</b> 获取所有key<br/>
@@ -22,6 +22,265 @@ public interface WSHttpHelperConstant {
 	public static String POOL_CORE_POOL_SIZE="pool.CorePoolSize";
 	public static String POOL_MAX_POOL_SIZE="pool.MaxPoolSize";
 	public static String POOL_KEEP_ALIVE_SECONDS="pool.KeepAliveSeconds";
+	/**
+	 * 请求的执行方式：pool(提交到线程池后等待)，direct(同步请求在调用线程中直接执行，异步请求使用线程池)，virtual(每个请求一个虚拟线程，需要JDK21)
+	 */
+	public static String EXECUTOR_MODE="executor.Mode";
+	/**
+	 * 同步请求执行方式：提交到线程池
+	 */
+	public static final String EXECUTOR_MODE_POOL="pool";
+	/**
+	 * 同步请求执行方式：调用线程直接执行
+	 */
+	public static final String EXECUTOR_MODE_DIRECT="direct";
+	/**
+	 * 请求执行方式：虚拟线程
+	 */
+	public static final String EXECUTOR_MODE_VIRTUAL="virtual";
+	/**
+	 * 虚拟线程：最大并发请求数，小于等于0时不限制
+	 */
+	public static String VIRTUAL_MAX_CONCURRENCY="virtual.MaxConcurrency";
+	/**
+	 * 虚拟线程：每个host(主机+端口)最大并发请求数，小于等于0时不限制
+	 */
+	public static String VIRTUAL_MAX_PER_HOST="virtual.MaxPerHost";
+
+	/**
+	 * 舱壁的划分方式：none(不使用舱壁，共用线程池)，host(按主机+端口)，name(按@WSRequest的name)。@Bulkhead注解指定的优先
+	 */
+	public static String BULKHEAD_KEY="bulkhead.Key";
+	public static final String BULKHEAD_KEY_NONE="none";
+	public static final String BULKHEAD_KEY_HOST="host";
+	public static final String BULKHEAD_KEY_NAME="name";
+	/**
+	 * 舱壁：默认最大并发请求数，bulkhead.名称.MaxConcurrency单独配置
+	 */
+	public static String BULKHEAD_MAX_CONCURRENCY="bulkhead.MaxConcurrency";
+	/**
+	 * 舱壁：默认等待队列长度，队列满时拒绝请求，bulkhead.名称.QueueCapacity单独配置
+	 */
+	public static String BULKHEAD_QUEUE_CAPACITY="bulkhead.QueueCapacity";
+	/**
+	 * 舱壁：默认每个host最大连接数，小于等于0时不限制，bulkhead.名称.MaxConnections单独配置
+	 */
+	public static String BULKHEAD_MAX_CONNECTIONS="bulkhead.MaxConnections";
+
+	/**
+	 * 自适应并发数限制：是否启用，按host根据响应时间和失败自动调整并发数(AIMD)
+	 */
+	public static String ADAPTIVE_ENABLED="adaptive.Enabled";
+	/**
+	 * 自适应并发数限制：初始并发数
+	 */
+	public static String ADAPTIVE_INITIAL_LIMIT="adaptive.InitialLimit";
+	/**
+	 * 自适应并发数限制：最小并发数
+	 */
+	public static String ADAPTIVE_MIN_LIMIT="adaptive.MinLimit";
+	/**
+	 * 自适应并发数限制：最大并发数
+	 */
+	public static String ADAPTIVE_MAX_LIMIT="adaptive.MaxLimit";
+	/**
+	 * 自适应并发数限制：过载时并发数乘以的系数
+	 */
+	public static String ADAPTIVE_BACKOFF_RATIO="adaptive.BackoffRatio";
+	/**
+	 * 自适应并发数限制：响应时间超过最小响应时间的倍数时视为过载
+	 */
+	public static String ADAPTIVE_RTT_TOLERANCE="adaptive.RttTolerance";
+	/**
+	 * 自适应并发数限制：超过限制时最多等待的毫秒数，小于等于0时直接拒绝(WSLimitExceededException)
+	 */
+	public static String ADAPTIVE_MAX_WAIT_MILLIS="adaptive.MaxWaitMillis";
+
+	/**
+	 * 请求频率限制(@RateLimit)：等待令牌的默认最大毫秒数
+	 */
+	public static String RATELIMIT_MAX_WAIT_MILLIS="ratelimit.MaxWaitMillis";
+
+	/**
+	 * 重试(@Retry)：最多执行次数，包括第一次
+	 */
+	public static String RETRY_MAX_ATTEMPTS="retry.MaxAttempts";
+	/**
+	 * 重试：第一次重试的间隔毫秒数
+	 */
+	public static String RETRY_INITIAL_BACKOFF_MILLIS="retry.InitialBackoffMillis";
+	/**
+	 * 重试：最大间隔毫秒数
+	 */
+	public static String RETRY_MAX_BACKOFF_MILLIS="retry.MaxBackoffMillis";
+	/**
+	 * 重试：每次重试间隔乘以的倍数
+	 */
+	public static String RETRY_MULTIPLIER="retry.Multiplier";
+	/**
+	 * 重试：随机抖动比例(0到1)
+	 */
+	public static String RETRY_JITTER="retry.Jitter";
+	/**
+	 * 重试：总时间预算毫秒数
+	 */
+	public static String RETRY_BUDGET_MILLIS="retry.BudgetMillis";
+
+	/**
+	 * 对冲请求(@Hedge)：发送对冲请求前等待的毫秒数，0时按响应时间百分位计算
+	 */
+	public static String HEDGE_DELAY_MILLIS="hedge.DelayMillis";
+	/**
+	 * 对冲请求：计算延迟时间使用的响应时间百分位(0到1)
+	 */
+	public static String HEDGE_PERCENTILE="hedge.Percentile";
+	/**
+	 * 对冲请求：按百分位计算时的最小延迟毫秒数，响应时间样本不足时使用
+	 */
+	public static String HEDGE_MIN_DELAY_MILLIS="hedge.MinDelayMillis";
+	/**
+	 * 对冲请求：对冲请求数占请求数的最大比例
+	 */
+	public static String HEDGE_MAX_RATIO="hedge.MaxRatio";
+
+	/**
+	 * 熔断器的划分方式：none(不使用熔断器)，host(按主机+端口)，name(按@WSRequest的name)。@CircuitBreaker注解指定的优先
+	 */
+	public static String BREAKER_KEY="breaker.Key";
+	public static final String BREAKER_KEY_NONE="none";
+	public static final String BREAKER_KEY_HOST="host";
+	public static final String BREAKER_KEY_NAME="name";
+	/**
+	 * 熔断器：失败比例阈值(百分比)，breaker.名称.FailureRateThreshold单独配置
+	 */
+	public static String BREAKER_FAILURE_RATE_THRESHOLD="breaker.FailureRateThreshold";
+	/**
+	 * 熔断器：慢请求比例阈值(百分比)，大于100时不按慢请求打开，breaker.名称.SlowCallRateThreshold单独配置
+	 */
+	public static String BREAKER_SLOW_CALL_RATE_THRESHOLD="breaker.SlowCallRateThreshold";
+	/**
+	 * 熔断器：响应时间超过多少毫秒是慢请求，breaker.名称.SlowCallMillis单独配置
+	 */
+	public static String BREAKER_SLOW_CALL_MILLIS="breaker.SlowCallMillis";
+	/**
+	 * 熔断器：统计最近的请求数，breaker.名称.WindowSize单独配置
+	 */
+	public static String BREAKER_WINDOW_SIZE="breaker.WindowSize";
+	/**
+	 * 熔断器：计算比例需要的最少请求数，breaker.名称.MinimumCalls单独配置
+	 */
+	public static String BREAKER_MINIMUM_CALLS="breaker.MinimumCalls";
+	/**
+	 * 熔断器：打开多少毫秒后半开，breaker.名称.OpenMillis单独配置
+	 */
+	public static String BREAKER_OPEN_MILLIS="breaker.OpenMillis";
+	/**
+	 * 熔断器：半开时的探测请求数，breaker.名称.HalfOpenCalls单独配置
+	 */
+	public static String BREAKER_HALF_OPEN_CALLS="breaker.HalfOpenCalls";
+
+	/**
+	 * 是否合并所有相同的并发GET请求，false时只合并@Coalesce的请求
+	 */
+	public static String COALESCE_ENABLED="coalesce.Enabled";
+
+	/**
+	 * 是否启用响应缓存
+	 */
+	public static String CACHE_ENABLED="cache.Enabled";
+	/**
+	 * 响应缓存：最大字节数
+	 */
+	public static String CACHE_MAX_BYTES="cache.MaxBytes";
+	/**
+	 * 响应缓存：单个响应的最大字节数，超过时不缓存
+	 */
+	public static String CACHE_MAX_ENTRY_BYTES="cache.MaxEntryBytes";
+	/**
+	 * 响应缓存：淘汰策略的类名，实现EvictionPolicy
+	 */
+	public static String CACHE_EVICTION_POLICY="cache.EvictionPolicy";
+	/**
+	 * 磁盘缓存：目录，为空时只使用内存缓存
+	 */
+	public static String CACHE_DISK_DIR="cache.DiskDir";
+	/**
+	 * 磁盘缓存：有效记录的最大字节数
+	 */
+	public static String CACHE_DISK_MAX_BYTES="cache.DiskMaxBytes";
+	/**
+	 * 磁盘缓存：段文件的字节数，也是单个响应的最大字节数
+	 */
+	public static String CACHE_SEGMENT_BYTES="cache.SegmentBytes";
+
+	/**
+	 * 连接池：最大连接数
+	 */
+	public static String CONN_MAX_TOTAL="conn.MaxTotal";
+	/**
+	 * 连接池：每个路由(host)最大连接数
+	 */
+	public static String CONN_MAX_PER_ROUTE="conn.MaxPerRoute";
+	/**
+	 * 连接池：服务端未指定Keep-Alive时，连接保持时间
+	 */
+	public static String CONN_KEEP_ALIVE_SECONDS="conn.KeepAliveSeconds";
+	/**
+	 * 连接池：空闲连接回收时间
+	 */
+	public static String CONN_IDLE_TIMEOUT_SECONDS="conn.IdleTimeoutSeconds";
+
+	/**
+	 * SSL：是否信任所有证书(不校验证书和主机名)，默认false
+	 */
+	public static String SSL_TRUST_ALL="ssl.TrustAll";
+	/**
+	 * SSL：信任证书库路径，为空时使用JDK默认证书库
+	 */
+	public static String SSL_TRUST_STORE="ssl.TrustStore";
+	public static String SSL_TRUST_STORE_PASSWORD="ssl.TrustStorePassword";
+	/**
+	 * SSL：客户端会话缓存数量
+	 */
+	public static String SSL_SESSION_CACHE_SIZE="ssl.SessionCacheSize";
+	/**
+	 * SSL：客户端会话缓存时间
+	 */
+	public static String SSL_SESSION_TIMEOUT_SECONDS="ssl.SessionTimeoutSeconds";
+
+	/**
+	 * 缓冲区池：每个读缓冲区大小
+	 */
+	public static String BUFFER_CHUNK_SIZE="buffer.ChunkSize";
+	/**
+	 * 缓冲区池：最多缓存的缓冲区数量
+	 */
+	public static String BUFFER_MAX_POOLED="buffer.MaxPooled";
+
+	/**
+	 * 默认的Http实现：httpclient(阻塞)，nio(非阻塞)，http2(JDK11)，ServiceLoader加载的实现名称或实现类的完整类名
+	 */
+	public static String HTTP_TRANSPORT="http.transport";
+	/**
+	 * 非阻塞实现：I/O线程数
+	 */
+	public static String NIO_IO_THREADS="nio.IoThreads";
+	/**
+	 * 非阻塞实现：每个目标地址保留的空闲连接数，0时不复用连接
+	 */
+	public static String NIO_MAX_IDLE_PER_ROUTE="nio.MaxIdlePerRoute";
+	/**
+	 * Http实现名称：基于HttpClient的阻塞实现
+	 */
+	public static final String TRANSPORT_HTTPCLIENT="httpclient";
+	/**
+	 * Http实现名称：基于httpcore-nio的非阻塞实现
+	 */
+	public static final String TRANSPORT_NIO="nio";
+	/**
+	 * Http实现名称：基于JDK11 java.net.http的HTTP/2实现，需要使用jdk11编译配置构建
+	 */
+	public static final String TRANSPORT_HTTP2="http2";
 
     /**
      * 默认处理器
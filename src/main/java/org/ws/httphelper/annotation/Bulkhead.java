@@ -0,0 +1,39 @@
+package org.ws.httphelper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求使用独立的舱壁：独立的线程池，等待队列和连接数，与其他请求隔离。<br/>
+ * 与<b>@WSRequest</b>一起使用。同名的请求共用一个舱壁，配置以第一次使用时为准。<br/>
+ * 配置文件中的bulkhead.名称.MaxConcurrency，bulkhead.名称.QueueCapacity，bulkhead.名称.MaxConnections优先于注解。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Bulkhead {
+	/**
+	 * 舱壁名称：默认使用<b>@WSRequest</b>的name
+	 * @return
+	 */
+	public String name() default "";
+
+	/**
+	 * 最大并发请求数：默认使用配置文件bulkhead.MaxConcurrency
+	 * @return
+	 */
+	public int maxConcurrency() default 0;
+
+	/**
+	 * 等待队列长度，队列满时直接拒绝：默认使用配置文件bulkhead.QueueCapacity
+	 * @return
+	 */
+	public int queueCapacity() default -1;
+
+	/**
+	 * 每个host最大连接数：默认使用配置文件bulkhead.MaxConnections
+	 * @return
+	 */
+	public int maxConnections() default 0;
+}
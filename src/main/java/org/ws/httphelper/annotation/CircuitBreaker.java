@@ -0,0 +1,64 @@
+package org.ws.httphelper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求使用独立的熔断器：与<b>@WSRequest</b>一起使用。同名的请求共用一个熔断器，配置以第一次使用时为准。<br/>
+ * 最近windowSize个请求中失败或者慢请求的比例超过阈值时打开，打开期间请求直接失败(WSCircuitOpenException)，
+ * openMillis后半开，放行halfOpenCalls个探测请求，探测成功后关闭，否则重新打开。<br/>
+ * 配置文件中的breaker.名称.FailureRateThreshold等单独配置优先于注解；数值为默认值时使用配置文件breaker.*的配置。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CircuitBreaker {
+	/**
+	 * 熔断器名称：默认使用<b>@WSRequest</b>的name
+	 * @return
+	 */
+	public String name() default "";
+
+	/**
+	 * 失败比例阈值(百分比)：默认使用配置文件breaker.FailureRateThreshold
+	 * @return
+	 */
+	public int failureRateThreshold() default 0;
+
+	/**
+	 * 慢请求比例阈值(百分比)，大于100时不按慢请求打开：默认使用配置文件breaker.SlowCallRateThreshold
+	 * @return
+	 */
+	public int slowCallRateThreshold() default 0;
+
+	/**
+	 * 响应时间超过多少毫秒是慢请求：默认使用配置文件breaker.SlowCallMillis
+	 * @return
+	 */
+	public long slowCallMillis() default 0;
+
+	/**
+	 * 统计最近多少个请求：默认使用配置文件breaker.WindowSize
+	 * @return
+	 */
+	public int windowSize() default 0;
+
+	/**
+	 * 至少多少个请求才计算比例：默认使用配置文件breaker.MinimumCalls
+	 * @return
+	 */
+	public int minimumCalls() default 0;
+
+	/**
+	 * 打开多少毫秒后半开：默认使用配置文件breaker.OpenMillis
+	 * @return
+	 */
+	public long openMillis() default 0;
+
+	/**
+	 * 半开时放行的探测请求数：默认使用配置文件breaker.HalfOpenCalls
+	 * @return
+	 */
+	public int halfOpenCalls() default 0;
+}
@@ -0,0 +1,16 @@
+package org.ws.httphelper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 合并相同的并发请求：与<b>@WSRequest</b>一起使用，只对GET请求生效。<br/>
+ * 生成URL和参数后，URL，参数，头和cookie都相同的请求正在执行时，不再发送请求，共享它的响应。<br/>
+ * 配置文件coalesce.Enabled=true时所有GET请求都合并。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Coalesce {
+}
@@ -0,0 +1,34 @@
+package org.ws.httphelper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 对冲请求：与<b>@WSRequest</b>一起使用，只对GET请求生效。<br/>
+ * 请求在延迟时间内没有响应时再发送一个相同的请求，使用先返回的响应，取消另一个请求。<br/>
+ * 延迟时间固定，或者按请求最近响应时间的百分位计算；对冲请求数不超过请求数的maxRatio。<br/>
+ * 数值为默认值时使用配置文件hedge.*的配置。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Hedge {
+	/**
+	 * 发送对冲请求前等待的毫秒数，0时按响应时间百分位计算：默认使用配置文件hedge.DelayMillis
+	 * @return
+	 */
+	public long delayMillis() default -1;
+
+	/**
+	 * 计算延迟时间使用的响应时间百分位(0到1)：默认使用配置文件hedge.Percentile
+	 * @return
+	 */
+	public double percentile() default -1;
+
+	/**
+	 * 对冲请求数占请求数的最大比例：默认使用配置文件hedge.MaxRatio
+	 * @return
+	 */
+	public double maxRatio() default -1;
+}
@@ -0,0 +1,83 @@
+package org.ws.httphelper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求频率限制(令牌桶)：与<b>@WSRequest</b>一起使用，在请求发送前获取令牌。<br/>
+ * 同一个范围(scope)的请求共用一个令牌桶，配置以第一次使用时为准。<br/>
+ * 超过频率时按mode等待或者直接失败，失败的异常为WSRateLimitedException，请求不会发送。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RateLimit {
+	/**
+	 * 限制范围
+	 */
+	enum Scope{
+		/**
+		 * 每个请求类一个令牌桶
+		 */
+		CLASS,
+		/**
+		 * 每个host(主机+端口)一个令牌桶，所有请求类共用
+		 */
+		HOST,
+		/**
+		 * 每个host的每个凭证(credential指定的参数值，例如ak)一个令牌桶
+		 */
+		CREDENTIAL
+	}
+
+	/**
+	 * 超过频率时的处理方式
+	 */
+	enum Mode{
+		/**
+		 * 等待令牌，最多等待maxWaitMillis
+		 */
+		WAIT,
+		/**
+		 * 直接失败
+		 */
+		FAIL
+	}
+
+	/**
+	 * 每秒请求数
+	 * @return
+	 */
+	public double permitsPerSecond();
+
+	/**
+	 * 突发请求数：令牌桶容量，空闲后最多可以连续发送的请求数
+	 * @return
+	 */
+	public int burst() default 1;
+
+	/**
+	 * 限制范围：默认每个请求类
+	 * @return
+	 */
+	public Scope scope() default Scope.CLASS;
+
+	/**
+	 * 凭证参数名称：scope为CREDENTIAL时，按该参数的值区分令牌桶
+	 * @return
+	 */
+	public String credential() default "";
+
+	/**
+	 * 超过频率时的处理方式：默认等待
+	 * @return
+	 */
+	public Mode mode() default Mode.WAIT;
+
+	/**
+	 * 最多等待的毫秒数，超过时失败：默认使用配置文件ratelimit.MaxWaitMillis
+	 * @return
+	 */
+	public long maxWaitMillis() default -1;
+}
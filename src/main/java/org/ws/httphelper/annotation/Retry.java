@@ -0,0 +1,71 @@
+package org.ws.httphelper.annotation;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求失败时重试：与<b>@WSRequest</b>一起使用。<br/>
+ * 异常(包括原因链)属于retryOn，或者响应状态属于retryOnStatus时重试，间隔按指数增加并加入随机抖动。<br/>
+ * 重试由定时器延迟执行，不占用线程等待。默认只重试幂等的请求(GET，DELETE)。<br/>
+ * 数值为默认值时使用配置文件retry.*的配置。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Retry {
+	/**
+	 * 最多执行次数，包括第一次：默认使用配置文件retry.MaxAttempts
+	 * @return
+	 */
+	public int maxAttempts() default 0;
+
+	/**
+	 * 第一次重试的间隔毫秒数：默认使用配置文件retry.InitialBackoffMillis
+	 * @return
+	 */
+	public long initialBackoffMillis() default -1;
+
+	/**
+	 * 最大间隔毫秒数：默认使用配置文件retry.MaxBackoffMillis
+	 * @return
+	 */
+	public long maxBackoffMillis() default -1;
+
+	/**
+	 * 每次重试间隔乘以的倍数：默认使用配置文件retry.Multiplier
+	 * @return
+	 */
+	public double multiplier() default 0;
+
+	/**
+	 * 随机抖动比例(0到1)：间隔在[间隔*(1-jitter),间隔]之间随机，默认使用配置文件retry.Jitter
+	 * @return
+	 */
+	public double jitter() default -1;
+
+	/**
+	 * 总时间预算毫秒数，从第一次请求开始计算，超过时不再重试：默认使用配置文件retry.BudgetMillis
+	 * @return
+	 */
+	public long budgetMillis() default -1;
+
+	/**
+	 * 需要重试的响应状态
+	 * @return
+	 */
+	public int[] retryOnStatus() default {502, 503, 504};
+
+	/**
+	 * 需要重试的异常，匹配异常及其原因链
+	 * @return
+	 */
+	public Class<? extends Throwable>[] retryOn() default {IOException.class};
+
+	/**
+	 * 是否重试非幂等的请求(POST)
+	 * @return
+	 */
+	public boolean retryNonIdempotent() default false;
+}
@@ -33,7 +33,15 @@ public @interface WSRequest {
 		/**
 		 * byte数组：不做解析
 		 */
-		BYTE_ARRAY// 返回byte[]
+		BYTE_ARRAY,// 返回byte[]
+		/**
+		 * 流：不缓存响应内容，交给StreamConsumer边读边处理
+		 */
+		STREAM,// 返回StreamConsumer的处理结果
+		/**
+		 * 文件：响应内容直接写入目标文件，不经过内存缓存
+		 */
+		FILE// 返回目标文件
 	}
 	/**
 	 * <b>描述：</b> 请求方式<br/>
@@ -101,4 +109,10 @@ public @interface WSRequest {
      * @return
      */
     public Class<?> resultClass() default String.class;
+
+    /**
+     * Http实现：httpclient，nio，或者其他HttpTransport实现的名称。默认使用配置文件http.transport指定的实现
+     * @return
+     */
+    public String transport() default "";
 }
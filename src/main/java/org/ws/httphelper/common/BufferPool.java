@@ -0,0 +1,131 @@
+package org.ws.httphelper.common;
+
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读缓冲区池。<br/>
+ * 缓冲区大小固定(buffer.ChunkSize)，按线程分段存放，减少线程之间的竞争。<br/>
+ * 池中缓冲区总数不超过buffer.MaxPooled，超出的缓冲区直接丢弃。<br/>
+ * 统计新分配的字节数，用于衡量每次请求的内存分配。<br/>
+ * Created by gz on 16/01/20.
+ */
+public class BufferPool {
+    private static final int STRIPES = 8;
+
+    private static BufferPool _instance = new BufferPool(
+            WSHttpHelperConfig.getInt(WSHttpHelperConstant.BUFFER_CHUNK_SIZE, 1024 * 8),
+            WSHttpHelperConfig.getInt(WSHttpHelperConstant.BUFFER_MAX_POOLED, 256));
+
+    public static BufferPool getInstance(){
+        return _instance;
+    }
+
+    private final int chunkSize;
+    private final int maxPooledPerStripe;
+    private final Queue<byte[]>[] stripes;
+    private final AtomicInteger[] stripeSizes;
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(int chunkSize,int maxPooled){
+        this.chunkSize=chunkSize;
+        this.maxPooledPerStripe=Math.max(1, maxPooled / STRIPES);
+        this.stripes=new Queue[STRIPES];
+        this.stripeSizes=new AtomicInteger[STRIPES];
+        for(int i=0;i<STRIPES;i++){
+            stripes[i]=new ConcurrentLinkedQueue<byte[]>();
+            stripeSizes[i]=new AtomicInteger();
+        }
+    }
+
+    /**
+     * 获取缓冲区，池中没有时新建
+     * @return 大小为chunkSize的缓冲区，内容不确定
+     */
+    public byte[] acquire(){
+        acquireCount.incrementAndGet();
+        int stripe = stripe();
+        byte[] buffer = stripes[stripe].poll();
+        if(buffer!=null){
+            stripeSizes[stripe].decrementAndGet();
+            hitCount.incrementAndGet();
+            return buffer;
+        }
+        return allocate(chunkSize);
+    }
+
+    /**
+     * 归还缓冲区
+     * @param buffer
+     */
+    public void release(byte[] buffer){
+        if(buffer==null || buffer.length!=chunkSize){
+            return;
+        }
+        int stripe = stripe();
+        if(stripeSizes[stripe].incrementAndGet() > maxPooledPerStripe){
+            stripeSizes[stripe].decrementAndGet();
+            return;
+        }
+        stripes[stripe].offer(buffer);
+    }
+
+    /**
+     * 分配新数组，并计入统计
+     * @param size
+     * @return
+     */
+    public byte[] allocate(int size){
+        allocatedBytes.addAndGet(size);
+        return new byte[size];
+    }
+
+    private int stripe(){
+        return (int) (Thread.currentThread().getId() % STRIPES);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 累计新分配的字节数
+     * @return
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * 从池中获取到缓冲区的次数
+     * @return
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 池中当前缓冲区数量
+     * @return
+     */
+    public int getPooledCount(){
+        int count=0;
+        for(AtomicInteger size:stripeSizes){
+            count+=size.get();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,112 @@
+package org.ws.httphelper.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 将输入流读取为byte[]。<br/>
+ * 已知长度(Content-Length)时直接分配准确大小的数组并填充，只分配一次。<br/>
+ * 未知长度时使用缓冲区池中的块依次读取，读完后一次性拼接，块归还缓冲区池。<br/>
+ * Created by gz on 16/01/20.
+ */
+public class ByteArrayReader {
+    private static final byte[] EMPTY = new byte[0];
+
+    private ByteArrayReader(){}
+
+    /**
+     * 读取全部内容
+     * @param in 输入流，不负责关闭
+     * @param contentLength 内容长度，小于0表示未知
+     * @return
+     * @throws IOException
+     */
+    public static byte[] read(InputStream in,long contentLength)throws IOException{
+        return read(in, contentLength, BufferPool.getInstance());
+    }
+
+    public static byte[] read(InputStream in,long contentLength,BufferPool pool)throws IOException{
+        if(contentLength==0){
+            return EMPTY;
+        }
+        if(contentLength>0 && contentLength<Integer.MAX_VALUE){
+            return readKnownLength(in, (int) contentLength, pool);
+        }
+        return readChunks(in, null, 0, pool);
+    }
+
+    private static byte[] readKnownLength(InputStream in,int length,BufferPool pool)throws IOException{
+        byte[] data = pool.allocate(length);
+        int offset = 0;
+        int count;
+        while (offset < length && (count = in.read(data, offset, length - offset)) != -1) {
+            offset += count;
+        }
+        if(offset < length){
+            // 实际内容比Content-Length短
+            byte[] result = pool.allocate(offset);
+            System.arraycopy(data, 0, result, 0, offset);
+            return result;
+        }
+        int next = in.read();
+        if(next == -1){
+            return data;
+        }
+        // 实际内容比Content-Length长，剩余部分按未知长度读取
+        byte[] first = pool.acquire();
+        first[0] = (byte) next;
+        return readChunks(in, data, 1, first, pool);
+    }
+
+    private static byte[] readChunks(InputStream in,byte[] head,int firstUsed,BufferPool pool)throws IOException{
+        return readChunks(in, head, firstUsed, pool.acquire(), pool);
+    }
+
+    private static byte[] readChunks(InputStream in,byte[] head,int firstUsed,byte[] first,BufferPool pool)throws IOException{
+        List<byte[]> chunks = new ArrayList<byte[]>();
+        chunks.add(first);
+        byte[] chunk = first;
+        int used = firstUsed;
+        long total = firstUsed;
+        try {
+            int count;
+            while (true) {
+                if(used == chunk.length){
+                    chunk = pool.acquire();
+                    chunks.add(chunk);
+                    used = 0;
+                }
+                count = in.read(chunk, used, chunk.length - used);
+                if(count == -1){
+                    break;
+                }
+                used += count;
+                total += count;
+            }
+            int headLength = head == null ? 0 : head.length;
+            if(total + headLength > Integer.MAX_VALUE){
+                throw new IOException("响应内容过大：" + (total + headLength));
+            }
+            byte[] result = pool.allocate((int) (total + headLength));
+            int offset = 0;
+            if(head != null){
+                System.arraycopy(head, 0, result, 0, headLength);
+                offset = headLength;
+            }
+            for(int i = 0; i < chunks.size(); i++){
+                byte[] c = chunks.get(i);
+                int length = (i == chunks.size() - 1) ? used : c.length;
+                System.arraycopy(c, 0, result, offset, length);
+                offset += length;
+            }
+            return result;
+        }
+        finally {
+            for(byte[] c:chunks){
+                pool.release(c);
+            }
+        }
+    }
+}
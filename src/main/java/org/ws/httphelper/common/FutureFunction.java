@@ -0,0 +1,15 @@
+package org.ws.httphelper.common;
+
+/**
+ * WSFuture结果转换，用于链式处理。<br/>
+ * Created by gz on 16/02/20.
+ */
+public interface FutureFunction<V,R> {
+    /**
+     * 转换结果
+     * @param value
+     * @return 转换后的结果
+     * @throws Exception 转换失败，后续的Future以该异常结束
+     */
+    public R apply(V value) throws Exception;
+}
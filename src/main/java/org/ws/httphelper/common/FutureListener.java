@@ -0,0 +1,13 @@
+package org.ws.httphelper.common;
+
+/**
+ * WSFuture完成时的回调：成功，失败，取消都会调用，在设置结果的线程中执行。<br/>
+ * Created by gz on 16/02/20.
+ */
+public interface FutureListener<V> {
+    /**
+     * 完成时调用
+     * @param future 已经完成的Future
+     */
+    public void operationComplete(WSFuture<V> future);
+}
@@ -0,0 +1,125 @@
+package org.ws.httphelper.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶。<br/>
+ * 只保存一个时间点(下一个令牌的理论发放时间)，通过CAS更新，不需要定时补充令牌。<br/>
+ * 获取令牌时返回需要等待的时间，由调用方决定阻塞等待或者延迟执行；超过最大等待时间时不占用令牌。<br/>
+ * 统计发放次数，等待次数，等待总时间和拒绝次数。<br/>
+ * Created by gz on 16/02/26.
+ */
+public class TokenBucket {
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextTime = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name 名称
+     * @param permitsPerSecond 每秒令牌数
+     * @param burst 桶容量，最多可以连续获取的令牌数
+     */
+    public TokenBucket(String name, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("每秒令牌数必须大于0：" + name);
+        }
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(burst, 1);
+        this.intervalNanos = (long) (1000000000L / permitsPerSecond);
+        this.toleranceNanos = this.intervalNanos * this.burst;
+    }
+
+    /**
+     * 预定一个令牌
+     * @param maxWaitNanos 最多等待的时间，0时只在有令牌时获取
+     * @return 需要等待的纳秒数，0表示立即可用；超过最大等待时间时返回-1，不占用令牌
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = nextTime.get();
+            long base = Math.max(current, now);
+            long wait = Math.max(base + intervalNanos - toleranceNanos - now, 0L);
+            if (wait > maxWaitNanos) {
+                rejectedCount.incrementAndGet();
+                return -1;
+            }
+            if (nextTime.compareAndSet(current, base + intervalNanos)) {
+                acquiredCount.incrementAndGet();
+                if (wait > 0) {
+                    throttledCount.incrementAndGet();
+                    throttledNanos.addAndGet(wait);
+                }
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * 获取令牌，没有令牌时不等待
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * 发放的令牌数
+     * @return
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    /**
+     * 需要等待才能获取令牌的次数
+     * @return
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * 等待的总时间，毫秒
+     * @return
+     */
+    public long getThrottledMillis() {
+        return throttledNanos.get() / 1000000L;
+    }
+
+    /**
+     * 超过最大等待时间被拒绝的次数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[permitsPerSecond=" + permitsPerSecond + ",burst=" + burst
+                + ",acquired=" + getAcquiredCount() + ",throttled=" + getThrottledCount()
+                + ",throttledMillis=" + getThrottledMillis() + ",rejected=" + getRejectedCount() + "]";
+    }
+}
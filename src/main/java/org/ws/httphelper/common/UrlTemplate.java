@@ -0,0 +1,284 @@
+package org.ws.httphelper.common;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 解析后的URL模板：{name}变量和变量之间的文本，生成URL时不再匹配正则。<br/>
+ * 变量名不包含&amp;，/和}；不是有效变量的{按普通文本处理。<br/>
+ * 生成URL时变量的值按所在位置编码：路径中按路径段编码(/也编码)，?之后按查询参数编码(&amp;，=，+也编码)，#之后按片段编码；
+ * 协议和主机部分(第一个/之前，例如{url})以及{+name}只编码URL中不能出现的字符(空格，非ASCII字符等)，保留/?&amp;=和已经编码的%XX。<br/>
+ * 创建后不再修改，可以在线程之间共享。<br/>
+ * Created by gz on 16/03/07.
+ */
+public final class UrlTemplate {
+    /**
+     * 缓存的模板数量上限，超过后不再缓存(URL由调用方拼接时每次都不同)
+     */
+    private static final int MAX_CACHED = 1024;
+    private static final ConcurrentMap<String,UrlTemplate> templateMap = new ConcurrentHashMap<String, UrlTemplate>();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 变量的编码方式
+     */
+    private static final int RESERVED = 0;
+    private static final int PATH = 1;
+    private static final int QUERY = 2;
+    private static final int FRAGMENT = 3;
+
+    private final String template;
+    /**
+     * 文本，比变量多一个
+     */
+    private final String[] literals;
+    private final String[] names;
+    private final int[] encodings;
+    private final int literalLength;
+
+    private UrlTemplate(String template, String[] literals, String[] names, int[] encodings) {
+        this.template = template;
+        this.literals = literals;
+        this.names = names;
+        this.encodings = encodings;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 解析URL模板
+     * @param template
+     * @return
+     */
+    public static UrlTemplate compile(String template) {
+        List<String> literals = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        List<Integer> encodings = new ArrayList<Integer>();
+        // 从协议和主机部分开始：模板以/开头时直接是路径
+        int encoding = RESERVED;
+        int literalBegin = 0;
+        int index = template.indexOf('{');
+        while (index >= 0) {
+            int end = index + 1;
+            while (end < template.length() && "&/}".indexOf(template.charAt(end)) < 0) {
+                end++;
+            }
+            boolean reserved = index + 1 < template.length() && template.charAt(index + 1) == '+';
+            if (end < template.length() && template.charAt(end) == '}' && end > index + (reserved ? 2 : 1)) {
+                String literal = template.substring(literalBegin, index);
+                encoding = nextEncoding(encoding, literal);
+                literals.add(literal);
+                names.add(template.substring(index + (reserved ? 2 : 1), end));
+                encodings.add(reserved ? RESERVED : encoding);
+                literalBegin = end + 1;
+                index = template.indexOf('{', literalBegin);
+            } else {
+                index = template.indexOf('{', index + 1);
+            }
+        }
+        literals.add(template.substring(literalBegin));
+        int[] encodingArray = new int[encodings.size()];
+        for (int i = 0; i < encodingArray.length; i++) {
+            encodingArray[i] = encodings.get(i);
+        }
+        return new UrlTemplate(template, literals.toArray(new String[literals.size()]),
+                names.toArray(new String[names.size()]), encodingArray);
+    }
+
+    /**
+     * 解析URL模板，相同的模板只解析一次
+     * @param template
+     * @return
+     */
+    public static UrlTemplate forTemplate(String template) {
+        UrlTemplate urlTemplate = templateMap.get(template);
+        if (urlTemplate == null) {
+            urlTemplate = compile(template);
+            if (templateMap.size() < MAX_CACHED) {
+                UrlTemplate old = templateMap.putIfAbsent(template, urlTemplate);
+                if (old != null) {
+                    urlTemplate = old;
+                }
+            }
+        }
+        return urlTemplate;
+    }
+
+    /**
+     * 检查模板：没有闭合的{和空的{}在生成URL时按普通文本处理，通常是写错了
+     * @param template
+     * @return 第一个问题的描述，没有问题时返回null
+     */
+    public static String check(String template) {
+        int index = template.indexOf('{');
+        while (index >= 0) {
+            int end = index + 1;
+            while (end < template.length() && "&/}".indexOf(template.charAt(end)) < 0) {
+                end++;
+            }
+            if (end == template.length() || template.charAt(end) != '}') {
+                return "第" + (index + 1) + "个字符的{没有闭合";
+            }
+            if (end == index + 1 || (end == index + 2 && template.charAt(index + 1) == '+')) {
+                return "第" + (index + 1) + "个字符的{}没有变量名";
+            }
+            index = template.indexOf('{', end + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 生成URL，按UTF-8编码
+     * @param values
+     * @return 没有变量时返回模板
+     */
+    public String expand(Map<String, ?> values) {
+        return expand(values, UTF_8);
+    }
+
+    /**
+     * 生成URL：变量替换为String.valueOf(值)并按所在位置编码，没有值的变量替换为空字符串(先通过getMissing(...)检查)
+     * @param values
+     * @param charset 非ASCII字符的编码
+     * @return 没有变量时返回模板
+     */
+    public String expand(Map<String, ?> values, Charset charset) {
+        if (names.length == 0) {
+            return template;
+        }
+        String[] strings = new String[names.length];
+        int length = literalLength;
+        for (int i = 0; i < names.length; i++) {
+            Object value = values.get(names[i]);
+            strings[i] = value == null ? "" : String.valueOf(value);
+            length += strings[i].length();
+        }
+        // 大部分值不需要编码，按原长度预留
+        StringBuilder url = new StringBuilder(length + 16);
+        for (int i = 0; i < names.length; i++) {
+            url.append(literals[i]);
+            encode(url, strings[i], encodings[i], charset);
+        }
+        return url.append(literals[names.length]).toString();
+    }
+
+    /**
+     * 没有值的变量
+     * @param values
+     * @return 按出现的顺序，不重复
+     */
+    public List<String> getMissing(Map<String, ?> values) {
+        Set<String> missing = null;
+        for (String name : names) {
+            if (values.get(name) == null) {
+                if (missing == null) {
+                    missing = new LinkedHashSet<String>();
+                }
+                missing.add(name);
+            }
+        }
+        return missing == null ? Collections.<String>emptyList() : new ArrayList<String>(missing);
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 变量名，按出现的顺序，可以重复
+     * @return
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    public boolean hasVariables() {
+        return names.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    /**
+     * 根据变量之前的文本确定变量所在的位置
+     */
+    private static int nextEncoding(int encoding, String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '#') {
+                return FRAGMENT;
+            }
+            if (encoding == FRAGMENT) {
+                continue;
+            }
+            if (c == '?') {
+                encoding = QUERY;
+            } else if (c == '/' && encoding == RESERVED) {
+                // 跳过协议后的//
+                if (i > 0 && literal.charAt(i - 1) == ':' && i + 1 < literal.length() && literal.charAt(i + 1) == '/') {
+                    i++;
+                } else {
+                    encoding = PATH;
+                }
+            }
+        }
+        return encoding;
+    }
+
+    private static void encode(StringBuilder url, String value, int encoding, Charset charset) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isAllowed(c, encoding, value, i)) {
+                url.append(c);
+                continue;
+            }
+            // 非ASCII字符按字符编码，代理对一起编码
+            int end = i + 1;
+            if (Character.isHighSurrogate(c) && end < value.length() && Character.isLowSurrogate(value.charAt(end))) {
+                end++;
+            }
+            byte[] bytes = c < 0x80 ? new byte[]{(byte) c} : value.substring(i, end).getBytes(charset);
+            for (byte b : bytes) {
+                url.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+            }
+            i = end - 1;
+        }
+    }
+
+    private static boolean isAllowed(char c, int encoding, String value, int index) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "-._~".indexOf(c) >= 0) {
+            return true;
+        }
+        switch (encoding) {
+            case PATH:
+                return "!$&'()*+,;=:@".indexOf(c) >= 0;
+            case QUERY:
+                return "!$'()*,;:@/?".indexOf(c) >= 0;
+            case FRAGMENT:
+                return "!$&'()*+,;=:@/?".indexOf(c) >= 0;
+            default:
+                // 保留已经编码的%XX
+                if (c == '%') {
+                    return index + 2 < value.length() && isHex(value.charAt(index + 1)) && isHex(value.charAt(index + 2));
+                }
+                return ":/?#[]@!$&'()*+,;=".indexOf(c) >= 0;
+        }
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
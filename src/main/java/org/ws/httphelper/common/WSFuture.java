@@ -0,0 +1,274 @@
+package org.ws.httphelper.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 可以由外部设置结果的Future。<br/>
+ * 用于异步Http实现：I/O线程收到响应后调用set或setException，等待结果的线程通过get获取。<br/>
+ * 结果只能设置一次，后设置的结果被忽略。<br/>
+ * 支持完成回调(addListener)和链式处理(then，recover)，不需要占用线程等待结果。<br/>
+ * Created by gz on 16/02/02.
+ */
+public class WSFuture<V> implements Future<V> {
+    protected static Log log = LogFactory.getLog(WSFuture.class);
+
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private int state = PENDING;
+    private V value;
+    private Throwable cause;
+    private List<FutureListener<V>> listeners;
+
+    /**
+     * 已经成功的Future
+     * @param value
+     * @param <V>
+     * @return
+     */
+    public static <V> WSFuture<V> succeeded(V value){
+        WSFuture<V> future = new WSFuture<V>();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * 已经失败的Future
+     * @param cause
+     * @param <V>
+     * @return
+     */
+    public static <V> WSFuture<V> failed(Throwable cause){
+        WSFuture<V> future = new WSFuture<V>();
+        future.setException(cause);
+        return future;
+    }
+
+    /**
+     * 设置结果
+     * @param value
+     * @return 是否设置成功，已经完成时返回false
+     */
+    public boolean set(V value){
+        synchronized (this){
+            if(state!=PENDING){
+                return false;
+            }
+            this.value=value;
+            this.state=SUCCESS;
+        }
+        done();
+        return true;
+    }
+
+    /**
+     * 设置异常
+     * @param cause
+     * @return 是否设置成功，已经完成时返回false
+     */
+    public boolean setException(Throwable cause){
+        synchronized (this){
+            if(state!=PENDING){
+                return false;
+            }
+            this.cause=cause;
+            this.state=FAILED;
+        }
+        done();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this){
+            if(state!=PENDING){
+                return false;
+            }
+            this.state=CANCELLED;
+        }
+        done();
+        return true;
+    }
+
+    private void done(){
+        latch.countDown();
+        List<FutureListener<V>> list;
+        synchronized (this){
+            list=this.listeners;
+            this.listeners=null;
+        }
+        if(list!=null){
+            for(FutureListener<V> listener:list){
+                notifyListener(listener);
+            }
+        }
+    }
+
+    private void notifyListener(FutureListener<V> listener){
+        try {
+            listener.operationComplete(this);
+        } catch (Throwable e) {
+            log.error("回调异常："+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 添加完成回调：已经完成时在当前线程立即调用，否则在设置结果的线程中调用
+     * @param listener
+     * @return
+     */
+    public WSFuture<V> addListener(FutureListener<V> listener){
+        synchronized (this){
+            if(state==PENDING){
+                if(listeners==null){
+                    listeners=new ArrayList<FutureListener<V>>(2);
+                }
+                listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    /**
+     * 成功后转换结果；失败和取消直接传递。取消返回的Future时同时取消当前Future
+     * @param function
+     * @param <R>
+     * @return 转换结果的Future
+     */
+    public <R> WSFuture<R> then(final FutureFunction<? super V,? extends R> function){
+        final WSFuture<R> next = new WSFuture<R>();
+        addListener(new FutureListener<V>() {
+            @Override
+            public void operationComplete(WSFuture<V> future) {
+                if(future.isSuccess()){
+                    try {
+                        next.set(function.apply(future.getNow()));
+                    } catch (Throwable e) {
+                        next.setException(e);
+                    }
+                }
+                else if(future.isCancelled()){
+                    next.cancel(false);
+                }
+                else{
+                    next.setException(future.getCause());
+                }
+            }
+        });
+        cancelWith(next);
+        return next;
+    }
+
+    /**
+     * 失败时转换为结果；成功和取消直接传递
+     * @param function
+     * @return
+     */
+    public WSFuture<V> recover(final FutureFunction<Throwable,? extends V> function){
+        final WSFuture<V> next = new WSFuture<V>();
+        addListener(new FutureListener<V>() {
+            @Override
+            public void operationComplete(WSFuture<V> future) {
+                if(future.isSuccess()){
+                    next.set(future.getNow());
+                }
+                else if(future.isCancelled()){
+                    next.cancel(false);
+                }
+                else{
+                    try {
+                        next.set(function.apply(future.getCause()));
+                    } catch (Throwable e) {
+                        next.setException(e);
+                    }
+                }
+            }
+        });
+        cancelWith(next);
+        return next;
+    }
+
+    private <R> void cancelWith(WSFuture<R> next){
+        next.addListener(new FutureListener<R>() {
+            @Override
+            public void operationComplete(WSFuture<R> future) {
+                if(future.isCancelled()){
+                    cancel(false);
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state==CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state!=PENDING;
+    }
+
+    /**
+     * 是否成功完成
+     * @return
+     */
+    public synchronized boolean isSuccess() {
+        return state==SUCCESS;
+    }
+
+    /**
+     * 失败原因，未失败时返回null
+     * @return
+     */
+    public synchronized Throwable getCause() {
+        return state==FAILED?cause:null;
+    }
+
+    /**
+     * 不等待，直接获取结果，未成功完成时返回null
+     * @return
+     */
+    public synchronized V getNow() {
+        return state==SUCCESS?value:null;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if(!latch.await(timeout, unit)){
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private synchronized V report() throws ExecutionException {
+        if(state==CANCELLED){
+            throw new CancellationException();
+        }
+        if(state==FAILED){
+            throw new ExecutionException(cause);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,39 @@
+package org.ws.httphelper.common;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的定时器：用于等待超时等延迟任务，不占用请求线程。<br/>
+ * 单个守护线程执行，任务必须很快结束，耗时的操作提交到其他线程。<br/>
+ * Created by gz on 16/02/24.
+ */
+public class WSTimer {
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "WSHttpHelper-timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private WSTimer(){}
+
+    /**
+     * 延迟执行
+     * @param task
+     * @param delayMillis
+     * @return 可以通过cancel取消
+     */
+    public static ScheduledFuture<?> schedule(Runnable task,long delayMillis){
+        return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static ScheduledExecutorService getScheduler(){
+        return timer;
+    }
+}
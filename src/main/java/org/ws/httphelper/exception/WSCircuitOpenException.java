@@ -0,0 +1,23 @@
+package org.ws.httphelper.exception;
+
+/**
+ * 熔断器打开：请求没有发送
+ */
+public class WSCircuitOpenException extends WSException{
+	private static final long serialVersionUID = 1L;
+
+	private final String name;
+
+	public WSCircuitOpenException(String name){
+		super("熔断器已打开："+name);
+		this.name=name;
+	}
+
+	/**
+	 * 熔断器名称
+	 * @return
+	 */
+	public String getName(){
+		return name;
+	}
+}
@@ -0,0 +1,33 @@
+package org.ws.httphelper.exception;
+
+/**
+ * 超过并发数限制：请求没有发送，可以稍后重试
+ */
+public class WSLimitExceededException extends WSException{
+	private static final long serialVersionUID = 1L;
+
+	private final String host;
+	private final int limit;
+
+	public WSLimitExceededException(String host,int limit){
+		super("超过并发数限制：host="+host+",limit="+limit);
+		this.host=host;
+		this.limit=limit;
+	}
+
+	/**
+	 * 被限制的host
+	 * @return
+	 */
+	public String getHost(){
+		return host;
+	}
+
+	/**
+	 * 拒绝时的并发数限制
+	 * @return
+	 */
+	public int getLimit(){
+		return limit;
+	}
+}
@@ -0,0 +1,23 @@
+package org.ws.httphelper.exception;
+
+/**
+ * 超过请求频率限制：请求没有发送
+ */
+public class WSRateLimitedException extends WSException{
+	private static final long serialVersionUID = 1L;
+
+	private final String key;
+
+	public WSRateLimitedException(String key){
+		super("超过请求频率限制："+key);
+		this.key=key;
+	}
+
+	/**
+	 * 被限制的令牌桶名称
+	 * @return
+	 */
+	public String getKey(){
+		return key;
+	}
+}
@@ -0,0 +1,276 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.common.WSTimer;
+import org.ws.httphelper.exception.WSLimitExceededException;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应并发数限制(AIMD)，每个host一个。<br/>
+ * 请求成功并且响应时间不超过最小响应时间的adaptive.RttTolerance倍时，限制加1/limit(每轮加1)；
+ * 连接失败或超时，返回429/503，或者响应时间超过阈值时，限制乘以adaptive.BackoffRatio。限制在adaptive.MinLimit和adaptive.MaxLimit之间。<br/>
+ * 超过限制的请求最多等待adaptive.MaxWaitMillis，超时或者不等待时失败，异常为WSLimitExceededException。<br/>
+ * Created by gz on 16/02/24.
+ */
+public class AdaptiveLimiter {
+    /**
+     * 每隔多少次重新计算最小响应时间，适应上游服务的变化
+     */
+    private static final int MIN_RTT_RESET_SAMPLES = 1000;
+
+    private final String host;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final long maxWaitMillis;
+
+    private double limit;
+    private int inFlight = 0;
+    private long minRtt = Long.MAX_VALUE;
+    private int samples = 0;
+    private final LinkedList<WSFuture<Permit>> waiters = new LinkedList<WSFuture<Permit>>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong dropCount = new AtomicLong();
+
+    /**
+     * 使用配置文件中的参数
+     * @param host
+     */
+    public AdaptiveLimiter(String host) {
+        this(host, WSHttpHelperConfig.getInt(WSHttpHelperConstant.ADAPTIVE_INITIAL_LIMIT, 20),
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.ADAPTIVE_MIN_LIMIT, 1),
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.ADAPTIVE_MAX_LIMIT, 200),
+                WSHttpHelperConfig.getDouble(WSHttpHelperConstant.ADAPTIVE_BACKOFF_RATIO, 0.9),
+                WSHttpHelperConfig.getDouble(WSHttpHelperConstant.ADAPTIVE_RTT_TOLERANCE, 2.0),
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.ADAPTIVE_MAX_WAIT_MILLIS, 0));
+    }
+
+    /**
+     * @param host
+     * @param initialLimit 初始并发数限制
+     * @param minLimit 最小限制
+     * @param maxLimit 最大限制
+     * @param backoffRatio 过载时限制乘以的系数，0到1之间
+     * @param rttTolerance 响应时间超过最小响应时间的倍数时视为过载
+     * @param maxWaitMillis 超过限制时最多等待的时间，小于等于0时直接拒绝
+     */
+    public AdaptiveLimiter(String host, int initialLimit, int minLimit, int maxLimit,
+                           double backoffRatio, double rttTolerance, long maxWaitMillis) {
+        this.host = host;
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * 获取许可：未超过限制时立即完成；否则排队等待其他请求结束，超时失败
+     * @return 失败的异常为WSLimitExceededException
+     */
+    public WSFuture<Permit> acquire() {
+        final WSFuture<Permit> future = new WSFuture<Permit>();
+        synchronized (this) {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+            } else if (maxWaitMillis <= 0) {
+                rejectedCount.incrementAndGet();
+                future.setException(new WSLimitExceededException(host, (int) limit));
+                return future;
+            } else {
+                waiters.add(future);
+                WSTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        timeout(future);
+                    }
+                }, maxWaitMillis);
+                return future;
+            }
+        }
+        future.set(new Permit(false));
+        return future;
+    }
+
+    private void timeout(WSFuture<Permit> future) {
+        int current;
+        synchronized (this) {
+            if (!waiters.remove(future)) {
+                return;
+            }
+            current = (int) limit;
+        }
+        timeoutCount.incrementAndGet();
+        future.setException(new WSLimitExceededException(host, current));
+    }
+
+    /**
+     * 请求结束，调整限制并唤醒等待的请求
+     * @param rtt 响应时间，纳秒
+     * @param dropped 是否过载(I/O异常，429，503)
+     * @param adjust 是否调整限制，取消的请求不调整
+     */
+    private void release(long rtt, boolean dropped, boolean adjust) {
+        List<WSFuture<Permit>> granted = new ArrayList<WSFuture<Permit>>(2);
+        synchronized (this) {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+            if (adjust) {
+                if (!dropped) {
+                    if (++samples >= MIN_RTT_RESET_SAMPLES) {
+                        samples = 0;
+                        minRtt = rtt;
+                    }
+                    minRtt = Math.min(minRtt, rtt);
+                    dropped = rtt > minRtt * rttTolerance;
+                }
+                if (dropped) {
+                    dropCount.incrementAndGet();
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (saturated) {
+                    // 只有并发数接近限制时才增加，避免空闲时限制无限增长
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                WSFuture<Permit> waiter = waiters.poll();
+                if (!waiter.isDone()) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        for (WSFuture<Permit> waiter : granted) {
+            if (!waiter.set(new Permit(true))) {
+                // 等待期间已经取消
+                release(0, false, false);
+            }
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * 当前并发数限制
+     * @return
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 正在执行的请求数
+     * @return
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 等待许可的请求数
+     * @return
+     */
+    public synchronized int getQueueSize() {
+        return waiters.size();
+    }
+
+    /**
+     * 最小响应时间，毫秒，没有数据时返回-1
+     * @return
+     */
+    public synchronized long getMinRttMillis() {
+        return minRtt == Long.MAX_VALUE ? -1 : minRtt / 1000000L;
+    }
+
+    /**
+     * 超过限制直接拒绝的请求数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 等待超时的请求数
+     * @return
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * 过载信号次数(I/O异常，429，503，响应时间超过阈值)
+     * @return
+     */
+    public long getDropCount() {
+        return dropCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return host + "[limit=" + getLimit() + ",inFlight=" + getInFlight() + ",queue=" + getQueueSize()
+                + ",minRtt=" + getMinRttMillis() + "ms,rejected=" + getRejectedCount()
+                + ",timeout=" + getTimeoutCount() + ",drop=" + getDropCount() + "]";
+    }
+
+    /**
+     * 许可：请求结束时必须调用success，dropped或ignore其中一个，只有第一次调用有效
+     */
+    public class Permit {
+        private final long beginTime = System.nanoTime();
+        private final boolean queued;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(boolean queued) {
+            this.queued = queued;
+        }
+
+        /**
+         * 是否经过排队才获取到许可
+         * @return
+         */
+        public boolean isQueued() {
+            return queued;
+        }
+
+        /**
+         * 请求成功，根据响应时间调整限制
+         */
+        public void success() {
+            release(false, true);
+        }
+
+        /**
+         * 上游过载：连接失败或超时，429或503，减小限制
+         */
+        public void dropped() {
+            release(true, true);
+        }
+
+        /**
+         * 不调整限制，例如请求被取消
+         */
+        public void ignore() {
+            release(false, false);
+        }
+
+        private void release(boolean dropped, boolean adjust) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveLimiter.this.release(System.nanoTime() - beginTime, dropped, adjust);
+            }
+        }
+    }
+}
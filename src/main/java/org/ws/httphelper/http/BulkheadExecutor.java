@@ -0,0 +1,160 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 舱壁：一组请求独立使用的线程池，等待队列和连接数。<br/>
+ * 线程和队列都满时直接拒绝，不在调用线程中执行，慢的上游服务只会占满自己的舱壁，不影响其他请求。<br/>
+ * 连接数为该舱壁对每个host同时使用的连接数上限，在共享连接池的conn.MaxPerRoute之内。<br/>
+ * 提供并发数，排队数，拒绝数等饱和度指标。<br/>
+ * Created by gz on 16/02/22.
+ */
+public class BulkheadExecutor {
+    protected static Log log = LogFactory.getLog(BulkheadExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final int maxConnections;
+    private final ThreadPoolExecutor threadPool;
+    private final ConcurrencyLimiter connectionLimiter;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name 名称
+     * @param maxConcurrency 最大并发请求数(线程数)
+     * @param queueCapacity 等待队列长度，0时不排队
+     * @param maxConnections 每个host最大连接数，小于等于0时不限制
+     */
+    public BulkheadExecutor(final String name, int maxConcurrency, int queueCapacity, int maxConnections) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("舱壁最大并发数必须大于0：" + name);
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = Math.max(queueCapacity, 0);
+        this.maxConnections = maxConnections;
+        BlockingQueue<Runnable> queue = this.queueCapacity > 0
+                ? new ArrayBlockingQueue<Runnable>(this.queueCapacity)
+                : new SynchronousQueue<Runnable>();
+        this.threadPool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "WSHttpHelper-bulkhead-" + name + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.threadPool.allowCoreThreadTimeOut(true);
+        this.connectionLimiter = new ConcurrencyLimiter(0, maxConnections);
+    }
+
+    /**
+     * 请求使用的executor
+     * @param url 请求地址，用于按host限制连接数
+     * @return 舱壁已满时execute抛出RejectedExecutionException
+     */
+    public Executor getExecutor(String url) {
+        final Executor executor = connectionLimiter.limit(threadPool, url);
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                try {
+                    executor.execute(command);
+                } catch (RejectedExecutionException e) {
+                    rejectedCount.incrementAndGet();
+                    log.warn("舱壁已满，拒绝请求：" + BulkheadExecutor.this);
+                    throw new RejectedExecutionException("舱壁已满：" + name, e);
+                }
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * 正在执行的请求数
+     * @return
+     */
+    public int getActiveCount() {
+        return threadPool.getActiveCount();
+    }
+
+    /**
+     * 排队等待的请求数
+     * @return
+     */
+    public int getQueueSize() {
+        return threadPool.getQueue().size();
+    }
+
+    /**
+     * 因舱壁已满被拒绝的请求数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 已经完成的请求数
+     * @return
+     */
+    public long getCompletedCount() {
+        return threadPool.getCompletedTaskCount();
+    }
+
+    /**
+     * 饱和度：(执行数+排队数)/(最大并发数+队列长度)，达到1时开始拒绝请求
+     * @return 0到1之间
+     */
+    public double getSaturation() {
+        return (double) (getActiveCount() + getQueueSize()) / (maxConcurrency + queueCapacity);
+    }
+
+    /**
+     * 关闭线程池，已经提交的请求继续执行
+     */
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[active=" + getActiveCount() + "/" + maxConcurrency
+                + ",queue=" + getQueueSize() + "/" + queueCapacity
+                + ",rejected=" + getRejectedCount()
+                + ",completed=" + getCompletedCount() + "]";
+    }
+}
@@ -0,0 +1,127 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.lang.StringUtils;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 舱壁的创建和查找。<br/>
+ * 请求使用的舱壁：<b>@Bulkhead</b>指定的优先，否则按配置文件bulkhead.Key划分：none(不使用舱壁，共用线程池)，host(按主机+端口)，name(按<b>@WSRequest</b>的name)。<br/>
+ * 舱壁配置：bulkhead.名称.MaxConcurrency等单独配置优先，其次是注解，最后是bulkhead.MaxConcurrency等默认配置。<br/>
+ * Created by gz on 16/02/22.
+ */
+public class BulkheadRegistry {
+    private static final String PREFIX = "bulkhead.";
+
+    private static BulkheadRegistry _instance = new BulkheadRegistry();
+
+    public static BulkheadRegistry getInstance(){
+        return _instance;
+    }
+
+    private final ConcurrentMap<String,BulkheadExecutor> bulkheadMap = new ConcurrentHashMap<String, BulkheadExecutor>();
+    private volatile String key;
+
+    public BulkheadRegistry(){
+        setKey(WSHttpHelperConfig.getValue(WSHttpHelperConstant.BULKHEAD_KEY));
+    }
+
+    /**
+     * 设置舱壁的划分方式
+     * @param key none，host或name，为空时为none
+     */
+    public void setKey(String key){
+        key = StringUtils.trimToEmpty(key).toLowerCase();
+        if(WSHttpHelperConstant.BULKHEAD_KEY_HOST.equals(key) || WSHttpHelperConstant.BULKHEAD_KEY_NAME.equals(key)){
+            this.key = key;
+        }
+        else{
+            this.key = WSHttpHelperConstant.BULKHEAD_KEY_NONE;
+        }
+    }
+
+    public String getKey(){
+        return key;
+    }
+
+    /**
+     * 请求使用的舱壁
+     * @param context
+     * @return 不使用舱壁时返回null
+     */
+    public BulkheadExecutor getBulkhead(WSRequestContext context){
+        String name = context.getBulkhead();
+        if(StringUtils.isBlank(name)){
+            if(WSHttpHelperConstant.BULKHEAD_KEY_HOST.equals(key)){
+                name = ConcurrencyLimiter.getHost(context.getUrl());
+            }
+            else if(WSHttpHelperConstant.BULKHEAD_KEY_NAME.equals(key)){
+                name = context.getName();
+            }
+        }
+        if(StringUtils.isBlank(name)){
+            return null;
+        }
+        return getBulkhead(name, 0, -1, 0);
+    }
+
+    /**
+     * 获取舱壁，不存在时创建
+     * @param name 名称
+     * @param maxConcurrency 最大并发数，小于等于0时使用配置文件
+     * @param queueCapacity 队列长度，小于0时使用配置文件
+     * @param maxConnections 每个host最大连接数，小于等于0时使用配置文件
+     * @return
+     */
+    public BulkheadExecutor getBulkhead(String name,int maxConcurrency,int queueCapacity,int maxConnections){
+        BulkheadExecutor bulkhead = bulkheadMap.get(name);
+        if(bulkhead!=null){
+            return bulkhead;
+        }
+        if(maxConcurrency<=0){
+            maxConcurrency = WSHttpHelperConfig.getInt(WSHttpHelperConstant.BULKHEAD_MAX_CONCURRENCY, 20);
+        }
+        if(queueCapacity<0){
+            queueCapacity = WSHttpHelperConfig.getInt(WSHttpHelperConstant.BULKHEAD_QUEUE_CAPACITY, 50);
+        }
+        if(maxConnections<=0){
+            maxConnections = WSHttpHelperConfig.getInt(WSHttpHelperConstant.BULKHEAD_MAX_CONNECTIONS, 0);
+        }
+        bulkhead = new BulkheadExecutor(name,
+                WSHttpHelperConfig.getInt(PREFIX + name + ".MaxConcurrency", maxConcurrency),
+                WSHttpHelperConfig.getInt(PREFIX + name + ".QueueCapacity", queueCapacity),
+                WSHttpHelperConfig.getInt(PREFIX + name + ".MaxConnections", maxConnections));
+        BulkheadExecutor exists = bulkheadMap.putIfAbsent(name, bulkhead);
+        if(exists!=null){
+            bulkhead.shutdown();
+            return exists;
+        }
+        return bulkhead;
+    }
+
+    /**
+     * 所有舱壁，用于查看饱和度
+     * @return
+     */
+    public List<BulkheadExecutor> getBulkheads(){
+        return new ArrayList<BulkheadExecutor>(bulkheadMap.values());
+    }
+
+    /**
+     * 关闭并移除所有舱壁
+     */
+    public void shutdownAll(){
+        for(String name:new ArrayList<String>(bulkheadMap.keySet())){
+            BulkheadExecutor bulkhead = bulkheadMap.remove(name);
+            if(bulkhead!=null){
+                bulkhead.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.lang.StringUtils;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.CircuitBreaker;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 熔断器的创建和查找。<br/>
+ * 请求使用的熔断器：<b>@CircuitBreaker</b>指定的优先，否则按配置文件breaker.Key划分：none(不使用熔断器)，host(按主机+端口)，name(按<b>@WSRequest</b>的name)。<br/>
+ * 熔断器配置：breaker.名称.FailureRateThreshold等单独配置优先，其次是注解，最后是breaker.FailureRateThreshold等默认配置。<br/>
+ * 通过addListener添加的监听对之后创建的熔断器也有效。<br/>
+ * Created by gz on 16/03/02.
+ */
+public class CircuitBreakerRegistry {
+    private static final String PREFIX = "breaker.";
+
+    private static CircuitBreakerRegistry _instance = new CircuitBreakerRegistry();
+
+    public static CircuitBreakerRegistry getInstance(){
+        return _instance;
+    }
+
+    private final ConcurrentMap<String,WSCircuitBreaker> breakerMap = new ConcurrentHashMap<String, WSCircuitBreaker>();
+    private final List<WSCircuitBreaker.StateListener> listeners = new CopyOnWriteArrayList<WSCircuitBreaker.StateListener>();
+    private volatile String key;
+
+    public CircuitBreakerRegistry(){
+        setKey(WSHttpHelperConfig.getValue(WSHttpHelperConstant.BREAKER_KEY));
+    }
+
+    /**
+     * 设置熔断器的划分方式
+     * @param key none，host或name，为空时为none
+     */
+    public void setKey(String key){
+        key = StringUtils.trimToEmpty(key).toLowerCase();
+        if(WSHttpHelperConstant.BREAKER_KEY_HOST.equals(key) || WSHttpHelperConstant.BREAKER_KEY_NAME.equals(key)){
+            this.key = key;
+        }
+        else{
+            this.key = WSHttpHelperConstant.BREAKER_KEY_NONE;
+        }
+    }
+
+    public String getKey(){
+        return key;
+    }
+
+    /**
+     * 请求使用的熔断器
+     * @param context
+     * @return 不使用熔断器时返回null
+     */
+    public WSCircuitBreaker getBreaker(WSRequestContext context){
+        String name = context.getCircuitBreaker();
+        if(StringUtils.isBlank(name)){
+            if(WSHttpHelperConstant.BREAKER_KEY_HOST.equals(key)){
+                name = ConcurrencyLimiter.getHost(context.getUrl());
+            }
+            else if(WSHttpHelperConstant.BREAKER_KEY_NAME.equals(key)){
+                name = context.getName();
+            }
+        }
+        if(StringUtils.isBlank(name)){
+            return null;
+        }
+        return getBreaker(name, null);
+    }
+
+    /**
+     * 获取熔断器，不存在时创建
+     * @param name 名称
+     * @param ann 注解，为空时使用配置文件
+     * @return
+     */
+    public WSCircuitBreaker getBreaker(String name,CircuitBreaker ann){
+        WSCircuitBreaker breaker = breakerMap.get(name);
+        if(breaker!=null){
+            return breaker;
+        }
+        breaker = new WSCircuitBreaker(name,
+                getInt(name, WSHttpHelperConstant.BREAKER_FAILURE_RATE_THRESHOLD, ann==null ? 0 : ann.failureRateThreshold(), 50),
+                getInt(name, WSHttpHelperConstant.BREAKER_SLOW_CALL_RATE_THRESHOLD, ann==null ? 0 : ann.slowCallRateThreshold(), 100),
+                getInt(name, WSHttpHelperConstant.BREAKER_SLOW_CALL_MILLIS, ann==null ? 0 : (int) ann.slowCallMillis(), 5000),
+                getInt(name, WSHttpHelperConstant.BREAKER_WINDOW_SIZE, ann==null ? 0 : ann.windowSize(), 50),
+                getInt(name, WSHttpHelperConstant.BREAKER_MINIMUM_CALLS, ann==null ? 0 : ann.minimumCalls(), 10),
+                getInt(name, WSHttpHelperConstant.BREAKER_OPEN_MILLIS, ann==null ? 0 : (int) ann.openMillis(), 30000),
+                getInt(name, WSHttpHelperConstant.BREAKER_HALF_OPEN_CALLS, ann==null ? 0 : ann.halfOpenCalls(), 3));
+        for(WSCircuitBreaker.StateListener listener:listeners){
+            breaker.addListener(listener);
+        }
+        WSCircuitBreaker exists = breakerMap.putIfAbsent(name, breaker);
+        return exists==null ? breaker : exists;
+    }
+
+    /**
+     * 单独配置(breaker.名称.X)优先，其次是注解，最后是默认配置(breaker.X)
+     */
+    private static int getInt(String name,String key,int annValue,int defaultValue){
+        int value = annValue>0 ? annValue : WSHttpHelperConfig.getInt(key, defaultValue);
+        return WSHttpHelperConfig.getInt(PREFIX + name + "." + key.substring(PREFIX.length()), value);
+    }
+
+    /**
+     * 所有熔断器添加状态变化的监听，包括之后创建的
+     * @param listener
+     */
+    public void addListener(WSCircuitBreaker.StateListener listener){
+        listeners.add(listener);
+        for(WSCircuitBreaker breaker:breakerMap.values()){
+            breaker.addListener(listener);
+        }
+    }
+
+    /**
+     * 所有熔断器，用于查看状态
+     * @return
+     */
+    public List<WSCircuitBreaker> getBreakers(){
+        return new ArrayList<WSCircuitBreaker>(breakerMap.values());
+    }
+}
@@ -0,0 +1,145 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 请求并发数限制：全局最大并发数和每个host最大并发数，小于等于0时不限制。<br/>
+ * 任务在执行线程中获取许可，获取不到时阻塞等待，不占用提交任务的线程。<br/>
+ * 用于虚拟线程执行方式：每个请求一个虚拟线程，没有线程池大小限制，需要限制对上游服务的并发数。<br/>
+ * Created by gz on 16/02/20.
+ */
+public class ConcurrencyLimiter {
+    private final int maxConcurrency;
+    private final int maxPerHost;
+    private final Semaphore global;
+    private final ConcurrentMap<String, Semaphore> hostMap = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * @param maxConcurrency 全局最大并发数，小于等于0时不限制
+     * @param maxPerHost 每个host最大并发数，小于等于0时不限制
+     */
+    public ConcurrencyLimiter(int maxConcurrency, int maxPerHost) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxPerHost = maxPerHost;
+        this.global = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+    }
+
+    /**
+     * 包装executor：提交的任务先获取全局许可和host许可，执行完成后释放
+     * @param executor 执行任务的executor
+     * @param url 请求地址，用于获取host
+     * @return
+     */
+    public Executor limit(final Executor executor, String url) {
+        final Semaphore host = getHostSemaphore(url);
+        if (global == null && host == null) {
+            return executor;
+        }
+        return new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        acquire(global);
+                        try {
+                            acquire(host);
+                            try {
+                                command.run();
+                            } finally {
+                                release(host);
+                            }
+                        } finally {
+                            release(global);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 当前执行中的请求数
+     * @return 不限制时返回-1
+     */
+    public int getActiveCount() {
+        return global == null ? -1 : maxConcurrency - global.availablePermits();
+    }
+
+    /**
+     * host当前执行中的请求数
+     * @param host
+     * @return 不限制时返回-1
+     */
+    public int getActiveCount(String host) {
+        if (maxPerHost <= 0) {
+            return -1;
+        }
+        Semaphore semaphore = hostMap.get(host);
+        return semaphore == null ? 0 : maxPerHost - semaphore.availablePermits();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    private Semaphore getHostSemaphore(String url) {
+        if (maxPerHost <= 0) {
+            return null;
+        }
+        String host = getHost(url);
+        Semaphore semaphore = hostMap.get(host);
+        if (semaphore == null) {
+            Semaphore created = new Semaphore(maxPerHost);
+            semaphore = hostMap.putIfAbsent(host, created);
+            if (semaphore == null) {
+                semaphore = created;
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     * 请求地址中的host:port，无法解析时为空字符串
+     * @param url
+     * @return
+     */
+    public static String getHost(String url) {
+        if (StringUtils.isBlank(url)) {
+            return "";
+        }
+        try {
+            URL u = new URL(url.trim());
+            return u.getPort() == -1 ? u.getHost() : u.getHost() + ":" + u.getPort();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 不响应中断：任务必须执行，否则等待结果的Future无法结束
+     * @param semaphore
+     */
+    private static void acquire(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.acquireUninterruptibly();
+        }
+    }
+
+    private static void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+}
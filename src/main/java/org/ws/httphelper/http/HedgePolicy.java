@@ -0,0 +1,212 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Hedge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲策略：同一个请求(按名称)共享，记录最近的响应时间和对冲次数。<br/>
+ * 延迟时间：固定值，或者最近SAMPLE_SIZE个响应时间的百分位，样本不足时使用hedge.MinDelayMillis。<br/>
+ * 对冲配额：每个请求增加maxRatio个配额，每次对冲使用1个，最多积累MAX_BURST个；
+ * 配额不足时不发送对冲请求，避免故障时放大请求量。<br/>
+ * Created by gz on 16/03/01.
+ */
+public class HedgePolicy {
+    private static final ConcurrentMap<String,HedgePolicy> policyMap = new ConcurrentHashMap<String, HedgePolicy>();
+
+    /**
+     * 保存的响应时间个数
+     */
+    private static final int SAMPLE_SIZE = 128;
+    /**
+     * 计算百分位需要的最少响应时间个数
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * 每记录多少个响应时间重新计算一次延迟
+     */
+    private static final int REFRESH_INTERVAL = 16;
+    /**
+     * 最多积累的对冲配额
+     */
+    private static final int MAX_BURST = 10;
+    /**
+     * 配额单位：1个对冲请求
+     */
+    private static final long UNIT = 1000;
+
+    private final String name;
+    private final long delayMillis;
+    private final double percentile;
+    private final double maxRatio;
+    private final long minDelayMillis;
+
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private long sampleCount = 0;
+    private volatile long percentileMillis = -1;
+
+    private final AtomicLong budget = new AtomicLong(UNIT);
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param name 名称
+     * @param delayMillis 固定延迟，小于等于0时按百分位计算
+     * @param percentile 响应时间百分位(0到1)
+     * @param maxRatio 对冲请求数占请求数的最大比例
+     */
+    public HedgePolicy(String name, long delayMillis, double percentile, double maxRatio) {
+        this.name = name;
+        this.delayMillis = delayMillis;
+        this.percentile = Math.min(Math.max(percentile, 0), 1);
+        this.maxRatio = Math.max(maxRatio, 0);
+        this.minDelayMillis = WSHttpHelperConfig.getInt(WSHttpHelperConstant.HEDGE_MIN_DELAY_MILLIS, 10);
+    }
+
+    /**
+     * 按注解获取请求的对冲策略，第一次使用时创建，注解中为默认值的使用配置文件
+     * @param name 请求名称
+     * @param hedge
+     * @return
+     */
+    public static HedgePolicy getPolicy(String name, Hedge hedge) {
+        HedgePolicy policy = policyMap.get(name);
+        if (policy == null) {
+            HedgePolicy created = new HedgePolicy(name,
+                    hedge.delayMillis() >= 0 ? hedge.delayMillis() : WSHttpHelperConfig.getInt(WSHttpHelperConstant.HEDGE_DELAY_MILLIS, 0),
+                    hedge.percentile() >= 0 ? hedge.percentile() : WSHttpHelperConfig.getDouble(WSHttpHelperConstant.HEDGE_PERCENTILE, 0.95),
+                    hedge.maxRatio() >= 0 ? hedge.maxRatio() : WSHttpHelperConfig.getDouble(WSHttpHelperConstant.HEDGE_MAX_RATIO, 0.1));
+            policy = policyMap.putIfAbsent(name, created);
+            if (policy == null) {
+                policy = created;
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * 所有请求的对冲策略，用于查看对冲次数
+     * @return
+     */
+    public static List<HedgePolicy> getPolicies() {
+        return new ArrayList<HedgePolicy>(policyMap.values());
+    }
+
+    /**
+     * 发送对冲请求前等待的毫秒数
+     * @return
+     */
+    public long getDelayMillis() {
+        if (delayMillis > 0) {
+            return delayMillis;
+        }
+        return Math.max(percentileMillis, minDelayMillis);
+    }
+
+    /**
+     * 发起一个请求，增加对冲配额
+     */
+    void onRequest() {
+        requestCount.incrementAndGet();
+        long add = (long) (maxRatio * UNIT);
+        while (true) {
+            long current = budget.get();
+            long next = Math.min(current + add, MAX_BURST * UNIT);
+            if (next == current || budget.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 使用一个对冲配额
+     * @return 配额不足时返回false，不发送对冲请求
+     */
+    boolean tryHedge() {
+        while (true) {
+            long current = budget.get();
+            if (current < UNIT) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (budget.compareAndSet(current, current - UNIT)) {
+                hedgeCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    void onHedgeWin() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * 记录一个成功请求的响应时间
+     * @param millis
+     */
+    synchronized void record(long millis) {
+        samples[(int) (sampleCount % SAMPLE_SIZE)] = millis;
+        sampleCount++;
+        if (sampleCount >= MIN_SAMPLES && (sampleCount % REFRESH_INTERVAL == 0 || percentileMillis < 0)) {
+            int size = (int) Math.min(sampleCount, SAMPLE_SIZE);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            percentileMillis = sorted[Math.min((int) Math.ceil(percentile * size) - 1, size - 1)];
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+
+    /**
+     * 请求数
+     * @return
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 发送的对冲请求数
+     * @return
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     * @return
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * 配额不足没有发送对冲请求的次数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[delayMillis=" + getDelayMillis() + ",requests=" + getRequestCount() + ",hedges=" + getHedgeCount()
+                + ",hedgeWins=" + getHedgeWinCount() + ",rejected=" + getRejectedCount() + "]";
+    }
+}
@@ -0,0 +1,62 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 基于HttpClient 4.1的阻塞实现：每个请求在线程池中由WSHttpClient执行，使用共享的连接池。<br/>
+ * 支持所有响应类型。取消Future时中断正在执行的请求，释放连接。<br/>
+ * Created by gz on 16/02/10.
+ */
+public class HttpClientTransport implements HttpTransport {
+
+    @Override
+    public String getName() {
+        return WSHttpHelperConstant.TRANSPORT_HTTPCLIENT;
+    }
+
+    @Override
+    public boolean supports(WSRequestContext context) {
+        return true;
+    }
+
+    @Override
+    public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+        final WSHttpClient client = new WSHttpClient(context);
+        final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+        future.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if(future.isCancelled()){
+                    client.abort();
+                }
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 排队期间已经取消
+                if(future.isDone()){
+                    return;
+                }
+                try {
+                    future.set(client.call());
+                } catch (Throwable e) {
+                    future.setException(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        WSConnectionManager.getInstance().close();
+    }
+}
@@ -1,22 +1,77 @@
 package org.ws.httphelper.http;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.ws.httphelper.WSHttpHelperConfig;
 import org.ws.httphelper.WSHttpHelperConstant;
-import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.common.FutureFunction;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.common.WSTimer;
+import org.ws.httphelper.exception.WSCircuitOpenException;
+import org.ws.httphelper.exception.WSLimitExceededException;
+import org.ws.httphelper.exception.WSRateLimitedException;
+import org.ws.httphelper.http.cache.ResponseCache;
 import org.ws.httphelper.model.WSRequestContext;
 import org.ws.httphelper.model.ResponseResult;
 
+/**
+ * 请求执行器：选择Http实现发起请求，阻塞实现在线程池中执行。<br/>
+ * 返回WSFuture，不保存任何请求状态；同步调用通过getResult等待结果。<br/>
+ * executor.Mode=direct时，同步请求在调用线程中直接执行，不经过线程池，线程池只用于异步请求。<br/>
+ * executor.Mode=virtual时，同步和异步请求都在虚拟线程中执行(需要JDK21和jdk21编译配置)，
+ * 并发数由virtual.MaxConcurrency和virtual.MaxPerHost限制；虚拟线程不可用时使用线程池。<br/>
+ * 请求使用舱壁(@Bulkhead或bulkhead.Key)时，不论执行方式，都在舱壁的线程池中执行，舱壁已满时请求失败。<br/>
+ * 请求使用熔断器(@CircuitBreaker或breaker.Key)时，熔断器打开期间请求直接失败(WSCircuitOpenException)，不占用线程和连接。<br/>
+ * adaptive.Enabled=true时，发起请求前按host获取自适应并发数许可(AIMD)，超过限制时排队或失败(WSLimitExceededException)。<br/>
+ * cache.Enabled=true时，先查找响应缓存，新鲜的缓存直接返回，过期的缓存发送条件请求验证，不经过熔断器和并发数限制；配置cache.DiskDir时同时使用磁盘缓存。<br/>
+ * 合并相同的并发GET请求(@Coalesce或coalesce.Enabled)时，在重试和对冲之前合并，相同的请求共享一次执行的响应。<br/>
+ * 请求有重试策略(@Retry)时，失败后由WSTimer延迟重试，不占用线程等待；重试不在调用线程中执行。<br/>
+ * GET请求有对冲策略(@Hedge)时，延迟时间内没有响应则再发送一个请求，使用先返回的响应并取消另一个；对冲请求不在调用线程中执行。<br/>
+ */
 public class HttpTaskExecutor {
+	protected static Log log = LogFactory.getLog(HttpTaskExecutor.class);
+
+	/**
+	 * 虚拟线程executor的类名，在src/main/java21中
+	 */
+	private static final String VIRTUAL_EXECUTOR_CLASS = "org.ws.httphelper.http.VirtualThreadExecutor";
+	/**
+	 * 在调用线程中直接执行
+	 */
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
 	private ThreadPoolExecutor threadPool = null;
-	private Map<String,FutureTask<Object>> taskMap = new HashMap<String,FutureTask<Object>>();
+	private volatile String mode = WSHttpHelperConstant.EXECUTOR_MODE_POOL;
+	private volatile Executor virtualExecutor = null;
+	private volatile ConcurrencyLimiter limiter = null;
+	private volatile boolean adaptive = false;
+	private volatile boolean coalesce = false;
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+	private volatile ResponseCache responseCache = null;
+	private final ConcurrentMap<String,AdaptiveLimiter> adaptiveLimiterMap = new ConcurrentHashMap<String, AdaptiveLimiter>();
     private static HttpTaskExecutor _instance = new HttpTaskExecutor();
 
     public static HttpTaskExecutor getInstance(){
@@ -30,30 +85,618 @@ public class HttpTaskExecutor {
     			TimeUnit.SECONDS,
     			new ArrayBlockingQueue<Runnable>(WSHttpHelperConfig.getInt(WSHttpHelperConstant.POOL_QUEUEC_APACITY)),
     			new ThreadPoolExecutor.CallerRunsPolicy());
+    	limiter = new ConcurrencyLimiter(WSHttpHelperConfig.getInt(WSHttpHelperConstant.VIRTUAL_MAX_CONCURRENCY, 0),
+    			WSHttpHelperConfig.getInt(WSHttpHelperConstant.VIRTUAL_MAX_PER_HOST, 0));
+    	setMode(WSHttpHelperConfig.getValue(WSHttpHelperConstant.EXECUTOR_MODE));
+    	adaptive = Boolean.valueOf(StringUtils.trim(WSHttpHelperConfig.getValue(WSHttpHelperConstant.ADAPTIVE_ENABLED)));
+    	coalesce = Boolean.valueOf(StringUtils.trim(WSHttpHelperConfig.getValue(WSHttpHelperConstant.COALESCE_ENABLED)));
+    	if(Boolean.valueOf(StringUtils.trim(WSHttpHelperConfig.getValue(WSHttpHelperConstant.CACHE_ENABLED)))){
+    		responseCache = new ResponseCache();
+    	}
     }
 
-    public String execute(WSRequestContext context)throws WSException{
-        FutureTask<Object> task = new FutureTask<Object>(new WSHttpClient(context));
-        threadPool.submit(task);
-        String GUID = UUID.randomUUID().toString();
-        taskMap.put(GUID, task);
-        return GUID;
+    /**
+     * 设置请求的执行方式
+     * @param mode pool，direct或virtual，为空时使用pool；虚拟线程不可用时使用pool
+     */
+    public void setMode(String mode){
+        mode = StringUtils.trimToEmpty(mode).toLowerCase();
+        if(WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL.equals(mode) && getVirtualExecutor()!=null){
+            this.mode = WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL;
+        }
+        else if(WSHttpHelperConstant.EXECUTOR_MODE_DIRECT.equals(mode)){
+            this.mode = WSHttpHelperConstant.EXECUTOR_MODE_DIRECT;
+        }
+        else{
+            this.mode = WSHttpHelperConstant.EXECUTOR_MODE_POOL;
+        }
     }
-    
-    public ResponseResult getResult(String GUID)throws WSException{
-        FutureTask<Object> task = taskMap.get(GUID);
-        try{
-            return (ResponseResult)task.get();
+
+    public String getMode(){
+        return mode;
+    }
+
+    /**
+     * 设置虚拟线程执行方式的并发数限制
+     * @param limiter
+     */
+    public void setLimiter(ConcurrencyLimiter limiter){
+        this.limiter = limiter;
+    }
+
+    public ConcurrencyLimiter getLimiter(){
+        return limiter;
+    }
+
+    /**
+     * 是否启用自适应并发数限制
+     * @param adaptive
+     */
+    public void setAdaptive(boolean adaptive){
+        this.adaptive = adaptive;
+    }
+
+    public boolean isAdaptive(){
+        return adaptive;
+    }
+
+    /**
+     * 是否合并所有相同的并发GET请求，false时只合并设置了coalesce的请求
+     * @param coalesce
+     */
+    public void setCoalesce(boolean coalesce){
+        this.coalesce = coalesce;
+    }
+
+    public boolean isCoalesce(){
+        return coalesce;
+    }
+
+    /**
+     * 合并请求的统计
+     * @return
+     */
+    public RequestCoalescer getCoalescer(){
+        return coalescer;
+    }
+
+    /**
+     * 设置响应缓存
+     * @param responseCache 为null时不使用缓存
+     */
+    public void setResponseCache(ResponseCache responseCache){
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * 响应缓存和统计
+     * @return 没有启用时返回null
+     */
+    public ResponseCache getResponseCache(){
+        return responseCache;
+    }
+
+    /**
+     * host的自适应并发数限制，不存在时按配置文件创建
+     * @param host 主机+端口
+     * @return
+     */
+    public AdaptiveLimiter getAdaptiveLimiter(String host){
+        AdaptiveLimiter adaptiveLimiter = adaptiveLimiterMap.get(host);
+        if(adaptiveLimiter==null){
+            AdaptiveLimiter created = new AdaptiveLimiter(host);
+            adaptiveLimiter = adaptiveLimiterMap.putIfAbsent(host, created);
+            if(adaptiveLimiter==null){
+                adaptiveLimiter = created;
+            }
         }
-        catch (Exception e) {
-            ResponseResult result = new ResponseResult();
-            result.setStatus(500);
-            result.setWasteTime(-1);
-            result.setBody(e.getMessage());
+        return adaptiveLimiter;
+    }
+
+    /**
+     * 设置host的自适应并发数限制，替换已有的限制
+     * @param limiter
+     */
+    public void setAdaptiveLimiter(AdaptiveLimiter limiter){
+        adaptiveLimiterMap.put(limiter.getHost(), limiter);
+    }
+
+    /**
+     * 所有host的自适应并发数限制，用于查看当前限制
+     * @return
+     */
+    public List<AdaptiveLimiter> getAdaptiveLimiters(){
+        return new ArrayList<AdaptiveLimiter>(adaptiveLimiterMap.values());
+    }
+
+    /**
+     * 执行同步请求并等待结果，请求失败时返回状态为500的结果。<br/>
+     * direct模式下阻塞实现在调用线程中执行，没有线程切换
+     * @param context
+     * @return
+     */
+    public ResponseResult executeSync(WSRequestContext context){
+        if(WSHttpHelperConstant.EXECUTOR_MODE_DIRECT.equals(mode) && BulkheadRegistry.getInstance().getBulkhead(context)==null){
+            return getResult(cache(context, DIRECT_EXECUTOR));
+        }
+        return getResult(execute(context));
+    }
+
+    /**
+     * 发起请求，立即返回。发起失败时返回失败的Future，不抛出异常
+     * @param context
+     * @return 响应结果
+     */
+    public WSFuture<ResponseResult> execute(WSRequestContext context){
+        return cache(context, getExecutor(context));
+    }
+
+    /**
+     * 请求使用的executor：舱壁，虚拟线程或线程池
+     * @param context
+     * @return
+     */
+    private Executor getExecutor(WSRequestContext context){
+        BulkheadExecutor bulkhead = BulkheadRegistry.getInstance().getBulkhead(context);
+        if(bulkhead!=null){
+            return bulkhead.getExecutor(context.getUrl());
+        }
+        if(WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL.equals(mode)){
+            return limiter.limit(virtualExecutor, context.getUrl());
+        }
+        return threadPool;
+    }
+
+    /**
+     * 使用响应缓存，没有启用时直接执行
+     * @param context
+     * @param executor 发起请求时使用的executor
+     * @return
+     */
+    private WSFuture<ResponseResult> cache(final WSRequestContext context,final Executor executor){
+        ResponseCache cache = responseCache;
+        if(cache==null){
+            return coalesce(context, executor);
+        }
+        return cache.execute(context, new FutureFunction<WSRequestContext, WSFuture<ResponseResult>>() {
+            @Override
+            public WSFuture<ResponseResult> apply(WSRequestContext attempt) {
+                return coalesce(attempt, executor);
+            }
+        });
+    }
+
+    /**
+     * 合并相同的并发请求，不合并时直接执行
+     * @param context
+     * @param executor 发起请求时使用的executor
+     * @return
+     */
+    private WSFuture<ResponseResult> coalesce(final WSRequestContext context,final Executor executor){
+        String key = coalesce || context.isCoalesce() ? RequestCoalescer.getKey(context) : null;
+        if(key==null){
+            return retry(context, executor);
+        }
+        return coalescer.execute(key, new Callable<WSFuture<ResponseResult>>() {
+            @Override
+            public WSFuture<ResponseResult> call() {
+                return retry(context, executor);
+            }
+        });
+    }
+
+    /**
+     * 按重试策略执行，没有策略或者请求方法不能重试时只执行一次
+     * @param context
+     * @param executor 第一次执行使用的executor
+     * @return
+     */
+    private WSFuture<ResponseResult> retry(WSRequestContext context,Executor executor){
+        RetryPolicy policy = context.getRetryPolicy();
+        if(policy==null || policy.getMaxAttempts()<=1 || !policy.isRetryable(context.getMethod())){
+            return hedge(context, executor);
+        }
+        return new RetryingExecution(context, policy).start(executor);
+    }
+
+    /**
+     * 按对冲策略执行，没有策略或者不是GET请求时只发送一个请求
+     * @param context
+     * @param executor
+     * @return
+     */
+    private WSFuture<ResponseResult> hedge(WSRequestContext context,Executor executor){
+        HedgePolicy policy = context.getHedgePolicy();
+        if(policy==null || context.getMethod()!=MethodType.GET){
+            return execute(context, executor);
+        }
+        // 调用线程阻塞时不能使用先返回的对冲响应
+        if(executor==DIRECT_EXECUTOR){
+            executor = getExecutor(context);
+        }
+        return new HedgedExecution(context, policy).start(executor);
+    }
+
+    /**
+     * 按熔断器执行：打开时直接失败；5xx响应和请求异常记为失败，取消和本地的拒绝(舱壁已满，超过并发数限制)不统计
+     * @param context
+     * @param executor
+     * @return
+     */
+    private WSFuture<ResponseResult> execute(WSRequestContext context,Executor executor){
+        WSCircuitBreaker breaker = CircuitBreakerRegistry.getInstance().getBreaker(context);
+        if(breaker==null){
+            return limit(context, executor);
+        }
+        final WSCircuitBreaker.Permit permit = breaker.tryAcquire();
+        if(permit==null){
+            return WSFuture.failed(new WSCircuitOpenException(breaker.getName()));
+        }
+        final long begin = System.currentTimeMillis();
+        WSFuture<ResponseResult> response = limit(context, executor);
+        response.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                long millis = System.currentTimeMillis()-begin;
+                if(future.isSuccess()){
+                    if(future.getNow().getStatus()>=500){
+                        permit.onError(millis);
+                    }
+                    else{
+                        permit.onSuccess(millis);
+                    }
+                }
+                else if(future.isCancelled() || future.getCause() instanceof WSLimitExceededException
+                        || future.getCause() instanceof RejectedExecutionException){
+                    permit.release();
+                }
+                else{
+                    permit.onError(millis);
+                }
+            }
+        });
+        return response;
+    }
+
+    /**
+     * 按自适应并发数限制执行
+     * @param context
+     * @param executor
+     * @return
+     */
+    private WSFuture<ResponseResult> limit(final WSRequestContext context,final Executor executor){
+        if(!adaptive){
+            return dispatch(context, executor);
+        }
+        final WSFuture<ResponseResult> result = new WSFuture<ResponseResult>();
+        final WSFuture<AdaptiveLimiter.Permit> permitFuture = getAdaptiveLimiter(ConcurrencyLimiter.getHost(context.getUrl())).acquire();
+        permitFuture.addListener(new FutureListener<AdaptiveLimiter.Permit>() {
+            @Override
+            public void operationComplete(WSFuture<AdaptiveLimiter.Permit> future) {
+                if(!future.isSuccess()){
+                    if(future.isCancelled()){
+                        result.cancel(false);
+                    }
+                    else{
+                        result.setException(future.getCause());
+                    }
+                    return;
+                }
+                final AdaptiveLimiter.Permit permit = future.getNow();
+                // 排队后获取的许可在结束的请求线程中完成，不能在这里直接执行
+                Executor target = executor==DIRECT_EXECUTOR && permit.isQueued() ? threadPool : executor;
+                final WSFuture<ResponseResult> response = dispatch(context, target);
+                response.addListener(new FutureListener<ResponseResult>() {
+                    @Override
+                    public void operationComplete(WSFuture<ResponseResult> future) {
+                        if(future.isSuccess()){
+                            int status = future.getNow().getStatus();
+                            if(status==429 || status==503){
+                                permit.dropped();
+                            }
+                            else{
+                                permit.success();
+                            }
+                            result.set(future.getNow());
+                        }
+                        else if(future.isCancelled()){
+                            permit.ignore();
+                            result.cancel(false);
+                        }
+                        else{
+                            // 连接失败，超时等I/O异常视为过载，其他异常(例如舱壁已满)不调整
+                            if(isOverload(future.getCause())){
+                                permit.dropped();
+                            }
+                            else{
+                                permit.ignore();
+                            }
+                            result.setException(future.getCause());
+                        }
+                    }
+                });
+                result.addListener(new FutureListener<ResponseResult>() {
+                    @Override
+                    public void operationComplete(WSFuture<ResponseResult> future) {
+                        if(future.isCancelled()){
+                            response.cancel(false);
+                        }
+                    }
+                });
+            }
+        });
+        result.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if(future.isCancelled()){
+                    permitFuture.cancel(false);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 失败是否视为过载：异常或者原因链中任意一个是IOException。<br/>
+     * 两种Http实现都把I/O异常包装为WSException，只判断最外层时永远不会减小限制；
+     * 本地拒绝(并发数限制，熔断，限流)没有到达服务端，不调整
+     * @param e
+     * @return
+     */
+    static boolean isOverload(Throwable e){
+        if(e instanceof WSLimitExceededException || e instanceof WSCircuitOpenException || e instanceof WSRateLimitedException){
+            return false;
+        }
+        for(Throwable cause=e; cause!=null; cause=cause.getCause()==cause?null:cause.getCause()){
+            if(cause instanceof IOException){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一次带重试的请求：每次执行结束后判断是否重试，重试由WSTimer延迟后提交到getExecutor。<br/>
+     * 取消结果时取消当前的请求或者等待中的重试
+     */
+    private class RetryingExecution implements FutureListener<ResponseResult>, Runnable {
+        private final WSRequestContext context;
+        private final RetryPolicy policy;
+        private final WSFuture<ResponseResult> result = new WSFuture<ResponseResult>();
+        private final long begin = System.currentTimeMillis();
+        private volatile int attempt = 0;
+        private volatile Future<?> current = null;
+
+        RetryingExecution(WSRequestContext context,RetryPolicy policy){
+            this.context = context;
+            this.policy = policy;
+            result.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    Future<?> pending = current;
+                    if(future.isCancelled() && pending!=null){
+                        pending.cancel(false);
+                    }
+                }
+            });
+        }
+
+        WSFuture<ResponseResult> start(Executor executor){
+            attempt++;
+            WSFuture<ResponseResult> response = hedge(context, executor);
+            current = response;
+            if(result.isCancelled()){
+                response.cancel(false);
+            }
+            response.addListener(this);
+            return result;
+        }
+
+        /**
+         * 延迟结束，执行重试
+         */
+        @Override
+        public void run() {
+            if(!result.isDone()){
+                start(getExecutor(context));
+            }
+        }
+
+        @Override
+        public void operationComplete(WSFuture<ResponseResult> future) {
+            if(result.isDone()){
+                return;
+            }
+            if(future.isCancelled()){
+                result.cancel(false);
+                return;
+            }
+            boolean retryable = future.isSuccess() ? policy.isRetryable(future.getNow().getStatus())
+                    : policy.isRetryable(future.getCause());
+            if(retryable && attempt<policy.getMaxAttempts()){
+                long delay = policy.getBackoffMillis(attempt);
+                if(System.currentTimeMillis()-begin+delay<=policy.getBudgetMillis()){
+                    if(log.isDebugEnabled()){
+                        log.debug("第"+attempt+"次请求失败，"+delay+"ms后重试："+context.getUrl());
+                    }
+                    ScheduledFuture<?> scheduled = WSTimer.schedule(this, delay);
+                    current = scheduled;
+                    if(result.isCancelled()){
+                        scheduled.cancel(false);
+                    }
+                    return;
+                }
+            }
+            if(future.isSuccess()){
+                result.set(future.getNow());
+            }
+            else{
+                result.setException(future.getCause());
+            }
+        }
+    }
+
+    /**
+     * 一次对冲请求：第一个请求发出后由WSTimer计时，延迟时间内没有结束并且有对冲配额时发送第二个请求。<br/>
+     * 先成功的响应作为结果，取消另一个请求；两个请求都失败时返回最后的异常。<br/>
+     * 对冲请求使用上下文的副本，与第一个请求同时执行时互不影响
+     */
+    private class HedgedExecution implements Runnable {
+        private final WSRequestContext context;
+        private final HedgePolicy policy;
+        private final WSFuture<ResponseResult> result = new WSFuture<ResponseResult>();
+        private volatile WSFuture<ResponseResult> primary = null;
+        private volatile WSFuture<ResponseResult> hedge = null;
+        private volatile ScheduledFuture<?> timer = null;
+        private int pending = 0;
+        private boolean succeeded = false;
+
+        HedgedExecution(WSRequestContext context,HedgePolicy policy){
+            this.context = context;
+            this.policy = policy;
+            result.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    cancel(timer);
+                    cancel(primary);
+                    cancel(hedge);
+                }
+            });
+        }
+
+        WSFuture<ResponseResult> start(Executor executor){
+            policy.onRequest();
+            synchronized (this){
+                pending++;
+            }
+            primary = launch(context, executor, false);
+            if(!result.isDone()){
+                timer = WSTimer.schedule(this, policy.getDelayMillis());
+                if(result.isDone()){
+                    cancel(timer);
+                }
+            }
             return result;
         }
-        finally{
-            taskMap.remove(GUID);
+
+        /**
+         * 延迟结束，发送对冲请求
+         */
+        @Override
+        public void run() {
+            synchronized (this){
+                if(result.isDone() || !policy.tryHedge()){
+                    return;
+                }
+                pending++;
+            }
+            if(log.isDebugEnabled()){
+                log.debug(policy.getDelayMillis()+"ms内没有响应，发送对冲请求："+context.getUrl());
+            }
+            hedge = launch(context.copy(), getExecutor(context), true);
+            if(result.isDone()){
+                cancel(hedge);
+            }
+        }
+
+        private WSFuture<ResponseResult> launch(WSRequestContext attempt,Executor executor,final boolean isHedge){
+            final long begin = System.currentTimeMillis();
+            WSFuture<ResponseResult> response = execute(attempt, executor);
+            response.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    complete(future, begin, isHedge);
+                }
+            });
+            return response;
+        }
+
+        private void complete(WSFuture<ResponseResult> future,long begin,boolean isHedge){
+            boolean last;
+            boolean won = false;
+            synchronized (this){
+                last = --pending==0;
+                if(future.isSuccess() && !succeeded){
+                    succeeded = won = true;
+                }
+            }
+            if(won){
+                // 先统计再通知调用方
+                policy.record(System.currentTimeMillis()-begin);
+                if(isHedge){
+                    policy.onHedgeWin();
+                }
+                result.set(future.getNow());
+            }
+            else if(last && !future.isSuccess()){
+                // 失败时等待另一个请求
+                if(future.isCancelled()){
+                    result.cancel(false);
+                }
+                else{
+                    result.setException(future.getCause());
+                }
+            }
+        }
+
+        private void cancel(Future<?> future){
+            if(future!=null){
+                future.cancel(false);
+            }
+        }
+    }
+
+    private WSFuture<ResponseResult> dispatch(WSRequestContext context,Executor executor){
+        try {
+            // 阻塞实现在executor中执行，非阻塞实现不占用线程
+            return HttpTransportFactory.getTransport(context).execute(context, executor);
+        } catch (Throwable e) {
+            return WSFuture.failed(e);
+        }
+    }
+
+    /**
+     * 加载虚拟线程executor，JDK21以下或没有使用jdk21编译配置构建时返回null
+     * @return
+     */
+    private synchronized Executor getVirtualExecutor(){
+        if(virtualExecutor==null){
+            try {
+                virtualExecutor = (Executor) Class.forName(VIRTUAL_EXECUTOR_CLASS).newInstance();
+            } catch (Throwable e) {
+                log.warn("虚拟线程不可用，使用线程池："+e);
+            }
         }
+        return virtualExecutor;
+    }
+
+    /**
+     * 等待并获取结果，请求失败时返回状态为500的结果
+     * @param future
+     * @return
+     */
+    public ResponseResult getResult(Future<ResponseResult> future){
+        try{
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            return errorResult(e.getCause());
+        }
+        catch (Exception e) {
+            return errorResult(e);
+        }
+    }
+
+    /**
+     * 请求失败的结果：状态500，body为异常信息
+     * @param e
+     * @return
+     */
+    public static ResponseResult errorResult(Throwable e){
+        ResponseResult result = new ResponseResult();
+        result.setStatus(500);
+        result.setWasteTime(-1);
+        result.setBody(e.getMessage());
+        return result;
     }
 }
@@ -0,0 +1,46 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Http实现：根据请求上下文发送请求，返回响应结果。<br/>
+ * 通过名称选择实现：@WSRequest(transport=...)或配置文件http.transport。<br/>
+ * 内置httpclient(阻塞)和nio(非阻塞)两种实现；其他实现在META-INF/services/org.ws.httphelper.http.HttpTransport中声明，
+ * 通过ServiceLoader加载，或者在配置中直接指定实现类的完整类名。<br/>
+ * 实现必须是线程安全的，所有请求共用一个实例。<br/>
+ * Created by gz on 16/02/10.
+ */
+public interface HttpTransport {
+
+    /**
+     * 实现名称
+     * @return
+     */
+    public String getName();
+
+    /**
+     * 是否可以处理该请求，不能处理时使用httpclient实现
+     * @param context
+     * @return
+     */
+    public boolean supports(WSRequestContext context);
+
+    /**
+     * 发起请求
+     * @param context 请求上下文
+     * @param executor 阻塞实现用于执行请求的线程池，非阻塞实现可以忽略
+     * @return 响应结果，完成时通知回调
+     * @throws WSException
+     */
+    public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException;
+
+    /**
+     * 释放连接等资源，关闭后再次调用execute时重新初始化
+     */
+    public void close();
+}
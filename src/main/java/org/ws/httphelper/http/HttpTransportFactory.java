@@ -0,0 +1,117 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.nio.NioHttpEngine;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Http实现的注册和查找。<br/>
+ * 查找顺序：内置实现(httpclient，nio)，ServiceLoader加载的实现，按完整类名创建的实现。<br/>
+ * 请求没有指定实现时使用配置文件http.transport指定的默认实现，默认实现不能处理的请求使用httpclient实现。<br/>
+ * Created by gz on 16/02/10.
+ */
+public class HttpTransportFactory {
+    protected static Log log = LogFactory.getLog(HttpTransportFactory.class);
+
+    private static final ConcurrentMap<String,HttpTransport> transportMap = new ConcurrentHashMap<String, HttpTransport>();
+    private static final HttpTransport DEFAULT_TRANSPORT = new HttpClientTransport();
+
+    static {
+        register(DEFAULT_TRANSPORT);
+        register(NioHttpEngine.getInstance());
+        Iterator<HttpTransport> it = ServiceLoader.load(HttpTransport.class).iterator();
+        while (it.hasNext()) {
+            try {
+                HttpTransport transport = it.next();
+                transportMap.putIfAbsent(transport.getName(), transport);
+                log.debug("加载Http实现：" + transport.getName() + "=" + transport.getClass().getName());
+            } catch (Throwable e) {
+                log.error("加载Http实现失败：" + e.getMessage(), e);
+            }
+        }
+    }
+
+    private HttpTransportFactory(){}
+
+    /**
+     * 注册实现，同名的实现被替换
+     * @param transport
+     */
+    public static void register(HttpTransport transport){
+        transportMap.put(transport.getName(), transport);
+    }
+
+    /**
+     * 根据名称或完整类名获取实现
+     * @param name
+     * @return
+     * @throws WSException 找不到实现时
+     */
+    public static HttpTransport getTransport(String name)throws WSException{
+        if(StringUtils.isBlank(name)){
+            return DEFAULT_TRANSPORT;
+        }
+        name = name.trim();
+        HttpTransport transport = transportMap.get(name);
+        if(transport!=null){
+            return transport;
+        }
+        if(name.indexOf('.')==-1){
+            throw new WSException("没有找到Http实现："+name);
+        }
+        try {
+            transport = (HttpTransport) Class.forName(name).newInstance();
+        } catch (Exception e) {
+            throw new WSException("无法创建Http实现："+name, e);
+        }
+        HttpTransport exists = transportMap.putIfAbsent(name, transport);
+        return exists!=null ? exists : transport;
+    }
+
+    /**
+     * 获取请求使用的实现：请求指定的优先，否则使用配置文件中的默认实现
+     * @param context
+     * @return
+     * @throws WSException
+     */
+    public static HttpTransport getTransport(WSRequestContext context)throws WSException{
+        String name = context.getTransport();
+        if(StringUtils.isBlank(name)){
+            name = WSHttpHelperConfig.getValue(WSHttpHelperConstant.HTTP_TRANSPORT);
+        }
+        HttpTransport transport = getTransport(name);
+        if(!transport.supports(context)){
+            return DEFAULT_TRANSPORT;
+        }
+        return transport;
+    }
+
+    /**
+     * 所有已经加载的实现
+     * @return
+     */
+    public static List<HttpTransport> getTransports(){
+        return new ArrayList<HttpTransport>(transportMap.values());
+    }
+
+    /**
+     * 关闭所有实现
+     */
+    public static void closeAll(){
+        for(HttpTransport transport:getTransports()){
+            transport.close();
+        }
+    }
+}
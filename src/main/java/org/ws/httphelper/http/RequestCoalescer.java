@@ -0,0 +1,228 @@
+package org.ws.httphelper.http;
+
+import org.apache.http.NameValuePair;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并相同的并发请求(single-flight)：同一个请求正在执行时，相同的请求不再发送，等待并共享它的响应。<br/>
+ * 只合并GET请求，流式响应和下载文件不合并。请求由Http实现，URL，参数，头，cookie，字符集和响应类型确定。<br/>
+ * 每个调用方得到独立的Future和响应的副本；所有调用方都取消后才取消请求。请求结束后立即移除，不缓存响应。<br/>
+ * Created by gz on 16/03/03.
+ */
+public class RequestCoalescer {
+    private final ConcurrentMap<String,Flight> flightMap = new ConcurrentHashMap<String, Flight>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * 请求的合并key，需要在生成URL和参数之后调用
+     * @param context
+     * @return 不能合并时返回null
+     */
+    public static String getKey(WSRequestContext context){
+        if(context.getResponseType()==ResponseType.FILE){
+            return null;
+        }
+        return getCacheKey(context);
+    }
+
+    /**
+     * 请求的缓存key：与合并key相同，但是包括下载文件的请求，不包括目标文件
+     * @param context
+     * @return 不能缓存时返回null
+     */
+    public static String getCacheKey(WSRequestContext context){
+        if(context.getMethod()!=MethodType.GET || context.getResponseType()==ResponseType.STREAM){
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(context.getTransport()).append(' ').append(context.getResponseType())
+                .append(' ').append(context.getCharset()).append(' ').append(context.getUrl());
+        if(context.getNameValuePairList()!=null){
+            // 参数顺序决定查询字符串，不排序
+            for(NameValuePair pair:context.getNameValuePairList()){
+                key.append('&').append(pair.getName()).append('=').append(pair.getValue());
+            }
+        }
+        for(Map.Entry<String,String> header:new TreeMap<String, String>(context.getHeaderMap()).entrySet()){
+            key.append("\nH:").append(header.getKey()).append('=').append(header.getValue());
+        }
+        for(Map.Entry<String,String> cookie:new TreeMap<String, String>(context.getCookieMap()).entrySet()){
+            key.append("\nC:").append(cookie.getKey()).append('=').append(cookie.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 执行请求：相同key的请求正在执行时共享它的响应
+     * @param key
+     * @param request 发起请求，只在没有相同请求正在执行时调用
+     * @return 响应的副本
+     */
+    public WSFuture<ResponseResult> execute(String key,Callable<WSFuture<ResponseResult>> request){
+        requestCount.incrementAndGet();
+        while(true){
+            Flight flight = flightMap.get(key);
+            if(flight!=null){
+                WSFuture<ResponseResult> view = flight.attach();
+                if(view!=null){
+                    coalescedCount.incrementAndGet();
+                    return view;
+                }
+                // 所有调用方都已取消，等待移除
+                flightMap.remove(key, flight);
+                continue;
+            }
+            Flight created = new Flight(key);
+            if(flightMap.putIfAbsent(key, created)==null){
+                WSFuture<ResponseResult> view = created.attach();
+                created.start(request);
+                return view;
+            }
+        }
+    }
+
+    /**
+     * 正在执行的请求数
+     * @return
+     */
+    public int getInFlightCount(){
+        return flightMap.size();
+    }
+
+    /**
+     * 请求总数
+     * @return
+     */
+    public long getRequestCount(){
+        return requestCount.get();
+    }
+
+    /**
+     * 共享了其他请求响应的请求数
+     * @return
+     */
+    public long getCoalescedCount(){
+        return coalescedCount.get();
+    }
+
+    /**
+     * 一个正在执行的请求和等待它的调用方
+     */
+    private class Flight {
+        private final String key;
+        private final WSFuture<ResponseResult> shared = new WSFuture<ResponseResult>();
+        private int views = 0;
+        private boolean closed = false;
+
+        Flight(String key){
+            this.key = key;
+            shared.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    close();
+                }
+            });
+        }
+
+        void start(Callable<WSFuture<ResponseResult>> request){
+            final WSFuture<ResponseResult> response;
+            try {
+                response = request.call();
+            } catch (Throwable e) {
+                shared.setException(e);
+                return;
+            }
+            response.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    if(future.isSuccess()){
+                        shared.set(future.getNow());
+                    }
+                    else if(future.isCancelled()){
+                        shared.cancel(false);
+                    }
+                    else{
+                        shared.setException(future.getCause());
+                    }
+                }
+            });
+            shared.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    if(future.isCancelled()){
+                        response.cancel(false);
+                    }
+                }
+            });
+        }
+
+        /**
+         * 添加一个调用方
+         * @return 已经结束或者所有调用方都已取消时返回null
+         */
+        synchronized WSFuture<ResponseResult> attach(){
+            if(closed){
+                return null;
+            }
+            views++;
+            final WSFuture<ResponseResult> view = new WSFuture<ResponseResult>();
+            shared.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    if(future.isSuccess()){
+                        view.set(future.getNow().copy());
+                    }
+                    else if(future.isCancelled()){
+                        view.cancel(false);
+                    }
+                    else{
+                        view.setException(future.getCause());
+                    }
+                }
+            });
+            view.addListener(new FutureListener<ResponseResult>() {
+                @Override
+                public void operationComplete(WSFuture<ResponseResult> future) {
+                    if(future.isCancelled()){
+                        detach();
+                    }
+                }
+            });
+            return view;
+        }
+
+        private void detach(){
+            boolean cancel;
+            synchronized (this){
+                cancel = --views==0 && !closed;
+                if(cancel){
+                    closed = true;
+                }
+            }
+            if(cancel){
+                flightMap.remove(key, this);
+                shared.cancel(false);
+            }
+        }
+
+        private void close(){
+            synchronized (this){
+                closed = true;
+            }
+            flightMap.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Retry;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 重试策略：最多执行次数，指数退避间隔，随机抖动，可重试的状态和异常，总时间预算。<br/>
+ * 由<b>@Retry</b>注解生成，也可以直接创建后设置到WSRequestContext。<br/>
+ * Created by gz on 16/02/28.
+ */
+public class RetryPolicy {
+    private static final Random random = new Random();
+
+    private int maxAttempts = WSHttpHelperConfig.getInt(WSHttpHelperConstant.RETRY_MAX_ATTEMPTS, 3);
+    private long initialBackoffMillis = WSHttpHelperConfig.getInt(WSHttpHelperConstant.RETRY_INITIAL_BACKOFF_MILLIS, 100);
+    private long maxBackoffMillis = WSHttpHelperConfig.getInt(WSHttpHelperConstant.RETRY_MAX_BACKOFF_MILLIS, 2000);
+    private double multiplier = WSHttpHelperConfig.getDouble(WSHttpHelperConstant.RETRY_MULTIPLIER, 2.0);
+    private double jitter = WSHttpHelperConfig.getDouble(WSHttpHelperConstant.RETRY_JITTER, 0.5);
+    private long budgetMillis = WSHttpHelperConfig.getInt(WSHttpHelperConstant.RETRY_BUDGET_MILLIS, 10000);
+    private int[] retryOnStatus = {502, 503, 504};
+    @SuppressWarnings("unchecked")
+    private Class<? extends Throwable>[] retryOn = new Class[]{IOException.class};
+    private boolean retryNonIdempotent = false;
+
+    /**
+     * 根据注解生成，注解中为默认值的使用配置文件
+     * @param retry
+     * @return
+     */
+    public static RetryPolicy fromAnnotation(Retry retry){
+        RetryPolicy policy = new RetryPolicy();
+        if(retry.maxAttempts()>0){
+            policy.setMaxAttempts(retry.maxAttempts());
+        }
+        if(retry.initialBackoffMillis()>=0){
+            policy.setInitialBackoffMillis(retry.initialBackoffMillis());
+        }
+        if(retry.maxBackoffMillis()>=0){
+            policy.setMaxBackoffMillis(retry.maxBackoffMillis());
+        }
+        if(retry.multiplier()>0){
+            policy.setMultiplier(retry.multiplier());
+        }
+        if(retry.jitter()>=0){
+            policy.setJitter(retry.jitter());
+        }
+        if(retry.budgetMillis()>=0){
+            policy.setBudgetMillis(retry.budgetMillis());
+        }
+        return policy.setRetryOnStatus(retry.retryOnStatus())
+                .setRetryOn(retry.retryOn())
+                .setRetryNonIdempotent(retry.retryNonIdempotent());
+    }
+
+    /**
+     * 请求方法是否可以重试
+     * @param method
+     * @return
+     */
+    public boolean isRetryable(MethodType method){
+        return retryNonIdempotent || method==null || method==MethodType.GET || method==MethodType.DELETE;
+    }
+
+    /**
+     * 响应状态是否需要重试
+     * @param status
+     * @return
+     */
+    public boolean isRetryable(int status){
+        for(int code:retryOnStatus){
+            if(code==status){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 异常是否需要重试：异常或者原因链中任意一个属于retryOn
+     * @param e
+     * @return
+     */
+    public boolean isRetryable(Throwable e){
+        for(Throwable cause=e; cause!=null; cause=cause.getCause()==cause?null:cause.getCause()){
+            for(Class<? extends Throwable> type:retryOn){
+                if(type.isInstance(cause)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第attempt次重试前的等待时间
+     * @param attempt 从1开始
+     * @return 毫秒
+     */
+    public long getBackoffMillis(int attempt){
+        double backoff = initialBackoffMillis * Math.pow(multiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        backoff = backoff * (1 - jitter * random.nextDouble());
+        return Math.max(0L, (long) backoff);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public RetryPolicy setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        return this;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public RetryPolicy setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public RetryPolicy setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public RetryPolicy setJitter(double jitter) {
+        this.jitter = Math.min(Math.max(jitter, 0), 1);
+        return this;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public RetryPolicy setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        return this;
+    }
+
+    public int[] getRetryOnStatus() {
+        return retryOnStatus;
+    }
+
+    public RetryPolicy setRetryOnStatus(int[] retryOnStatus) {
+        this.retryOnStatus = retryOnStatus;
+        return this;
+    }
+
+    public Class<? extends Throwable>[] getRetryOn() {
+        return retryOn;
+    }
+
+    public RetryPolicy setRetryOn(Class<? extends Throwable>[] retryOn) {
+        this.retryOn = retryOn;
+        return this;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+}
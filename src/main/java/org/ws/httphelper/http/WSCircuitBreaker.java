@@ -0,0 +1,287 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 熔断器：关闭(CLOSED)，打开(OPEN)，半开(HALF_OPEN)三种状态。<br/>
+ * 关闭时统计最近windowSize个请求，请求数不少于minimumCalls并且失败比例或者慢请求比例达到阈值时打开；<br/>
+ * 打开时tryAcquire直接返回null，openMillis后第一个请求进入半开；<br/>
+ * 半开时最多放行halfOpenCalls个探测请求，全部结束后按同样的阈值判断关闭或者重新打开。<br/>
+ * 状态变化时通知StateListener，在完成请求的线程中执行，不持有熔断器的锁。<br/>
+ * Created by gz on 16/03/02.
+ */
+public class WSCircuitBreaker {
+    protected static Log log = LogFactory.getLog(WSCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 状态变化的监听
+     */
+    public interface StateListener {
+        void onStateChange(WSCircuitBreaker breaker, State from, State to);
+    }
+
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallMillis;
+    private final int minimumCalls;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    /**
+     * 最近的请求结果：FAILURE和SLOW的组合
+     */
+    private final byte[] window;
+    private int windowIndex = 0;
+    private int windowCount = 0;
+    private int failureCount = 0;
+    private int slowCount = 0;
+
+    private State state = State.CLOSED;
+    /**
+     * 每次状态变化加1，之前状态中获取的许可不再统计
+     */
+    private long epoch = 0;
+    private long openedAt = 0;
+    private int halfOpenIssued = 0;
+
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<StateListener>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+
+    /**
+     * @param name 名称
+     * @param failureRateThreshold 失败比例阈值(百分比)
+     * @param slowCallRateThreshold 慢请求比例阈值(百分比)，大于100时不按慢请求打开
+     * @param slowCallMillis 慢请求的响应时间
+     * @param windowSize 统计最近的请求数
+     * @param minimumCalls 计算比例需要的最少请求数
+     * @param openMillis 打开多少毫秒后半开
+     * @param halfOpenCalls 半开时的探测请求数
+     */
+    public WSCircuitBreaker(String name, int failureRateThreshold, int slowCallRateThreshold, long slowCallMillis,
+                            int windowSize, int minimumCalls, long openMillis, int halfOpenCalls) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold / 100.0;
+        this.slowCallRateThreshold = slowCallRateThreshold / 100.0;
+        this.slowCallMillis = slowCallMillis;
+        this.window = new byte[Math.max(windowSize, 1)];
+        this.minimumCalls = Math.min(Math.max(minimumCalls, 1), window.length);
+        this.openMillis = openMillis;
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+    }
+
+    /**
+     * 请求前获取许可
+     * @return 打开，或者半开时探测请求已满，返回null
+     */
+    public Permit tryAcquire() {
+        State from = null;
+        Permit permit = null;
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                from = transition(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                permit = new Permit(epoch);
+            } else if (state == State.HALF_OPEN && halfOpenIssued < halfOpenCalls) {
+                halfOpenIssued++;
+                permit = new Permit(epoch);
+            }
+        }
+        if (from != null) {
+            fire(from, State.HALF_OPEN);
+        }
+        if (permit == null) {
+            rejectedCount.incrementAndGet();
+        }
+        return permit;
+    }
+
+    /**
+     * 记录请求结果
+     */
+    private void record(Permit permit, boolean failure, long millis) {
+        State from = null;
+        State to = null;
+        synchronized (this) {
+            if (permit.epoch != epoch) {
+                return;
+            }
+            byte outcome = (byte) ((failure ? FAILURE : 0) | (millis >= slowCallMillis ? SLOW : 0));
+            if (windowCount == window.length) {
+                byte old = window[windowIndex];
+                failureCount -= old & FAILURE;
+                slowCount -= (old & SLOW) >> 1;
+            } else {
+                windowCount++;
+            }
+            window[windowIndex] = outcome;
+            windowIndex = (windowIndex + 1) % window.length;
+            failureCount += outcome & FAILURE;
+            slowCount += (outcome & SLOW) >> 1;
+
+            if (state == State.CLOSED && windowCount >= minimumCalls && isExceeded()) {
+                to = State.OPEN;
+            } else if (state == State.HALF_OPEN && windowCount >= halfOpenCalls) {
+                to = isExceeded() ? State.OPEN : State.CLOSED;
+            }
+            if (to != null) {
+                from = transition(to);
+            }
+        }
+        if (to != null) {
+            fire(from, to);
+        }
+    }
+
+    /**
+     * 不统计的请求(例如取消)：半开时归还探测许可
+     */
+    private synchronized void release(Permit permit) {
+        if (permit.epoch == epoch && state == State.HALF_OPEN && halfOpenIssued > 0) {
+            halfOpenIssued--;
+        }
+    }
+
+    private boolean isExceeded() {
+        return (failureRateThreshold > 0 && failureCount >= failureRateThreshold * windowCount)
+                || (slowCallRateThreshold > 0 && slowCallRateThreshold <= 1 && slowCount >= slowCallRateThreshold * windowCount);
+    }
+
+    /**
+     * 切换状态，清空统计：必须持有锁
+     * @param to
+     * @return 之前的状态
+     */
+    private State transition(State to) {
+        State from = state;
+        state = to;
+        epoch++;
+        windowIndex = 0;
+        windowCount = 0;
+        failureCount = 0;
+        slowCount = 0;
+        halfOpenIssued = 0;
+        if (to == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            openCount.incrementAndGet();
+        }
+        return from;
+    }
+
+    private void fire(State from, State to) {
+        log.info("熔断器" + name + "：" + from + " -> " + to);
+        for (StateListener listener : listeners) {
+            try {
+                listener.onStateChange(this, from, to);
+            } catch (Throwable e) {
+                log.warn("熔断器状态监听异常：" + e.getMessage(), e);
+            }
+        }
+    }
+
+    public void addListener(StateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 当前状态：打开超过openMillis时仍然返回OPEN，下一个请求时进入半开
+     * @return
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 当前统计的失败比例(百分比)，请求数不足minimumCalls时返回-1
+     * @return
+     */
+    public synchronized double getFailureRate() {
+        return windowCount < minimumCalls ? -1 : failureCount * 100.0 / windowCount;
+    }
+
+    /**
+     * 当前统计的慢请求比例(百分比)，请求数不足minimumCalls时返回-1
+     * @return
+     */
+    public synchronized double getSlowCallRate() {
+        return windowCount < minimumCalls ? -1 : slowCount * 100.0 / windowCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 打开或者探测请求已满时被拒绝的请求数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 打开的次数
+     * @return
+     */
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[state=" + getState() + ",failureRate=" + getFailureRate() + ",slowCallRate=" + getSlowCallRate()
+                + ",rejected=" + getRejectedCount() + ",opened=" + getOpenCount() + "]";
+    }
+
+    /**
+     * 一次请求的许可：请求结束后调用onSuccess，onError或者release中的一个
+     */
+    public class Permit {
+        private final long epoch;
+
+        private Permit(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * 请求成功
+         * @param millis 响应时间
+         */
+        public void onSuccess(long millis) {
+            record(this, false, millis);
+        }
+
+        /**
+         * 请求失败
+         * @param millis 响应时间
+         */
+        public void onError(long millis) {
+            record(this, true, millis);
+        }
+
+        /**
+         * 不统计这次请求
+         */
+        public void release() {
+            WSCircuitBreaker.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.exception.WSException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局共享的Http连接池。<br/>
+ * 所有WSHttpClient共用一个线程安全的连接管理器，复用keep-alive连接，避免每次请求重新建立TCP连接和TLS握手。<br/>
+ * 连接数限制通过配置文件conn.MaxTotal，conn.MaxPerRoute指定。<br/>
+ * 首次使用时自动启动，通过close()关闭并释放所有连接，关闭后可以再次start()。<br/>
+ * Created by gz on 16/01/10.
+ */
+public class WSConnectionManager {
+    protected static Log log = LogFactory.getLog(WSConnectionManager.class);
+
+    /**
+     * 空闲连接检查间隔
+     */
+    private static final long EVICT_INTERVAL_MILLIS = 5000L;
+
+    private static WSConnectionManager _instance = new WSConnectionManager();
+
+    public static WSConnectionManager getInstance(){
+        return _instance;
+    }
+
+    private volatile ThreadSafeClientConnManager connectionManager=null;
+    private volatile DefaultHttpClient httpClient=null;
+    private volatile WSSSLSocketFactory sslSocketFactory=null;
+    private IdleConnectionMonitor monitor=null;
+
+    /**
+     * 启动连接池，已经启动时直接返回
+     * @throws WSException
+     */
+    public synchronized void start()throws WSException{
+        if(httpClient!=null){
+            return;
+        }
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        sslSocketFactory = WSSSLSocketFactory.getInstance();
+        schemeRegistry.register(new Scheme("https", 443, sslSocketFactory));
+
+        ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(schemeRegistry);
+        cm.setMaxTotal(WSHttpHelperConfig.getInt(WSHttpHelperConstant.CONN_MAX_TOTAL, 200));
+        cm.setDefaultMaxPerRoute(WSHttpHelperConfig.getInt(WSHttpHelperConstant.CONN_MAX_PER_ROUTE, 50));
+
+        HttpParams params = new BasicHttpParams();
+        params.setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_CONNECTION_TIMEOUT));
+        params.setParameter(CoreConnectionPNames.SO_TIMEOUT, WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_SOCKET_TIMEOUT));
+
+        DefaultHttpClient client = new DefaultHttpClient(cm, params);
+        client.setKeepAliveStrategy(new DefaultKeepAliveStrategy(
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.CONN_KEEP_ALIVE_SECONDS, 30) * 1000L));
+
+        monitor = new IdleConnectionMonitor(cm,
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.CONN_IDLE_TIMEOUT_SECONDS, 60));
+        monitor.start();
+
+        this.connectionManager=cm;
+        this.httpClient=client;
+        log.debug("连接池启动：maxTotal=" + cm.getMaxTotal() + ",maxPerRoute=" + cm.getDefaultMaxPerRoute());
+    }
+
+    /**
+     * 关闭连接池，释放所有连接
+     */
+    public synchronized void close(){
+        if(httpClient==null){
+            return;
+        }
+        monitor.shutdown();
+        monitor=null;
+        connectionManager.shutdown();
+        connectionManager=null;
+        httpClient=null;
+        log.debug("连接池关闭");
+    }
+
+    public boolean isRunning(){
+        return httpClient!=null;
+    }
+
+    /**
+     * 获取共享的HttpClient，未启动时自动启动
+     * @return
+     * @throws WSException
+     */
+    public HttpClient getHttpClient()throws WSException{
+        DefaultHttpClient client=this.httpClient;
+        if(client==null){
+            start();
+            client=this.httpClient;
+        }
+        return client;
+    }
+
+    public ClientConnectionManager getConnectionManager()throws WSException{
+        getHttpClient();
+        return connectionManager;
+    }
+
+    /**
+     * 当前池中的连接数
+     * @return
+     */
+    public int getConnectionsInPool(){
+        ThreadSafeClientConnManager cm=this.connectionManager;
+        return cm==null?0:cm.getConnectionsInPool();
+    }
+
+    /**
+     * 当前使用的SSL连接工厂，可获取握手次数和会话复用次数
+     * @return
+     * @throws WSException
+     */
+    public WSSSLSocketFactory getSSLSocketFactory()throws WSException{
+        getHttpClient();
+        return sslSocketFactory;
+    }
+
+    /**
+     * Keep-Alive策略：优先使用服务端返回的Keep-Alive: timeout=n，否则使用配置的默认值
+     */
+    private static class DefaultKeepAliveStrategy implements ConnectionKeepAliveStrategy{
+        private final long defaultKeepAliveMillis;
+
+        DefaultKeepAliveStrategy(long defaultKeepAliveMillis){
+            this.defaultKeepAliveMillis=defaultKeepAliveMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement he = it.nextElement();
+                String value = he.getValue();
+                if (value != null && "timeout".equalsIgnoreCase(he.getName())) {
+                    try {
+                        return Long.parseLong(value) * 1000L;
+                    } catch (NumberFormatException ignore) {
+                    }
+                }
+            }
+            return defaultKeepAliveMillis;
+        }
+    }
+
+    /**
+     * 定时回收过期和空闲的连接
+     */
+    private static class IdleConnectionMonitor extends Thread{
+        private final ClientConnectionManager cm;
+        private final int idleTimeoutSeconds;
+        private volatile boolean shutdown=false;
+
+        IdleConnectionMonitor(ClientConnectionManager cm,int idleTimeoutSeconds){
+            super("WSHttpHelper-IdleConnectionMonitor");
+            setDaemon(true);
+            this.cm=cm;
+            this.idleTimeoutSeconds=idleTimeoutSeconds;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    synchronized (this) {
+                        wait(EVICT_INTERVAL_MILLIS);
+                    }
+                    cm.closeExpiredConnections();
+                    cm.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        void shutdown(){
+            shutdown=true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
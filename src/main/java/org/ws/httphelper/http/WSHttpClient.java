@@ -14,69 +14,77 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
-import org.ws.httphelper.WSHttpHelperConfig;
-import org.ws.httphelper.WSHttpHelperConstant;
 import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.ByteArrayReader;
 import org.ws.httphelper.exception.WSException;
 import org.ws.httphelper.model.WSRequestContext;
 import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.request.handler.StreamConsumer;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
 import java.io.*;
-import java.net.URI;
-import java.security.cert.X509Certificate;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created by gz on 15/12/6.
  */
-public class WSHttpClient implements Callable<Object> {
+public class WSHttpClient implements Callable<ResponseResult> {
     protected static Log log = LogFactory.getLog(WSHttpClient.class);
+    /**
+     * 写文件时每次传输的最大字节数
+     */
+    private static final long TRANSFER_BLOCK_SIZE = 1024 * 1024;
 
     protected WSRequestContext context;
     protected HttpClient httpClient=null;
-    protected HttpRequestBase httpRequest=null;
+    protected volatile HttpRequestBase httpRequest=null;
+    private volatile boolean aborted=false;
 
     public WSHttpClient(WSRequestContext context){
         this.context=context;
     }
 
+    /**
+     * 请求的完整URL：GET，DELETE请求的参数拼接到URL之后，没有参数时返回原URL。<br/>
+     * 不修改上下文，同一个上下文可以重试，或者同时发送对冲请求
+     * @param context
+     * @return
+     * @throws WSException 不支持的编码
+     */
+    public static String getRequestUrl(WSRequestContext context)throws WSException{
+        String url=context.getUrl();
+        List<NameValuePair> nvps = context.getNameValuePairList();
+        if(context.getMethod()== WSRequest.MethodType.POST || nvps==null || nvps.isEmpty()){
+            return url;
+        }
+        try {
+            String query = EntityUtils.toString(new UrlEncodedFormEntity(nvps,context.getCharset()));
+            return url + (url.indexOf('?')!=-1 ? "&" : "?") + query;
+        }
+        catch (IOException e) {
+            throw new WSException(e);
+        }
+    }
+
     protected void buildHttpRequest()throws WSException{
         List<NameValuePair> nvps = context.getNameValuePairList();
         String url=context.getUrl();
         if(context.getMethod()== WSRequest.MethodType.GET){
-            this.httpRequest = new HttpGet(url);
-            String str=null;
-            try {
-                if(nvps!=null){
-                    str = EntityUtils.toString(new UrlEncodedFormEntity(nvps,context.getCharset()));
-                    String doc = "?";
-                    if(context.getUrl().indexOf("?")!=-1){
-                        doc="&";
-                    }
-                    url+=doc + str;
-                    context.setUrl(url);
-                    this.httpRequest.setURI(new URI(url));
-                }
-            }
-            catch (Exception e) {
-                throw new WSException(e);
-            }
+            this.httpRequest = new HttpGet(getRequestUrl(context));
         }
         else if(context.getMethod()== WSRequest.MethodType.POST){
             HttpPost post = new HttpPost(url);
@@ -120,24 +128,9 @@ public class WSHttpClient implements Callable<Object> {
             }
         }
         else if(context.getMethod()== WSRequest.MethodType.DELETE){
+            url=getRequestUrl(context);
+            log.debug(url);
             this.httpRequest = new HttpDelete(url);
-            String str=null;
-            try {
-                if(nvps!=null){
-                    str = EntityUtils.toString(new UrlEncodedFormEntity(nvps,context.getCharset()));
-                    String doc = "?";
-                    if(context.getUrl().indexOf("?")!=-1){
-                        doc="&";
-                    }
-                    url+=doc + str;
-                    log.debug(url);
-                    context.setUrl(url);
-                    this.httpRequest.setURI(new URI(url));
-                }
-            }
-            catch (Exception e) {
-                throw new WSException(e);
-            }
         }
         // 添加head
         Map<String,String> headerMap = context.getHeaderMap();
@@ -164,106 +157,212 @@ public class WSHttpClient implements Callable<Object> {
         if(context==null){
             throw new WSException("没有请求context！");
         }
-        httpClient = new DefaultHttpClient();
-        if(context.getUrl().startsWith("https")){
-            wrapClient();
-        }
-        this.httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_CONNECTION_TIMEOUT));
-        this.httpClient.getParams().setParameter(CoreConnectionPNames.SO_TIMEOUT, WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_SOCKET_TIMEOUT));
+        // 共享连接池
+        httpClient = WSConnectionManager.getInstance().getHttpClient();
         // 初始化
         buildHttpRequest();
+        if(aborted){
+            throw new WSException("请求已取消！");
+        }
         log.debug(context);
         ResponseResult result = new ResponseResult();
+        // 每次请求独立的cookie，避免通过共享的HttpClient串cookie
+        HttpContext httpContext = new BasicHttpContext();
+        httpContext.setAttribute(ClientContext.COOKIE_STORE, new BasicCookieStore());
+        HttpEntity entity = null;
         // 开始执行
         long beginTime = System.currentTimeMillis();
         try {
-            HttpResponse response = httpClient.execute(httpRequest);
-            HttpEntity entity = response.getEntity();
-            // 返回状态
-            result.setStatus(response.getStatusLine().getStatusCode());
-            // 相应时间
-            result.setWasteTime(System.currentTimeMillis() - beginTime);
-            // 是否是gzip响应
-            boolean isGzip=false;
-            if(entity.getContentEncoding()!=null){
-                String gzip=entity.getContentEncoding().getValue();
-                isGzip="gzip".equals(gzip.toLowerCase());
-            }
-            // 返回为byte[]
-            if (context.getResponseType() == WSRequest.ResponseType.BYTE_ARRAY) {
-                InputStream in = entity.getContent();
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                try {
-                    byte b[] = new byte[1024 * 8];
-                    int j = 0;
-                    while ((j = in.read(b)) != -1) {
-                        out.write(b, 0, j);
-                    }
-                    out.flush();
-                    out.close();
-                } catch (IOException ex) {
-                    throw ex;
-                } finally {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        throw e;
-                    }
-                }
-                result.setBody(out.toByteArray());
-            }
-            // gzip自动解压
-            else if(isGzip){
-                result.setBody(EntityUtils.toString(new GzipDecompressingEntity(entity),context.getCharset()));
-            }
-            else {
-                result.setBody(EntityUtils.toString(entity,context.getCharset()));
-            }
-            // 获取cookie
-            Header [] cookies=response.getHeaders("Cookie");
-            if(cookies!=null && cookies.length>0){
-                for(Header cookie:cookies){
-                    context.addCookie(cookie.getName(),cookie.getValue());
-                }
-            }
+            HttpResponse response = httpClient.execute(httpRequest, httpContext);
+            entity = response.getEntity();
+            readResponse(response, beginTime, result);
             log.debug("响应时间："+result.getWasteTime());
         }
         catch (Exception e){
-            log.error(e.getMessage(),e);
+            if(aborted){
+                log.debug("请求已取消："+context.getUrl());
+            }
+            else{
+                log.error(e.getMessage(),e);
+            }
+            // 中断请求，连接不再放回连接池
+            httpRequest.abort();
             throw new WSException(e);
         }
         finally {
-            httpClient.getConnectionManager().closeExpiredConnections();
-            httpClient.getConnectionManager().shutdown();
+            // 确保响应读取完毕，连接放回连接池
+            try {
+                EntityUtils.consume(entity);
+            } catch (IOException e) {
+                httpRequest.abort();
+            }
         }
         return result;
     }
 
-    private void wrapClient() throws WSException{
+    /**
+     * 中断请求：可以在其他线程中调用，正在执行的请求抛出异常，连接不再放回连接池
+     */
+    public void abort(){
+        aborted = true;
+        HttpRequestBase request = httpRequest;
+        if(request!=null){
+            request.abort();
+        }
+    }
+
+    /**
+     * 生成请求，可供其他Http实现复用
+     * @return
+     * @throws WSException
+     */
+    public HttpRequestBase createHttpRequest()throws WSException{
+        buildHttpRequest();
+        return httpRequest;
+    }
+
+    /**
+     * 解析响应：状态，响应内容，cookie。可供其他Http实现复用
+     * @param response
+     * @param beginTime 请求开始时间
+     * @param result
+     * @throws Exception
+     */
+    public void readResponse(HttpResponse response,long beginTime,ResponseResult result)throws Exception{
+        // 获取cookie
+        Header [] cookies=response.getHeaders("Cookie");
+        if(cookies!=null && cookies.length>0){
+            for(Header cookie:cookies){
+                context.addCookie(cookie.getName(),cookie.getValue());
+            }
+        }
+        // 响应头
+        for(Header header:response.getAllHeaders()){
+            result.addHeader(header.getName(), header.getValue());
+        }
+        // 返回状态
+        result.setStatus(response.getStatusLine().getStatusCode());
+        // 相应时间
+        result.setWasteTime(System.currentTimeMillis() - beginTime);
+        HttpEntity entity = response.getEntity();
+        if(entity==null){
+            result.setBody(null);
+            return;
+        }
+        // 是否是gzip响应
+        boolean isGzip=false;
+        if(entity.getContentEncoding()!=null){
+            String gzip=entity.getContentEncoding().getValue();
+            isGzip="gzip".equals(gzip.toLowerCase());
+        }
+        // 流式处理，不缓存响应内容
+        if (context.getResponseType() == WSRequest.ResponseType.STREAM) {
+            result.setBody(consumeStream(entity, isGzip, result));
+        }
+        // 直接写入文件
+        else if (context.getResponseType() == WSRequest.ResponseType.FILE) {
+            result.setBody(transferToFile(entity, isGzip, result));
+        }
+        // 返回为byte[]
+        else if (context.getResponseType() == WSRequest.ResponseType.BYTE_ARRAY) {
+            long transferBegin = System.currentTimeMillis();
+            InputStream in = entity.getContent();
+            byte[] body;
+            try {
+                body = ByteArrayReader.read(in, entity.getContentLength());
+            } finally {
+                in.close();
+            }
+            result.setBody(body);
+            result.setByteCount(body.length);
+            result.setTransferTime(System.currentTimeMillis() - transferBegin);
+        }
+        // gzip自动解压
+        else if(isGzip){
+            result.setBody(EntityUtils.toString(new GzipDecompressingEntity(entity),context.getCharset()));
+        }
+        else {
+            result.setBody(EntityUtils.toString(entity,context.getCharset()));
+        }
+    }
+
+    /**
+     * 将响应流交给StreamConsumer处理，处理结束后关闭流，连接放回连接池
+     * @param entity
+     * @param isGzip
+     * @param result
+     * @return
+     * @throws Exception
+     */
+    private Object consumeStream(HttpEntity entity,boolean isGzip,ResponseResult result)throws Exception{
+        StreamConsumer<?> consumer = context.getStreamConsumer();
+        if(consumer==null){
+            throw new WSException("响应类型为STREAM时必须指定StreamConsumer！");
+        }
+        InputStream in = entity.getContent();
         try {
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            X509TrustManager tm = new X509TrustManager() {
-                public void checkClientTrusted(X509Certificate[] xcs,
-                                               String string) {
-                }
+            if(isGzip){
+                in = new GZIPInputStream(in);
+            }
+            return consumer.consume(result, in);
+        }
+        finally {
+            in.close();
+        }
+    }
 
-                public void checkServerTrusted(X509Certificate[] xcs,
-                                               String string) {
+    /**
+     * 通过FileChannel将响应内容直接写入目标文件，响应内容不在堆中缓存。失败时删除不完整的文件
+     * @param entity
+     * @param isGzip
+     * @param result
+     * @return 目标文件
+     * @throws Exception
+     */
+    private File transferToFile(HttpEntity entity,boolean isGzip,ResponseResult result)throws Exception{
+        File target = context.getTargetFile();
+        if(target==null){
+            throw new WSException("响应类型为FILE时必须指定目标文件！");
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if(parent!=null && !parent.isDirectory() && !parent.mkdirs()){
+            throw new WSException("无法创建目录："+parent);
+        }
+        long beginTime = System.currentTimeMillis();
+        long position = 0;
+        boolean success = false;
+        InputStream in = entity.getContent();
+        FileOutputStream out = null;
+        try {
+            if(isGzip){
+                in = new GZIPInputStream(in);
+            }
+            out = new FileOutputStream(target);
+            FileChannel fileChannel = out.getChannel();
+            ReadableByteChannel source = Channels.newChannel(in);
+            long count;
+            // 阻塞读取，返回0说明已经读完
+            while ((count = fileChannel.transferFrom(source, position, TRANSFER_BLOCK_SIZE)) > 0) {
+                position += count;
+            }
+            success = true;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            finally {
+                if(out!=null){
+                    out.close();
                 }
-
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
+                if(!success){
+                    target.delete();
                 }
-            };
-            ctx.init(null, new TrustManager[] { tm }, null);
-            SSLSocketFactory ssf = new SSLSocketFactory(ctx);
-            ssf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-            ClientConnectionManager ccm = httpClient.getConnectionManager();
-            SchemeRegistry sr = ccm.getSchemeRegistry();
-            sr.register(new Scheme("https", ssf, 443));
-            httpClient = new DefaultHttpClient(ccm, httpClient.getParams());
-        } catch (Exception ex) {
-            throw new WSException(ex);
+            }
         }
+        result.setByteCount(position);
+        result.setTransferTime(System.currentTimeMillis() - beginTime);
+        log.debug("下载文件："+target+"，大小："+position+"，用时："+result.getTransferTime());
+        return target;
     }
 }
@@ -0,0 +1,221 @@
+package org.ws.httphelper.http;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.params.HttpParams;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.exception.WSException;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可缓存的SSL连接工厂。<br/>
+ * 每种信任配置只创建一次SSLContext，并开启客户端TLS会话缓存，同一host的后续连接复用会话，不再进行完整握手。<br/>
+ * 默认校验服务端证书和主机名；信任所有证书必须通过配置ssl.TrustAll=true显式开启。<br/>
+ * 统计握手次数和会话复用次数，用于确认会话复用的效果。<br/>
+ * Created by gz on 16/01/12.
+ */
+public class WSSSLSocketFactory extends SSLSocketFactory {
+    protected static Log log = LogFactory.getLog(WSSSLSocketFactory.class);
+
+    private static final ConcurrentMap<String,WSSSLSocketFactory> factoryCache = new ConcurrentHashMap<String, WSSSLSocketFactory>();
+
+    private final SSLContext sslContext;
+    private final boolean trustAll;
+    private final AtomicLong handshakeCount = new AtomicLong();
+    private final AtomicLong resumedCount = new AtomicLong();
+
+    private WSSSLSocketFactory(SSLContext sslContext, X509HostnameVerifier hostnameVerifier, boolean trustAll) {
+        super(sslContext, hostnameVerifier);
+        this.sslContext = sslContext;
+        this.trustAll = trustAll;
+    }
+
+    /**
+     * 根据配置文件获取工厂
+     * @return
+     * @throws WSException
+     */
+    public static WSSSLSocketFactory getInstance()throws WSException{
+        return getInstance("true".equalsIgnoreCase(WSHttpHelperConfig.getValue(WSHttpHelperConstant.SSL_TRUST_ALL)),
+                WSHttpHelperConfig.getValue(WSHttpHelperConstant.SSL_TRUST_STORE),
+                WSHttpHelperConfig.getValue(WSHttpHelperConstant.SSL_TRUST_STORE_PASSWORD));
+    }
+
+    /**
+     * 获取指定信任配置的工厂，相同配置只创建一次
+     * @param trustAll 是否信任所有证书，不校验主机名
+     * @param trustStore 信任证书库路径，为空时使用JDK默认证书库
+     * @param trustStorePassword 证书库密码
+     * @return
+     * @throws WSException
+     */
+    public static WSSSLSocketFactory getInstance(boolean trustAll,String trustStore,String trustStorePassword)throws WSException{
+        String key = trustAll ? "trustAll" : "verify:" + StringUtils.defaultString(trustStore);
+        WSSSLSocketFactory factory = factoryCache.get(key);
+        if(factory==null){
+            factory = trustAll ? createTrustAll() : createVerifying(trustStore, trustStorePassword);
+            WSSSLSocketFactory exists = factoryCache.putIfAbsent(key, factory);
+            if(exists!=null){
+                factory=exists;
+            }
+        }
+        return factory;
+    }
+
+    private static WSSSLSocketFactory createVerifying(String trustStore,String trustStorePassword)throws WSException{
+        try {
+            TrustManager[] trustManagers = null;
+            if(!StringUtils.isBlank(trustStore)){
+                KeyStore keyStore = loadKeyStore(trustStore, trustStorePassword);
+                TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                tmf.init(keyStore);
+                trustManagers = tmf.getTrustManagers();
+            }
+            SSLContext ctx = SSLContext.getInstance(TLS);
+            ctx.init(null, trustManagers, null);
+            initSessionContext(ctx);
+            return new WSSSLSocketFactory(ctx, BROWSER_COMPATIBLE_HOSTNAME_VERIFIER, false);
+        } catch (Exception e) {
+            throw new WSException(e);
+        }
+    }
+
+    private static WSSSLSocketFactory createTrustAll()throws WSException{
+        try {
+            SSLContext ctx = SSLContext.getInstance(TLS);
+            X509TrustManager tm = new X509TrustManager() {
+                public void checkClientTrusted(X509Certificate[] xcs,
+                                               String string) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] xcs,
+                                               String string) {
+                }
+
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            };
+            ctx.init(null, new TrustManager[] { tm }, null);
+            initSessionContext(ctx);
+            log.warn("SSL已配置为信任所有证书，不校验服务端证书和主机名！");
+            return new WSSSLSocketFactory(ctx, ALLOW_ALL_HOSTNAME_VERIFIER, true);
+        } catch (Exception e) {
+            throw new WSException(e);
+        }
+    }
+
+    private static void initSessionContext(SSLContext ctx){
+        SSLSessionContext sessionContext = ctx.getClientSessionContext();
+        if(sessionContext!=null){
+            sessionContext.setSessionCacheSize(WSHttpHelperConfig.getInt(WSHttpHelperConstant.SSL_SESSION_CACHE_SIZE, 1000));
+            sessionContext.setSessionTimeout(WSHttpHelperConfig.getInt(WSHttpHelperConstant.SSL_SESSION_TIMEOUT_SECONDS, 86400));
+        }
+    }
+
+    private static KeyStore loadKeyStore(String path,String password)throws Exception{
+        InputStream in = WSSSLSocketFactory.class.getResourceAsStream(path);
+        if(in==null){
+            in = new FileInputStream(new File(path));
+        }
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(in, password==null?null:password.toCharArray());
+            return keyStore;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public Socket createSocket(HttpParams params) throws IOException {
+        return watch(super.createSocket(params));
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return watch(super.createSocket());
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String host, int port, boolean autoClose) throws IOException, UnknownHostException {
+        return watch(super.createLayeredSocket(socket, host, port, autoClose));
+    }
+
+    /**
+     * 监听握手完成：会话创建时间早于本次连接创建时间，说明复用了已有会话
+     * @param socket
+     * @return
+     */
+    private Socket watch(Socket socket){
+        if(socket instanceof SSLSocket){
+            final long createTime = System.currentTimeMillis();
+            ((SSLSocket) socket).addHandshakeCompletedListener(new HandshakeCompletedListener() {
+                @Override
+                public void handshakeCompleted(HandshakeCompletedEvent event) {
+                    handshakeCount.incrementAndGet();
+                    if(event.getSession().getCreationTime() < createTime){
+                        resumedCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+        return socket;
+    }
+
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    public boolean isTrustAll() {
+        return trustAll;
+    }
+
+    /**
+     * 完成的握手次数，包括会话复用的简化握手
+     * @return
+     */
+    public long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+
+    /**
+     * 复用已有会话的握手次数
+     * @return
+     */
+    public long getResumedCount() {
+        return resumedCount.get();
+    }
+
+    /**
+     * 完整握手次数
+     * @return
+     */
+    public long getFullHandshakeCount() {
+        return handshakeCount.get() - resumedCount.get();
+    }
+}
@@ -0,0 +1,59 @@
+package org.ws.httphelper.http.cache;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache-Control指令：名称转为小写，值去掉引号，没有值的指令值为空字符串。<br/>
+ * Created by gz on 16/03/04.
+ */
+public class CacheControl {
+    public static final String NO_STORE = "no-store";
+    public static final String NO_CACHE = "no-cache";
+    public static final String MAX_AGE = "max-age";
+    public static final String MUST_REVALIDATE = "must-revalidate";
+
+    private final Map<String,String> directiveMap = new HashMap<String, String>();
+
+    /**
+     * @param headers Cache-Control头，可以为null；Pragma: no-cache按no-cache处理
+     */
+    public CacheControl(String... headers) {
+        for (String header : headers) {
+            if (StringUtils.isBlank(header)) {
+                continue;
+            }
+            for (String directive : header.split(",")) {
+                int index = directive.indexOf('=');
+                String name = (index < 0 ? directive : directive.substring(0, index)).trim().toLowerCase();
+                String value = index < 0 ? "" : StringUtils.strip(directive.substring(index + 1).trim(), "\"");
+                if (name.length() > 0) {
+                    directiveMap.put(name, value);
+                }
+            }
+        }
+    }
+
+    public boolean contains(String directive) {
+        return directiveMap.containsKey(directive);
+    }
+
+    /**
+     * 指令的秒数
+     * @param directive
+     * @return 没有指令或者不是数字时返回-1
+     */
+    public long getSeconds(String directive) {
+        String value = directiveMap.get(directive);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(Long.parseLong(value), 0L);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package org.ws.httphelper.http.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.WSHttpClient;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个缓存的响应：状态，响应头和响应内容的字节。<br/>
+ * 按RFC 7234计算年龄(Age，Date和请求往返时间)和新鲜期(max-age，Expires，没有时按Last-Modified的10%估算)。<br/>
+ * 命中时从字节重新生成响应内容，每次返回新的ResponseResult。响应内容可以是堆中的字节，也可以是磁盘缓存映射的内存，
+ * 生成响应时直接从中解码字符串，复制到byte[]或者写入目标文件，没有中间复制。<br/>
+ * Created by gz on 16/03/04.
+ */
+public class CacheEntry {
+    /**
+     * 默认可以缓存的状态
+     */
+    private static final List<Integer> CACHEABLE_STATUS = Arrays.asList(200, 203, 300, 301, 404, 410);
+    /**
+     * 按Last-Modified估算的新鲜期上限
+     */
+    private static final long MAX_HEURISTIC_MILLIS = 24 * 3600 * 1000L;
+
+    private final String key;
+    private final String url;
+    private final int status;
+    private final Map<String,String> headerMap;
+    private final ByteBuffer body;
+    private final String charset;
+    private final Map<String,String> varyMap;
+    private final long requestTime;
+    private final long responseTime;
+    private final long freshnessMillis;
+    private final long correctedInitialAge;
+
+    CacheEntry(String key, String url, int status, Map<String,String> headerMap, ByteBuffer body, String charset,
+               Map<String,String> varyMap, long requestTime, long responseTime) {
+        this.key = key;
+        this.url = url;
+        this.status = status;
+        this.headerMap = headerMap;
+        this.body = body == null ? null : body.asReadOnlyBuffer();
+        this.charset = charset;
+        this.varyMap = varyMap;
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+
+        CacheControl cacheControl = new CacheControl(headerMap.get("Cache-Control"));
+        long date = parseDate(headerMap.get("Date"), responseTime);
+        // RFC 7234 4.2.3
+        long apparentAge = Math.max(0, responseTime - date);
+        long ageValue = Math.max(parseLong(headerMap.get("Age")), 0) * 1000;
+        long correctedAgeValue = ageValue + (responseTime - requestTime);
+        this.correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+
+        if (cacheControl.contains(CacheControl.NO_CACHE)) {
+            this.freshnessMillis = 0;
+        } else if (cacheControl.getSeconds(CacheControl.MAX_AGE) >= 0) {
+            this.freshnessMillis = cacheControl.getSeconds(CacheControl.MAX_AGE) * 1000;
+        } else if (headerMap.containsKey("Expires")) {
+            // 无效的Expires表示已经过期
+            this.freshnessMillis = Math.max(parseDate(headerMap.get("Expires"), date) - date, 0);
+        } else if (headerMap.containsKey("Last-Modified")) {
+            long lastModified = parseDate(headerMap.get("Last-Modified"), date);
+            this.freshnessMillis = Math.min(Math.max(date - lastModified, 0) / 10, MAX_HEURISTIC_MILLIS);
+        } else {
+            this.freshnessMillis = 0;
+        }
+    }
+
+    /**
+     * 根据响应生成缓存
+     * @param key
+     * @param context 请求
+     * @param result 响应，FILE响应的内容从目标文件映射，不读入堆中
+     * @param requestTime 发送请求的时间
+     * @param responseTime 收到响应的时间
+     * @return 不能缓存时返回null：no-store，Vary: *，没有验证器也没有新鲜期，或者状态不能缓存
+     */
+    public static CacheEntry create(String key, WSRequestContext context, ResponseResult result,
+                                    long requestTime, long responseTime) {
+        if (!CACHEABLE_STATUS.contains(result.getStatus())) {
+            return null;
+        }
+        CacheControl cacheControl = new CacheControl(result.getHeader("Cache-Control"));
+        if (cacheControl.contains(CacheControl.NO_STORE) || isNoStore(context)) {
+            return null;
+        }
+        String vary = result.getHeader("Vary");
+        Map<String,String> varyMap = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        if (StringUtils.isNotBlank(vary)) {
+            for (String name : vary.split(",")) {
+                name = name.trim();
+                if ("*".equals(name)) {
+                    return null;
+                }
+                varyMap.put(name, getRequestHeader(context, name));
+            }
+        }
+        ByteBuffer body;
+        String charset = context.getCharset();
+        try {
+            body = toBuffer(result.getBody(), charset);
+        } catch (IOException e) {
+            return null;
+        }
+        Map<String,String> headerMap = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(result.getHeaderMap());
+        CacheEntry entry = new CacheEntry(key, getRequestUrl(context), result.getStatus(), headerMap, body, charset, varyMap, requestTime, responseTime);
+        if (entry.freshnessMillis <= 0 && entry.getETag() == null && entry.getLastModified() == null) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 304响应后更新的缓存：合并304的响应头，重新计算年龄
+     * @param notModified 304响应
+     * @param requestTime
+     * @param responseTime
+     * @return
+     */
+    public CacheEntry revalidate(ResponseResult notModified, long requestTime, long responseTime) {
+        Map<String,String> merged = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        merged.putAll(headerMap);
+        for (Map.Entry<String,String> header : notModified.getHeaderMap().entrySet()) {
+            // 304不带内容，内容相关的头保留缓存的
+            if (!header.getKey().equalsIgnoreCase("Content-Length") && !header.getKey().equalsIgnoreCase("Content-Encoding")) {
+                merged.put(header.getKey(), header.getValue());
+            }
+        }
+        return new CacheEntry(key, url, status, merged, body, charset, varyMap, requestTime, responseTime);
+    }
+
+    /**
+     * 当前年龄(毫秒)
+     * @param now
+     * @return
+     */
+    public long getAge(long now) {
+        return correctedInitialAge + Math.max(now - responseTime, 0);
+    }
+
+    /**
+     * 是否可以不验证直接使用
+     * @param now
+     * @param context 请求：no-cache和max-age限制
+     * @return
+     */
+    public boolean isFresh(long now, WSRequestContext context) {
+        CacheControl cacheControl = new CacheControl(getRequestHeader(context, "Cache-Control"), getRequestHeader(context, "Pragma"));
+        if (cacheControl.contains(CacheControl.NO_CACHE)) {
+            return false;
+        }
+        long age = getAge(now);
+        long maxAge = cacheControl.getSeconds(CacheControl.MAX_AGE);
+        if (maxAge >= 0 && age > maxAge * 1000) {
+            return false;
+        }
+        return freshnessMillis > age;
+    }
+
+    /**
+     * Vary指定的请求头是否与缓存时相同
+     * @param context
+     * @return
+     */
+    public boolean matches(WSRequestContext context) {
+        for (Map.Entry<String,String> vary : varyMap.entrySet()) {
+            if (!StringUtils.equals(vary.getValue(), getRequestHeader(context, vary.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成响应，响应内容按请求的类型重新生成：FILE写入目标文件，BYTE_ARRAY复制到新的数组，其他类型按字符集解码
+     * @param context
+     * @return
+     * @throws IOException 写入目标文件失败
+     */
+    public ResponseResult toResult(WSRequestContext context) throws IOException {
+        ResponseResult result = new ResponseResult();
+        result.setStatus(status);
+        result.setWasteTime(0);
+        result.getHeaderMap().putAll(headerMap);
+        if (body == null) {
+            return result;
+        }
+        ByteBuffer buffer = body.duplicate();
+        if (context.getResponseType() == ResponseType.FILE) {
+            long beginTime = System.currentTimeMillis();
+            result.setBody(writeFile(context.getTargetFile(), buffer));
+            result.setByteCount(body.limit());
+            result.setTransferTime(System.currentTimeMillis() - beginTime);
+        } else if (context.getResponseType() == ResponseType.BYTE_ARRAY) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            result.setBody(bytes);
+            result.setByteCount(bytes.length);
+        } else {
+            Charset decoder = StringUtils.isEmpty(charset) || !Charset.isSupported(charset)
+                    ? Charset.defaultCharset() : Charset.forName(charset);
+            result.setBody(decoder.decode(buffer).toString());
+        }
+        return result;
+    }
+
+    /**
+     * 占用的字节数：响应内容和响应头
+     * @return
+     */
+    public long getWeight() {
+        long weight = body == null ? 0 : body.limit();
+        for (Map.Entry<String,String> header : headerMap.entrySet()) {
+            weight += header.getKey().length() + header.getValue().length();
+        }
+        return weight + key.length();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 响应内容，没有内容时返回null
+     * @return 只读，每次返回新的视图
+     */
+    public ByteBuffer getBody() {
+        return body == null ? null : body.duplicate();
+    }
+
+    Map<String, String> getHeaderMap() {
+        return headerMap;
+    }
+
+    Map<String, String> getVaryMap() {
+        return varyMap;
+    }
+
+    String getCharset() {
+        return charset;
+    }
+
+    long getRequestTime() {
+        return requestTime;
+    }
+
+    long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * 使用新的响应内容，用于磁盘缓存加载和整理
+     * @param body
+     * @return
+     */
+    CacheEntry withBody(ByteBuffer body) {
+        return new CacheEntry(key, url, status, headerMap, body, charset, varyMap, requestTime, responseTime);
+    }
+
+    public String getETag() {
+        return headerMap.get("ETag");
+    }
+
+    public String getLastModified() {
+        return headerMap.get("Last-Modified");
+    }
+
+    public long getFreshnessMillis() {
+        return freshnessMillis;
+    }
+
+    /**
+     * 请求是否禁止缓存(Cache-Control: no-store)
+     * @param context
+     * @return
+     */
+    public static boolean isNoStore(WSRequestContext context) {
+        return new CacheControl(getRequestHeader(context, "Cache-Control")).contains(CacheControl.NO_STORE);
+    }
+
+    /**
+     * 请求的完整URL，包括GET，DELETE请求的参数，与Http实现发送的URL相同。用于按URL移除缓存
+     * @param context
+     * @return 参数编码失败时返回上下文的URL
+     */
+    public static String getRequestUrl(WSRequestContext context) {
+        try {
+            return WSHttpClient.getRequestUrl(context);
+        } catch (WSException e) {
+            return context.getUrl();
+        }
+    }
+
+    /**
+     * 请求头，名称不区分大小写
+     */
+    static String getRequestHeader(WSRequestContext context, String name) {
+        for (Map.Entry<String,String> header : context.getHeaderMap().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer toBuffer(Object body, String charset) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        if (body instanceof byte[]) {
+            return ByteBuffer.wrap(((byte[]) body).clone());
+        }
+        if (body instanceof File) {
+            RandomAccessFile file = new RandomAccessFile((File) body, "r");
+            try {
+                if (file.length() > Integer.MAX_VALUE) {
+                    throw new IOException("文件太大，不能缓存：" + body);
+                }
+                // 映射在关闭文件后仍然有效
+                return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                file.close();
+            }
+        }
+        String text = body.toString();
+        return ByteBuffer.wrap(StringUtils.isEmpty(charset) ? text.getBytes() : text.getBytes(charset));
+    }
+
+    private static File writeFile(File target, ByteBuffer buffer) throws IOException {
+        if (target == null) {
+            throw new IOException("响应类型为FILE时必须指定目标文件！");
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录：" + parent);
+        }
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+        return target;
+    }
+
+    private static long parseDate(String value, long defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            Date date = DateUtils.parseDate(value);
+            return date.getTime();
+        } catch (DateParseException e) {
+            // 无效的日期按已经过期处理
+            return 0;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
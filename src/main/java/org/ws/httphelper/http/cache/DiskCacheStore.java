@@ -0,0 +1,581 @@
+package org.ws.httphelper.http.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 磁盘响应缓存，重启后仍然有效。<br/>
+ * 响应追加写入内存映射的段文件(segment-00000001.dat，每个cache.SegmentBytes字节)，内存中保存key到记录的索引，启动时按顺序扫描段文件重建索引。<br/>
+ * 替换和删除只追加记录；有效记录超过cache.DiskMaxBytes时按淘汰策略淘汰；
+ * 最早的段文件一半以上是无效记录，或者段文件总大小超过cache.DiskMaxBytes两倍时整理：有效记录复制到当前段后删除文件。
+ * 只整理最早的段文件，删除记录不会在重启后失效。<br/>
+ * 读取不复制：返回的响应内容是段文件映射内存的只读视图。<br/>
+ * Created by gz on 16/03/05.
+ */
+public class DiskCacheStore {
+    protected static Log log = LogFactory.getLog(DiskCacheStore.class);
+
+    private static final int MAGIC = 0x57534331;
+    private static final byte TYPE_ENTRY = 1;
+    private static final byte TYPE_REMOVE = 2;
+    /**
+     * 记录头：magic和记录长度，内容写完后最后写入
+     */
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final File dir;
+    private final long maxBytes;
+    private final int segmentBytes;
+    private final EvictionPolicy evictionPolicy;
+    private final TreeMap<Integer,Segment> segmentMap = new TreeMap<Integer, Segment>();
+    private final Map<String,Record> index = new HashMap<String, Record>();
+    private Segment active;
+    private long liveBytes = 0;
+    private long evictionCount = 0;
+    private long compactionCount = 0;
+    private boolean closed = false;
+
+    /**
+     * 打开目录中的段文件，重建索引
+     * @param dir 缓存目录，不存在时创建
+     * @param maxBytes 有效记录的最大字节数
+     * @param segmentBytes 段文件大小，也是单个响应的最大字节数
+     * @param evictionPolicy 淘汰策略
+     * @throws IOException
+     */
+    public DiskCacheStore(File dir, long maxBytes, int segmentBytes, EvictionPolicy evictionPolicy) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录：" + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        this.evictionPolicy = evictionPolicy;
+        load();
+    }
+
+    /**
+     * 缓存的响应，响应内容是映射内存的视图
+     * @param key
+     * @return 没有时返回null
+     */
+    public synchronized CacheEntry get(String key) {
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+        evictionPolicy.onAccess(key);
+        return record.entry;
+    }
+
+    /**
+     * 追加保存，替换相同key的记录
+     * @param entry
+     * @return 超过段文件大小或者写入失败时返回false
+     */
+    public synchronized boolean put(CacheEntry entry) {
+        if (closed) {
+            return false;
+        }
+        try {
+            byte[] meta = encode(TYPE_ENTRY, entry);
+            ByteBuffer body = entry.getBody();
+            long length = HEADER_BYTES + meta.length + 4L + (body == null ? 0 : body.remaining());
+            if (length > segmentBytes) {
+                removeRecord(entry.getKey());
+                return false;
+            }
+            Segment segment = allocate((int) length);
+            int offset = segment.position;
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset + HEADER_BYTES);
+            buffer.put(meta);
+            buffer.putInt(body == null ? -1 : body.remaining());
+            int bodyOffset = buffer.position();
+            if (body != null) {
+                buffer.put(body);
+            }
+            commit(segment, offset, (int) length);
+            CacheEntry stored = entry.withBody(body == null ? null : slice(segment, bodyOffset, (int) length - (bodyOffset - offset)));
+            apply(entry.getKey(), new Record(segment, offset, (int) length, stored));
+            evictionPolicy.onInsert(entry.getKey(), length);
+            evict();
+            compact();
+            return true;
+        } catch (IOException e) {
+            log.warn("写入磁盘缓存失败：" + e);
+            return false;
+        }
+    }
+
+    /**
+     * 删除缓存
+     * @param key
+     */
+    public synchronized void remove(String key) {
+        if (removeRecord(key)) {
+            compact();
+        }
+    }
+
+    /**
+     * 删除URL的所有缓存
+     * @param url
+     */
+    public synchronized void invalidate(String url) {
+        List<String> keys = new ArrayList<String>();
+        for (Record record : index.values()) {
+            if (url != null && url.equals(record.entry.getUrl())) {
+                keys.add(record.entry.getKey());
+            }
+        }
+        for (String key : keys) {
+            removeRecord(key);
+        }
+        compact();
+    }
+
+    /**
+     * 删除所有段文件
+     */
+    public synchronized void clear() {
+        for (String key : index.keySet()) {
+            evictionPolicy.onRemove(key);
+        }
+        index.clear();
+        for (Segment segment : new ArrayList<Segment>(segmentMap.values())) {
+            deleteSegment(segment);
+        }
+        liveBytes = 0;
+        if (!closed) {
+            try {
+                active = createSegment(1);
+            } catch (IOException e) {
+                log.warn("创建磁盘缓存段文件失败：" + e);
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * 写入磁盘，关闭后不再保存
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segmentMap.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    public synchronized int getSize() {
+        return index.size();
+    }
+
+    /**
+     * 有效记录的字节数
+     * @return
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * 段文件已经使用的字节数，包括无效记录
+     * @return
+     */
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segmentMap.values()) {
+            used += segment.position;
+        }
+        return used;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segmentMap.size();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * 扫描所有段文件，后面的记录覆盖前面的记录
+     */
+    private void load() throws IOException {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                String id = file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length());
+                try {
+                    segmentMap.put(Integer.valueOf(id), new Segment(Integer.valueOf(id), file, map(file, file.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无效的段文件：" + file);
+                }
+            }
+        }
+        for (Segment segment : segmentMap.values()) {
+            scan(segment);
+        }
+        active = segmentMap.isEmpty() ? createSegment(1) : segmentMap.lastEntry().getValue();
+        if (!index.isEmpty()) {
+            log.info("加载磁盘缓存：" + dir + "，数量：" + index.size() + "，字节数：" + liveBytes);
+        }
+        evict();
+        compact();
+    }
+
+    /**
+     * 读取段文件中的记录，遇到不完整的记录时停止，后面的空间继续使用
+     */
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            int length = buffer.getInt(position + 4);
+            if (length <= HEADER_BYTES || position + length > buffer.capacity()) {
+                break;
+            }
+            try {
+                ByteBuffer record = buffer.duplicate();
+                record.position(position + HEADER_BYTES);
+                record.limit(position + length);
+                byte type = record.get();
+                String key = readString(record);
+                if (type == TYPE_REMOVE) {
+                    Record old = index.remove(key);
+                    if (old != null) {
+                        release(old);
+                        evictionPolicy.onRemove(key);
+                    }
+                } else {
+                    CacheEntry entry = decode(key, record, segment);
+                    apply(key, new Record(segment, position, length, entry));
+                    evictionPolicy.onInsert(key, length);
+                }
+            } catch (RuntimeException e) {
+                log.warn("磁盘缓存记录无效：" + segment.file + "，位置：" + position + "，" + e);
+                break;
+            }
+            position += length;
+        }
+        segment.position = position;
+    }
+
+    /**
+     * 更新索引和有效字节数
+     */
+    private void apply(String key, Record record) {
+        Record old = index.put(key, record);
+        if (old != null) {
+            release(old);
+        }
+        record.segment.liveBytes += record.length;
+        liveBytes += record.length;
+    }
+
+    private void release(Record record) {
+        record.segment.liveBytes -= record.length;
+        liveBytes -= record.length;
+    }
+
+    /**
+     * 追加删除记录
+     * @return key不存在时返回false
+     */
+    private boolean removeRecord(String key) {
+        Record old = index.get(key);
+        if (old == null) {
+            return false;
+        }
+        if (!closed) {
+            try {
+                byte[] meta = encode(TYPE_REMOVE, old.entry);
+                Segment segment = allocate(HEADER_BYTES + meta.length);
+                ByteBuffer buffer = segment.buffer.duplicate();
+                buffer.position(segment.position + HEADER_BYTES);
+                buffer.put(meta);
+                commit(segment, segment.position, HEADER_BYTES + meta.length);
+            } catch (IOException e) {
+                log.warn("写入磁盘缓存失败：" + e);
+            }
+        }
+        index.remove(key);
+        release(old);
+        evictionPolicy.onRemove(key);
+        return true;
+    }
+
+    private void evict() {
+        while (liveBytes > maxBytes) {
+            String victim = evictionPolicy.victim();
+            if (victim == null || !removeRecord(victim)) {
+                break;
+            }
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 整理最早的段文件
+     */
+    private void compact() {
+        while (!closed && segmentMap.size() > 1) {
+            Segment oldest = segmentMap.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+            if (oldest.liveBytes * 2 > oldest.position && getUsedBytes() <= maxBytes * 2) {
+                break;
+            }
+            try {
+                compact(oldest);
+            } catch (IOException e) {
+                log.warn("整理磁盘缓存失败：" + e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * 有效记录按原来的顺序复制到当前段，然后删除段文件。淘汰顺序不变
+     */
+    private void compact(Segment oldest) throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        for (Record record : index.values()) {
+            if (record.segment == oldest) {
+                records.add(record);
+            }
+        }
+        Collections.sort(records, new Comparator<Record>() {
+            @Override
+            public int compare(Record o1, Record o2) {
+                return o1.offset < o2.offset ? -1 : (o1.offset == o2.offset ? 0 : 1);
+            }
+        });
+        for (Record record : records) {
+            Segment segment = allocate(record.length);
+            int offset = segment.position;
+            ByteBuffer source = oldest.buffer.duplicate();
+            source.position(record.offset + HEADER_BYTES);
+            source.limit(record.offset + record.length);
+            ByteBuffer target = segment.buffer.duplicate();
+            target.position(offset + HEADER_BYTES);
+            target.put(source);
+            commit(segment, offset, record.length);
+            ByteBuffer body = record.entry.getBody();
+            int bodyLength = body == null ? 0 : body.remaining();
+            CacheEntry moved = record.entry.withBody(body == null ? null : slice(segment, offset + record.length - bodyLength, bodyLength));
+            apply(record.entry.getKey(), new Record(segment, offset, record.length, moved));
+        }
+        deleteSegment(oldest);
+        compactionCount++;
+        log.debug("整理磁盘缓存段文件：" + oldest.file + "，复制记录：" + records.size());
+    }
+
+    /**
+     * 当前段的空间不足时创建新的段
+     */
+    private Segment allocate(int length) throws IOException {
+        if (active.position + length > active.buffer.capacity()) {
+            active.buffer.force();
+            active = createSegment(active.id + 1);
+        }
+        return active;
+    }
+
+    /**
+     * 内容写完后写入记录头，记录才有效
+     */
+    private void commit(Segment segment, int offset, int length) {
+        segment.buffer.putInt(offset + 4, length);
+        segment.buffer.putInt(offset, MAGIC);
+        segment.position = offset + length;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        File file = new File(dir, String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = new Segment(id, file, map(file, segmentBytes));
+        segmentMap.put(id, segment);
+        return segment;
+    }
+
+    private void deleteSegment(Segment segment) {
+        segmentMap.remove(segment.id);
+        // 映射在回收前一直有效，已经返回的响应内容不受影响
+        if (!segment.file.delete()) {
+            log.warn("删除磁盘缓存段文件失败：" + segment.file);
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // 映射在关闭文件后仍然有效
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, Integer.MAX_VALUE));
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer slice(Segment segment, int offset, int length) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice();
+    }
+
+    /**
+     * 记录内容：类型，key，删除记录只有key；响应记录还有状态，URL，字符集，时间，响应头和Vary
+     */
+    private static byte[] encode(byte type, CacheEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        writeString(out, entry.getKey());
+        if (type == TYPE_ENTRY) {
+            out.writeInt(entry.getStatus());
+            writeString(out, entry.getUrl());
+            writeString(out, entry.getCharset());
+            out.writeLong(entry.getRequestTime());
+            out.writeLong(entry.getResponseTime());
+            writeMap(out, entry.getHeaderMap());
+            writeMap(out, entry.getVaryMap());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static CacheEntry decode(String key, ByteBuffer record, Segment segment) {
+        int status = record.getInt();
+        String url = readString(record);
+        String charset = readString(record);
+        long requestTime = record.getLong();
+        long responseTime = record.getLong();
+        Map<String,String> headerMap = readMap(record);
+        Map<String,String> varyMap = readMap(record);
+        int bodyLength = record.getInt();
+        ByteBuffer body = null;
+        if (bodyLength >= 0) {
+            if (bodyLength != record.remaining()) {
+                throw new IllegalStateException("响应内容长度错误：" + bodyLength);
+            }
+            body = slice(segment, record.position(), bodyLength);
+        }
+        return new CacheEntry(key, url, status, headerMap, body, charset, varyMap, requestTime, responseTime);
+    }
+
+    private static void writeMap(DataOutputStream out, Map<String,String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String,String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String,String> readMap(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        Map<String,String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(buffer), readString(buffer));
+        }
+        return map;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一个段文件
+     */
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        /**
+         * 下一个记录的位置
+         */
+        private int position = 0;
+        private long liveBytes = 0;
+
+        Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 一个有效记录的位置和解析后的响应
+     */
+    private static class Record {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final CacheEntry entry;
+
+        Record(Segment segment, int offset, int length, CacheEntry entry) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.ws.httphelper.http.cache;
+
+/**
+ * 缓存淘汰策略：超过最大字节数时选择淘汰的缓存。<br/>
+ * 所有方法由ResponseCache在持有锁时调用，实现不需要同步。<br/>
+ * 实现类需要有无参构造方法，通过配置文件cache.EvictionPolicy指定。<br/>
+ * Created by gz on 16/03/04.
+ */
+public interface EvictionPolicy {
+    /**
+     * 添加或者替换缓存
+     * @param key
+     * @param weight 字节数
+     */
+    void onInsert(String key, long weight);
+
+    /**
+     * 命中缓存
+     * @param key
+     */
+    void onAccess(String key);
+
+    /**
+     * 移除缓存
+     * @param key
+     */
+    void onRemove(String key);
+
+    /**
+     * 下一个淘汰的缓存
+     * @return 没有缓存时返回null
+     */
+    String victim();
+}
@@ -0,0 +1,33 @@
+package org.ws.httphelper.http.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 默认淘汰策略：淘汰最久没有使用的缓存。<br/>
+ * Created by gz on 16/03/04.
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+    private final LinkedHashMap<String,Long> accessOrder = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    @Override
+    public void onInsert(String key, long weight) {
+        accessOrder.put(key, weight);
+    }
+
+    @Override
+    public void onAccess(String key) {
+        accessOrder.get(key);
+    }
+
+    @Override
+    public void onRemove(String key) {
+        accessOrder.remove(key);
+    }
+
+    @Override
+    public String victim() {
+        Iterator<String> iterator = accessOrder.keySet().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+}
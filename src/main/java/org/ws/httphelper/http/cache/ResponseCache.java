@@ -0,0 +1,465 @@
+package org.ws.httphelper.http.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.FutureFunction;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.http.RequestCoalescer;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存中的响应缓存(RFC 7234)：缓存响应内容的字节，命中时重新生成响应，再由处理器解析。<br/>
+ * 新鲜的缓存直接返回，不发送请求；过期的缓存带If-None-Match/If-Modified-Since验证，304时返回缓存的内容。
+ * 条件请求头只添加到本次发送的上下文副本，不修改调用方的上下文。<br/>
+ * 只缓存GET请求，请求带Cache-Control: no-store或者已经设置了条件请求头时不使用缓存；
+ * POST，DELETE请求成功后移除相同URL(包括GET，DELETE参数的完整URL)的缓存。<br/>
+ * 按字节数限制大小(cache.MaxBytes，单个响应cache.MaxEntryBytes)，超过时按淘汰策略(cache.EvictionPolicy)淘汰。<br/>
+ * 配置了cache.DiskDir时，响应同时保存到磁盘缓存(DiskCacheStore)，内存中没有时从磁盘读取，重启后仍然有效；
+ * 下载文件(FILE)的响应也可以缓存，只保存在磁盘，命中时从映射的段文件直接写入目标文件。<br/>
+ * Created by gz on 16/03/04.
+ */
+public class ResponseCache {
+    protected static Log log = LogFactory.getLog(ResponseCache.class);
+
+    private final Map<String,CacheEntry> entryMap = new HashMap<String, CacheEntry>();
+    private final EvictionPolicy evictionPolicy;
+    private final DiskCacheStore diskStore;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long totalBytes = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 按配置文件创建
+     */
+    public ResponseCache() {
+        this(WSHttpHelperConfig.getInt(WSHttpHelperConstant.CACHE_MAX_BYTES, 64 * 1024 * 1024),
+                WSHttpHelperConfig.getInt(WSHttpHelperConstant.CACHE_MAX_ENTRY_BYTES, 1024 * 1024),
+                createEvictionPolicy(WSHttpHelperConfig.getValue(WSHttpHelperConstant.CACHE_EVICTION_POLICY)),
+                createDiskStore(WSHttpHelperConfig.getValue(WSHttpHelperConstant.CACHE_DISK_DIR)));
+    }
+
+    /**
+     * @param maxBytes 最大字节数
+     * @param maxEntryBytes 单个响应的最大字节数，超过时不缓存
+     * @param evictionPolicy 淘汰策略
+     */
+    public ResponseCache(long maxBytes, long maxEntryBytes, EvictionPolicy evictionPolicy) {
+        this(maxBytes, maxEntryBytes, evictionPolicy, null);
+    }
+
+    /**
+     * @param maxBytes 内存缓存的最大字节数
+     * @param maxEntryBytes 内存缓存单个响应的最大字节数，超过时只保存在磁盘
+     * @param evictionPolicy 内存缓存的淘汰策略
+     * @param diskStore 磁盘缓存，为null时只使用内存
+     */
+    public ResponseCache(long maxBytes, long maxEntryBytes, EvictionPolicy evictionPolicy, DiskCacheStore diskStore) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.evictionPolicy = evictionPolicy;
+        this.diskStore = diskStore;
+    }
+
+    /**
+     * 执行请求：新鲜的缓存直接返回，过期的缓存发送条件请求验证
+     * @param context
+     * @param request 发送请求，参数为本次发送使用的上下文；缓存命中时不调用
+     * @return
+     */
+    public WSFuture<ResponseResult> execute(final WSRequestContext context,
+                                            FutureFunction<WSRequestContext, WSFuture<ResponseResult>> request) {
+        final String key = diskStore != null ? RequestCoalescer.getCacheKey(context) : RequestCoalescer.getKey(context);
+        if (key == null) {
+            // 发送之前确定URL
+            String url = isUnsafe(context.getMethod()) ? CacheEntry.getRequestUrl(context) : null;
+            WSFuture<ResponseResult> response = call(request, context);
+            return url == null ? response : invalidateOnSuccess(url, response);
+        }
+        if (CacheEntry.isNoStore(context) || isConditional(context)) {
+            return call(request, context);
+        }
+        final long requestTime = System.currentTimeMillis();
+        final CacheEntry entry = get(key, context);
+        if (entry != null && entry.isFresh(requestTime, context)) {
+            hitCount.incrementAndGet();
+            try {
+                return WSFuture.succeeded(entry.toResult(context));
+            } catch (IOException e) {
+                return WSFuture.failed(e);
+            }
+        }
+        WSRequestContext attempt = context;
+        if (entry == null) {
+            missCount.incrementAndGet();
+        } else {
+            revalidationCount.incrementAndGet();
+            // 合并，对冲的请求同时读取调用方的请求头，条件请求头只加到副本
+            attempt = context.copy();
+            if (entry.getETag() != null) {
+                attempt.addHeader("If-None-Match", entry.getETag());
+            }
+            if (entry.getLastModified() != null) {
+                attempt.addHeader("If-Modified-Since", entry.getLastModified());
+            }
+        }
+        final WSFuture<ResponseResult> response = call(request, attempt);
+        final WSFuture<ResponseResult> result = new WSFuture<ResponseResult>();
+        response.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if (future.isSuccess()) {
+                    try {
+                        result.set(onResponse(key, context, entry, future.getNow(), requestTime));
+                    } catch (IOException e) {
+                        result.setException(e);
+                    }
+                } else if (future.isCancelled()) {
+                    result.cancel(false);
+                } else {
+                    result.setException(future.getCause());
+                }
+            }
+        });
+        result.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if (future.isCancelled()) {
+                    response.cancel(false);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 处理响应：304时更新缓存并返回缓存的内容，其他响应可以缓存时保存
+     */
+    private ResponseResult onResponse(String key, WSRequestContext context, CacheEntry entry,
+                                      ResponseResult response, long requestTime) throws IOException {
+        long responseTime = System.currentTimeMillis();
+        // 下载文件的响应只保存在磁盘
+        boolean memory = context.getResponseType() != ResponseType.FILE;
+        if (entry != null && response.getStatus() == 304) {
+            revalidatedCount.incrementAndGet();
+            CacheEntry updated = entry.revalidate(response, requestTime, responseTime);
+            put(updated, memory);
+            ResponseResult result = updated.toResult(context);
+            result.setWasteTime(response.getWasteTime());
+            return result;
+        }
+        CacheEntry created = CacheEntry.create(key, context, response, requestTime, responseTime);
+        if (created != null) {
+            put(created, memory);
+        } else if (entry != null) {
+            remove(key);
+        }
+        return response;
+    }
+
+    /**
+     * 缓存的响应：先查找内存，再查找磁盘。Vary指定的请求头不同时返回null
+     */
+    private CacheEntry get(String key, WSRequestContext context) {
+        synchronized (this) {
+            CacheEntry entry = entryMap.get(key);
+            if (entry != null) {
+                if (!entry.matches(context)) {
+                    return null;
+                }
+                evictionPolicy.onAccess(key);
+                return entry;
+            }
+        }
+        CacheEntry entry = diskStore == null ? null : diskStore.get(key);
+        if (entry == null || !entry.matches(context)) {
+            return null;
+        }
+        diskHitCount.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * 保存缓存到内存和磁盘，超过最大字节数时淘汰
+     * @param entry
+     */
+    public void put(CacheEntry entry) {
+        put(entry, true);
+    }
+
+    /**
+     * @param entry
+     * @param memory 是否保存到内存，false时只保存到磁盘
+     */
+    private void put(CacheEntry entry, boolean memory) {
+        if (diskStore != null) {
+            diskStore.put(entry);
+        }
+        long weight = entry.getWeight();
+        if (!memory || weight > maxEntryBytes) {
+            removeMemory(entry.getKey());
+            storeCount.incrementAndGet();
+            return;
+        }
+        synchronized (this) {
+            CacheEntry old = entryMap.put(entry.getKey(), entry);
+            if (old != null) {
+                totalBytes -= old.getWeight();
+            }
+            totalBytes += weight;
+            evictionPolicy.onInsert(entry.getKey(), weight);
+            while (totalBytes > maxBytes) {
+                String victim = evictionPolicy.victim();
+                if (victim == null) {
+                    break;
+                }
+                removeEntry(victim);
+                evictionCount.incrementAndGet();
+            }
+        }
+        storeCount.incrementAndGet();
+    }
+
+    /**
+     * 移除缓存
+     * @param key
+     */
+    public void remove(String key) {
+        removeMemory(key);
+        if (diskStore != null) {
+            diskStore.remove(key);
+        }
+    }
+
+    /**
+     * 移除URL的所有缓存
+     * @param url
+     */
+    public void invalidate(String url) {
+        synchronized (this) {
+            List<String> keys = new ArrayList<String>();
+            for (CacheEntry entry : entryMap.values()) {
+                if (StringUtils.equals(url, entry.getUrl())) {
+                    keys.add(entry.getKey());
+                }
+            }
+            for (String key : keys) {
+                removeEntry(key);
+            }
+        }
+        if (diskStore != null) {
+            diskStore.invalidate(url);
+        }
+    }
+
+    /**
+     * 清空缓存，包括磁盘缓存
+     */
+    public void clear() {
+        synchronized (this) {
+            Iterator<String> iterator = new ArrayList<String>(entryMap.keySet()).iterator();
+            while (iterator.hasNext()) {
+                removeEntry(iterator.next());
+            }
+        }
+        if (diskStore != null) {
+            diskStore.clear();
+        }
+    }
+
+    /**
+     * 关闭磁盘缓存，写入磁盘
+     */
+    public void close() {
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
+
+    private synchronized void removeMemory(String key) {
+        removeEntry(key);
+    }
+
+    private void removeEntry(String key) {
+        CacheEntry entry = entryMap.remove(key);
+        evictionPolicy.onRemove(key);
+        if (entry != null) {
+            totalBytes -= entry.getWeight();
+        }
+    }
+
+    /**
+     * 请求成功后移除URL的缓存
+     * @return 移除之后才结束，调用方之后的GET请求不会读到旧的缓存
+     */
+    private WSFuture<ResponseResult> invalidateOnSuccess(final String url, final WSFuture<ResponseResult> response) {
+        final WSFuture<ResponseResult> result = new WSFuture<ResponseResult>();
+        response.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if (future.isSuccess()) {
+                    if (future.getNow().getStatus() >= 200 && future.getNow().getStatus() < 400) {
+                        invalidate(url);
+                    }
+                    result.set(future.getNow());
+                } else if (future.isCancelled()) {
+                    result.cancel(false);
+                } else {
+                    result.setException(future.getCause());
+                }
+            }
+        });
+        result.addListener(new FutureListener<ResponseResult>() {
+            @Override
+            public void operationComplete(WSFuture<ResponseResult> future) {
+                if (future.isCancelled()) {
+                    response.cancel(false);
+                }
+            }
+        });
+        return result;
+    }
+
+    private static WSFuture<ResponseResult> call(FutureFunction<WSRequestContext, WSFuture<ResponseResult>> request,
+                                                 WSRequestContext context) {
+        try {
+            return request.apply(context);
+        } catch (Throwable e) {
+            return WSFuture.failed(e);
+        }
+    }
+
+    private static boolean isUnsafe(MethodType method) {
+        return method == MethodType.POST || method == MethodType.DELETE;
+    }
+
+    /**
+     * 调用方自己设置了条件请求头，由调用方处理304
+     */
+    private static boolean isConditional(WSRequestContext context) {
+        return CacheEntry.getRequestHeader(context, "If-None-Match") != null
+                || CacheEntry.getRequestHeader(context, "If-Modified-Since") != null;
+    }
+
+    /**
+     * 按配置文件创建磁盘缓存
+     * @param dir 为空时不使用磁盘缓存
+     * @return
+     */
+    private static DiskCacheStore createDiskStore(String dir) {
+        if (StringUtils.isBlank(dir)) {
+            return null;
+        }
+        try {
+            return new DiskCacheStore(new File(dir.trim()),
+                    WSHttpHelperConfig.getLong(WSHttpHelperConstant.CACHE_DISK_MAX_BYTES, 1024L * 1024 * 1024),
+                    WSHttpHelperConfig.getInt(WSHttpHelperConstant.CACHE_SEGMENT_BYTES, 16 * 1024 * 1024),
+                    createEvictionPolicy(WSHttpHelperConfig.getValue(WSHttpHelperConstant.CACHE_EVICTION_POLICY)));
+        } catch (IOException e) {
+            log.warn("磁盘缓存[" + dir + "]不可用，只使用内存：" + e);
+            return null;
+        }
+    }
+
+    private static EvictionPolicy createEvictionPolicy(String className) {
+        if (StringUtils.isNotBlank(className)) {
+            try {
+                return (EvictionPolicy) Class.forName(className.trim()).newInstance();
+            } catch (Exception e) {
+                log.warn("缓存淘汰策略[" + className + "]加载失败，使用LRU：" + e);
+            }
+        }
+        return new LruEvictionPolicy();
+    }
+
+    public synchronized int getSize() {
+        return entryMap.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 直接返回新鲜缓存的请求数
+     * @return
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 从磁盘读取缓存的次数，包括直接返回和需要验证的缓存
+     * @return
+     */
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /**
+     * 磁盘缓存
+     * @return 没有配置时返回null
+     */
+    public DiskCacheStore getDiskStore() {
+        return diskStore;
+    }
+
+    /**
+     * 没有缓存的请求数
+     * @return
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 缓存过期后发送条件请求的次数
+     * @return
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * 条件请求返回304，使用缓存内容的次数
+     * @return
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    public long getStoreCount() {
+        return storeCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
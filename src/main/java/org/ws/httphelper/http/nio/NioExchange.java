@@ -0,0 +1,127 @@
+package org.ws.httphelper.http.nio;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.reactor.SessionRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.http.WSHttpClient;
+import org.ws.httphelper.model.ResponseResult;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次非阻塞请求：保存请求、目标地址和等待结果的Future。<br/>
+ * 由连接在I/O线程中发送，响应解析完成后设置结果。<br/>
+ * Created by gz on 16/02/03.
+ */
+public class NioExchange extends WSFuture<ResponseResult> {
+    private final WSHttpClient client;
+    private final HttpRequest request;
+    private final HttpHost target;
+    private final long beginTime = System.currentTimeMillis();
+    private volatile boolean submitted = false;
+    private volatile boolean retried = false;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile SessionRequest sessionRequest;
+    private volatile NHttpConnection connection;
+
+    NioExchange(WSHttpClient client, HttpRequest request, HttpHost target) {
+        this.client = client;
+        this.request = request;
+        this.target = target;
+    }
+
+    public HttpHost getTarget() {
+        return target;
+    }
+
+    public boolean isSecure() {
+        return "https".equalsIgnoreCase(target.getSchemeName());
+    }
+
+    /**
+     * 获取待发送的请求，只发送一次，重发时除外
+     * @return 已经发送过时返回null
+     */
+    HttpRequest submit() {
+        if (submitted || isDone()) {
+            return null;
+        }
+        submitted = true;
+        return request;
+    }
+
+    /**
+     * 准备在新连接上重发，只允许一次。已经发送的带请求体的请求不重发
+     * @return 可以重发时返回true
+     */
+    boolean retry() {
+        if (retried || isDone() || (submitted && request instanceof HttpEntityEnclosingRequest)) {
+            return false;
+        }
+        retried = true;
+        submitted = false;
+        connection = null;
+        return true;
+    }
+
+    /**
+     * 解析响应，在I/O线程中执行
+     * @param response
+     */
+    void complete(HttpResponse response) {
+        ResponseResult result = new ResponseResult();
+        try {
+            client.readResponse(response, beginTime, result);
+            set(result);
+        } catch (Exception e) {
+            setException(e);
+        }
+    }
+
+    void fail(Throwable cause) {
+        setException(cause != null ? cause : new IOException("连接已关闭，没有收到响应"));
+    }
+
+    /**
+     * 标记请求结束，只有第一次调用返回true
+     * @return
+     */
+    boolean finish() {
+        return finished.compareAndSet(false, true);
+    }
+
+    void setSessionRequest(SessionRequest sessionRequest) {
+        this.sessionRequest = sessionRequest;
+    }
+
+    void setConnection(NHttpConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 取消请求：未建立连接时取消连接，已建立连接时直接关闭连接
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+            return false;
+        }
+        SessionRequest sr = this.sessionRequest;
+        if (sr != null && !sr.isCompleted()) {
+            sr.cancel();
+        }
+        NHttpConnection conn = this.connection;
+        if (conn != null) {
+            try {
+                conn.shutdown();
+            } catch (IOException ignore) {
+            }
+        }
+        return true;
+    }
+}
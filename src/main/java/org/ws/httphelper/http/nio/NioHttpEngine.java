@@ -0,0 +1,656 @@
+package org.ws.httphelper.http.nio;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.nio.DefaultClientIOEventDispatch;
+import org.apache.http.impl.nio.SSLClientIOEventDispatch;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.SSLIOSessionHandler;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.protocol.BufferingHttpClientHandler;
+import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.HttpRequestExecutionHandler;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.SessionRequest;
+import org.apache.http.nio.reactor.SessionRequestCallback;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpProcessor;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.RequestConnControl;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestExpectContinue;
+import org.apache.http.protocol.RequestTargetHost;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.WSHttpClient;
+import org.ws.httphelper.http.WSSSLSocketFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于httpcore-nio的非阻塞Http引擎。<br/>
+ * 少量I/O线程(配置nio.IoThreads)通过Selector处理所有连接，等待响应期间不占用线程，适合大量并发的慢请求。<br/>
+ * 请求和响应解析复用WSHttpClient，结果通过WSFuture返回。<br/>
+ * 响应完成后可以保持的连接按目标地址放入空闲列表(配置nio.MaxIdlePerRoute)，后续请求优先复用，空闲超过http.SocketTimeout后关闭。<br/>
+ * 复用的连接在收到响应前被服务端关闭时，未发送或不带请求体的请求在新连接上重发一次。<br/>
+ * STREAM和FILE响应类型需要阻塞读取，不支持。<br/>
+ * Created by gz on 16/02/03.
+ */
+public class NioHttpEngine implements HttpTransport {
+    protected static Log log = LogFactory.getLog(NioHttpEngine.class);
+
+    private static NioHttpEngine _instance = new NioHttpEngine();
+
+    public static NioHttpEngine getInstance(){
+        return _instance;
+    }
+
+    private volatile DefaultConnectingIOReactor ioReactor=null;
+    private Thread reactorThread=null;
+    private int connectTimeout;
+    private int maxIdlePerRoute;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger connectCount = new AtomicInteger();
+    private final ConnectionReuseStrategy reuseStrategy = new DefaultConnectionReuseStrategy();
+    /**
+     * 空闲连接：按目标地址划分，后放入的先取出
+     */
+    private final Map<HttpHost,LinkedList<NioConnection>> idleConnections = new HashMap<HttpHost, LinkedList<NioConnection>>();
+
+    /**
+     * 启动I/O线程，已经启动时直接返回
+     * @throws WSException
+     */
+    public synchronized void start()throws WSException{
+        if(ioReactor!=null){
+            return;
+        }
+        connectTimeout = WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_CONNECTION_TIMEOUT);
+        maxIdlePerRoute = WSHttpHelperConfig.getInt(WSHttpHelperConstant.NIO_MAX_IDLE_PER_ROUTE, 20);
+        HttpParams params = new BasicHttpParams();
+        params.setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, connectTimeout);
+        params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_SOCKET_TIMEOUT));
+        params.setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, WSHttpHelperConfig.getInt(WSHttpHelperConstant.BUFFER_CHUNK_SIZE, 8192));
+        params.setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true);
+
+        BasicHttpProcessor httpProcessor = new BasicHttpProcessor();
+        httpProcessor.addInterceptor(new RequestContent());
+        httpProcessor.addInterceptor(new RequestTargetHost());
+        httpProcessor.addInterceptor(new RequestConnControl());
+        httpProcessor.addInterceptor(new RequestExpectContinue());
+
+        BufferingHttpClientHandler handler = new BufferingHttpClientHandler(httpProcessor,
+                new ExchangeExecutionHandler(), reuseStrategy, params);
+        handler.setEventListener(new ExchangeEventListener());
+
+        WSSSLSocketFactory sslSocketFactory = WSSSLSocketFactory.getInstance();
+        final IOEventDispatch dispatch = new SchemeIOEventDispatch(
+                new DefaultClientIOEventDispatch(handler, params),
+                new SSLClientIOEventDispatch(handler, sslSocketFactory.getSSLContext(),
+                        new HostnameVerifier(sslSocketFactory.isTrustAll()), params));
+        final DefaultConnectingIOReactor reactor;
+        try {
+            reactor = new DefaultConnectingIOReactor(
+                    WSHttpHelperConfig.getInt(WSHttpHelperConstant.NIO_IO_THREADS, 2), params);
+        } catch (IOException e) {
+            throw new WSException(e);
+        }
+        reactorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reactor.execute(dispatch);
+                } catch (InterruptedIOException ignore) {
+                } catch (IOException e) {
+                    log.error("I/O线程异常退出："+e.getMessage(), e);
+                }
+            }
+        }, "WSHttpHelper-NioReactor");
+        reactorThread.setDaemon(true);
+        reactorThread.start();
+        this.ioReactor=reactor;
+        log.debug("非阻塞引擎启动");
+    }
+
+    /**
+     * 关闭I/O线程和所有连接，未完成的请求以异常结束
+     */
+    @Override
+    public synchronized void close(){
+        if(ioReactor==null){
+            return;
+        }
+        try {
+            ioReactor.shutdown();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+        ioReactor=null;
+        reactorThread=null;
+        synchronized (idleConnections){
+            idleConnections.clear();
+        }
+        log.debug("非阻塞引擎关闭");
+    }
+
+    public boolean isRunning(){
+        return ioReactor!=null;
+    }
+
+    /**
+     * 正在执行的请求数
+     * @return
+     */
+    public int getInFlight(){
+        return inFlight.get();
+    }
+
+    /**
+     * 建立过的连接数
+     * @return
+     */
+    public int getConnectCount(){
+        return connectCount.get();
+    }
+
+    /**
+     * 空闲连接数
+     * @return
+     */
+    public int getIdleCount(){
+        int count = 0;
+        synchronized (idleConnections){
+            for(LinkedList<NioConnection> list:idleConnections.values()){
+                count += list.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String getName() {
+        return WSHttpHelperConstant.TRANSPORT_NIO;
+    }
+
+    @Override
+    public boolean supports(WSRequestContext context) {
+        return context.getResponseType()!=ResponseType.STREAM && context.getResponseType()!=ResponseType.FILE;
+    }
+
+    @Override
+    public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+        return execute(context);
+    }
+
+    /**
+     * 发起请求，立即返回，不阻塞调用线程
+     * @param context
+     * @return 响应完成后设置结果的Future
+     * @throws WSException
+     */
+    public WSFuture<ResponseResult> execute(WSRequestContext context)throws WSException{
+        if(context==null){
+            throw new WSException("没有请求context！");
+        }
+        DefaultConnectingIOReactor reactor=this.ioReactor;
+        if(reactor==null){
+            start();
+            reactor=this.ioReactor;
+        }
+        WSHttpClient client = new WSHttpClient(context);
+        HttpRequestBase httpRequest = client.createHttpRequest();
+        log.debug(context);
+        URI uri = httpRequest.getURI();
+        String scheme = uri.getScheme()==null?"http":uri.getScheme();
+        int port = uri.getPort();
+        if(port<0){
+            port = "https".equalsIgnoreCase(scheme)?443:80;
+        }
+        HttpHost target = new HttpHost(uri.getHost(), port, scheme);
+        final NioExchange exchange = new NioExchange(client, toNioRequest(httpRequest, uri), target);
+        inFlight.incrementAndGet();
+        NioConnection connection = acquire(target);
+        if(connection==null){
+            connect(reactor, exchange);
+        }
+        else{
+            exchange.setConnection(connection.conn);
+            connection.exchange.set(exchange);
+            if(connection.closed && connection.exchange.compareAndSet(exchange, null)){
+                // 取出后连接已经关闭，I/O线程没有取得请求
+                connect(reactor, exchange);
+            }
+            else{
+                connection.conn.requestOutput();
+            }
+        }
+        return exchange;
+    }
+
+    /**
+     * 为请求建立新连接
+     * @param reactor
+     * @param exchange
+     */
+    private void connect(DefaultConnectingIOReactor reactor,NioExchange exchange){
+        HttpHost target = exchange.getTarget();
+        NioConnection connection = new NioConnection(target);
+        connection.exchange.set(exchange);
+        connectCount.incrementAndGet();
+        SessionRequest sessionRequest = reactor.connect(new InetSocketAddress(target.getHostName(), target.getPort()),
+                null, connection, new ConnectCallback());
+        sessionRequest.setConnectTimeout(connectTimeout);
+        exchange.setSessionRequest(sessionRequest);
+    }
+
+    /**
+     * 取出目标地址的空闲连接
+     * @param target
+     * @return 没有可用的空闲连接时返回null
+     */
+    private NioConnection acquire(HttpHost target){
+        synchronized (idleConnections){
+            LinkedList<NioConnection> list = idleConnections.get(target);
+            while(list!=null && !list.isEmpty()){
+                NioConnection connection = list.removeFirst();
+                if(!connection.closed && connection.conn.isOpen()){
+                    return connection;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放回空闲连接
+     * @param connection
+     * @return 空闲连接已满或者引擎已经关闭时返回false
+     */
+    private boolean release(NioConnection connection){
+        synchronized (idleConnections){
+            if(ioReactor==null){
+                return false;
+            }
+            LinkedList<NioConnection> list = idleConnections.get(connection.target);
+            if(list==null){
+                list = new LinkedList<NioConnection>();
+                idleConnections.put(connection.target, list);
+            }
+            if(list.size()>=maxIdlePerRoute){
+                return false;
+            }
+            list.addFirst(connection);
+            return true;
+        }
+    }
+
+    /**
+     * 连接已经关闭：从空闲连接中移除，结束连接上未完成的请求。<br/>
+     * 复用的连接可能已经被服务端关闭，请求可以重发时使用新连接重发一次
+     * @param connection
+     * @param cause 为空时表示连接关闭
+     */
+    private void connectionLost(NioConnection connection,Throwable cause){
+        connection.closed = true;
+        synchronized (idleConnections){
+            LinkedList<NioConnection> list = idleConnections.get(connection.target);
+            if(list!=null){
+                list.remove(connection);
+            }
+        }
+        NioExchange exchange = connection.exchange.getAndSet(null);
+        if(exchange==null){
+            return;
+        }
+        DefaultConnectingIOReactor reactor = this.ioReactor;
+        if(connection.served>0 && reactor!=null && exchange.retry()){
+            log.debug("复用的连接已关闭，使用新连接重发："+exchange.getTarget());
+            connect(reactor, exchange);
+            return;
+        }
+        finish(exchange);
+        exchange.fail(cause);
+    }
+
+    /**
+     * 连接超时或者协议错误：结束请求，不重发
+     * @param conn
+     * @param cause
+     */
+    private void connectionFailed(NHttpConnection conn,Throwable cause){
+        NioConnection connection = getConnection(conn);
+        if(connection==null){
+            return;
+        }
+        connection.closed = true;
+        NioExchange exchange = connection.exchange.getAndSet(null);
+        if(exchange!=null){
+            finish(exchange);
+            exchange.fail(cause);
+        }
+    }
+
+    /**
+     * 转换为相对路径的请求，非重复读取的请求体(文件上传)先缓存到内存
+     * @param httpRequest
+     * @param uri
+     * @return
+     * @throws WSException
+     */
+    private HttpRequest toNioRequest(HttpRequestBase httpRequest,URI uri)throws WSException{
+        String path = uri.getRawPath();
+        if(path==null || path.length()==0){
+            path="/";
+        }
+        if(uri.getRawQuery()!=null){
+            path += "?" + uri.getRawQuery();
+        }
+        String method = httpRequest.getMethod();
+        HttpRequest request;
+        HttpEntity entity = httpRequest instanceof HttpEntityEnclosingRequest
+                ? ((HttpEntityEnclosingRequest) httpRequest).getEntity() : null;
+        if(entity!=null){
+            BasicHttpEntityEnclosingRequest enclosingRequest = new BasicHttpEntityEnclosingRequest(method, path, HttpVersion.HTTP_1_1);
+            enclosingRequest.setEntity(bufferEntity(entity));
+            request = enclosingRequest;
+        }
+        else{
+            request = new BasicHttpRequest(method, path, HttpVersion.HTTP_1_1);
+        }
+        request.setHeaders(httpRequest.getAllHeaders());
+        return request;
+    }
+
+    private HttpEntity bufferEntity(HttpEntity entity)throws WSException{
+        if(entity instanceof StringEntity || entity instanceof ByteArrayEntity){
+            return entity;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            ByteArrayEntity buffered = new ByteArrayEntity(out.toByteArray());
+            buffered.setContentType(entity.getContentType());
+            return buffered;
+        } catch (IOException e) {
+            throw new WSException(e);
+        }
+    }
+
+    /**
+     * 请求结束，在设置结果之前调用，保证取得结果时不再计入正在执行的请求
+     * @param exchange
+     */
+    private void finish(NioExchange exchange){
+        if(exchange!=null && exchange.finish()){
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static NioConnection getConnection(NHttpConnection conn){
+        return conn==null ? null : (NioConnection) conn.getContext().getAttribute(ExchangeExecutionHandler.CONNECTION);
+    }
+
+    /**
+     * 一个连接：作为连接的附件，保存目标地址和正在执行的请求
+     */
+    private static class NioConnection{
+        final HttpHost target;
+        final AtomicReference<NioExchange> exchange = new AtomicReference<NioExchange>();
+        volatile NHttpConnection conn;
+        volatile boolean closed = false;
+        /**
+         * 已经完成的请求数，只在I/O线程中修改
+         */
+        volatile int served = 0;
+
+        NioConnection(HttpHost target){
+            this.target=target;
+        }
+
+        boolean isSecure(){
+            return "https".equalsIgnoreCase(target.getSchemeName());
+        }
+    }
+
+    /**
+     * 请求的发送和响应的处理，在I/O线程中执行
+     */
+    private class ExchangeExecutionHandler implements HttpRequestExecutionHandler{
+        static final String CONNECTION = "ws.nio.connection";
+
+        @Override
+        public void initalizeContext(HttpContext context, Object attachment) {
+            NioConnection connection = (NioConnection) attachment;
+            context.setAttribute(CONNECTION, connection);
+            context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, connection.target);
+            Object conn = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+            if(conn instanceof NHttpConnection){
+                connection.conn = (NHttpConnection) conn;
+                NioExchange exchange = connection.exchange.get();
+                if(exchange!=null){
+                    exchange.setConnection((NHttpConnection) conn);
+                }
+            }
+        }
+
+        @Override
+        public HttpRequest submitRequest(HttpContext context) {
+            NioConnection connection = (NioConnection) context.getAttribute(CONNECTION);
+            NioExchange exchange = connection==null ? null : connection.exchange.get();
+            return exchange==null ? null : exchange.submit();
+        }
+
+        @Override
+        public void handleResponse(HttpResponse response, HttpContext context) throws IOException {
+            NioConnection connection = (NioConnection) context.getAttribute(CONNECTION);
+            NioExchange exchange = connection==null ? null : connection.exchange.getAndSet(null);
+            if(exchange==null){
+                return;
+            }
+            connection.served++;
+            // 先放回空闲连接，取得结果后的请求可以复用
+            if(!connection.closed && connection.conn.isOpen() && reuseStrategy.keepAlive(response, context)){
+                if(!release(connection)){
+                    connection.conn.close();
+                }
+            }
+            finish(exchange);
+            exchange.complete(response);
+        }
+
+        @Override
+        public void finalizeContext(HttpContext context) {
+            NioConnection connection = (NioConnection) context.removeAttribute(CONNECTION);
+            if(connection!=null){
+                // 连接关闭时仍未收到响应
+                connectionLost(connection, null);
+            }
+        }
+    }
+
+    private class ExchangeEventListener implements EventListener{
+        @Override
+        public void fatalIOException(IOException ex, NHttpConnection conn) {
+            NioConnection connection = getConnection(conn);
+            if(connection!=null){
+                connectionLost(connection, ex);
+            }
+        }
+
+        @Override
+        public void fatalProtocolException(HttpException ex, NHttpConnection conn) {
+            connectionFailed(conn, ex);
+        }
+
+        @Override
+        public void connectionOpen(NHttpConnection conn) {
+        }
+
+        @Override
+        public void connectionClosed(NHttpConnection conn) {
+        }
+
+        @Override
+        public void connectionTimeout(NHttpConnection conn) {
+            connectionFailed(conn, new SocketTimeoutException("读取响应超时"));
+        }
+    }
+
+    /**
+     * 建立连接失败时结束请求
+     */
+    private class ConnectCallback implements SessionRequestCallback{
+        @Override
+        public void completed(SessionRequest request) {
+        }
+
+        @Override
+        public void failed(SessionRequest request) {
+            NioExchange exchange = take(request);
+            if(exchange!=null){
+                finish(exchange);
+                exchange.fail(request.getException());
+            }
+        }
+
+        @Override
+        public void timeout(SessionRequest request) {
+            NioExchange exchange = take(request);
+            if(exchange!=null){
+                finish(exchange);
+                exchange.fail(new ConnectTimeoutException("连接超时："+exchange.getTarget()));
+            }
+        }
+
+        @Override
+        public void cancelled(SessionRequest request) {
+            NioExchange exchange = take(request);
+            if(exchange!=null){
+                finish(exchange);
+                exchange.cancel(false);
+            }
+        }
+
+        private NioExchange take(SessionRequest request){
+            NioConnection connection = (NioConnection) request.getAttachment();
+            connection.closed = true;
+            return connection.exchange.getAndSet(null);
+        }
+    }
+
+    /**
+     * 根据请求的协议选择普通连接或SSL连接
+     */
+    private static class SchemeIOEventDispatch implements IOEventDispatch{
+        private final IOEventDispatch plain;
+        private final IOEventDispatch ssl;
+
+        SchemeIOEventDispatch(IOEventDispatch plain,IOEventDispatch ssl){
+            this.plain=plain;
+            this.ssl=ssl;
+        }
+
+        private IOEventDispatch select(IOSession session){
+            Object attachment = session.getAttribute(IOSession.ATTACHMENT_KEY);
+            if(attachment instanceof NioConnection && ((NioConnection) attachment).isSecure()){
+                return ssl;
+            }
+            return plain;
+        }
+
+        @Override
+        public void connected(IOSession session) {
+            select(session).connected(session);
+        }
+
+        @Override
+        public void inputReady(IOSession session) {
+            select(session).inputReady(session);
+        }
+
+        @Override
+        public void outputReady(IOSession session) {
+            select(session).outputReady(session);
+        }
+
+        @Override
+        public void timeout(IOSession session) {
+            select(session).timeout(session);
+        }
+
+        @Override
+        public void disconnected(IOSession session) {
+            select(session).disconnected(session);
+        }
+    }
+
+    /**
+     * SSL握手完成后校验主机名，与阻塞实现使用相同的校验规则
+     */
+    private static class HostnameVerifier implements SSLIOSessionHandler{
+        private final boolean trustAll;
+
+        HostnameVerifier(boolean trustAll){
+            this.trustAll=trustAll;
+        }
+
+        @Override
+        public void initalize(SSLEngine sslengine, HttpParams params) throws SSLException {
+        }
+
+        @Override
+        public void verify(SocketAddress remoteAddress, SSLSession session) throws SSLException {
+            if(trustAll){
+                return;
+            }
+            Certificate[] certs = session.getPeerCertificates();
+            if(certs==null || certs.length==0 || !(certs[0] instanceof X509Certificate)){
+                throw new SSLException("服务端没有提供证书");
+            }
+            String host = ((InetSocketAddress) remoteAddress).getHostName();
+            WSSSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER.verify(host, (X509Certificate) certs[0]);
+        }
+    }
+}
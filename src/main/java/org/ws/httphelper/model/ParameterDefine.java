@@ -2,8 +2,12 @@ package org.ws.httphelper.model;
 
 import org.ws.httphelper.annotation.Parameter;
 
+import java.util.regex.Pattern;
+
 /**
- * 参数定义
+ * 参数定义<br/>
+ * 请求描述(RequestDescriptor)中的参数定义由所有请求共享，创建后设为只读，修改时抛出UnsupportedOperationException；
+ * 需要修改时使用copy()。
  * Created by gz on 15/11/29.
  */
 public class ParameterDefine {
@@ -14,6 +18,11 @@ public class ParameterDefine {
     private boolean required;
     private String example;
     private String validateRegex;
+    /**
+     * 编译后的正则，设置正则时编译
+     */
+    private Pattern validatePattern;
+    private boolean readOnly;
 
     public ParameterDefine(){}
     public ParameterDefine(String name){
@@ -25,6 +34,7 @@ public class ParameterDefine {
     }
 
     public void setName(String name) {
+        checkWritable();
         this.name = name;
     }
 
@@ -33,6 +43,7 @@ public class ParameterDefine {
     }
 
     public void setDescription(String description) {
+        checkWritable();
         this.description = description;
     }
 
@@ -41,6 +52,7 @@ public class ParameterDefine {
     }
 
     public void setDefaultValue(String defaultValue) {
+        checkWritable();
         this.defaultValue = defaultValue;
     }
 
@@ -49,6 +61,7 @@ public class ParameterDefine {
     }
 
     public void setType(Parameter.Type type) {
+        checkWritable();
         this.type = type;
     }
 
@@ -57,6 +70,7 @@ public class ParameterDefine {
     }
 
     public void setRequired(boolean required) {
+        checkWritable();
         this.required = required;
     }
 
@@ -65,6 +79,7 @@ public class ParameterDefine {
     }
 
     public void setExample(String example) {
+        checkWritable();
         this.example = example;
     }
 
@@ -72,7 +87,58 @@ public class ParameterDefine {
         return validateRegex;
     }
 
+    /**
+     * 设置验证正则，同时编译，验证时不再编译
+     * @param validateRegex
+     * @throws java.util.regex.PatternSyntaxException 正则格式错误
+     */
     public void setValidateRegex(String validateRegex) {
+        checkWritable();
         this.validateRegex = validateRegex;
+        this.validatePattern = validateRegex != null && validateRegex.trim().length() > 0
+                ? Pattern.compile(validateRegex) : null;
+    }
+
+    /**
+     * 编译后的验证正则
+     * @return 没有正则时返回null
+     */
+    public Pattern getValidatePattern() {
+        return validatePattern;
+    }
+
+    /**
+     * 设为只读，之后不能再修改
+     * @return
+     */
+    public ParameterDefine setReadOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * 复制为可以修改的参数定义，编译后的正则直接使用
+     * @return
+     */
+    public ParameterDefine copy() {
+        ParameterDefine copy = new ParameterDefine(name);
+        copy.description = description;
+        copy.defaultValue = defaultValue;
+        copy.type = type;
+        copy.required = required;
+        copy.example = example;
+        copy.validateRegex = validateRegex;
+        copy.validatePattern = validatePattern;
+        return copy;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("参数[" + name + "]由请求描述共享，不能修改，请使用copy()");
+        }
     }
 }
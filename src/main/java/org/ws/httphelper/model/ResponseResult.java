@@ -1,5 +1,8 @@
 package org.ws.httphelper.model;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * 请求结果
  */
@@ -7,6 +10,18 @@ public class ResponseResult {
 	private Object body=null;
 	private int status=-1;
 	private long wasteTime=0;
+	/**
+	 * 响应内容字节数，BYTE_ARRAY和FILE类型有效
+	 */
+	private long byteCount=-1;
+	/**
+	 * 响应内容传输时间(毫秒)，BYTE_ARRAY和FILE类型有效
+	 */
+	private long transferTime=0;
+	/**
+	 * 响应头：名称不区分大小写，同名的头用", "连接
+	 */
+	private Map<String,String> headerMap=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
 	
 	public Object getBody() {
 		return body;
@@ -32,4 +47,41 @@ public class ResponseResult {
 	public void setWasteTime(long wasteTime) {
 		this.wasteTime = wasteTime;
 	}
+	public long getByteCount() {
+		return byteCount;
+	}
+	public void setByteCount(long byteCount) {
+		this.byteCount = byteCount;
+	}
+	public long getTransferTime() {
+		return transferTime;
+	}
+	public void setTransferTime(long transferTime) {
+		this.transferTime = transferTime;
+	}
+	public String getHeader(String name) {
+		return headerMap.get(name);
+	}
+	public Map<String,String> getHeaderMap() {
+		return headerMap;
+	}
+	public void addHeader(String name,String value) {
+		String exists=headerMap.get(name);
+		headerMap.put(name, exists==null ? value : exists+", "+value);
+	}
+
+	/**
+	 * 复制结果：body不复制，多个请求共享同一个响应时，后处理修改body互不影响
+	 * @return
+	 */
+	public ResponseResult copy() {
+		ResponseResult result = new ResponseResult();
+		result.body = body;
+		result.status = status;
+		result.wasteTime = wasteTime;
+		result.byteCount = byteCount;
+		result.transferTime = transferTime;
+		result.headerMap.putAll(headerMap);
+		return result;
+	}
 }
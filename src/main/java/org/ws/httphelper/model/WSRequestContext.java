@@ -3,7 +3,11 @@ package org.ws.httphelper.model;
 import org.apache.http.NameValuePair;
 import org.ws.httphelper.annotation.WSRequest.MethodType;
 import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.UrlTemplate;
 import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HedgePolicy;
+import org.ws.httphelper.http.RetryPolicy;
+import org.ws.httphelper.request.handler.StreamConsumer;
 
 import java.io.File;
 import java.util.*;
@@ -32,6 +36,10 @@ public class WSRequestContext {
      * 请求路径
      */
     private String url;
+    /**
+     * 请求路径的模板：生成URL后保留，清理时恢复请求路径；设置请求路径时清除
+     */
+    private UrlTemplate urlTemplate;
     /**
      * 请求方法
      */
@@ -68,6 +76,38 @@ public class WSRequestContext {
      * 返回值类型：用于自动解析
      */
     private Class<?> resultClass;
+    /**
+     * 流式响应处理：响应类型为STREAM时使用
+     */
+    private StreamConsumer<?> streamConsumer;
+    /**
+     * 下载目标文件：响应类型为FILE时使用
+     */
+    private File targetFile;
+    /**
+     * Http实现：为空时使用配置文件中的默认实现
+     */
+    private String transport;
+    /**
+     * 舱壁名称：为空时按配置文件bulkhead.Key划分
+     */
+    private String bulkhead;
+    /**
+     * 熔断器名称：为空时按配置文件breaker.Key划分
+     */
+    private String circuitBreaker;
+    /**
+     * 重试策略：为空时不重试
+     */
+    private RetryPolicy retryPolicy;
+    /**
+     * 对冲策略：为空时不发送对冲请求，只对GET请求生效
+     */
+    private HedgePolicy hedgePolicy;
+    /**
+     * 是否合并相同的并发请求：false时按配置文件coalesce.Enabled
+     */
+    private boolean coalesce;
 
 
     public WSRequestContext(){
@@ -108,6 +148,28 @@ public class WSRequestContext {
         return this;
     }
 
+    /**
+     * 批量添加参数，已经存在的参数不添加
+     * @param parameterDefines
+     * @return
+     */
+    public WSRequestContext addParameterDefineList(List<ParameterDefine> parameterDefines){
+        if(this.parameterDefineList.isEmpty()){
+            this.parameterDefineList.addAll(parameterDefines);
+            return this;
+        }
+        Set<String> names = new HashSet<String>();
+        for(ParameterDefine parameter:this.parameterDefineList){
+            names.add(parameter.getName());
+        }
+        for(ParameterDefine parameter:parameterDefines){
+            if(names.add(parameter.getName())){
+                this.parameterDefineList.add(parameter);
+            }
+        }
+        return this;
+    }
+
     public boolean containsParameterDefine(String name){
         for(ParameterDefine parameter:this.parameterDefineList){
             if(parameter.getName().equals(name)){
@@ -123,6 +185,16 @@ public class WSRequestContext {
 
     public WSRequestContext setUrl(String url) {
         this.url = url;
+        this.urlTemplate = null;
+        return this;
+    }
+
+    public UrlTemplate getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    public WSRequestContext setUrlTemplate(UrlTemplate urlTemplate) {
+        this.urlTemplate = urlTemplate;
         return this;
     }
 
@@ -139,6 +211,78 @@ public class WSRequestContext {
         return  this;
     }
 
+    public StreamConsumer<?> getStreamConsumer() {
+        return streamConsumer;
+    }
+
+    public WSRequestContext setStreamConsumer(StreamConsumer<?> streamConsumer) {
+        this.streamConsumer = streamConsumer;
+        return this;
+    }
+
+    public File getTargetFile() {
+        return targetFile;
+    }
+
+    public WSRequestContext setTargetFile(File targetFile) {
+        this.targetFile = targetFile;
+        return this;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public WSRequestContext setTransport(String transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+
+    public WSRequestContext setBulkhead(String bulkhead) {
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    public String getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public WSRequestContext setCircuitBreaker(String circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public WSRequestContext setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    public WSRequestContext setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public WSRequestContext setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+        return this;
+    }
+
     public WSRequestContext setMethod(MethodType method) {
         this.method = method;
         return this;
@@ -215,10 +359,46 @@ public class WSRequestContext {
         return this;
     }
 
+    /**
+     * 复制一次发送使用的上下文：头，cookie，输入和参数使用新的集合，修改时不影响原上下文。<br/>
+     * 用于同时发送的对冲请求，或者只对本次发送添加的请求头
+     * @return
+     */
+    public WSRequestContext copy(){
+        WSRequestContext copy = new WSRequestContext();
+        copy.name = name;
+        copy.headerMap.putAll(headerMap);
+        copy.parameterDefineList.addAll(parameterDefineList);
+        copy.errorMessageList.addAll(errorMessageList);
+        copy.url = url;
+        copy.urlTemplate = urlTemplate;
+        copy.method = method;
+        copy.responseType = responseType;
+        copy.description = description;
+        copy.inputDataMap.putAll(inputDataMap);
+        copy.nameValuePairList = nameValuePairList==null ? null : new ArrayList<NameValuePair>(nameValuePairList);
+        copy.cookieMap.putAll(cookieMap);
+        copy.charset = charset;
+        copy.multipartDataMap.putAll(multipartDataMap);
+        copy.resultClass = resultClass;
+        copy.streamConsumer = streamConsumer;
+        copy.targetFile = targetFile;
+        copy.transport = transport;
+        copy.bulkhead = bulkhead;
+        copy.circuitBreaker = circuitBreaker;
+        copy.retryPolicy = retryPolicy;
+        copy.hedgePolicy = hedgePolicy;
+        copy.coalesce = coalesce;
+        return copy;
+    }
+
     /**
      * 不清楚cookie
      */
     public void clear(){
+        if(this.urlTemplate!=null){
+            this.url=this.urlTemplate.getTemplate();
+        }
         if(this.inputDataMap!=null){
             this.inputDataMap.clear();
         }
@@ -0,0 +1,97 @@
+package org.ws.httphelper.request;
+
+import org.apache.commons.lang.StringUtils;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.RateLimit;
+import org.ws.httphelper.common.TokenBucket;
+import org.ws.httphelper.exception.WSRateLimitedException;
+import org.ws.httphelper.http.ConcurrencyLimiter;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <b>@RateLimit</b>的令牌桶。<br/>
+ * 令牌桶名称：CLASS为类名，HOST为host，CREDENTIAL为host#凭证参数值。<br/>
+ * Created by gz on 16/02/26.
+ */
+public class RateLimitRegistry {
+    private static RateLimitRegistry _instance = new RateLimitRegistry();
+
+    public static RateLimitRegistry getInstance(){
+        return _instance;
+    }
+
+    private final ConcurrentMap<String,TokenBucket> bucketMap = new ConcurrentHashMap<String, TokenBucket>();
+
+    /**
+     * 获取令牌
+     * @param requestClass 请求类
+     * @param ann 频率限制
+     * @param context 已经生成URL和参数的上下文
+     * @return 需要等待的毫秒数
+     * @throws WSRateLimitedException 超过最大等待时间或者mode为FAIL时没有令牌
+     */
+    public long acquire(Class<?> requestClass,RateLimit ann,WSRequestContext context)throws WSRateLimitedException{
+        String key = getKey(requestClass, ann, context);
+        TokenBucket bucket = getBucket(key, ann.permitsPerSecond(), ann.burst());
+        long maxWaitMillis = 0;
+        if(ann.mode()==RateLimit.Mode.WAIT){
+            maxWaitMillis = ann.maxWaitMillis()>=0 ? ann.maxWaitMillis()
+                    : WSHttpHelperConfig.getInt(WSHttpHelperConstant.RATELIMIT_MAX_WAIT_MILLIS, 5000);
+        }
+        long wait = bucket.reserve(maxWaitMillis * 1000000L);
+        if(wait<0){
+            throw new WSRateLimitedException(key);
+        }
+        // 不足1毫秒的等待向上取整
+        return (wait + 999999L) / 1000000L;
+    }
+
+    /**
+     * 获取令牌桶，不存在时创建
+     * @param key
+     * @param permitsPerSecond
+     * @param burst
+     * @return
+     */
+    public TokenBucket getBucket(String key,double permitsPerSecond,int burst){
+        TokenBucket bucket = bucketMap.get(key);
+        if(bucket==null){
+            TokenBucket created = new TokenBucket(key, permitsPerSecond, burst);
+            bucket = bucketMap.putIfAbsent(key, created);
+            if(bucket==null){
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    public TokenBucket getBucket(String key){
+        return bucketMap.get(key);
+    }
+
+    /**
+     * 所有令牌桶，用于查看等待时间
+     * @return
+     */
+    public List<TokenBucket> getBuckets(){
+        return new ArrayList<TokenBucket>(bucketMap.values());
+    }
+
+    static String getKey(Class<?> requestClass,RateLimit ann,WSRequestContext context){
+        if(ann.scope()==RateLimit.Scope.CLASS){
+            return requestClass.getName();
+        }
+        String host = ConcurrencyLimiter.getHost(context.getUrl());
+        if(ann.scope()==RateLimit.Scope.CREDENTIAL && StringUtils.isNotEmpty(ann.credential())){
+            Object credential = context.getInputDataMap().get(ann.credential());
+            return host + "#" + (credential==null ? "" : credential);
+        }
+        return host;
+    }
+}
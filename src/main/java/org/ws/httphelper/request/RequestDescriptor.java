@@ -0,0 +1,411 @@
+package org.ws.httphelper.request;
+
+import org.apache.commons.lang.StringUtils;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.annotation.Bulkhead;
+import org.ws.httphelper.annotation.CircuitBreaker;
+import org.ws.httphelper.annotation.Coalesce;
+import org.ws.httphelper.annotation.Header;
+import org.ws.httphelper.annotation.Hedge;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.RateLimit;
+import org.ws.httphelper.annotation.Retry;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.UrlTemplate;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.BulkheadRegistry;
+import org.ws.httphelper.http.CircuitBreakerRegistry;
+import org.ws.httphelper.http.HedgePolicy;
+import org.ws.httphelper.http.RetryPolicy;
+import org.ws.httphelper.model.ParameterDefine;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 请求类的描述：@WSRequest，@Parameter，@Header和其他注解解析后的结果，按请求类创建一次。<br/>
+ * 包括解析好的URL模板，按名称索引的参数(验证正则在创建描述时编译一次)和请求头数组；
+ * 每次执行只把描述复制到上下文，不再读取注解。<br/>
+ * 创建后不再修改，可以在线程之间共享；参数定义由所有请求共享，是只读的(见ParameterDefine.setReadOnly())。<br/>
+ * 使用httphelper-processor编译时，描述由生成的代码创建(见RequestDescriptorRegistry)，不再读取注解。<br/>
+ * Created by gz on 16/03/07.
+ */
+public final class RequestDescriptor {
+    private static final ConcurrentMap<Class<?>,RequestDescriptor> descriptorMap = new ConcurrentHashMap<Class<?>, RequestDescriptor>();
+
+    private final Class<?> requestClass;
+    private final String name;
+    private final String url;
+    private final UrlTemplate urlTemplate;
+    private final String description;
+    private final ResponseType responseType;
+    private final MethodType method;
+    private final String charset;
+    private final Class<?> resultClass;
+    private final String transport;
+    private final Bulkhead bulkhead;
+    private final String bulkheadName;
+    private final CircuitBreaker circuitBreaker;
+    private final String circuitBreakerName;
+    private final RetryPolicy retryPolicy;
+    private final boolean coalesce;
+    private final HedgePolicy hedgePolicy;
+    private final RateLimit rateLimit;
+    private final String[] headerNames;
+    private final String[] headerValues;
+    private final List<ParameterDefine> parameterDefines;
+    private final Map<String,ParameterDefine> parameterMap;
+
+    private RequestDescriptor(Builder builder) {
+        this.requestClass = builder.requestClass;
+        this.name = builder.name;
+        this.url = builder.url;
+        this.urlTemplate = UrlTemplate.compile(builder.url);
+        this.description = builder.description;
+        this.responseType = builder.responseType;
+        this.method = builder.method;
+        this.charset = StringUtils.isEmpty(builder.charset) ? WSHttpHelperConfig.getCharset() : builder.charset;
+        this.resultClass = builder.resultClass;
+        this.transport = builder.transport;
+
+        this.bulkhead = builder.bulkhead;
+        this.bulkheadName = bulkhead == null ? null : (StringUtils.isEmpty(bulkhead.name()) ? name : bulkhead.name());
+        this.circuitBreaker = builder.circuitBreaker;
+        this.circuitBreakerName = circuitBreaker == null ? null
+                : (StringUtils.isEmpty(circuitBreaker.name()) ? name : circuitBreaker.name());
+        this.retryPolicy = builder.retry == null ? null : RetryPolicy.fromAnnotation(builder.retry);
+        this.coalesce = builder.coalesce;
+        this.hedgePolicy = builder.hedge == null ? null : HedgePolicy.getPolicy(name, builder.hedge);
+        this.rateLimit = builder.rateLimit;
+
+        this.headerNames = builder.headerNames.toArray(new String[builder.headerNames.size()]);
+        this.headerValues = builder.headerValues.toArray(new String[builder.headerValues.size()]);
+        this.parameterDefines = Collections.unmodifiableList(new ArrayList<ParameterDefine>(builder.parameterDefines));
+        this.parameterMap = Collections.unmodifiableMap(new HashMap<String, ParameterDefine>(builder.parameterMap));
+    }
+
+    /**
+     * 请求类的描述，第一次使用时解析注解
+     * @param requestClass
+     * @return
+     * @throws WSException 没有@WSRequest注解
+     */
+    public static RequestDescriptor forClass(Class<?> requestClass) throws WSException {
+        RequestDescriptor descriptor = descriptorMap.get(requestClass);
+        if (descriptor == null) {
+            descriptor = RequestDescriptorRegistry.getInstance().create(requestClass);
+            if (descriptor == null) {
+                descriptor = fromAnnotations(requestClass);
+            }
+            RequestDescriptor old = descriptorMap.putIfAbsent(requestClass, descriptor);
+            if (old != null) {
+                descriptor = old;
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * 通过反射读取注解
+     */
+    private static RequestDescriptor fromAnnotations(Class<?> requestClass) throws WSException {
+        WSRequest ann = requestClass.getAnnotation(WSRequest.class);
+        if (ann == null) {
+            throw new WSException("不是有效的请求，无法生成上下文！");
+        }
+        Builder builder = builder(requestClass)
+                .setName(ann.name())
+                .setUrl(ann.url())
+                .setDescription(ann.description())
+                .setResponseType(ann.responseType())
+                .setMethod(ann.method())
+                .setCharset(ann.charset())
+                .setResultClass(ann.resultClass())
+                .setTransport(ann.transport())
+                .setBulkhead(requestClass.getAnnotation(Bulkhead.class))
+                .setCircuitBreaker(requestClass.getAnnotation(CircuitBreaker.class))
+                .setRetry(requestClass.getAnnotation(Retry.class))
+                .setCoalesce(requestClass.isAnnotationPresent(Coalesce.class))
+                .setHedge(requestClass.getAnnotation(Hedge.class))
+                .setRateLimit(requestClass.getAnnotation(RateLimit.class));
+        if (ann.headers() != null) {
+            for (Header header : ann.headers()) {
+                builder.addHeader(header.name(), header.value());
+            }
+        }
+        if (ann.parameters() != null) {
+            for (Parameter parameter : ann.parameters()) {
+                builder.addParameter(parameter.name(), parameter.description(), parameter.defaultValue(),
+                        parameter.type(), parameter.required(), parameter.example(), parameter.validateRegex());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 不读取注解创建描述，供编译时生成的代码使用
+     * @param requestClass
+     * @return
+     */
+    public static Builder builder(Class<?> requestClass) {
+        return new Builder(requestClass);
+    }
+
+    /**
+     * 复制到上下文：上下文中已经设置的值不覆盖
+     * @param context
+     */
+    public void apply(WSRequestContext context) {
+        context.setName(name);
+        if (StringUtils.isEmpty(context.getUrl())) {
+            context.setUrl(url).setUrlTemplate(urlTemplate);
+        }
+        if (StringUtils.isEmpty(context.getDescription())) {
+            context.setDescription(description);
+        }
+        if (context.getResponseType() == null) {
+            context.setResponseType(responseType);
+        }
+        if (context.getMethod() == null) {
+            context.setMethod(method);
+        }
+        if (StringUtils.isEmpty(context.getCharset())) {
+            context.setCharset(charset);
+        }
+        if (context.getResultClass() == null) {
+            context.setResultClass(resultClass);
+        }
+        if (StringUtils.isEmpty(context.getTransport())) {
+            context.setTransport(transport);
+        }
+        if (bulkhead != null && StringUtils.isEmpty(context.getBulkhead())) {
+            // 第一次使用时按注解配置创建舱壁
+            BulkheadRegistry.getInstance().getBulkhead(bulkheadName, bulkhead.maxConcurrency(),
+                    bulkhead.queueCapacity(), bulkhead.maxConnections());
+            context.setBulkhead(bulkheadName);
+        }
+        if (circuitBreaker != null && StringUtils.isEmpty(context.getCircuitBreaker())) {
+            // 第一次使用时按注解配置创建熔断器
+            CircuitBreakerRegistry.getInstance().getBreaker(circuitBreakerName, circuitBreaker);
+            context.setCircuitBreaker(circuitBreakerName);
+        }
+        if (retryPolicy != null && context.getRetryPolicy() == null) {
+            context.setRetryPolicy(retryPolicy);
+        }
+        if (coalesce) {
+            context.setCoalesce(true);
+        }
+        if (hedgePolicy != null && context.getHedgePolicy() == null) {
+            context.setHedgePolicy(hedgePolicy);
+        }
+        for (int i = 0; i < headerNames.length; i++) {
+            context.addHeader(headerNames[i], headerValues[i]);
+        }
+        context.addParameterDefineList(parameterDefines);
+    }
+
+    public Class<?> getRequestClass() {
+        return requestClass;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public UrlTemplate getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public MethodType getMethod() {
+        return method;
+    }
+
+    public ResponseType getResponseType() {
+        return responseType;
+    }
+
+    /**
+     * @return 没有@RateLimit时返回null
+     */
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * 注解中的参数，按声明的顺序
+     * @return 不能修改
+     */
+    public List<ParameterDefine> getParameterDefines() {
+        return parameterDefines;
+    }
+
+    /**
+     * 按名称查找注解中的参数
+     * @param name
+     * @return 没有时返回null
+     */
+    public ParameterDefine getParameterDefine(String name) {
+        return parameterMap.get(name);
+    }
+
+    /**
+     * 注解中的请求头名称，按声明的顺序
+     * @return
+     */
+    public List<String> getHeaderNames() {
+        return Collections.unmodifiableList(Arrays.asList(headerNames));
+    }
+
+    /**
+     * 描述的各项，与@WSRequest和其他注解中的属性一一对应，没有设置的使用注解的默认值
+     */
+    public static final class Builder {
+        private final Class<?> requestClass;
+        private String name = "";
+        private String url = "";
+        private String description = "";
+        private ResponseType responseType = ResponseType.TEXT;
+        private MethodType method = MethodType.GET;
+        private String charset = "";
+        private Class<?> resultClass = String.class;
+        private String transport = "";
+        private Bulkhead bulkhead;
+        private CircuitBreaker circuitBreaker;
+        private Retry retry;
+        private boolean coalesce;
+        private Hedge hedge;
+        private RateLimit rateLimit;
+        private final List<String> headerNames = new ArrayList<String>();
+        private final List<String> headerValues = new ArrayList<String>();
+        private final List<ParameterDefine> parameterDefines = new ArrayList<ParameterDefine>();
+        private final Map<String,ParameterDefine> parameterMap = new HashMap<String, ParameterDefine>();
+
+        private Builder(Class<?> requestClass) {
+            this.requestClass = requestClass;
+        }
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder setDescription(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Builder setResponseType(ResponseType responseType) {
+            this.responseType = responseType;
+            return this;
+        }
+
+        public Builder setMethod(MethodType method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * @param charset 为空时使用配置文件中的编码
+         * @return
+         */
+        public Builder setCharset(String charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        public Builder setResultClass(Class<?> resultClass) {
+            this.resultClass = resultClass;
+            return this;
+        }
+
+        public Builder setTransport(String transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder setBulkhead(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+            return this;
+        }
+
+        public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        public Builder setRetry(Retry retry) {
+            this.retry = retry;
+            return this;
+        }
+
+        public Builder setCoalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        public Builder setHedge(Hedge hedge) {
+            this.hedge = hedge;
+            return this;
+        }
+
+        public Builder setRateLimit(RateLimit rateLimit) {
+            this.rateLimit = rateLimit;
+            return this;
+        }
+
+        public Builder addHeader(String name, String value) {
+            headerNames.add(name);
+            headerValues.add(value);
+            return this;
+        }
+
+        /**
+         * 添加参数：与逐个添加时一样，同名的参数只使用第一个。验证正则在这里编译一次，参数定义设为只读
+         * @return
+         * @throws java.util.regex.PatternSyntaxException 验证正则格式错误
+         */
+        public Builder addParameter(String name, String description, String defaultValue, Parameter.Type type,
+                                    boolean required, String example, String validateRegex) {
+            if (!parameterMap.containsKey(name)) {
+                ParameterDefine parameterDefine = new ParameterDefine();
+                parameterDefine.setName(name);
+                parameterDefine.setDescription(description);
+                parameterDefine.setDefaultValue(defaultValue);
+                parameterDefine.setExample(example);
+                parameterDefine.setRequired(required);
+                parameterDefine.setType(type);
+                parameterDefine.setValidateRegex(validateRegex);
+                parameterDefine.setReadOnly();
+                parameterDefines.add(parameterDefine);
+                parameterMap.put(name, parameterDefine);
+            }
+            return this;
+        }
+
+        public RequestDescriptor build() {
+            return new RequestDescriptor(this);
+        }
+    }
+}
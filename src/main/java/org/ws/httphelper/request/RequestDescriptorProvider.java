@@ -0,0 +1,22 @@
+package org.ws.httphelper.request;
+
+/**
+ * 编译时生成的请求描述：httphelper-processor为每个包生成一个实现(包名.WSRequestDescriptors)，
+ * 通过ServiceLoader加载，也可以通过RequestDescriptorRegistry.register(...)注册。<br/>
+ * 描述在第一次使用请求类时创建，不使用的请求类不会被加载。<br/>
+ * Created by gz on 16/03/08.
+ */
+public interface RequestDescriptorProvider {
+    /**
+     * 提供描述的请求类
+     * @return 完整类名(Class.getName())，下标与create(index)对应
+     */
+    String[] getRequestClassNames();
+
+    /**
+     * 创建请求类的描述
+     * @param index getRequestClassNames()中的下标
+     * @return
+     */
+    RequestDescriptor create(int index);
+}
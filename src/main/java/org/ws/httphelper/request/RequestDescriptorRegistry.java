@@ -0,0 +1,107 @@
+package org.ws.httphelper.request;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 编译时生成的请求描述的注册表。<br/>
+ * 第一次查找时通过ServiceLoader加载RequestDescriptorProvider，只记录类名，描述在第一次使用请求类时创建。<br/>
+ * 没有生成描述的请求类(没有使用httphelper-processor编译，或者是私有的内部类)返回null，由RequestDescriptor读取注解。<br/>
+ * Created by gz on 16/03/08.
+ */
+public class RequestDescriptorRegistry {
+    protected static Log log = LogFactory.getLog(RequestDescriptorRegistry.class);
+
+    private static RequestDescriptorRegistry _instance = new RequestDescriptorRegistry();
+
+    public static RequestDescriptorRegistry getInstance(){
+        return _instance;
+    }
+
+    /**
+     * 请求类的完整类名对应的生成代码
+     */
+    private final ConcurrentMap<String,Entry> entryMap = new ConcurrentHashMap<String, Entry>();
+    private volatile boolean loaded = false;
+
+    private RequestDescriptorRegistry(){}
+
+    /**
+     * 注册生成的描述，同名的请求类被替换
+     * @param provider
+     */
+    public void register(RequestDescriptorProvider provider){
+        String[] names = provider.getRequestClassNames();
+        for(int i=0;i<names.length;i++){
+            entryMap.put(names[i], new Entry(provider, i));
+        }
+    }
+
+    /**
+     * 创建请求类的描述
+     * @param requestClass
+     * @return 没有生成的描述时返回null
+     */
+    public RequestDescriptor create(Class<?> requestClass){
+        if(!loaded){
+            load();
+        }
+        Entry entry = entryMap.get(requestClass.getName());
+        if(entry==null){
+            return null;
+        }
+        RequestDescriptor descriptor = entry.provider.create(entry.index);
+        // 不同的ClassLoader加载的同名类，使用注解
+        if(descriptor==null || descriptor.getRequestClass()!=requestClass){
+            return null;
+        }
+        return descriptor;
+    }
+
+    /**
+     * 已注册的请求类数量
+     * @return
+     */
+    public int size(){
+        if(!loaded){
+            load();
+        }
+        return entryMap.size();
+    }
+
+    private synchronized void load(){
+        if(loaded){
+            return;
+        }
+        Iterator<RequestDescriptorProvider> it = ServiceLoader.load(RequestDescriptorProvider.class).iterator();
+        while (it.hasNext()) {
+            try {
+                RequestDescriptorProvider provider = it.next();
+                String[] names = provider.getRequestClassNames();
+                for(int i=0;i<names.length;i++){
+                    // 手动注册的优先
+                    entryMap.putIfAbsent(names[i], new Entry(provider, i));
+                }
+                log.debug("加载请求描述：" + provider.getClass().getName() + "，" + names.length + "个请求类");
+            } catch (Throwable e) {
+                log.error("加载请求描述失败：" + e.getMessage(), e);
+            }
+        }
+        loaded = true;
+    }
+
+    private static class Entry {
+        private final RequestDescriptorProvider provider;
+        private final int index;
+
+        private Entry(RequestDescriptorProvider provider, int index) {
+            this.provider = provider;
+            this.index = index;
+        }
+    }
+}
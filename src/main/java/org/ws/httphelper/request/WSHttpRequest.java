@@ -1,5 +1,6 @@
 package org.ws.httphelper.request;
 
+import org.ws.httphelper.common.WSFuture;
 import org.ws.httphelper.exception.WSException;
 import org.ws.httphelper.model.ResponseResult;
 import org.ws.httphelper.model.WSRequestContext;
@@ -27,6 +28,13 @@ public interface WSHttpRequest extends Help{
      */
     public ResponseResult execute()throws WSException;
 
+    /**
+     *  异步执行请求，不阻塞调用线程。
+     * @return 响应结果的Future，可以添加回调或者链式处理。
+     * @throws WSException
+     */
+    public WSFuture<ResponseResult> executeAsync()throws WSException;
+
     /**
      * 添加请求前处理器。
      * @param handler
@@ -0,0 +1,302 @@
+package org.ws.httphelper.request;
+
+import org.ws.httphelper.annotation.RateLimit;
+import org.ws.httphelper.common.FutureFunction;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.common.WSTimer;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.model.ErrorMessage;
+import org.ws.httphelper.model.ParameterDefine;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.handler.HandlerPipeline;
+import org.ws.httphelper.request.handler.RequestPreHandler;
+import org.ws.httphelper.request.handler.ResponseProHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次请求的执行状态：上下文，本次添加的参数，头，cookie和处理器。<br/>
+ * 请求定义(WSHttpAbstractRequest)不保存执行状态，可以在线程之间共享；每次调用通过request.newInvocation()创建执行对象。<br/>
+ * 执行对象不是线程安全的，执行完成后清理上下文，可以按顺序再次执行。<br/>
+ * 执行过程见WSHttpAbstractRequest。<br/>
+ * Created by gz on 16/03/09.
+ */
+public class WSRequestInvocation implements WSHttpRequest {
+    private final WSHttpAbstractRequest request;
+    private final WSSession session;
+    private final WSRequestContext context = new WSRequestContext();
+    /**
+     * 本次添加的处理器，按级别排序，同级别按添加的顺序
+     */
+    private final List<RequestPreHandler> requestPreHandlerList = new ArrayList<RequestPreHandler>();
+    private final List<ResponseProHandler> responseProHandlerList = new ArrayList<ResponseProHandler>();
+    /**
+     * 本次执行的处理器链
+     */
+    private HandlerPipeline pipeline;
+
+    WSRequestInvocation(WSHttpAbstractRequest request, WSSession session) {
+        this.request = request;
+        this.session = session;
+    }
+
+    /**
+     * 调用请求定义的初始化
+     * @param context
+     * @throws WSException
+     */
+    @Override
+    public void init(WSRequestContext context) throws WSException {
+        request.initInvocation(this);
+    }
+
+    @Override
+    public ResponseResult execute()throws WSException{
+        ResponseResult result=prepare();
+        if(result!=null){
+            return result;
+        }
+        long wait=throttle();
+        if(wait>0){
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                clear();
+                throw new WSException("等待请求频率限制时被中断", e);
+            }
+        }
+        // 执行请求并等待结果
+        result=HttpTaskExecutor.getInstance().executeSync(context);
+        return complete(result);
+    }
+
+    /**
+     * 异步执行请求，立即返回。<br/>
+     * 请求完成后在完成请求的线程中执行后处理，调用线程不等待。请求失败时与execute()一样返回状态为500的结果。<br/>
+     * 同一个执行对象在返回的Future完成之前不能再次执行。
+     * @return 执行后处理之后的结果
+     * @throws WSException
+     */
+    @Override
+    public WSFuture<ResponseResult> executeAsync()throws WSException{
+        ResponseResult result=prepare();
+        if(result!=null){
+            return WSFuture.succeeded(result);
+        }
+        long wait=throttle();
+        WSFuture<ResponseResult> future;
+        if(wait>0){
+            future=executeLater(wait);
+        }
+        else{
+            future=HttpTaskExecutor.getInstance().execute(context);
+        }
+        return future
+                .recover(new FutureFunction<Throwable, ResponseResult>() {
+                    @Override
+                    public ResponseResult apply(Throwable e) throws Exception {
+                        return HttpTaskExecutor.errorResult(e);
+                    }
+                })
+                .then(new FutureFunction<ResponseResult, ResponseResult>() {
+                    @Override
+                    public ResponseResult apply(ResponseResult result) throws Exception {
+                        return complete(result);
+                    }
+                });
+    }
+
+    /**
+     * 获取<b>@RateLimit</b>的令牌
+     * @return 需要等待的毫秒数
+     * @throws WSException 超过频率限制时清理缓存后抛出WSRateLimitedException
+     */
+    private long throttle()throws WSException{
+        RateLimit rateLimit = RequestDescriptor.forClass(request.getClass()).getRateLimit();
+        if(rateLimit==null){
+            return 0;
+        }
+        try {
+            return RateLimitRegistry.getInstance().acquire(request.getClass(), rateLimit, context);
+        } catch (WSException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    /**
+     * 延迟发送请求，不占用线程等待
+     * @param wait 毫秒
+     * @return
+     */
+    private WSFuture<ResponseResult> executeLater(long wait){
+        final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+        WSTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(future.isDone()){
+                    return;
+                }
+                HttpTaskExecutor.getInstance().execute(context).addListener(new FutureListener<ResponseResult>() {
+                    @Override
+                    public void operationComplete(WSFuture<ResponseResult> response) {
+                        if(response.isSuccess()){
+                            future.set(response.getNow());
+                        }
+                        else if(response.isCancelled()){
+                            future.cancel(false);
+                        }
+                        else{
+                            future.setException(response.getCause());
+                        }
+                    }
+                });
+            }
+        }, wait);
+        return future;
+    }
+
+    /**
+     * 生成上下文，初始化并执行前处理
+     * @return 前处理出错时返回错误结果，否则返回null
+     * @throws WSException
+     */
+    private ResponseResult prepare()throws WSException{
+        RequestDescriptor.forClass(request.getClass()).apply(context);
+        if(session!=null){
+            session.apply(context);
+        }
+        init(context);
+        // 默认处理器链合并本次添加的处理器
+        pipeline = HandlerPipeline.forClass(request.getClass()).with(requestPreHandlerList, responseProHandlerList);
+        // 执行前处理，从小到大依次执行
+        if(!pipeline.pre(context)){
+            // 出现错误：获取错误消息并返回
+            ResponseResult result = new ResponseResult();
+            result.setStatus(999);
+            List<ErrorMessage> errorMessageList=context.getErrorMessageList();
+            StringBuffer error = new StringBuffer();
+            for(ErrorMessage message:errorMessageList){
+                error.append(message);
+            }
+            result.setBody(error.toString());
+            // 不执行后处理，处理器不能保留到下次执行
+            clear();
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * 执行后处理并清理缓存
+     * @param result
+     * @return
+     * @throws WSException
+     */
+    private ResponseResult complete(ResponseResult result)throws WSException{
+        if(session!=null){
+            session.update(result);
+        }
+        // 执行后处理，从小到大依次执行
+        result=pipeline.pro(context,result);
+        // 清楚缓存
+        clear();
+        return result;
+    }
+
+    private void clear(){
+        this.context.clear();
+        requestPreHandlerList.clear();
+        responseProHandlerList.clear();
+        pipeline=null;
+    }
+
+    @Override
+    public void addRequestPreHandler(RequestPreHandler handler){
+        if(handler==null){
+            return;
+        }
+        // 插入到最后一个级别不大于它的处理器之后
+        int index = requestPreHandlerList.size();
+        while(index>0 && requestPreHandlerList.get(index-1).level()>handler.level()){
+            index--;
+        }
+        requestPreHandlerList.add(index,handler);
+    }
+
+    @Override
+    public void addResponseProHandler(ResponseProHandler handler){
+        if(handler==null){
+            return;
+        }
+        int index = responseProHandlerList.size();
+        while(index>0 && responseProHandlerList.get(index-1).level()>handler.level()){
+            index--;
+        }
+        responseProHandlerList.add(index,handler);
+    }
+
+    @Override
+    public void addHeader(String name,String value){
+        context.addHeader(name, value);
+    }
+
+    @Override
+    public void addCookie(String name,String value){
+        context.addCookie(name,value);
+    }
+
+    @Override
+    public void addParameter(String name,Object value){
+        context.addParameterDefineList(new ParameterDefine(name))
+                .addInputData(name,value);
+    }
+
+    /**
+     * 添加参数，可以连续调用
+     * @param name
+     * @param value
+     * @return
+     */
+    public WSRequestInvocation parameter(String name,Object value){
+        addParameter(name, value);
+        return this;
+    }
+
+    /**
+     * 添加请求头部，可以连续调用
+     * @param name
+     * @param value
+     * @return
+     */
+    public WSRequestInvocation header(String name,String value){
+        addHeader(name, value);
+        return this;
+    }
+
+    @Override
+    public WSRequestContext getContext() {
+        return context;
+    }
+
+    public WSHttpAbstractRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return 没有会话时返回null
+     */
+    public WSSession getSession() {
+        return session;
+    }
+
+    @Override
+    public String getHelp() {
+        return request.getHelp();
+    }
+}
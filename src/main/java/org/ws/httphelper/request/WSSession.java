@@ -0,0 +1,149 @@
+package org.ws.httphelper.request;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 会话：多次请求之间共享的cookie。<br/>
+ * 请求执行前把会话的cookie复制到上下文，请求完成后保存响应中的cookie(Set-Cookie，Max-Age&lt;=0或者Expires已经过去时删除)。<br/>
+ * 执行对象自己添加的cookie只在本次请求发送，不保存到会话。<br/>
+ * 没有会话的请求只发送自己添加的cookie，响应中的cookie不会带到下一次请求。<br/>
+ * 线程安全，可以由多个线程的请求共享。<br/>
+ * Created by gz on 16/03/09.
+ */
+public class WSSession {
+    /**
+     * Expires的日期格式：RFC 1123，RFC 1036和旧的Netscape格式
+     */
+    private static final String[] DATE_PATTERNS = {DateUtils.PATTERN_RFC1123, DateUtils.PATTERN_RFC1036,
+            DateUtils.PATTERN_ASCTIME, "EEE, dd-MMM-yyyy HH:mm:ss z"};
+
+    private final ConcurrentMap<String,String> cookieMap = new ConcurrentHashMap<String, String>();
+
+    public WSSession addCookie(String name,String value){
+        if(value==null){
+            cookieMap.remove(name);
+        }
+        else{
+            cookieMap.put(name, value);
+        }
+        return this;
+    }
+
+    public String getCookie(String name){
+        return cookieMap.get(name);
+    }
+
+    /**
+     * @return 当前cookie的副本
+     */
+    public Map<String,String> getCookieMap(){
+        return Collections.unmodifiableMap(new HashMap<String, String>(cookieMap));
+    }
+
+    public void clear(){
+        cookieMap.clear();
+    }
+
+    /**
+     * 执行前：复制cookie到上下文，请求自己添加的同名cookie优先
+     * @param context
+     */
+    void apply(WSRequestContext context){
+        for(Map.Entry<String,String> cookie:cookieMap.entrySet()){
+            if(!context.getCookieMap().containsKey(cookie.getKey())){
+                context.addCookie(cookie.getKey(), cookie.getValue());
+            }
+        }
+    }
+
+    /**
+     * 完成后：保存响应头中的Set-Cookie
+     * @param result
+     */
+    void update(ResponseResult result){
+        String setCookie = result==null ? null : result.getHeader("Set-Cookie");
+        if(StringUtils.isEmpty(setCookie)){
+            return;
+        }
+        for(String cookie:split(setCookie)){
+            int eq = cookie.indexOf('=');
+            int end = cookie.indexOf(';');
+            String name = cookie.substring(0, eq).trim();
+            String value = end<0 ? cookie.substring(eq+1) : cookie.substring(eq+1, end);
+            if(isExpired(cookie)){
+                cookieMap.remove(name);
+            }
+            else{
+                cookieMap.put(name, value.trim());
+            }
+        }
+    }
+
+    /**
+     * 拆分多个Set-Cookie：响应头用", "连接，Expires中的日期也包含逗号，
+     * 等号前没有空格和分号的部分才是新的cookie，其他部分属于前一个cookie
+     * @param setCookie
+     * @return
+     */
+    private static List<String> split(String setCookie){
+        List<String> cookies = new ArrayList<String>();
+        for(String part:setCookie.split(",")){
+            int eq = part.indexOf('=');
+            String name = eq<0 ? null : part.substring(0, eq).trim();
+            if(name!=null && name.length()>0 && name.indexOf(';')<0 && name.indexOf(' ')<0){
+                cookies.add(part.trim());
+            }
+            else if(!cookies.isEmpty()){
+                cookies.set(cookies.size()-1, cookies.get(cookies.size()-1)+","+part);
+            }
+        }
+        return cookies;
+    }
+
+    /**
+     * Max-Age&lt;=0，或者没有Max-Age并且Expires已经过去
+     */
+    private static boolean isExpired(String cookie){
+        String expires = null;
+        String[] attributes = cookie.split(";");
+        for(int i=1;i<attributes.length;i++){
+            String attribute = attributes[i].trim();
+            int eq = attribute.indexOf('=');
+            if(eq<0){
+                continue;
+            }
+            String name = attribute.substring(0, eq).trim();
+            String value = attribute.substring(eq+1).trim();
+            if("max-age".equalsIgnoreCase(name)){
+                try {
+                    return Long.parseLong(value)<=0;
+                } catch (NumberFormatException e) {
+                    // 忽略不正确的Max-Age
+                }
+            }
+            else if("expires".equalsIgnoreCase(name)){
+                expires = value;
+            }
+        }
+        if(expires==null){
+            return false;
+        }
+        try {
+            return DateUtils.parseDate(expires, DATE_PATTERNS).getTime()<=System.currentTimeMillis();
+        } catch (DateParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.ws.httphelper.request.handler;
+
+import org.ws.httphelper.common.BufferPool;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 按块处理的流式响应。<br/>
+ * 使用从缓冲区池获取的ByteBuffer循环读取响应内容，每读满一块调用一次onChunk，读取结束后调用onComplete。<br/>
+ * onChunk返回后缓冲区会被重用，需要保留的数据必须在onChunk中复制出去。<br/>
+ * Created by gz on 16/01/16.
+ */
+public abstract class ByteBufferStreamConsumer<T> implements StreamConsumer<T> {
+    @Override
+    public T consume(ResponseResult result, InputStream in) throws IOException, WSException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        BufferPool pool = BufferPool.getInstance();
+        byte[] array = pool.acquire();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array);
+            while (channel.read(buffer) != -1) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    onChunk(buffer);
+                    buffer.clear();
+                }
+            }
+            buffer.flip();
+            if (buffer.hasRemaining()) {
+                onChunk(buffer);
+            }
+        }
+        finally {
+            pool.release(array);
+        }
+        return onComplete(result);
+    }
+
+    /**
+     * 处理一块数据，position到limit之间为有效数据
+     * @param chunk
+     * @throws IOException
+     * @throws WSException
+     */
+    protected abstract void onChunk(ByteBuffer chunk) throws IOException, WSException;
+
+    /**
+     * 读取结束
+     * @param result
+     * @return 处理结果
+     * @throws WSException
+     */
+    protected abstract T onComplete(ResponseResult result) throws WSException;
+}
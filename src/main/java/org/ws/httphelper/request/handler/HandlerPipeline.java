@@ -0,0 +1,208 @@
+package org.ws.httphelper.request.handler;
+
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.handler.impl.pre.DefaultInitHandlerImpl;
+import org.ws.httphelper.request.handler.impl.pre.DefaultParameterBuliderHandlerImpl;
+import org.ws.httphelper.request.handler.impl.pre.DefaultURLBuilderHandlerImpl;
+import org.ws.httphelper.request.handler.impl.pre.DefaultValidationHandlerImpl;
+import org.ws.httphelper.request.handler.impl.pro.DefaultResultParseHandlerImpl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 编译后的处理器链：前处理器和后处理器按级别排好序的数组，创建后不再修改，可以在线程之间共享。<br/>
+ * 默认处理器只与配置文件有关，只编译一次(读取配置文件，加载处理器类)，所有请求类共用；之后的请求不再使用反射，不再排序。<br/>
+ * 请求对象自己添加的处理器通过with(...)合并：同级别时先执行请求对象的处理器，与原来的执行顺序相同。<br/>
+ * Created by gz on 16/03/06.
+ */
+public final class HandlerPipeline {
+    private static final ConcurrentMap<Class<?>,HandlerPipeline> pipelineMap = new ConcurrentHashMap<Class<?>, HandlerPipeline>();
+    private static volatile HandlerPipeline defaultPipeline;
+
+    private final RequestPreHandler[] preHandlers;
+    private final ResponseProHandler[] proHandlers;
+
+    private HandlerPipeline(RequestPreHandler[] preHandlers, ResponseProHandler[] proHandlers) {
+        this.preHandlers = preHandlers;
+        this.proHandlers = proHandlers;
+    }
+
+    /**
+     * 请求类的默认处理器链，第一次使用时编译
+     * @param requestClass
+     * @return
+     * @throws WSException 处理器类不存在或者无法创建
+     */
+    public static HandlerPipeline forClass(Class<?> requestClass) throws WSException {
+        HandlerPipeline pipeline = pipelineMap.get(requestClass);
+        if (pipeline == null) {
+            pipeline = getDefault();
+            HandlerPipeline old = pipelineMap.putIfAbsent(requestClass, pipeline);
+            if (old != null) {
+                pipeline = old;
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * 重新读取配置文件：修改默认处理器的配置后调用
+     */
+    public static void reset() {
+        synchronized (HandlerPipeline.class) {
+            defaultPipeline = null;
+            pipelineMap.clear();
+        }
+    }
+
+    /**
+     * 默认处理器链，第一次使用时编译
+     */
+    private static HandlerPipeline getDefault() throws WSException {
+        HandlerPipeline pipeline = defaultPipeline;
+        if (pipeline == null) {
+            synchronized (HandlerPipeline.class) {
+                pipeline = defaultPipeline;
+                if (pipeline == null) {
+                    pipeline = compile();
+                    defaultPipeline = pipeline;
+                }
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * 合并请求对象添加的处理器
+     * @param pre 按级别排好序的前处理器
+     * @param pro 按级别排好序的后处理器
+     * @return 没有处理器时返回自己
+     */
+    public HandlerPipeline with(List<RequestPreHandler> pre, List<ResponseProHandler> pro) {
+        if (pre.isEmpty() && pro.isEmpty()) {
+            return this;
+        }
+        RequestPreHandler[] preArray = preHandlers;
+        if (!pre.isEmpty()) {
+            preArray = new RequestPreHandler[pre.size() + preHandlers.length];
+            int i = 0, j = 0, k = 0;
+            while (i < pre.size() || j < preHandlers.length) {
+                if (j == preHandlers.length || (i < pre.size() && pre.get(i).level() <= preHandlers[j].level())) {
+                    preArray[k++] = pre.get(i++);
+                } else {
+                    preArray[k++] = preHandlers[j++];
+                }
+            }
+        }
+        ResponseProHandler[] proArray = proHandlers;
+        if (!pro.isEmpty()) {
+            proArray = new ResponseProHandler[pro.size() + proHandlers.length];
+            int i = 0, j = 0, k = 0;
+            while (i < pro.size() || j < proHandlers.length) {
+                if (j == proHandlers.length || (i < pro.size() && pro.get(i).level() <= proHandlers[j].level())) {
+                    proArray[k++] = pro.get(i++);
+                } else {
+                    proArray[k++] = proHandlers[j++];
+                }
+            }
+        }
+        return new HandlerPipeline(preArray, proArray);
+    }
+
+    /**
+     * 按顺序执行前处理器
+     * @param context
+     * @return 有处理器返回false时停止并返回false
+     * @throws WSException
+     */
+    public boolean pre(WSRequestContext context) throws WSException {
+        for (RequestPreHandler handler : preHandlers) {
+            if (!handler.handler(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按顺序执行后处理器
+     * @param context
+     * @param result
+     * @return 最后一个处理器返回的结果
+     * @throws WSException
+     */
+    public ResponseResult pro(WSRequestContext context, ResponseResult result) throws WSException {
+        for (ResponseProHandler handler : proHandlers) {
+            result = handler.handler(context, result);
+        }
+        return result;
+    }
+
+    public int getPreHandlerCount() {
+        return preHandlers.length;
+    }
+
+    public int getProHandlerCount() {
+        return proHandlers.length;
+    }
+
+    /**
+     * 加载配置文件中的默认处理器，没有配置时使用org.ws.httphelper.request.handler.impl包中的默认处理器
+     */
+    private static HandlerPipeline compile() throws WSException {
+        String[] preNames = {getDefaultHandlerName(WSHttpHelperConstant.DEFAULT_HANDLER_PRE_INIT, DefaultInitHandlerImpl.class),
+                getDefaultHandlerName(WSHttpHelperConstant.DEFAULT_HANDLER_PRE_PARAMETER, DefaultParameterBuliderHandlerImpl.class),
+                getDefaultHandlerName(WSHttpHelperConstant.DEFAULT_HANDLER_PRE_URL, DefaultURLBuilderHandlerImpl.class),
+                getDefaultHandlerName(WSHttpHelperConstant.DEFAULT_HANDLER_PRE_VALIDATION, DefaultValidationHandlerImpl.class)};
+        RequestPreHandler[] pre = new RequestPreHandler[preNames.length];
+        for (int i = 0; i < preNames.length; i++) {
+            pre[i] = HandlerFactory.finadHandler(RequestPreHandler.class, preNames[i]);
+        }
+        ResponseProHandler[] pro = {HandlerFactory.finadHandler(ResponseProHandler.class,
+                getDefaultHandlerName(WSHttpHelperConstant.DEFAULT_HANDLER_PRO_PARSE, DefaultResultParseHandlerImpl.class))};
+        sort(pre);
+        sort(pro);
+        return new HandlerPipeline(pre, pro);
+    }
+
+    /**
+     * 按级别稳定排序：同级别保持添加的顺序
+     */
+    private static void sort(RequestPreHandler[] handlers) {
+        for (int i = 1; i < handlers.length; i++) {
+            RequestPreHandler handler = handlers[i];
+            int j = i - 1;
+            while (j >= 0 && handlers[j].level() > handler.level()) {
+                handlers[j + 1] = handlers[j];
+                j--;
+            }
+            handlers[j + 1] = handler;
+        }
+    }
+
+    private static void sort(ResponseProHandler[] handlers) {
+        for (int i = 1; i < handlers.length; i++) {
+            ResponseProHandler handler = handlers[i];
+            int j = i - 1;
+            while (j >= 0 && handlers[j].level() > handler.level()) {
+                handlers[j + 1] = handlers[j];
+                j--;
+            }
+            handlers[j + 1] = handler;
+        }
+    }
+
+    private static String getDefaultHandlerName(String configKey, Class<?> defaultHandler) {
+        String className = WSHttpHelperConfig.getValue(configKey);
+        if (className == null) {
+            className = defaultHandler.getName();
+        }
+        return className;
+    }
+}
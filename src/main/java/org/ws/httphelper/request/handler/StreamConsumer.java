@@ -0,0 +1,25 @@
+package org.ws.httphelper.request.handler;
+
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式响应处理接口。<br/>
+ * 响应类型为STREAM时，响应内容不在内存中缓存，直接将连接上的输入流交给consume处理。<br/>
+ * consume返回后输入流自动关闭，连接放回连接池，不需要也不应该在consume之外使用该输入流。<br/>
+ * Created by gz on 16/01/16.
+ */
+public interface StreamConsumer<T> {
+    /**
+     * 处理响应流
+     * @param result 响应结果，已经包含响应状态
+     * @param in 响应内容输入流，gzip响应已经自动解压
+     * @return 处理结果，作为响应结果的body
+     * @throws IOException
+     * @throws WSException
+     */
+    public T consume(ResponseResult result, InputStream in) throws IOException, WSException;
+}
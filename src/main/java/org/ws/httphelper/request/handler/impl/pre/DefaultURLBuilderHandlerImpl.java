@@ -1,34 +1,75 @@
 package org.ws.httphelper.request.handler.impl.pre;
 
+import org.apache.commons.lang.StringUtils;
 import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.UrlTemplate;
 import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ErrorMessage;
+import org.ws.httphelper.model.ParameterDefine;
 import org.ws.httphelper.request.handler.RequestPreHandler;
 import org.ws.httphelper.model.WSRequestContext;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.Charset;
+import java.util.List;
 
 /**
+ * 生成URL：URL中的{key}替换为输入的值，按所在位置编码(见UrlTemplate)。<br/>
+ * 使用请求描述中解析好的URL模板，URL不是来自注解时按URL查找缓存的模板。<br/>
+ * 变量没有输入值时返回错误；声明为非必须的参数替换为空字符串。<br/>
  * Created by gz on 15/12/4.
  */
 public class DefaultURLBuilderHandlerImpl implements RequestPreHandler {
     @Override
     public boolean handler(WSRequestContext context) throws WSException {
         String url=context.getUrl();
-        Pattern pattern = Pattern.compile("(\\{([^&/\\}]+)\\})");
-        Matcher matcher = pattern.matcher(url);
-        String key = null,value=null;
-        while (matcher.find()) {
-            key = matcher.group(1);
-            value = String.valueOf(context.getInputDataMap().get(matcher.group(2)));
-
-            key=key.replace("{", "\\{").replace("}", "\\}");
-            url = url.replaceAll(key, value);
+        UrlTemplate template=context.getUrlTemplate();
+        if(template==null || !template.getTemplate().equals(url)){
+            // 没有变量的URL不需要解析
+            if(url==null || url.indexOf('{')<0){
+                return true;
+            }
+            template=UrlTemplate.forTemplate(url);
+        }
+        if(!template.hasVariables()){
+            return true;
+        }
+        List<String> missing=template.getMissing(context.getInputDataMap());
+        for(String name:missing){
+            if(!isOptional(context, name)){
+                context.addValidationResult(new ErrorMessage("URL[{0}]中的变量[{1}]没有输入值。", template.getTemplate(), name));
+            }
         }
-        context.setUrl(url);
+        if(!context.getErrorMessageList().isEmpty()){
+            return false;
+        }
+        // 保留模板，清理时恢复URL
+        context.setUrl(template.expand(context.getInputDataMap(), getCharset(context))).setUrlTemplate(template);
         return true;
     }
 
+    /**
+     * 声明为非必须的参数
+     */
+    private static boolean isOptional(WSRequestContext context, String name){
+        for(ParameterDefine parameterDefine:context.getParameterDefineList()){
+            if(name.equals(parameterDefine.getName())){
+                return !parameterDefine.isRequired();
+            }
+        }
+        return false;
+    }
+
+    private static Charset getCharset(WSRequestContext context){
+        if(!StringUtils.isEmpty(context.getCharset())){
+            try {
+                return Charset.forName(context.getCharset());
+            } catch (IllegalArgumentException e) {
+                // 使用UTF-8
+            }
+        }
+        return Charset.forName("UTF-8");
+    }
+
     @Override
     public int level() {
         return WSHttpHelperConstant.PRE_HANDLER_BUILD_PARAM;
@@ -43,8 +43,8 @@ public class DefaultValidationHandlerImpl implements RequestPreHandler {
                     }
                 }
                 // 验证正则
-                String regex = parameterDefine.getValidateRegex();
-                if(!StringUtils.isBlank(value) && !StringUtils.isBlank(regex) && !Pattern.matches(regex, value)){
+                Pattern pattern = parameterDefine.getValidatePattern();
+                if(!StringUtils.isBlank(value) && pattern!=null && !pattern.matcher(value).matches()){
                     context.addValidationResult(
                         new ErrorMessage("参数[{0}]，输入为[{1}]，正则表达式[{2}]验证失败。",
                                 parameterDefine.getName(),value,parameterDefine.getValidateRegex()));
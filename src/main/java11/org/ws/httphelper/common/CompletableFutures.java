@@ -0,0 +1,66 @@
+package org.ws.httphelper.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * WSFuture与JDK8+ CompletableFuture的相互转换，需要jdk11编译配置构建。<br/>
+ * 取消转换后的Future时同时取消原Future。<br/>
+ * Created by gz on 16/02/20.
+ */
+public final class CompletableFutures {
+    private CompletableFutures() {
+    }
+
+    /**
+     * 转换为CompletableFuture
+     * @param future
+     * @param <V>
+     * @return
+     */
+    public static <V> CompletableFuture<V> toCompletableFuture(final WSFuture<V> future) {
+        final CompletableFuture<V> completable = new CompletableFuture<V>();
+        future.addListener(f -> {
+            if (f.isSuccess()) {
+                completable.complete(f.getNow());
+            } else if (f.isCancelled()) {
+                completable.cancel(false);
+            } else {
+                completable.completeExceptionally(f.getCause());
+            }
+        });
+        completable.whenComplete((value, e) -> {
+            if (completable.isCancelled()) {
+                future.cancel(false);
+            }
+        });
+        return completable;
+    }
+
+    /**
+     * 转换为WSFuture
+     * @param completable
+     * @param <V>
+     * @return
+     */
+    public static <V> WSFuture<V> toWSFuture(final CompletableFuture<V> completable) {
+        final WSFuture<V> future = new WSFuture<V>();
+        completable.whenComplete((value, e) -> {
+            if (e == null) {
+                future.set(value);
+            } else {
+                Throwable cause = e;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                future.setException(cause);
+            }
+        });
+        future.addListener(f -> {
+            if (f.isCancelled()) {
+                completable.cancel(false);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,174 @@
+package org.ws.httphelper.http.h2;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.CompletableFutures;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.WSHttpClient;
+import org.ws.httphelper.http.WSSSLSocketFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 基于JDK11 java.net.http.HttpClient的HTTP/2实现。<br/>
+ * 同一个源(协议+主机+端口)的所有请求复用一个多路复用连接；https通过ALPN协商，http通过h2c升级，服务端不支持时自动使用HTTP/1.1。<br/>
+ * 请求由WSHttpClient生成(方法，头部，cookie，参数，文件上传)，响应转换后由WSHttpClient解析，与其他实现结果一致。<br/>
+ * 需要JDK11及以上，通过jdk11编译配置构建，名称为http2。STREAM和FILE响应类型不支持。<br/>
+ * Created by gz on 16/02/16.
+ */
+public class Http2Transport implements HttpTransport {
+    protected static Log log = LogFactory.getLog(Http2Transport.class);
+
+    /**
+     * java.net.http不允许设置的头部，由HttpClient自己生成
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private volatile HttpClient httpClient = null;
+
+    @Override
+    public String getName() {
+        return WSHttpHelperConstant.TRANSPORT_HTTP2;
+    }
+
+    @Override
+    public boolean supports(WSRequestContext context) {
+        return context.getResponseType() != ResponseType.STREAM && context.getResponseType() != ResponseType.FILE;
+    }
+
+    @Override
+    public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+        return CompletableFutures.toWSFuture(executeAsync(context));
+    }
+
+    /**
+     * 发起请求，立即返回
+     * @param context
+     * @return 响应完成后结束的CompletableFuture
+     * @throws WSException
+     */
+    public CompletableFuture<ResponseResult> executeAsync(WSRequestContext context) throws WSException {
+        if (context == null) {
+            throw new WSException("没有请求context！");
+        }
+        final WSHttpClient client = new WSHttpClient(context);
+        HttpRequest request = toRequest(client.createHttpRequest());
+        log.debug(context);
+        final long beginTime = System.currentTimeMillis();
+        return getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    ResponseResult result = new ResponseResult();
+                    try {
+                        client.readResponse(toResponse(response), beginTime, result);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                    return result;
+                });
+    }
+
+    @Override
+    public synchronized void close() {
+        // java.net.http.HttpClient没有关闭方法，不再引用后连接由HttpClient自行回收
+        httpClient = null;
+    }
+
+    private HttpClient getHttpClient() throws WSException {
+        HttpClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = this.httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .connectTimeout(Duration.ofMillis(WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_CONNECTION_TIMEOUT)))
+                            .sslContext(WSSSLSocketFactory.getInstance().getSSLContext())
+                            .build();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 转换为java.net.http请求，请求体缓存为byte[]
+     * @param httpRequest
+     * @return
+     * @throws WSException
+     */
+    private HttpRequest toRequest(HttpRequestBase httpRequest) throws WSException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(httpRequest.getURI())
+                .timeout(Duration.ofMillis(WSHttpHelperConfig.getInt(WSHttpHelperConstant.HTTP_SOCKET_TIMEOUT)));
+        for (Header header : httpRequest.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        HttpEntity entity = httpRequest instanceof HttpEntityEnclosingRequest
+                ? ((HttpEntityEnclosingRequest) httpRequest).getEntity() : null;
+        if (entity != null) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                entity.writeTo(out);
+                body = HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+            } catch (IOException e) {
+                throw new WSException(e);
+            }
+            if (entity.getContentType() != null) {
+                builder.setHeader("Content-Type", entity.getContentType().getValue());
+            }
+        }
+        return builder.method(httpRequest.getMethod(), body).build();
+    }
+
+    /**
+     * 转换为HttpClient响应，交给WSHttpClient解析
+     * @param response
+     * @return
+     */
+    private static org.apache.http.HttpResponse toResponse(HttpResponse<byte[]> response) {
+        BasicHttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, response.statusCode(), "");
+        for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+            // 忽略HTTP/2伪头部
+            if (entry.getKey().startsWith(":")) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                httpResponse.addHeader(entry.getKey(), value);
+            }
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(response.body());
+        response.headers().firstValue("Content-Type").ifPresent(entity::setContentType);
+        response.headers().firstValue("Content-Encoding").ifPresent(entity::setContentEncoding);
+        httpResponse.setEntity(entity);
+        return httpResponse;
+    }
+}
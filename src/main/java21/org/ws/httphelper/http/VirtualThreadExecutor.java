@@ -0,0 +1,21 @@
+package org.ws.httphelper.http;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 每个任务一个虚拟线程的executor。<br/>
+ * 阻塞在Socket读写上的虚拟线程会让出载体线程，请求数量不再受平台线程数限制。<br/>
+ * 需要JDK21及以上，通过jdk21编译配置构建，由HttpTaskExecutor按类名加载(executor.Mode=virtual)。<br/>
+ * Created by gz on 16/02/20.
+ */
+public class VirtualThreadExecutor implements Executor {
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("WSHttpHelper-virtual-", 0).factory());
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+}
@@ -0,0 +1,95 @@
+package org.ws.httphelper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用本地Http服务，不依赖外网
+ */
+public class LocalHttpServer {
+    private HttpServer server;
+    private String scheme = "http";
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    public LocalHttpServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return this;
+    }
+
+    /**
+     * 启动Https服务
+     * @param sslContext 服务端证书
+     */
+    public LocalHttpServer startHttps(SSLContext sslContext) throws IOException {
+        HttpsServer httpsServer = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server = httpsServer;
+        scheme = "https";
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return this;
+    }
+
+    public LocalHttpServer handle(String path, final HttpHandler handler) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                handler.handle(exchange);
+            }
+        });
+        return this;
+    }
+
+    public LocalHttpServer text(String path, final String body) {
+        return handle(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                write(exchange, 200, body.getBytes("UTF-8"));
+            }
+        });
+    }
+
+    public static void write(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    public String url(String path) {
+        return scheme + "://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 客户端使用过的不同端口数，即建立过的TCP连接数
+     */
+    public int getConnectionCount() {
+        return clientPorts.size();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
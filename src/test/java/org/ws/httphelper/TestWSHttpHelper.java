@@ -7,8 +7,6 @@ import org.apache.commons.logging.LogFactory;
 import org.ws.httphelper.exception.WSException;
 import org.ws.httphelper.model.ResponseResult;
 import org.ws.httphelper.request.handler.CallbackHandler;
-import sun.security.provider.MD5;
-import sun.security.rsa.RSASignature;
 
 import java.io.File;
 import java.io.FileInputStream;
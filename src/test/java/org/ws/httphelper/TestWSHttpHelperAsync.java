@@ -0,0 +1,107 @@
+package org.ws.httphelper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.ws.httphelper.common.FutureFunction;
+import org.ws.httphelper.common.FutureListener;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.request.impl.DefaultGetRequest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 测试异步请求
+ */
+public class TestWSHttpHelperAsync extends TestCase {
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalHttpServer().start().text("/hello", "hello").text("/json", "{\"name\":\"ws\"}");
+        server.handle("/query", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                LocalHttpServer.write(exchange, 200, exchange.getRequestURI().getQuery().getBytes("UTF-8"));
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    public void testDoGetHtmlAsync() throws Exception {
+        TestCase.assertEquals("hello", WSHttpHelper.doGetHtmlAsync(server.url("/hello")).get(5, TimeUnit.SECONDS));
+    }
+
+    public void testDoGetMapAsync() throws Exception {
+        Map<?, ?> map = WSHttpHelper.doGetMapAsync(server.url("/json")).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals("ws", map.get("name"));
+    }
+
+    /**
+     * 回调和链式处理，调用线程不等待
+     * @throws Exception
+     */
+    public void testListenerAndThen() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> value = new AtomicReference<String>();
+        WSHttpHelper.doGetHtmlAsync(server.url("/hello"))
+                .then(new FutureFunction<String, Integer>() {
+                    @Override
+                    public Integer apply(String html) throws Exception {
+                        return html.length();
+                    }
+                })
+                .addListener(new FutureListener<Integer>() {
+                    @Override
+                    public void operationComplete(WSFuture<Integer> future) {
+                        value.set(String.valueOf(future.getNow()));
+                        latch.countDown();
+                    }
+                });
+        TestCase.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        TestCase.assertEquals("5", value.get());
+    }
+
+    /**
+     * 同时发起的请求互不影响
+     * @throws Exception
+     */
+    public void testConcurrent() throws Exception {
+        List<WSFuture<String>> futures = new ArrayList<WSFuture<String>>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> parameters = new HashMap<String, Object>();
+            parameters.put("i", String.valueOf(i));
+            futures.add(WSHttpHelper.doGetHtmlAsync(server.url("/query"), parameters));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            TestCase.assertEquals("i=" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 请求失败时与同步请求一样返回500
+     * @throws Exception
+     */
+    public void testFailure() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        DefaultGetRequest request = new DefaultGetRequest();
+        request.getContext().setUrl("http://127.0.0.1:" + port + "/");
+        ResponseResult result = request.executeAsync().get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(500, result.getStatus());
+    }
+}
@@ -0,0 +1,100 @@
+package org.ws.httphelper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.request.handler.ByteBufferStreamConsumer;
+import org.ws.httphelper.request.handler.StreamConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 测试大文件下载：流式处理，直接写文件
+ */
+public class TestWSHttpHelperDownload extends TestCase {
+    private static final int SIZE = 1024 * 1024 + 123;
+    private LocalHttpServer server;
+    private byte[] content;
+
+    @Override
+    protected void setUp() throws Exception {
+        content = new byte[SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        server = new LocalHttpServer().start().handle("/file", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                LocalHttpServer.write(exchange, 200, content);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * 下载到文件
+     * @throws Exception
+     */
+    public void testDoGetFile() throws Exception {
+        File target = new File(FileUtils.getTempDirectory(), "wshttphelper-download-test.bin");
+        target.delete();
+        ResponseResult result = WSHttpHelper.doGetFile(server.url("/file"), target);
+        TestCase.assertEquals(200, result.getStatus());
+        TestCase.assertEquals(target, result.getBody());
+        TestCase.assertEquals(SIZE, result.getByteCount());
+        TestCase.assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(target)));
+        target.delete();
+    }
+
+    /**
+     * 直接读取输入流
+     * @throws Exception
+     */
+    public void testDoGetStream() throws Exception {
+        byte[] head = WSHttpHelper.doGetStream(server.url("/file"), new StreamConsumer<byte[]>() {
+            @Override
+            public byte[] consume(ResponseResult result, InputStream in) throws IOException, WSException {
+                TestCase.assertEquals(200, result.getStatus());
+                byte[] b = new byte[16];
+                int n = in.read(b);
+                return Arrays.copyOf(b, n);
+            }
+        });
+        TestCase.assertTrue(Arrays.equals(Arrays.copyOf(content, head.length), head));
+    }
+
+    /**
+     * 按块读取
+     * @throws Exception
+     */
+    public void testDoGetStreamChunk() throws Exception {
+        Long count = WSHttpHelper.doGetStream(server.url("/file"), new ByteBufferStreamConsumer<Long>() {
+            private long count = 0;
+
+            @Override
+            protected void onChunk(ByteBuffer chunk) throws IOException, WSException {
+                while (chunk.hasRemaining()) {
+                    TestCase.assertEquals(content[(int) count], chunk.get());
+                    count++;
+                }
+            }
+
+            @Override
+            protected Long onComplete(ResponseResult result) throws WSException {
+                return count;
+            }
+        });
+        TestCase.assertEquals(SIZE, count.longValue());
+    }
+}
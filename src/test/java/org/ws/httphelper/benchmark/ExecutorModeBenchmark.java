@@ -0,0 +1,114 @@
+package org.ws.httphelper.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 同步请求执行方式的单次调用开销对比：pool(提交到线程池后等待) 与 direct(调用线程直接执行)。<br/>
+ * 1.内存实现：不发送请求，只测量执行器本身的开销。<br/>
+ * 2.本地Http服务：实际请求，对比开销在整个请求中的比例。<br/>
+ * 运行：mvn test-compile 后执行 java -cp target/classes:target/test-classes:依赖 org.ws.httphelper.benchmark.ExecutorModeBenchmark
+ */
+public class ExecutorModeBenchmark {
+    private static final String TRANSPORT = "benchmark";
+    private static final int ROUNDS = 5;
+
+    /**
+     * 与阻塞实现一样在executor中执行，直接返回结果
+     */
+    static class InMemoryTransport implements HttpTransport {
+        @Override
+        public String getName() {
+            return TRANSPORT;
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ResponseResult result = new ResponseResult();
+                    result.setStatus(200);
+                    result.setBody("ok");
+                    future.set(result);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 关闭调试日志，避免日志输出影响结果
+        Logger.getLogger("org.ws.httphelper").setLevel(Level.INFO);
+        HttpTransportFactory.register(new InMemoryTransport());
+        HttpTaskExecutor executor = HttpTaskExecutor.getInstance();
+
+        WSRequestContext memory = context("http://127.0.0.1/", TRANSPORT);
+        System.out.println("内存实现，每轮200000次：");
+        for (int round = 0; round < ROUNDS; round++) {
+            report(executor, memory, 200000);
+        }
+
+        LocalHttpServer server = new LocalHttpServer().start().text("/hello", "hello");
+        try {
+            WSRequestContext http = context(server.url("/hello"), WSHttpHelperConstant.TRANSPORT_HTTPCLIENT);
+            // JDK自带HttpServer每次请求约40ms(TCP延迟确认)，次数不宜过多
+            System.out.println("本地Http服务，每轮200次：");
+            for (int round = 0; round < ROUNDS; round++) {
+                report(executor, http, 200);
+            }
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static WSRequestContext context(String url, String transport) {
+        WSRequestContext context = new WSRequestContext()
+                .setMethod(WSRequest.MethodType.GET)
+                .setResponseType(WSRequest.ResponseType.TEXT)
+                .setUrl(url)
+                .setTransport(transport);
+        context.setCharset("UTF-8");
+        return context;
+    }
+
+    private static void report(HttpTaskExecutor executor, WSRequestContext context, int count) {
+        long pool = measure(executor, WSHttpHelperConstant.EXECUTOR_MODE_POOL, context, count);
+        long direct = measure(executor, WSHttpHelperConstant.EXECUTOR_MODE_DIRECT, context, count);
+        System.out.println(String.format("  pool: %8d ns/次    direct: %8d ns/次", pool / count, direct / count));
+    }
+
+    private static long measure(HttpTaskExecutor executor, String mode, WSRequestContext context, int count) {
+        executor.setMode(mode);
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (executor.executeSync(context).getStatus() != 200) {
+                throw new IllegalStateException("请求失败");
+            }
+        }
+        return System.nanoTime() - begin;
+    }
+}
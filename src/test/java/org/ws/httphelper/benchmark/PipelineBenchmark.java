@@ -0,0 +1,110 @@
+package org.ws.httphelper.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+import org.ws.httphelper.request.handler.ResponseProHandler;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 请求处理器的单次调用开销：生成上下文，前处理，后处理和清理。<br/>
+ * 使用不发送请求的内存实现和direct执行方式，结果主要是处理器链本身的开销。<br/>
+ * 运行：mvn test-compile 后执行 java -cp target/classes:target/test-classes:依赖 org.ws.httphelper.benchmark.PipelineBenchmark
+ */
+public class PipelineBenchmark {
+    private static final String TRANSPORT = "pipeline-benchmark";
+    private static final int ROUNDS = 5;
+    private static final int COUNT = 500000;
+
+    /**
+     * 在调用线程中直接返回结果
+     */
+    static class InMemoryTransport implements HttpTransport {
+        @Override
+        public String getName() {
+            return TRANSPORT;
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            ResponseResult result = new ResponseResult();
+            result.setStatus(200);
+            result.setBody("ok");
+            return WSFuture.succeeded(result);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @WSRequest(name = "pipeline", url = "http://127.0.0.1/{id}", transport = TRANSPORT,
+            parameters = {@Parameter(name = "id", defaultValue = "1"), @Parameter(name = "q", defaultValue = "a")})
+    static class PipelineRequest extends WSHttpAbstractRequest {
+        private final boolean userHandler;
+
+        PipelineRequest(boolean userHandler) {
+            this.userHandler = userHandler;
+        }
+
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+            if (userHandler) {
+                addResponseProHandler(new ResponseProHandler() {
+                    @Override
+                    public ResponseResult handler(WSRequestContext context, ResponseResult result) throws WSException {
+                        return result;
+                    }
+
+                    @Override
+                    public int level() {
+                        return WSHttpHelperConstant.PRO_HANDLER_USER;
+                    }
+                });
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 关闭调试日志，避免日志输出影响结果
+        Logger.getLogger("org.ws.httphelper").setLevel(Level.INFO);
+        HttpTransportFactory.register(new InMemoryTransport());
+        HttpTaskExecutor.getInstance().setMode(WSHttpHelperConstant.EXECUTOR_MODE_DIRECT);
+
+        PipelineRequest plain = new PipelineRequest(false);
+        PipelineRequest withHandler = new PipelineRequest(true);
+        System.out.println("每轮" + COUNT + "次：");
+        for (int round = 0; round < ROUNDS; round++) {
+            long defaults = measure(plain);
+            long user = measure(withHandler);
+            System.out.println(String.format("  默认处理器: %6d ns/次    加一个后处理器: %6d ns/次", defaults / COUNT, user / COUNT));
+        }
+        System.exit(0);
+    }
+
+    private static long measure(PipelineRequest request) throws WSException {
+        long begin = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            if (request.execute().getStatus() != 200) {
+                throw new IllegalStateException("请求失败");
+            }
+        }
+        return System.nanoTime() - begin;
+    }
+}
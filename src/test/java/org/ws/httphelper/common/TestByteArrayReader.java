@@ -0,0 +1,58 @@
+package org.ws.httphelper.common;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+/**
+ * 测试byte[]读取和缓冲区池
+ */
+public class TestByteArrayReader extends TestCase {
+    private byte[] content(int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) {
+            b[i] = (byte) (i % 127);
+        }
+        return b;
+    }
+
+    /**
+     * 已知长度：只分配一次准确大小的数组
+     * @throws Exception
+     */
+    public void testKnownLength() throws Exception {
+        BufferPool pool = new BufferPool(1024, 16);
+        byte[] content = content(100000);
+        byte[] result = ByteArrayReader.read(new ByteArrayInputStream(content), content.length, pool);
+        TestCase.assertTrue(Arrays.equals(content, result));
+        TestCase.assertEquals(content.length, pool.getAllocatedBytes());
+    }
+
+    /**
+     * 未知长度：块从池中获取，重复读取时不再分配块
+     * @throws Exception
+     */
+    public void testUnknownLength() throws Exception {
+        BufferPool pool = new BufferPool(1024, 1024);
+        byte[] content = content(100000);
+        byte[] result = ByteArrayReader.read(new ByteArrayInputStream(content), -1, pool);
+        TestCase.assertTrue(Arrays.equals(content, result));
+        long first = pool.getAllocatedBytes();
+        result = ByteArrayReader.read(new ByteArrayInputStream(content), -1, pool);
+        TestCase.assertTrue(Arrays.equals(content, result));
+        TestCase.assertEquals(content.length, pool.getAllocatedBytes() - first);
+    }
+
+    /**
+     * Content-Length与实际长度不一致
+     * @throws Exception
+     */
+    public void testWrongLength() throws Exception {
+        BufferPool pool = new BufferPool(1024, 16);
+        byte[] content = content(5000);
+        TestCase.assertTrue(Arrays.equals(content, ByteArrayReader.read(new ByteArrayInputStream(content), 3000, pool)));
+        TestCase.assertTrue(Arrays.equals(content, ByteArrayReader.read(new ByteArrayInputStream(content), 8000, pool)));
+        TestCase.assertEquals(0, ByteArrayReader.read(new ByteArrayInputStream(content), 0, pool).length);
+    }
+}
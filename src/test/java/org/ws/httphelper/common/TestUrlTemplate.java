@@ -0,0 +1,68 @@
+package org.ws.httphelper.common;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试URL模板：按位置编码，缺少变量
+ */
+public class TestUrlTemplate extends TestCase {
+
+    @WSRequest(name = "search", url = "http://127.0.0.1:1/{type}/{id}?q={q}", transport = "stub",
+            parameters = {@Parameter(name = "type", required = true), @Parameter(name = "q")})
+    public static class SearchRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    public void testEncode() {
+        UrlTemplate template = UrlTemplate.compile("http://{host}/a/{path}?q={q}&r={+r}#{f}");
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("host", "a.com:8080");
+        values.put("path", "x/y z%");
+        values.put("q", "a&b=c+d 中");
+        values.put("r", "1/2?%2F 3");
+        values.put("f", "s/t?u#");
+        TestCase.assertEquals("http://a.com:8080/a/x%2Fy%20z%25?q=a%26b%3Dc%2Bd%20%E4%B8%AD&r=1/2?%2F%203#s/t?u%23",
+                template.expand(values));
+        TestCase.assertEquals("http://a.com:8080/a/x%2Fy%20z%25?q=a%26b%3Dc%2Bd%20%D6%D0&r=1/2?%2F%203#s/t?u%23",
+                template.expand(values, Charset.forName("GBK")));
+        // 整个URL是变量时不编码/?&=
+        TestCase.assertEquals("http://a.com/x?y=1&z=%E4%B8%AD",
+                UrlTemplate.compile("{url}").expand(Collections.singletonMap("url", "http://a.com/x?y=1&z=中")));
+        TestCase.assertEquals("/users/a%2Fb", UrlTemplate.compile("/users/{id}")
+                .expand(Collections.singletonMap("id", "a/b")));
+    }
+
+    public void testMissing() {
+        UrlTemplate template = UrlTemplate.forTemplate("http://a.com/{a}/{b}/{a}");
+        TestCase.assertSame(template, UrlTemplate.forTemplate("http://a.com/{a}/{b}/{a}"));
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("b", 1);
+        TestCase.assertEquals(Arrays.asList("a"), template.getMissing(values));
+        TestCase.assertEquals("http://a.com//1/", template.expand(values));
+        TestCase.assertNotNull(UrlTemplate.check("http://a.com/{+}"));
+    }
+
+    public void testRequest() throws Exception {
+        SearchRequest request = new SearchRequest();
+        ResponseResult result = request.newInvocation().parameter("type", "a b").parameter("id", 1).execute();
+        // 非必须的参数替换为空字符串
+        TestCase.assertEquals("GET http://127.0.0.1:1/a%20b/1?q=", result.getBody());
+        result = request.newInvocation().parameter("type", "a").execute();
+        TestCase.assertEquals(999, result.getStatus());
+        TestCase.assertTrue(result.getBody().toString().contains("[id]"));
+    }
+}
@@ -0,0 +1,89 @@
+package org.ws.httphelper.common;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试WSFuture的回调和链式处理
+ */
+public class TestWSFuture extends TestCase {
+
+    public void testListener() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        FutureListener<String> listener = new FutureListener<String>() {
+            @Override
+            public void operationComplete(WSFuture<String> future) {
+                count.incrementAndGet();
+            }
+        };
+        WSFuture<String> future = new WSFuture<String>();
+        future.addListener(listener);
+        TestCase.assertEquals(0, count.get());
+        future.set("a");
+        TestCase.assertEquals(1, count.get());
+        // 已经完成时立即调用
+        future.addListener(listener);
+        TestCase.assertEquals(2, count.get());
+        // 只能完成一次
+        TestCase.assertFalse(future.set("b"));
+        TestCase.assertEquals("a", future.get());
+        TestCase.assertEquals(2, count.get());
+    }
+
+    public void testThen() throws Exception {
+        WSFuture<String> future = new WSFuture<String>();
+        WSFuture<Integer> length = future.then(new FutureFunction<String, Integer>() {
+            @Override
+            public Integer apply(String value) throws Exception {
+                return value.length();
+            }
+        });
+        TestCase.assertFalse(length.isDone());
+        future.set("hello");
+        TestCase.assertEquals(Integer.valueOf(5), length.get());
+    }
+
+    public void testThenFailure() throws Exception {
+        WSFuture<Integer> result = WSFuture.<String>failed(new IOException("io")).then(new FutureFunction<String, Integer>() {
+            @Override
+            public Integer apply(String value) throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+        try {
+            result.get();
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    public void testRecover() throws Exception {
+        WSFuture<String> result = WSFuture.<String>failed(new IOException("io")).recover(new FutureFunction<Throwable, String>() {
+            @Override
+            public String apply(Throwable e) throws Exception {
+                return e.getMessage();
+            }
+        });
+        TestCase.assertEquals("io", result.get());
+    }
+
+    /**
+     * 取消链式处理的结果时取消原Future
+     * @throws Exception
+     */
+    public void testCancelPropagation() throws Exception {
+        WSFuture<String> future = new WSFuture<String>();
+        WSFuture<String> next = future.then(new FutureFunction<String, String>() {
+            @Override
+            public String apply(String value) throws Exception {
+                return value;
+            }
+        });
+        next.cancel(false);
+        TestCase.assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,44 @@
+package org.ws.httphelper.http;
+
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用内存实现：不发送请求，直接返回请求的URL，通过ServiceLoader加载
+ */
+public class StubHttpTransport implements HttpTransport {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    @Override
+    public boolean supports(WSRequestContext context) {
+        return true;
+    }
+
+    @Override
+    public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+        count.incrementAndGet();
+        ResponseResult result = new ResponseResult();
+        result.setStatus(200);
+        result.setWasteTime(0);
+        result.setBody(context.getMethod() + " " + context.getUrl());
+        return WSFuture.succeeded(result);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+}
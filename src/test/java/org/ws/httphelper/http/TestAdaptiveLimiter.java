@@ -0,0 +1,215 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.exception.WSLimitExceededException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试自适应并发数限制
+ */
+public class TestAdaptiveLimiter extends TestCase {
+
+    /**
+     * 在executor中执行，阻塞到release后返回503
+     */
+    static class OverloadedTransport implements HttpTransport {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getName() {
+            return "overloaded";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignore) {
+                    }
+                    ResponseResult result = new ResponseResult();
+                    result.setStatus(503);
+                    future.set(result);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 与两种Http实现一样，把I/O异常包装为WSException
+     */
+    static class FailingTransport implements HttpTransport {
+        @Override
+        public String getName() {
+            return "failing";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            future.setException(new WSException(new IOException("Connection reset")));
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 并发数达到限制时成功，逐渐增加
+     */
+    public void testAdditiveIncrease() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("a.com", 2, 1, 10, 0.5, 1000.0, 0);
+        for (int round = 0; round < 3; round++) {
+            int limit = limiter.getLimit();
+            AdaptiveLimiter.Permit[] permits = new AdaptiveLimiter.Permit[limit];
+            for (int i = 0; i < limit; i++) {
+                permits[i] = limiter.acquire().get();
+            }
+            for (AdaptiveLimiter.Permit permit : permits) {
+                permit.success();
+            }
+        }
+        TestCase.assertTrue(limiter.getLimit() > 2);
+        TestCase.assertEquals(0, limiter.getInFlight());
+        // 空闲时不增加
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire().get().success();
+        }
+        TestCase.assertEquals(limit, limiter.getLimit());
+    }
+
+    public void testMultiplicativeDecrease() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("a.com", 10, 3, 10, 0.5, 1000.0, 0);
+        AdaptiveLimiter.Permit permit = limiter.acquire().get();
+        permit.dropped();
+        // 重复调用无效
+        permit.dropped();
+        TestCase.assertEquals(5, limiter.getLimit());
+        limiter.acquire().get().dropped();
+        TestCase.assertEquals(3, limiter.getLimit());
+        TestCase.assertEquals(2, limiter.getDropCount());
+    }
+
+    public void testShed() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("a.com", 1, 1, 10, 0.5, 1000.0, 0);
+        AdaptiveLimiter.Permit permit = limiter.acquire().get();
+        try {
+            limiter.acquire().get();
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof WSLimitExceededException);
+            TestCase.assertEquals("a.com", ((WSLimitExceededException) e.getCause()).getHost());
+        }
+        TestCase.assertEquals(1, limiter.getRejectedCount());
+        permit.ignore();
+        TestCase.assertTrue(limiter.acquire().isSuccess());
+    }
+
+    public void testQueueDeadline() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("a.com", 1, 1, 1, 0.5, 1000.0, 200);
+        AdaptiveLimiter.Permit first = limiter.acquire().get();
+        TestCase.assertFalse(first.isQueued());
+        WSFuture<AdaptiveLimiter.Permit> second = limiter.acquire();
+        TestCase.assertFalse(second.isDone());
+        TestCase.assertEquals(1, limiter.getQueueSize());
+        first.success();
+        TestCase.assertTrue(second.get(1, TimeUnit.SECONDS).isQueued());
+
+        // 没有请求结束，等待超时
+        long begin = System.currentTimeMillis();
+        try {
+            limiter.acquire().get(5, TimeUnit.SECONDS);
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof WSLimitExceededException);
+        }
+        TestCase.assertTrue(System.currentTimeMillis() - begin >= 150);
+        TestCase.assertEquals(1, limiter.getTimeoutCount());
+        TestCase.assertEquals(0, limiter.getQueueSize());
+    }
+
+    /**
+     * 执行器：503减小限制，超过限制的请求直接失败
+     */
+    public void testExecutor() throws Exception {
+        OverloadedTransport transport = new OverloadedTransport();
+        HttpTransportFactory.register(transport);
+        HttpTaskExecutor executor = new HttpTaskExecutor();
+        executor.setAdaptive(true);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("a.com", 4, 1, 10, 0.5, 1000.0, 0);
+        executor.setAdaptiveLimiter(limiter);
+
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/x").setTransport("overloaded");
+        WSFuture<ResponseResult>[] futures = new WSFuture[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = executor.execute(context);
+        }
+        ResponseResult shed = executor.executeSync(context);
+        TestCase.assertEquals(500, shed.getStatus());
+        TestCase.assertTrue(String.valueOf(shed.getBody()).contains("a.com"));
+
+        transport.release.countDown();
+        for (WSFuture<ResponseResult> future : futures) {
+            TestCase.assertEquals(503, future.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        TestCase.assertEquals(1, limiter.getLimit());
+        TestCase.assertEquals(0, limiter.getInFlight());
+        TestCase.assertSame(limiter, executor.getAdaptiveLimiter("a.com"));
+    }
+
+    /**
+     * 执行器：包装后的I/O异常减小限制，本地拒绝不调整
+     */
+    public void testExecutorWrappedIOException() throws Exception {
+        HttpTransportFactory.register(new FailingTransport());
+        HttpTaskExecutor executor = new HttpTaskExecutor();
+        executor.setAdaptive(true);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("b.com", 8, 1, 10, 0.5, 1000.0, 0);
+        executor.setAdaptiveLimiter(limiter);
+
+        WSRequestContext context = new WSRequestContext().setUrl("http://b.com/x").setTransport("failing");
+        try {
+            executor.execute(context).get(5, TimeUnit.SECONDS);
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+        TestCase.assertEquals(4, limiter.getLimit());
+        TestCase.assertEquals(1, limiter.getDropCount());
+        TestCase.assertEquals(0, limiter.getInFlight());
+
+        TestCase.assertTrue(HttpTaskExecutor.isOverload(new WSException(new WSException(new IOException()))));
+        TestCase.assertFalse(HttpTaskExecutor.isOverload(new WSException("bad request")));
+        TestCase.assertFalse(HttpTaskExecutor.isOverload(new WSLimitExceededException("b.com", 8)));
+    }
+}
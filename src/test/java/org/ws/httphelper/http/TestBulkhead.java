@@ -0,0 +1,157 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Bulkhead;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试舱壁隔离
+ */
+public class TestBulkhead extends TestCase {
+
+    /**
+     * 在executor中执行，阻塞到release后返回执行线程名称
+     */
+    static class BlockingTransport implements HttpTransport {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getName() {
+            return "bulkheadBlocking";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignore) {
+                    }
+                    ResponseResult result = new ResponseResult();
+                    result.setStatus(200);
+                    result.setBody(Thread.currentThread().getName());
+                    future.set(result);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @WSRequest(name = "annotated", url = "http://127.0.0.1:1/annotated", transport = "bulkheadBlocking")
+    @Bulkhead(maxConcurrency = 3, queueCapacity = 0)
+    public static class AnnotatedRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    private BlockingTransport transport;
+    private HttpTaskExecutor executor;
+    private BulkheadRegistry registry;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new BlockingTransport();
+        HttpTransportFactory.register(transport);
+        executor = new HttpTaskExecutor();
+        registry = BulkheadRegistry.getInstance();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        transport.release.countDown();
+        registry.setKey(WSHttpHelperConstant.BULKHEAD_KEY_NONE);
+        registry.shutdownAll();
+    }
+
+    /**
+     * 慢的舱壁占满后拒绝请求，其他舱壁不受影响
+     */
+    public void testIsolation() throws Exception {
+        registry.getBulkhead("slow", 2, 2, 0);
+        List<WSFuture<ResponseResult>> futures = new ArrayList<WSFuture<ResponseResult>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.execute(context("slow", "http://a.com/")));
+        }
+        // 2个执行，2个排队，第5个被拒绝
+        ResponseResult rejected = executor.executeSync(context("slow", "http://a.com/"));
+        TestCase.assertEquals(500, rejected.getStatus());
+        TestCase.assertTrue(String.valueOf(rejected.getBody()).contains("slow"));
+
+        BulkheadExecutor slow = registry.getBulkhead(context("slow", null));
+        waitActive(slow, 2);
+        TestCase.assertEquals(2, slow.getQueueSize());
+        TestCase.assertEquals(1, slow.getRejectedCount());
+        TestCase.assertEquals(1.0, slow.getSaturation(), 0.001);
+
+        // 其他舱壁正常执行
+        WSFuture<ResponseResult> other = executor.execute(context("other", "http://b.com/"));
+        waitActive(registry.getBulkhead(context("other", null)), 1);
+
+        transport.release.countDown();
+        TestCase.assertTrue(((String) other.get(5, TimeUnit.SECONDS).getBody()).startsWith("WSHttpHelper-bulkhead-other-"));
+        for (WSFuture<ResponseResult> future : futures) {
+            TestCase.assertTrue(((String) future.get(5, TimeUnit.SECONDS).getBody()).startsWith("WSHttpHelper-bulkhead-slow-"));
+        }
+    }
+
+    public void testKeyByHost() throws Exception {
+        registry.setKey(WSHttpHelperConstant.BULKHEAD_KEY_HOST);
+        transport.release.countDown();
+        ResponseResult result = executor.executeSync(context(null, "http://a.com:8080/x"));
+        TestCase.assertTrue(((String) result.getBody()).startsWith("WSHttpHelper-bulkhead-a.com:8080-"));
+        TestCase.assertNotNull(registry.getBulkhead(context(null, "http://a.com:8080/y")));
+    }
+
+    public void testKeyNone() throws Exception {
+        registry.setKey(WSHttpHelperConstant.BULKHEAD_KEY_NONE);
+        TestCase.assertNull(registry.getBulkhead(context(null, "http://a.com/")));
+    }
+
+    /**
+     * 注解指定舱壁配置
+     */
+    public void testAnnotation() throws Exception {
+        transport.release.countDown();
+        ResponseResult result = new AnnotatedRequest().execute();
+        TestCase.assertTrue(((String) result.getBody()).startsWith("WSHttpHelper-bulkhead-annotated-"));
+        BulkheadExecutor bulkhead = registry.getBulkhead(new WSRequestContext().setBulkhead("annotated"));
+        TestCase.assertEquals(3, bulkhead.getMaxConcurrency());
+        TestCase.assertEquals(0, bulkhead.getQueueCapacity());
+    }
+
+    private void waitActive(BulkheadExecutor bulkhead, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && bulkhead.getActiveCount() < count; i++) {
+            Thread.sleep(20);
+        }
+        TestCase.assertEquals(count, bulkhead.getActiveCount());
+    }
+
+    private static WSRequestContext context(String bulkhead, String url) {
+        return new WSRequestContext().setBulkhead(bulkhead).setUrl(url).setTransport("bulkheadBlocking");
+    }
+}
@@ -0,0 +1,154 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.annotation.CircuitBreaker;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试熔断器
+ */
+public class TestCircuitBreaker extends TestCase {
+
+    /**
+     * 总是返回503
+     */
+    static class UnavailableTransport implements HttpTransport {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "unavailable";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            count.incrementAndGet();
+            ResponseResult result = new ResponseResult();
+            result.setStatus(503);
+            return WSFuture.succeeded(result);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @WSRequest(name = "breaker", url = "http://127.0.0.1:1/breaker", transport = "unavailable")
+    @CircuitBreaker(windowSize = 2, minimumCalls = 2, openMillis = 60000)
+    public static class BreakerRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    /**
+     * 记录状态变化
+     */
+    static class Transitions implements WSCircuitBreaker.StateListener {
+        final List<String> list = new ArrayList<String>();
+
+        @Override
+        public synchronized void onStateChange(WSCircuitBreaker breaker, WSCircuitBreaker.State from, WSCircuitBreaker.State to) {
+            list.add(from + "->" + to);
+        }
+    }
+
+    private static WSCircuitBreaker open(Transitions transitions) {
+        WSCircuitBreaker breaker = new WSCircuitBreaker("test", 50, 101, 1000, 10, 4, 200, 2);
+        breaker.addListener(transitions);
+        breaker.tryAcquire().onSuccess(10);
+        breaker.tryAcquire().onError(10);
+        breaker.tryAcquire().onSuccess(10);
+        TestCase.assertEquals(WSCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire().onError(10);
+        return breaker;
+    }
+
+    public void testFailureRate() {
+        Transitions transitions = new Transitions();
+        WSCircuitBreaker breaker = open(transitions);
+        TestCase.assertEquals(WSCircuitBreaker.State.OPEN, breaker.getState());
+        TestCase.assertNull(breaker.tryAcquire());
+        TestCase.assertEquals(1, breaker.getRejectedCount());
+        TestCase.assertEquals(1, breaker.getOpenCount());
+        TestCase.assertEquals("[CLOSED->OPEN]", transitions.list.toString());
+    }
+
+    public void testHalfOpen() throws Exception {
+        Transitions transitions = new Transitions();
+        WSCircuitBreaker breaker = open(transitions);
+        Thread.sleep(250);
+        WSCircuitBreaker.Permit first = breaker.tryAcquire();
+        TestCase.assertNotNull(first);
+        TestCase.assertEquals(WSCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        WSCircuitBreaker.Permit second = breaker.tryAcquire();
+        TestCase.assertNotNull(second);
+        // 探测请求已满
+        TestCase.assertNull(breaker.tryAcquire());
+        // 取消的探测请求归还许可
+        second.release();
+        second = breaker.tryAcquire();
+        TestCase.assertNotNull(second);
+        first.onSuccess(10);
+        second.onSuccess(10);
+        TestCase.assertEquals(WSCircuitBreaker.State.CLOSED, breaker.getState());
+        TestCase.assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", transitions.list.toString());
+    }
+
+    public void testHalfOpenFailure() throws Exception {
+        Transitions transitions = new Transitions();
+        WSCircuitBreaker breaker = open(transitions);
+        Thread.sleep(250);
+        breaker.tryAcquire().onError(10);
+        breaker.tryAcquire().onSuccess(10);
+        TestCase.assertEquals(WSCircuitBreaker.State.OPEN, breaker.getState());
+        TestCase.assertEquals(2, breaker.getOpenCount());
+        TestCase.assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->OPEN]", transitions.list.toString());
+    }
+
+    public void testSlowCallRate() {
+        WSCircuitBreaker breaker = new WSCircuitBreaker("slow", 50, 50, 100, 4, 2, 1000, 1);
+        // 打开前获取的许可，打开后不再统计
+        WSCircuitBreaker.Permit stale = breaker.tryAcquire();
+        breaker.tryAcquire().onSuccess(10);
+        breaker.tryAcquire().onSuccess(10);
+        breaker.tryAcquire().onSuccess(200);
+        TestCase.assertEquals(100.0 / 3, breaker.getSlowCallRate(), 0.001);
+        breaker.tryAcquire().onSuccess(300);
+        TestCase.assertEquals(WSCircuitBreaker.State.OPEN, breaker.getState());
+        stale.onError(10);
+        TestCase.assertEquals(-1.0, breaker.getFailureRate(), 0.001);
+    }
+
+    /**
+     * 打开后请求不再发送
+     */
+    public void testExecutor() throws Exception {
+        UnavailableTransport transport = new UnavailableTransport();
+        HttpTransportFactory.register(transport);
+        TestCase.assertEquals(503, new BreakerRequest().execute().getStatus());
+        TestCase.assertEquals(503, new BreakerRequest().execute().getStatus());
+        ResponseResult result = new BreakerRequest().execute();
+        TestCase.assertEquals(500, result.getStatus());
+        TestCase.assertTrue(String.valueOf(result.getBody()).contains("breaker"));
+        TestCase.assertEquals(2, transport.count.get());
+        WSCircuitBreaker breaker = CircuitBreakerRegistry.getInstance().getBreaker("breaker", null);
+        TestCase.assertEquals(WSCircuitBreaker.State.OPEN, breaker.getState());
+        TestCase.assertTrue(CircuitBreakerRegistry.getInstance().getBreakers().contains(breaker));
+    }
+}
@@ -0,0 +1,95 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试并发数限制
+ */
+public class TestConcurrencyLimiter extends TestCase {
+    private ExecutorService threads;
+
+    @Override
+    protected void setUp() throws Exception {
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        threads.shutdownNow();
+    }
+
+    public void testGlobalLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(3, 0);
+        TestCase.assertEquals(3, run(limiter, 10, "http://a.com/", "http://b.com/"));
+        TestCase.assertEquals(0, limiter.getActiveCount());
+    }
+
+    public void testPerHostLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(0, 2);
+        // 两个host各2个
+        TestCase.assertEquals(4, run(limiter, 10, "http://a.com/x", "http://b.com:8080/y"));
+        TestCase.assertEquals(0, limiter.getActiveCount("a.com"));
+        TestCase.assertEquals(-1, limiter.getActiveCount());
+    }
+
+    public void testUnlimited() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(0, 0);
+        TestCase.assertSame(threads, limiter.limit(threads, "http://a.com/"));
+    }
+
+    public void testGetHost() {
+        TestCase.assertEquals("a.com", ConcurrencyLimiter.getHost("http://a.com/x?y=1"));
+        TestCase.assertEquals("a.com:8080", ConcurrencyLimiter.getHost("https://a.com:8080/"));
+        TestCase.assertEquals("", ConcurrencyLimiter.getHost("a.com/x"));
+        TestCase.assertEquals("", ConcurrencyLimiter.getHost(null));
+    }
+
+    /**
+     * 交替向两个地址提交任务，所有任务阻塞到最大并发数出现后再一起结束
+     * @return 最大并发数
+     */
+    private int run(ConcurrencyLimiter limiter, int count, String url1, String url2) throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            Executor executor = limiter.limit(threads, i % 2 == 0 ? url1 : url2);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int current = active.incrementAndGet();
+                    synchronized (max) {
+                        if (current > max.get()) {
+                            max.set(current);
+                        }
+                    }
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                    active.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        Thread.sleep(300);
+        release.countDown();
+        TestCase.assertTrue(done.await(5, TimeUnit.SECONDS));
+        // 任务结束后才释放许可
+        for (int i = 0; i < 100 && limiter.getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 100 && limiter.getActiveCount(ConcurrencyLimiter.getHost(url1)) > 0; i++) {
+            Thread.sleep(10);
+        }
+        return max.get();
+    }
+}
@@ -0,0 +1,182 @@
+package org.ws.httphelper.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Hedge;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试对冲请求
+ */
+public class TestHedge extends TestCase {
+    private LocalHttpServer server;
+    private final AtomicInteger slowCount = new AtomicInteger();
+    private final List<String> queryUris = Collections.synchronizedList(new ArrayList<String>());
+
+    @WSRequest(name = "hedge", url = "http://127.0.0.1:1/slow-once", responseType = ResponseType.TEXT)
+    @Hedge(delayMillis = 100)
+    public static class HedgeRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalHttpServer().start().text("/fast", "fast").handle("/slow-once", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // 第一个请求很慢，之后的请求立即返回
+                if (slowCount.incrementAndGet() == 1) {
+                    sleep(3000);
+                    LocalHttpServer.write(exchange, 200, "slow".getBytes("UTF-8"));
+                } else {
+                    LocalHttpServer.write(exchange, 200, "fast".getBytes("UTF-8"));
+                }
+            }
+        }).handle("/query", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                queryUris.add(exchange.getRequestURI().toString());
+                sleep(300);
+                LocalHttpServer.write(exchange, 200, "ok".getBytes("UTF-8"));
+            }
+        }).handle("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sleep(3000);
+                LocalHttpServer.write(exchange, 200, "slow".getBytes("UTF-8"));
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    public void testPercentileDelay() {
+        HedgePolicy policy = new HedgePolicy("percentile", 0, 0.95, 0.1);
+        for (int i = 1; i <= 100; i++) {
+            policy.record(i);
+        }
+        // 每16个样本重新计算，最后一次计算使用前96个样本
+        TestCase.assertEquals(92, policy.getDelayMillis());
+        HedgePolicy fixed = new HedgePolicy("fixed", 50, 0.95, 0.1);
+        TestCase.assertEquals(50, fixed.getDelayMillis());
+    }
+
+    /**
+     * 对冲请求数不超过请求数的比例
+     */
+    public void testBudget() {
+        HedgePolicy policy = new HedgePolicy("budget", 10, 0.95, 0.1);
+        int hedges = 0;
+        for (int i = 0; i < 100; i++) {
+            policy.onRequest();
+            if (policy.tryHedge()) {
+                hedges++;
+            }
+        }
+        // 初始的1个配额和每10个请求1个配额
+        TestCase.assertTrue(hedges <= 11);
+        TestCase.assertEquals(hedges, policy.getHedgeCount());
+        TestCase.assertEquals(100 - hedges, policy.getRejectedCount());
+    }
+
+    /**
+     * 慢请求被对冲请求取代，并且被中断
+     */
+    public void testHedge() throws Exception {
+        HedgeRequest request = new HedgeRequest();
+        request.getContext().setUrl(server.url("/slow-once"));
+        long begin = System.currentTimeMillis();
+        ResponseResult result = request.execute();
+        TestCase.assertEquals("fast", result.getBody());
+        TestCase.assertTrue(System.currentTimeMillis() - begin < 2000);
+        TestCase.assertEquals(2, slowCount.get());
+        HedgePolicy policy = HedgePolicy.getPolicy("hedge", HedgeRequest.class.getAnnotation(Hedge.class));
+        TestCase.assertEquals(1, policy.getHedgeCount());
+        TestCase.assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    /**
+     * 使用HttpClient发送带参数的对冲请求：两个请求的URL相同，上下文的URL不变
+     */
+    public void testHedgeQuery() throws Exception {
+        HedgePolicy policy = new HedgePolicy("query", 50, 0.95, 1.0);
+        WSRequestContext context = new WSRequestContext().setUrl(server.url("/query")).setMethod(MethodType.GET)
+                .setTransport(WSHttpHelperConstant.TRANSPORT_HTTPCLIENT).setHedgePolicy(policy)
+                .setNameValuePairList(new ArrayList<NameValuePair>(Arrays.asList(new BasicNameValuePair("q", "1"))));
+        context.setResponseType(ResponseType.TEXT);
+        context.setCharset("UTF-8");
+        TestCase.assertEquals("ok", new HttpTaskExecutor().executeSync(context).getBody());
+        TestCase.assertEquals(1, policy.getHedgeCount());
+        TestCase.assertEquals(Arrays.asList("/query?q=1", "/query?q=1"), queryUris);
+        TestCase.assertEquals(server.url("/query"), context.getUrl());
+    }
+
+    /**
+     * POST请求不对冲
+     */
+    public void testPostNotHedged() throws Exception {
+        HedgePolicy policy = new HedgePolicy("post", 10, 0.95, 1);
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/x").setTransport("stub")
+                .setMethod(MethodType.POST).setHedgePolicy(policy);
+        TestCase.assertEquals(200, new HttpTaskExecutor().executeSync(context).getStatus());
+        TestCase.assertEquals(0, policy.getRequestCount());
+    }
+
+    /**
+     * 取消时中断HttpClient的请求，释放线程和连接
+     */
+    public void testAbort() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            WSRequestContext context = new WSRequestContext().setUrl(server.url("/slow")).setMethod(MethodType.GET);
+            context.setResponseType(ResponseType.TEXT);
+            context.setCharset("UTF-8");
+            WSFuture<ResponseResult> future = new HttpClientTransport().execute(context, executor);
+            Thread.sleep(200);
+            TestCase.assertTrue(future.cancel(false));
+            long begin = System.currentTimeMillis();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(2, TimeUnit.SECONDS);
+            TestCase.assertTrue(System.currentTimeMillis() - begin < 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
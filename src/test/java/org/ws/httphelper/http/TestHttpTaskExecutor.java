@@ -0,0 +1,79 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试同步请求的执行方式
+ */
+public class TestHttpTaskExecutor extends TestCase {
+
+    /**
+     * 在executor中执行，结果为执行线程
+     */
+    static class ThreadNameTransport implements HttpTransport {
+        @Override
+        public String getName() {
+            return "threadName";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ResponseResult result = new ResponseResult();
+                    result.setStatus(200);
+                    result.setBody(Thread.currentThread().getName());
+                    future.set(result);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private HttpTaskExecutor executor;
+    private WSRequestContext context;
+
+    @Override
+    protected void setUp() throws Exception {
+        HttpTransportFactory.register(new ThreadNameTransport());
+        executor = new HttpTaskExecutor();
+        context = new WSRequestContext().setTransport("threadName");
+    }
+
+    public void testDirect() throws Exception {
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_DIRECT);
+        TestCase.assertEquals(Thread.currentThread().getName(), executor.executeSync(context).getBody());
+        // 异步请求仍然使用线程池
+        String name = (String) executor.execute(context).get(5, TimeUnit.SECONDS).getBody();
+        TestCase.assertFalse(Thread.currentThread().getName().equals(name));
+    }
+
+    public void testPool() throws Exception {
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_POOL);
+        TestCase.assertFalse(Thread.currentThread().getName().equals(executor.executeSync(context).getBody()));
+    }
+
+    public void testFailure() throws Exception {
+        ResponseResult result = executor.executeSync(new WSRequestContext().setTransport("unknown"));
+        TestCase.assertEquals(500, result.getStatus());
+    }
+}
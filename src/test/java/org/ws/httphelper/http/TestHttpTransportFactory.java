@@ -0,0 +1,66 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.nio.NioHttpEngine;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+/**
+ * 测试Http实现的查找
+ */
+public class TestHttpTransportFactory extends TestCase {
+
+    @WSRequest(name = "stub", url = "http://127.0.0.1:1/stub", transport = "stub")
+    public static class StubRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    public void testBuiltin() throws Exception {
+        TestCase.assertTrue(HttpTransportFactory.getTransport(WSHttpHelperConstant.TRANSPORT_HTTPCLIENT) instanceof HttpClientTransport);
+        TestCase.assertSame(NioHttpEngine.getInstance(), HttpTransportFactory.getTransport(WSHttpHelperConstant.TRANSPORT_NIO));
+        TestCase.assertTrue(HttpTransportFactory.getTransport("") instanceof HttpClientTransport);
+    }
+
+    /**
+     * 通过ServiceLoader加载，通过注解选择
+     * @throws Exception
+     */
+    public void testServiceLoader() throws Exception {
+        StubHttpTransport stub = (StubHttpTransport) HttpTransportFactory.getTransport("stub");
+        int count = stub.getCount();
+        ResponseResult result = new StubRequest().execute();
+        TestCase.assertEquals(200, result.getStatus());
+        TestCase.assertEquals("GET http://127.0.0.1:1/stub", result.getBody());
+        TestCase.assertEquals(count + 1, stub.getCount());
+    }
+
+    public void testClassName() throws Exception {
+        TestCase.assertTrue(HttpTransportFactory.getTransport(HttpClientTransport.class.getName()) instanceof HttpClientTransport);
+    }
+
+    public void testNotFound() throws Exception {
+        try {
+            HttpTransportFactory.getTransport("unknown");
+            TestCase.fail();
+        } catch (WSException e) {
+            TestCase.assertTrue(e.getMessage().contains("unknown"));
+        }
+    }
+
+    /**
+     * 不支持的请求使用httpclient实现
+     * @throws Exception
+     */
+    public void testUnsupported() throws Exception {
+        WSRequestContext context = new WSRequestContext()
+                .setResponseType(WSRequest.ResponseType.STREAM)
+                .setTransport(WSHttpHelperConstant.TRANSPORT_NIO);
+        TestCase.assertTrue(HttpTransportFactory.getTransport(context) instanceof HttpClientTransport);
+    }
+}
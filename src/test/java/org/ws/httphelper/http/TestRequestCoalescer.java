@@ -0,0 +1,142 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试合并相同的并发请求
+ */
+public class TestRequestCoalescer extends TestCase {
+
+    /**
+     * 在executor中执行，阻塞到release后返回URL
+     */
+    static class GatedTransport implements HttpTransport {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        final List<WSFuture<ResponseResult>> futures = new ArrayList<WSFuture<ResponseResult>>();
+
+        @Override
+        public String getName() {
+            return "gated";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(final WSRequestContext context, Executor executor) throws WSException {
+            count.incrementAndGet();
+            final WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            synchronized (futures) {
+                futures.add(future);
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignore) {
+                    }
+                    ResponseResult result = new ResponseResult();
+                    result.setStatus(200);
+                    result.setBody(context.getUrl());
+                    future.set(result);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private GatedTransport transport;
+    private HttpTaskExecutor executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new GatedTransport();
+        HttpTransportFactory.register(transport);
+        executor = new HttpTaskExecutor();
+        executor.setCoalesce(true);
+    }
+
+    private static WSRequestContext context(String url, MethodType method, String... params) {
+        WSRequestContext context = new WSRequestContext().setUrl(url).setTransport("gated").setMethod(method);
+        List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            pairs.add(new BasicNameValuePair(params[i], params[i + 1]));
+        }
+        context.setNameValuePairList(pairs);
+        return context;
+    }
+
+    public void testKey() {
+        String key = RequestCoalescer.getKey(context("http://a.com/x", MethodType.GET, "a", "1"));
+        TestCase.assertEquals(key, RequestCoalescer.getKey(context("http://a.com/x", MethodType.GET, "a", "1")));
+        TestCase.assertFalse(key.equals(RequestCoalescer.getKey(context("http://a.com/x", MethodType.GET, "a", "2"))));
+        WSRequestContext header = context("http://a.com/x", MethodType.GET, "a", "1").addHeader("Authorization", "x");
+        TestCase.assertFalse(key.equals(RequestCoalescer.getKey(header)));
+        TestCase.assertNull(RequestCoalescer.getKey(context("http://a.com/x", MethodType.POST)));
+    }
+
+    public void testCoalesce() throws Exception {
+        List<WSFuture<ResponseResult>> futures = new ArrayList<WSFuture<ResponseResult>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.execute(context("http://a.com/x", MethodType.GET, "a", "1")));
+        }
+        WSFuture<ResponseResult> other = executor.execute(context("http://a.com/x", MethodType.GET, "a", "2"));
+        WSFuture<ResponseResult> post = executor.execute(context("http://a.com/x", MethodType.POST, "a", "1"));
+        TestCase.assertEquals(2, executor.getCoalescer().getInFlightCount());
+        transport.release.countDown();
+        ResponseResult first = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (WSFuture<ResponseResult> future : futures) {
+            ResponseResult result = future.get(5, TimeUnit.SECONDS);
+            TestCase.assertEquals("http://a.com/x", result.getBody());
+            if (future != futures.get(0)) {
+                // 每个调用方得到副本
+                TestCase.assertNotSame(first, result);
+            }
+        }
+        TestCase.assertEquals(200, other.get(5, TimeUnit.SECONDS).getStatus());
+        TestCase.assertEquals(200, post.get(5, TimeUnit.SECONDS).getStatus());
+        TestCase.assertEquals(3, transport.count.get());
+        TestCase.assertEquals(9, executor.getCoalescer().getCoalescedCount());
+        TestCase.assertEquals(0, executor.getCoalescer().getInFlightCount());
+
+        // 结束后不再共享
+        executor.execute(context("http://a.com/x", MethodType.GET, "a", "1")).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(4, transport.count.get());
+    }
+
+    /**
+     * 所有调用方都取消后才取消请求
+     */
+    public void testCancel() throws Exception {
+        WSFuture<ResponseResult> first = executor.execute(context("http://a.com/y", MethodType.GET));
+        WSFuture<ResponseResult> second = executor.execute(context("http://a.com/y", MethodType.GET));
+        TestCase.assertTrue(first.cancel(false));
+        TestCase.assertFalse(transport.futures.get(0).isCancelled());
+        TestCase.assertTrue(second.cancel(false));
+        TestCase.assertTrue(transport.futures.get(0).isCancelled());
+        TestCase.assertEquals(0, executor.getCoalescer().getInFlightCount());
+        transport.release.countDown();
+    }
+}
@@ -0,0 +1,202 @@
+package org.ws.httphelper.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Retry;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.WSHttpAbstractRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试请求重试
+ */
+public class TestRetry extends TestCase {
+
+    /**
+     * 前failures次失败：status为0时抛出包装的IOException，否则返回status
+     */
+    static class FlakyTransport implements HttpTransport {
+        final String name;
+        final int failures;
+        final int status;
+        final AtomicInteger count = new AtomicInteger();
+
+        FlakyTransport(String name, int failures, int status) {
+            this.name = name;
+            this.failures = failures;
+            this.status = status;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            ResponseResult result = new ResponseResult();
+            if (count.incrementAndGet() <= failures) {
+                if (status == 0) {
+                    return WSFuture.failed(new WSException(new IOException("connection reset")));
+                }
+                result.setStatus(status);
+                return WSFuture.succeeded(result);
+            }
+            result.setStatus(200);
+            return WSFuture.succeeded(result);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @WSRequest(name = "retry", url = "http://127.0.0.1:1/retry", transport = "flaky-annotation")
+    @Retry(maxAttempts = 4, initialBackoffMillis = 10, jitter = 0)
+    public static class RetryRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    private static WSRequestContext context(String transport, MethodType method) {
+        return new WSRequestContext().setUrl("http://a.com/x").setTransport(transport).setMethod(method);
+    }
+
+    private static RetryPolicy policy() {
+        return new RetryPolicy().setMaxAttempts(3).setInitialBackoffMillis(20).setJitter(0);
+    }
+
+    public void testBackoff() {
+        RetryPolicy policy = new RetryPolicy().setInitialBackoffMillis(100).setMaxBackoffMillis(300)
+                .setMultiplier(2).setJitter(0);
+        TestCase.assertEquals(100, policy.getBackoffMillis(1));
+        TestCase.assertEquals(200, policy.getBackoffMillis(2));
+        TestCase.assertEquals(300, policy.getBackoffMillis(3));
+        policy.setJitter(0.5);
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.getBackoffMillis(1);
+            TestCase.assertTrue(backoff >= 50 && backoff <= 100);
+        }
+        TestCase.assertTrue(policy.isRetryable(new WSException(new IOException())));
+        TestCase.assertFalse(policy.isRetryable(new WSException("参数错误")));
+        TestCase.assertFalse(policy.isRetryable(MethodType.POST));
+        TestCase.assertTrue(policy.isRetryable(MethodType.DELETE));
+    }
+
+    public void testRetryStatus() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-status", 2, 503);
+        HttpTransportFactory.register(transport);
+        WSRequestContext context = context("flaky-status", MethodType.GET).setRetryPolicy(policy());
+        long begin = System.currentTimeMillis();
+        TestCase.assertEquals(200, new HttpTaskExecutor().execute(context).get(5, TimeUnit.SECONDS).getStatus());
+        TestCase.assertEquals(3, transport.count.get());
+        // 间隔20ms+40ms
+        TestCase.assertTrue(System.currentTimeMillis() - begin >= 55);
+    }
+
+    /**
+     * direct模式：第一次在调用线程中执行，重试由定时器提交到线程池
+     */
+    public void testRetryException() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-exception", 5, 0);
+        HttpTransportFactory.register(transport);
+        HttpTaskExecutor executor = new HttpTaskExecutor();
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_DIRECT);
+        ResponseResult result = executor.executeSync(context("flaky-exception", MethodType.GET).setRetryPolicy(policy()));
+        TestCase.assertEquals(500, result.getStatus());
+        TestCase.assertEquals(3, transport.count.get());
+    }
+
+    public void testNonIdempotent() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-post", 1, 502);
+        HttpTransportFactory.register(transport);
+        HttpTaskExecutor executor = new HttpTaskExecutor();
+        TestCase.assertEquals(502, executor.executeSync(context("flaky-post", MethodType.POST).setRetryPolicy(policy())).getStatus());
+        TestCase.assertEquals(1, transport.count.get());
+
+        RetryPolicy policy = policy().setRetryNonIdempotent(true);
+        TestCase.assertEquals(200, executor.executeSync(context("flaky-post", MethodType.POST).setRetryPolicy(policy)).getStatus());
+    }
+
+    public void testBudget() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-budget", 5, 0);
+        HttpTransportFactory.register(transport);
+        RetryPolicy policy = policy().setMaxAttempts(5).setInitialBackoffMillis(200).setBudgetMillis(100);
+        try {
+            new HttpTaskExecutor().execute(context("flaky-budget", MethodType.GET).setRetryPolicy(policy)).get(5, TimeUnit.SECONDS);
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+        TestCase.assertEquals(1, transport.count.get());
+    }
+
+    public void testCancel() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-cancel", 5, 503);
+        HttpTransportFactory.register(transport);
+        RetryPolicy policy = policy().setInitialBackoffMillis(200);
+        WSFuture<ResponseResult> future = new HttpTaskExecutor().execute(context("flaky-cancel", MethodType.GET).setRetryPolicy(policy));
+        Thread.sleep(50);
+        TestCase.assertTrue(future.cancel(false));
+        Thread.sleep(300);
+        TestCase.assertEquals(1, transport.count.get());
+    }
+
+    /**
+     * 使用HttpClient重试带参数的请求：每次请求的URL相同
+     */
+    public void testRetryQuery() throws Exception {
+        final List<String> uris = Collections.synchronizedList(new ArrayList<String>());
+        LocalHttpServer server = new LocalHttpServer().start().handle("/unavailable", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                uris.add(exchange.getRequestURI().toString());
+                LocalHttpServer.write(exchange, 503, new byte[0]);
+            }
+        });
+        try {
+            WSRequestContext context = new WSRequestContext().setUrl(server.url("/unavailable")).setMethod(MethodType.GET)
+                    .setTransport(WSHttpHelperConstant.TRANSPORT_HTTPCLIENT).setRetryPolicy(policy())
+                    .setNameValuePairList(new ArrayList<NameValuePair>(Arrays.asList(new BasicNameValuePair("q", "1"))));
+            context.setResponseType(ResponseType.TEXT);
+            context.setCharset("UTF-8");
+            TestCase.assertEquals(503, new HttpTaskExecutor().executeSync(context).getStatus());
+            TestCase.assertEquals(Arrays.asList("/unavailable?q=1", "/unavailable?q=1", "/unavailable?q=1"), uris);
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testAnnotation() throws Exception {
+        FlakyTransport transport = new FlakyTransport("flaky-annotation", 3, 504);
+        HttpTransportFactory.register(transport);
+        TestCase.assertEquals(200, new RetryRequest().execute().getStatus());
+        TestCase.assertEquals(4, transport.count.get());
+    }
+}
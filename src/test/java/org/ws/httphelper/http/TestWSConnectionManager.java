@@ -0,0 +1,47 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelper;
+
+/**
+ * 测试共享连接池
+ */
+public class TestWSConnectionManager extends TestCase {
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalHttpServer().start().text("/hello", "hello");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * 多次请求复用同一个连接
+     * @throws Exception
+     */
+    public void testKeepAlive() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            TestCase.assertEquals("hello", WSHttpHelper.doGetHtml(server.url("/hello")));
+        }
+        TestCase.assertEquals(10, server.getRequestCount());
+        TestCase.assertEquals(1, server.getConnectionCount());
+        TestCase.assertTrue(WSConnectionManager.getInstance().getConnectionsInPool() >= 1);
+    }
+
+    /**
+     * 关闭后可以重新启动
+     * @throws Exception
+     */
+    public void testCloseAndRestart() throws Exception {
+        WSHttpHelper.doGetHtml(server.url("/hello"));
+        WSConnectionManager.getInstance().close();
+        TestCase.assertFalse(WSConnectionManager.getInstance().isRunning());
+        TestCase.assertEquals("hello", WSHttpHelper.doGetHtml(server.url("/hello")));
+        TestCase.assertTrue(WSConnectionManager.getInstance().isRunning());
+    }
+}
@@ -0,0 +1,140 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.util.EntityUtils;
+import org.ws.httphelper.LocalHttpServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+/**
+ * 测试SSL连接工厂：按信任配置缓存，默认校验证书和主机名，TLS会话复用。<br/>
+ * 使用keytool生成自签名证书，本地Https服务，不依赖外网
+ */
+public class TestWSSSLSocketFactory extends TestCase {
+    private static final String PASSWORD = "changeit";
+
+    private File keyStore;
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        keyStore = File.createTempFile("localhost", ".jks");
+        keyStore.delete();
+        Process process = new ProcessBuilder(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+                "-genkeypair", "-alias", "local", "-keyalg", "RSA", "-keysize", "2048", "-validity", "30",
+                "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-storetype", "JKS",
+                "-keystore", keyStore.getPath(), "-storepass", PASSWORD, "-keypass", PASSWORD))
+                .redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream());
+        TestCase.assertEquals(output, 0, process.waitFor());
+
+        KeyStore store = KeyStore.getInstance("JKS");
+        InputStream in = new FileInputStream(keyStore);
+        try {
+            store.load(in, PASSWORD.toCharArray());
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(store, PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), null, null);
+        server = new LocalHttpServer().startHttps(sslContext).text("/hello", "hello");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        keyStore.delete();
+    }
+
+    /**
+     * 每次使用新的连接发送请求
+     */
+    private static String get(WSSSLSocketFactory factory, String url) throws Exception {
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("https", 443, factory));
+        DefaultHttpClient client = new DefaultHttpClient(new SingleClientConnManager(registry));
+        try {
+            HttpResponse response = client.execute(new HttpGet(url));
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+    public void testCache() throws Exception {
+        WSSSLSocketFactory verifying = WSSSLSocketFactory.getInstance(false, keyStore.getPath(), PASSWORD);
+        TestCase.assertSame(verifying, WSSSLSocketFactory.getInstance(false, keyStore.getPath(), PASSWORD));
+        TestCase.assertNotSame(verifying, WSSSLSocketFactory.getInstance(false, null, null));
+        WSSSLSocketFactory trustAll = WSSSLSocketFactory.getInstance(true, null, null);
+        TestCase.assertSame(trustAll, WSSSLSocketFactory.getInstance(true, keyStore.getPath(), PASSWORD));
+        TestCase.assertTrue(trustAll.isTrustAll());
+        TestCase.assertFalse(verifying.isTrustAll());
+        // 配置文件默认不信任所有证书
+        TestCase.assertFalse(WSSSLSocketFactory.getInstance().isTrustAll());
+    }
+
+    /**
+     * 默认使用JDK证书库，不信任自签名证书
+     */
+    public void testRejectUntrusted() throws Exception {
+        try {
+            get(WSSSLSocketFactory.getInstance(false, null, null), server.url("/hello"));
+            TestCase.fail();
+        } catch (SSLException e) {
+            // 证书校验失败
+        }
+    }
+
+    /**
+     * 信任证书库中的证书，但是主机名不匹配
+     */
+    public void testRejectHostname() throws Exception {
+        WSSSLSocketFactory factory = WSSSLSocketFactory.getInstance(false, keyStore.getPath(), PASSWORD);
+        try {
+            get(factory, server.url("/hello").replace("127.0.0.1", "localhost"));
+            TestCase.fail();
+        } catch (SSLException e) {
+            TestCase.assertTrue(e.getMessage(), e.getMessage().contains("localhost"));
+        }
+    }
+
+    public void testTrustAll() throws Exception {
+        WSSSLSocketFactory factory = WSSSLSocketFactory.getInstance(true, null, null);
+        TestCase.assertEquals("hello", get(factory, server.url("/hello").replace("127.0.0.1", "localhost")));
+    }
+
+    /**
+     * 每个请求使用新的连接，第一次完整握手，之后复用会话
+     */
+    public void testResumption() throws Exception {
+        WSSSLSocketFactory factory = WSSSLSocketFactory.getInstance(false, keyStore.getPath(), PASSWORD);
+        for (int i = 0; i < 3; i++) {
+            TestCase.assertEquals("hello", get(factory, server.url("/hello")));
+        }
+        // 握手完成的回调在另一个线程中执行
+        long deadline = System.currentTimeMillis() + 2000;
+        while (factory.getHandshakeCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        TestCase.assertEquals(3, factory.getHandshakeCount());
+        TestCase.assertEquals(1, factory.getFullHandshakeCount());
+        TestCase.assertEquals(2, factory.getResumedCount());
+    }
+}
@@ -0,0 +1,173 @@
+package org.ws.httphelper.http.cache;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.http.RequestCoalescer;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试磁盘缓存：重启后加载，删除记录，按大小淘汰，整理段文件和下载文件的缓存
+ */
+public class TestDiskCacheStore extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = new File(System.getProperty("java.io.tmpdir"), "wshttphelper-cache-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static CacheEntry entry(String key, String body) {
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/" + key).setMethod(MethodType.GET);
+        context.setCharset("UTF-8");
+        ResponseResult result = new ResponseResult();
+        result.setStatus(200);
+        result.setBody(body);
+        result.addHeader("Cache-Control", "max-age=60");
+        result.addHeader("ETag", "\"" + key + "\"");
+        long now = System.currentTimeMillis();
+        return CacheEntry.create(key, context, result, now, now);
+    }
+
+    private static String body(CacheEntry entry) throws Exception {
+        WSRequestContext context = new WSRequestContext();
+        context.setCharset("UTF-8");
+        return (String) entry.toResult(context).getBody();
+    }
+
+    public void testReload() throws Exception {
+        DiskCacheStore store = new DiskCacheStore(dir, 1024 * 1024, 4096, new LruEvictionPolicy());
+        store.put(entry("a", "中文内容"));
+        store.put(entry("b", "b1"));
+        store.put(entry("b", "b2"));
+        store.put(entry("c", "c"));
+        store.remove("c");
+        TestCase.assertTrue(store.get("a").getBody().isDirect());
+        store.close();
+
+        DiskCacheStore reloaded = new DiskCacheStore(dir, 1024 * 1024, 4096, new LruEvictionPolicy());
+        TestCase.assertEquals(2, reloaded.getSize());
+        TestCase.assertEquals("中文内容", body(reloaded.get("a")));
+        TestCase.assertEquals("b2", body(reloaded.get("b")));
+        TestCase.assertEquals("\"b\"", reloaded.get("b").getETag());
+        TestCase.assertEquals("http://a.com/b", reloaded.get("b").getUrl());
+        TestCase.assertTrue(reloaded.get("b").getFreshnessMillis() > 0);
+        TestCase.assertNull(reloaded.get("c"));
+        TestCase.assertEquals(store.getLiveBytes(), reloaded.getLiveBytes());
+    }
+
+    /**
+     * 不完整的记录被忽略，后面的空间继续使用
+     */
+    public void testTruncated() throws Exception {
+        DiskCacheStore store = new DiskCacheStore(dir, 1024 * 1024, 4096, new LruEvictionPolicy());
+        store.put(entry("a", "a"));
+        long used = store.getUsedBytes();
+        store.put(entry("b", "b"));
+        store.close();
+        RandomAccessFile file = new RandomAccessFile(new File(dir, "segment-00000001.dat"), "rw");
+        try {
+            // 破坏第二个记录的长度
+            file.seek(used + 4);
+            file.writeInt(Integer.MAX_VALUE);
+        } finally {
+            file.close();
+        }
+        DiskCacheStore reloaded = new DiskCacheStore(dir, 1024 * 1024, 4096, new LruEvictionPolicy());
+        TestCase.assertEquals(1, reloaded.getSize());
+        TestCase.assertEquals(used, reloaded.getUsedBytes());
+        reloaded.put(entry("c", "c"));
+        TestCase.assertEquals("c", body(reloaded.get("c")));
+    }
+
+    public void testEvictionAndCompaction() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 900; i++) {
+            text.append('x');
+        }
+        DiskCacheStore store = new DiskCacheStore(dir, 4096, 2048, new LruEvictionPolicy());
+        for (int i = 0; i < 10; i++) {
+            store.put(entry("k" + i, text.toString()));
+            store.get("k0");
+        }
+        TestCase.assertTrue(store.getLiveBytes() <= 4096);
+        TestCase.assertTrue(store.getEvictionCount() > 0);
+        TestCase.assertTrue(store.getCompactionCount() > 0);
+        // 一直访问的记录没有淘汰，整理后仍然可以读取
+        TestCase.assertEquals(text.toString(), body(store.get("k0")));
+        TestCase.assertEquals(text.toString(), body(store.get("k9")));
+        TestCase.assertNull(store.get("k1"));
+        TestCase.assertTrue(store.getUsedBytes() <= 4096 * 2 + 2048);
+        store.close();
+
+        DiskCacheStore reloaded = new DiskCacheStore(dir, 4096, 2048, new LruEvictionPolicy());
+        TestCase.assertEquals(store.getSize(), reloaded.getSize());
+        TestCase.assertEquals(text.toString(), body(reloaded.get("k0")));
+        TestCase.assertNull(reloaded.get("k1"));
+
+        // 超过段文件大小不保存
+        text.append(text).append(text);
+        TestCase.assertFalse(reloaded.put(entry("big", text.toString())));
+    }
+
+    /**
+     * 下载文件的响应只保存在磁盘，命中时写入新的目标文件
+     */
+    public void testFile() throws Exception {
+        TestResponseCache.ScriptedTransport transport = new TestResponseCache.ScriptedTransport();
+        HttpTransportFactory.register(transport);
+        DiskCacheStore store = new DiskCacheStore(dir, 1024 * 1024, 64 * 1024, new LruEvictionPolicy());
+        ResponseCache cache = new ResponseCache(1024 * 1024, 1024 * 1024, new LruEvictionPolicy(), store);
+        HttpTaskExecutor executor = new HttpTaskExecutor();
+        executor.setResponseCache(cache);
+
+        File download = new File(dir, "download-1.txt");
+        FileOutputStream out = new FileOutputStream(download);
+        out.write("file content".getBytes("UTF-8"));
+        out.close();
+        transport.respond(200, null, "Cache-Control", "max-age=60");
+        transport.responses.getFirst().setBody(download);
+
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/file").setTransport("scripted").setMethod(MethodType.GET);
+        context.setResponseType(ResponseType.FILE);
+        context.setTargetFile(download);
+        executor.execute(context).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(0, cache.getSize());
+        TestCase.assertEquals(1, store.getSize());
+
+        File copy = new File(dir, "download-2.txt");
+        context.setTargetFile(copy);
+        ResponseResult result = executor.execute(context).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(copy, result.getBody());
+        TestCase.assertEquals(12, result.getByteCount());
+        byte[] bytes = new byte[(int) copy.length()];
+        RandomAccessFile file = new RandomAccessFile(copy, "r");
+        file.readFully(bytes);
+        file.close();
+        TestCase.assertEquals("file content", new String(bytes, "UTF-8"));
+        TestCase.assertEquals(1, transport.requests.size());
+        TestCase.assertEquals(1, cache.getDiskHitCount());
+        ByteBuffer body = store.get(RequestCoalescer.getCacheKey(context)).getBody();
+        TestCase.assertEquals(12, body.remaining());
+    }
+}
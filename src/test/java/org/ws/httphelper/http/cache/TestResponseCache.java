@@ -0,0 +1,243 @@
+package org.ws.httphelper.http.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.impl.cookie.DateUtils;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest.MethodType;
+import org.ws.httphelper.annotation.WSRequest.ResponseType;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试响应缓存：新鲜期，304验证，no-store和按字节数淘汰
+ */
+public class TestResponseCache extends TestCase {
+
+    /**
+     * 按顺序返回预设的响应，记录每次请求的头
+     */
+    static class ScriptedTransport implements HttpTransport {
+        final LinkedList<ResponseResult> responses = new LinkedList<ResponseResult>();
+        final List<Map<String,String>> requests = new ArrayList<Map<String, String>>();
+        final List<WSRequestContext> contexts = new ArrayList<WSRequestContext>();
+
+        @Override
+        public String getName() {
+            return "scripted";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public synchronized WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            requests.add(new HashMap<String, String>(context.getHeaderMap()));
+            contexts.add(context);
+            return WSFuture.succeeded(responses.removeFirst());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        ScriptedTransport respond(int status, String body, String... headers) {
+            ResponseResult result = new ResponseResult();
+            result.setStatus(status);
+            result.setBody(body);
+            result.addHeader("Date", DateUtils.formatDate(new Date()));
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                result.addHeader(headers[i], headers[i + 1]);
+            }
+            responses.add(result);
+            return this;
+        }
+    }
+
+    private ScriptedTransport transport;
+    private ResponseCache cache;
+    private HttpTaskExecutor executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new ScriptedTransport();
+        HttpTransportFactory.register(transport);
+        cache = new ResponseCache(1024, 512, new LruEvictionPolicy());
+        executor = new HttpTaskExecutor();
+        executor.setResponseCache(cache);
+    }
+
+    private ResponseResult get(String url, String... headers) throws Exception {
+        WSRequestContext context = new WSRequestContext().setUrl(url).setTransport("scripted").setMethod(MethodType.GET);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            context.addHeader(headers[i], headers[i + 1]);
+        }
+        return executor.execute(context).get(5, TimeUnit.SECONDS);
+    }
+
+    public void testCacheControl() {
+        CacheControl cacheControl = new CacheControl("public, max-age=\"60\"", null, "No-Cache");
+        TestCase.assertEquals(60, cacheControl.getSeconds(CacheControl.MAX_AGE));
+        TestCase.assertTrue(cacheControl.contains(CacheControl.NO_CACHE));
+        TestCase.assertFalse(cacheControl.contains(CacheControl.NO_STORE));
+        TestCase.assertEquals(-1, cacheControl.getSeconds("s-maxage"));
+    }
+
+    public void testFresh() throws Exception {
+        transport.respond(200, "hello", "Cache-Control", "max-age=60");
+        TestCase.assertEquals("hello", get("http://a.com/fresh").getBody());
+        ResponseResult hit = get("http://a.com/fresh");
+        TestCase.assertEquals("hello", hit.getBody());
+        TestCase.assertEquals("max-age=60", hit.getHeader("cache-control"));
+        TestCase.assertEquals(1, transport.requests.size());
+        TestCase.assertEquals(1, cache.getHitCount());
+        TestCase.assertEquals(1, cache.getMissCount());
+
+        // 请求要求验证时不直接使用缓存
+        transport.respond(200, "world", "Cache-Control", "max-age=60");
+        TestCase.assertEquals("world", get("http://a.com/fresh", "Cache-Control", "no-cache").getBody());
+        TestCase.assertEquals(2, transport.requests.size());
+    }
+
+    public void testRevalidate() throws Exception {
+        transport.respond(200, "v1", "ETag", "\"1\"", "Cache-Control", "no-cache");
+        transport.respond(304, null, "ETag", "\"1\"");
+        transport.respond(200, "v2", "ETag", "\"2\"", "Cache-Control", "no-cache");
+        TestCase.assertEquals("v1", get("http://a.com/etag").getBody());
+
+        ResponseResult revalidated = get("http://a.com/etag");
+        TestCase.assertEquals(200, revalidated.getStatus());
+        TestCase.assertEquals("v1", revalidated.getBody());
+        TestCase.assertEquals("\"1\"", transport.requests.get(1).get("If-None-Match"));
+
+        TestCase.assertEquals("v2", get("http://a.com/etag").getBody());
+        TestCase.assertEquals(2, cache.getRevalidationCount());
+        TestCase.assertEquals(1, cache.getRevalidatedCount());
+        TestCase.assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * 条件请求头只添加到发送的副本，调用方的上下文不变
+     */
+    public void testRevalidateCopy() throws Exception {
+        transport.respond(200, "v1", "ETag", "\"1\"", "Cache-Control", "no-cache");
+        transport.respond(304, null, "ETag", "\"1\"");
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/copy").setTransport("scripted").setMethod(MethodType.GET);
+        executor.execute(context).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals("v1", executor.execute(context).get(5, TimeUnit.SECONDS).getBody());
+        TestCase.assertSame(context, transport.contexts.get(0));
+        TestCase.assertNotSame(context, transport.contexts.get(1));
+        TestCase.assertEquals("\"1\"", transport.requests.get(1).get("If-None-Match"));
+        TestCase.assertTrue(context.getHeaderMap().isEmpty());
+    }
+
+    /**
+     * 使用HttpClient：POST成功后移除相同URL的GET缓存
+     */
+    public void testInvalidateHttpClient() throws Exception {
+        final AtomicInteger version = new AtomicInteger();
+        LocalHttpServer server = new LocalHttpServer().start().handle("/item", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    version.incrementAndGet();
+                    LocalHttpServer.write(exchange, 200, new byte[0]);
+                    return;
+                }
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+                LocalHttpServer.write(exchange, 200, ("v" + version.get()).getBytes("UTF-8"));
+            }
+        });
+        try {
+            TestCase.assertEquals("v0", send(server.url("/item"), MethodType.GET).getBody());
+            TestCase.assertEquals("v0", send(server.url("/item"), MethodType.GET).getBody());
+            TestCase.assertEquals(1, cache.getHitCount());
+            TestCase.assertEquals(200, send(server.url("/item"), MethodType.POST).getStatus());
+            TestCase.assertEquals("v1", send(server.url("/item"), MethodType.GET).getBody());
+            TestCase.assertEquals(1, cache.getHitCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private ResponseResult send(String url, MethodType method) throws Exception {
+        WSRequestContext context = new WSRequestContext().setUrl(url).setMethod(method)
+                .setTransport(WSHttpHelperConstant.TRANSPORT_HTTPCLIENT);
+        context.setResponseType(ResponseType.TEXT);
+        context.setCharset("UTF-8");
+        // 没有参数时发送的URL与缓存的URL相同
+        context.setNameValuePairList(new ArrayList<NameValuePair>());
+        return executor.execute(context).get(5, TimeUnit.SECONDS);
+    }
+
+    public void testBytes() throws Exception {
+        transport.respond(200, "bytes", "Cache-Control", "max-age=60");
+        WSRequestContext context = new WSRequestContext().setUrl("http://a.com/bytes").setTransport("scripted").setMethod(MethodType.GET);
+        context.setResponseType(ResponseType.BYTE_ARRAY);
+        ResponseResult result = transport.responses.getFirst();
+        result.setBody("bytes".getBytes());
+        executor.execute(context).get(5, TimeUnit.SECONDS);
+        byte[] body = (byte[]) executor.execute(context).get(5, TimeUnit.SECONDS).getBody();
+        TestCase.assertEquals("bytes", new String(body));
+        TestCase.assertEquals(1, transport.requests.size());
+    }
+
+    public void testNoStore() throws Exception {
+        transport.respond(200, "a", "Cache-Control", "no-store, max-age=60");
+        transport.respond(200, "b", "Cache-Control", "max-age=60");
+        transport.respond(200, "c", "Cache-Control", "max-age=60");
+        get("http://a.com/no-store");
+        get("http://a.com/no-store", "Cache-Control", "no-store");
+        TestCase.assertEquals(0, cache.getSize());
+        TestCase.assertEquals("c", get("http://a.com/no-store").getBody());
+        TestCase.assertEquals(1, cache.getSize());
+    }
+
+    public void testEviction() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            body.append('x');
+        }
+        for (int i = 0; i < 4; i++) {
+            transport.respond(200, body.toString(), "Cache-Control", "max-age=60");
+        }
+        get("http://a.com/1");
+        get("http://a.com/2");
+        // 访问1后淘汰2
+        get("http://a.com/1");
+        get("http://a.com/3");
+        TestCase.assertEquals(1, cache.getEvictionCount());
+        TestCase.assertTrue(cache.getTotalBytes() <= 1024);
+        get("http://a.com/1");
+        TestCase.assertEquals(3, transport.requests.size());
+        get("http://a.com/2");
+        TestCase.assertEquals(4, transport.requests.size());
+
+        // 超过单个响应的最大字节数不缓存
+        body.append(body);
+        transport.respond(200, body.toString(), "Cache-Control", "max-age=60");
+        get("http://a.com/big");
+        TestCase.assertEquals(2, cache.getSize());
+    }
+}
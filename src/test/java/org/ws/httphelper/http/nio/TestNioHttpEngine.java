@@ -0,0 +1,193 @@
+package org.ws.httphelper.http.nio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试非阻塞Http引擎
+ */
+public class TestNioHttpEngine extends TestCase {
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalHttpServer().start().text("/hello", "hello");
+        server.handle("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ignore) {
+                }
+                LocalHttpServer.write(exchange, 200, "slow".getBytes("UTF-8"));
+            }
+        });
+        server.handle("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[1024];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+                LocalHttpServer.write(exchange, 200, out.toByteArray());
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private WSRequestContext context(WSRequest.MethodType method, String url) {
+        WSRequestContext context = new WSRequestContext()
+                .setMethod(method)
+                .setUrl(url)
+                .setResponseType(WSRequest.ResponseType.TEXT);
+        context.setCharset("UTF-8");
+        return context;
+    }
+
+    public void testGet() throws Exception {
+        ResponseResult result = NioHttpEngine.getInstance()
+                .execute(context(WSRequest.MethodType.GET, server.url("/hello"))).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(200, result.getStatus());
+        TestCase.assertEquals("hello", result.getBody());
+    }
+
+    public void testPost() throws Exception {
+        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+        nvps.add(new BasicNameValuePair("name", "中文"));
+        WSRequestContext context = context(WSRequest.MethodType.POST, server.url("/echo")).setNameValuePairList(nvps);
+        ResponseResult result = NioHttpEngine.getInstance().execute(context).get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals("name=%E4%B8%AD%E6%96%87", result.getBody());
+    }
+
+    /**
+     * 依次执行的请求复用同一个连接
+     * @throws Exception
+     */
+    public void testReuseConnection() throws Exception {
+        NioHttpEngine engine = NioHttpEngine.getInstance();
+        for (int i = 0; i < 3; i++) {
+            TestCase.assertEquals("hello", engine.execute(context(WSRequest.MethodType.GET, server.url("/hello")))
+                    .get(5, TimeUnit.SECONDS).getBody());
+        }
+        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+        nvps.add(new BasicNameValuePair("n", "1"));
+        WSRequestContext post = context(WSRequest.MethodType.POST, server.url("/echo")).setNameValuePairList(nvps);
+        TestCase.assertEquals("n=1", engine.execute(post).get(5, TimeUnit.SECONDS).getBody());
+        TestCase.assertEquals(4, server.getRequestCount());
+        TestCase.assertEquals(1, server.getConnectionCount());
+        TestCase.assertEquals(0, engine.getInFlight());
+    }
+
+    /**
+     * 复用的连接在发送请求后被服务端关闭，使用新连接重发GET请求
+     * @throws Exception
+     */
+    public void testRetryClosedConnection() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        accepted.incrementAndGet();
+                        InputStream in = socket.getInputStream();
+                        // 每个连接只响应第一个请求，收到第二个请求时直接关闭
+                        readHead(in);
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes("ISO-8859-1"));
+                        out.flush();
+                        readHead(in);
+                        socket.close();
+                    }
+                } catch (IOException ignore) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            String url = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+            NioHttpEngine engine = NioHttpEngine.getInstance();
+            for (int i = 0; i < 2; i++) {
+                TestCase.assertEquals("ok", engine.execute(context(WSRequest.MethodType.GET, url))
+                        .get(5, TimeUnit.SECONDS).getBody());
+            }
+            TestCase.assertEquals(2, accepted.get());
+            TestCase.assertEquals(0, engine.getInFlight());
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static void readHead(InputStream in) throws IOException {
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("连接已关闭");
+            }
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+
+    /**
+     * 大量慢请求同时进行，不需要同样数量的线程
+     * @throws Exception
+     */
+    public void testConcurrentSlowRequests() throws Exception {
+        int count = 50;
+        long begin = System.currentTimeMillis();
+        List<Future<ResponseResult>> futures = new ArrayList<Future<ResponseResult>>();
+        for (int i = 0; i < count; i++) {
+            futures.add(NioHttpEngine.getInstance().execute(context(WSRequest.MethodType.GET, server.url("/slow"))));
+        }
+        for (Future<ResponseResult> future : futures) {
+            TestCase.assertEquals("slow", future.get(10, TimeUnit.SECONDS).getBody());
+        }
+        TestCase.assertTrue(System.currentTimeMillis() - begin < count * 300L / 4);
+        TestCase.assertEquals(0, NioHttpEngine.getInstance().getInFlight());
+    }
+
+    public void testConnectionRefused() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        Future<ResponseResult> future = NioHttpEngine.getInstance()
+                .execute(context(WSRequest.MethodType.GET, "http://127.0.0.1:" + port + "/"));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
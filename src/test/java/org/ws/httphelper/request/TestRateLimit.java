@@ -0,0 +1,116 @@
+package org.ws.httphelper.request;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.RateLimit;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.TokenBucket;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.exception.WSRateLimitedException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试请求频率限制
+ */
+public class TestRateLimit extends TestCase {
+
+    @WSRequest(name = "wait", url = "http://127.0.0.1:1/wait", transport = "stub")
+    @RateLimit(permitsPerSecond = 10)
+    public static class WaitRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    @WSRequest(name = "fail", url = "http://127.0.0.1:1/fail", transport = "stub")
+    @RateLimit(permitsPerSecond = 1, burst = 2, mode = RateLimit.Mode.FAIL)
+    public static class FailRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    @WSRequest(name = "credential", url = "http://127.0.0.1:2/credential", transport = "stub",
+            parameters = {@Parameter(name = "ak", required = true)})
+    @RateLimit(permitsPerSecond = 1, scope = RateLimit.Scope.CREDENTIAL, credential = "ak", mode = RateLimit.Mode.FAIL)
+    public static class CredentialRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket("test", 10, 2);
+        TestCase.assertTrue(bucket.tryAcquire());
+        TestCase.assertTrue(bucket.tryAcquire());
+        TestCase.assertFalse(bucket.tryAcquire());
+        long wait = bucket.reserve(TimeUnit.SECONDS.toNanos(1));
+        TestCase.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(50) && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        // 上一个令牌已经预定，下一个需要再等一个间隔
+        TestCase.assertEquals(-1, bucket.reserve(TimeUnit.MILLISECONDS.toNanos(120)));
+        TestCase.assertEquals(3, bucket.getAcquiredCount());
+        TestCase.assertEquals(1, bucket.getThrottledCount());
+        TestCase.assertEquals(2, bucket.getRejectedCount());
+    }
+
+    public void testWait() throws Exception {
+        long begin = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            TestCase.assertEquals(200, new WaitRequest().execute().getStatus());
+        }
+        // 第一个立即发送，后两个各等待100ms
+        TestCase.assertTrue(System.currentTimeMillis() - begin >= 180);
+        TokenBucket bucket = RateLimitRegistry.getInstance().getBucket(WaitRequest.class.getName());
+        TestCase.assertTrue(bucket.getThrottledCount() >= 2);
+        TestCase.assertTrue(bucket.getThrottledMillis() >= 150);
+    }
+
+    /**
+     * 异步请求延迟发送
+     */
+    public void testWaitAsync() throws Exception {
+        new WaitRequest().execute();
+        long begin = System.currentTimeMillis();
+        ResponseResult result = new WaitRequest().executeAsync().get(5, TimeUnit.SECONDS);
+        TestCase.assertEquals(200, result.getStatus());
+        TestCase.assertTrue(System.currentTimeMillis() - begin >= 80);
+    }
+
+    public void testFail() throws Exception {
+        FailRequest request = new FailRequest();
+        TestCase.assertEquals(200, request.execute().getStatus());
+        TestCase.assertEquals(200, request.execute().getStatus());
+        try {
+            request.execute();
+            TestCase.fail();
+        } catch (WSRateLimitedException e) {
+            TestCase.assertEquals(FailRequest.class.getName(), e.getKey());
+        }
+        try {
+            request.executeAsync();
+            TestCase.fail();
+        } catch (WSRateLimitedException e) {
+            TestCase.assertEquals(FailRequest.class.getName(), e.getKey());
+        }
+    }
+
+    public void testCredential() throws Exception {
+        TestCase.assertEquals(200, execute("key1").getStatus());
+        TestCase.assertEquals(200, execute("key2").getStatus());
+        try {
+            execute("key1");
+            TestCase.fail();
+        } catch (WSRateLimitedException e) {
+            TestCase.assertEquals("127.0.0.1:2#key1", e.getKey());
+        }
+    }
+
+    private ResponseResult execute(String ak) throws WSException {
+        CredentialRequest request = new CredentialRequest();
+        request.addParameter("ak", ak);
+        return request.execute();
+    }
+}
@@ -0,0 +1,122 @@
+package org.ws.httphelper.request;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.UrlTemplate;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ParameterDefine;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试请求描述和URL模板
+ */
+public class TestRequestDescriptor extends TestCase {
+
+    @WSRequest(name = "path", url = "http://127.0.0.1:1/{type}/{id}?q={q}", transport = "stub",
+            parameters = {@Parameter(name = "type", defaultValue = "user"),
+                    @Parameter(name = "id", validateRegex = "\\d+"),
+                    @Parameter(name = "q", defaultValue = "a"),
+                    @Parameter(name = "q", defaultValue = "b")})
+    public static class PathRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    @WSRequest(name = "annotation", url = "http://127.0.0.1:1/annotation", transport = "stub")
+    public static class GeneratedRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    /**
+     * 与httphelper-processor生成的代码相同的形式
+     */
+    public static class GeneratedDescriptors implements RequestDescriptorProvider {
+        @Override
+        public String[] getRequestClassNames() {
+            return new String[]{GeneratedRequest.class.getName()};
+        }
+
+        @Override
+        public RequestDescriptor create(int index) {
+            return RequestDescriptor.builder(GeneratedRequest.class)
+                    .setName("generated")
+                    .setUrl("http://127.0.0.1:1/{id}")
+                    .setTransport("stub")
+                    .addParameter("id", "", "1", Parameter.Type.INT, false, "", "\\d+")
+                    .build();
+        }
+    }
+
+    public void testUrlTemplate() {
+        UrlTemplate template = UrlTemplate.compile("http://a.com/{type}/{id}?a={a&b={}&c={c");
+        TestCase.assertEquals(2, template.getNames().length);
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("type", "user");
+        values.put("id", 1);
+        TestCase.assertEquals("http://a.com/user/1?a={a&b={}&c={c", template.expand(values));
+        TestCase.assertFalse(UrlTemplate.compile("http://a.com/").hasVariables());
+        TestCase.assertNull(UrlTemplate.check("http://a.com/{type}/{id}?a=1"));
+        TestCase.assertNotNull(UrlTemplate.check("http://a.com/{type/{id}"));
+        TestCase.assertNotNull(UrlTemplate.check("http://a.com/{}"));
+    }
+
+    public void testDescriptor() throws Exception {
+        RequestDescriptor descriptor = RequestDescriptor.forClass(PathRequest.class);
+        TestCase.assertSame(descriptor, RequestDescriptor.forClass(PathRequest.class));
+        // 同名的参数只使用第一个
+        TestCase.assertEquals(3, descriptor.getParameterDefines().size());
+        TestCase.assertEquals("a", descriptor.getParameterDefine("q").getDefaultValue());
+        ParameterDefine id = descriptor.getParameterDefine("id");
+        TestCase.assertTrue(id.getValidatePattern().matcher("12").matches());
+        // 参数定义由所有请求共享，不能修改
+        try {
+            id.setValidateRegex("\\w+");
+            TestCase.fail();
+        } catch (UnsupportedOperationException e) {
+            TestCase.assertEquals("\\d+", id.getValidateRegex());
+        }
+        ParameterDefine copy = id.copy();
+        copy.setRequired(true);
+        TestCase.assertFalse(copy.isReadOnly());
+        TestCase.assertSame(id.getValidatePattern(), copy.getValidatePattern());
+        TestCase.assertFalse(id.isRequired());
+        try {
+            RequestDescriptor.forClass(TestRequestDescriptor.class);
+            TestCase.fail();
+        } catch (WSException e) {
+            TestCase.assertNotNull(e.getMessage());
+        }
+    }
+
+    /**
+     * 注册了生成的描述时不读取注解
+     * @throws Exception
+     */
+    public void testGenerated() throws Exception {
+        RequestDescriptorRegistry.getInstance().register(new GeneratedDescriptors());
+        RequestDescriptor descriptor = RequestDescriptor.forClass(GeneratedRequest.class);
+        TestCase.assertEquals("generated", descriptor.getName());
+        TestCase.assertSame(GeneratedRequest.class, descriptor.getRequestClass());
+        TestCase.assertEquals("GET http://127.0.0.1:1/1", new GeneratedRequest().execute().getBody());
+    }
+
+    /**
+     * 同一个请求对象多次执行时，每次都按模板生成URL
+     * @throws Exception
+     */
+    public void testExpandEachTime() throws Exception {
+        PathRequest request = new PathRequest();
+        request.addParameter("id", 1);
+        TestCase.assertEquals("GET http://127.0.0.1:1/user/1?q=a", request.execute().getBody());
+        request.addParameter("id", 2);
+        request.addParameter("q", "x");
+        TestCase.assertEquals("GET http://127.0.0.1:1/user/2?q=x", request.execute().getBody());
+    }
+}
@@ -0,0 +1,178 @@
+package org.ws.httphelper.request;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.Parameter;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+import org.ws.httphelper.request.handler.ResponseProHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试执行对象：共享的请求定义，每次调用独立的状态，会话中的cookie
+ */
+public class TestRequestInvocation extends TestCase {
+
+    /**
+     * 返回收到的cookie，每次响应设置一个新的cookie
+     */
+    static class CookieTransport implements HttpTransport {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "cookie";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            ResponseResult result = new ResponseResult();
+            result.setStatus(200);
+            result.setBody(new TreeMap<String, String>(context.getCookieMap()).toString());
+            result.addHeader("Set-Cookie", "n=" + count.incrementAndGet() + "; Expires=Wed, 21 Oct 2037 07:28:00 GMT; Path=/");
+            result.addHeader("Set-Cookie", "old=x; Max-Age=0");
+            result.addHeader("Set-Cookie", "gone=x; Expires=Thu, 01 Jan 1970 00:00:00 GMT; Path=/");
+            return WSFuture.succeeded(result);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @WSRequest(name = "shared", url = "http://127.0.0.1:1/{id}", transport = "stub",
+            parameters = {@Parameter(name = "id", required = true)})
+    public static class SharedRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+            // 添加到正在初始化的执行对象
+            addResponseProHandler(new ResponseProHandler() {
+                @Override
+                public ResponseResult handler(WSRequestContext context, ResponseResult result) throws WSException {
+                    result.setBody(result.getBody() + "!");
+                    return result;
+                }
+
+                @Override
+                public int level() {
+                    return WSHttpHelperConstant.PRO_HANDLER_USER;
+                }
+            });
+        }
+    }
+
+    @WSRequest(name = "cookie", url = "http://127.0.0.1:1/cookie", transport = "cookie")
+    public static class CookieRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    @WSRequest(name = "item", url = "http://127.0.0.1:1/item/{id}", responseType = WSRequest.ResponseType.TEXT)
+    public static class ItemRequest extends WSHttpAbstractRequest {
+        @Override
+        public void init(WSRequestContext context) throws WSException {
+        }
+    }
+
+    public void testConcurrent() throws Exception {
+        final SharedRequest request = new SharedRequest();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 200; i++) {
+                final int id = i;
+                futures.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return (String) request.newInvocation().parameter("id", id).execute().getBody();
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                // 每次调用只有一个后处理器
+                TestCase.assertEquals("GET http://127.0.0.1:1/" + i + "!", futures.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        // 请求对象自带的执行对象没有被使用
+        TestCase.assertTrue(request.getContext().getInputDataMap().isEmpty());
+        request.addParameter("id", "a");
+        TestCase.assertEquals("GET http://127.0.0.1:1/a!", request.execute().getBody());
+    }
+
+    /**
+     * 请求对象自带的执行对象重复执行GET请求：每次从URL模板生成，参数不重复添加
+     */
+    public void testRepeatGet() throws Exception {
+        final List<String> uris = Collections.synchronizedList(new ArrayList<String>());
+        LocalHttpServer server = new LocalHttpServer().start().handle("/item", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                uris.add(exchange.getRequestURI().toString());
+                LocalHttpServer.write(exchange, 200, "ok".getBytes("UTF-8"));
+            }
+        });
+        try {
+            ItemRequest request = new ItemRequest();
+            request.getContext().setUrl(server.url("/item/{id}"));
+            request.addParameter("id", "1");
+            request.addParameter("q", "a");
+            TestCase.assertEquals("ok", request.execute().getBody());
+            request.addParameter("id", "2");
+            request.addParameter("q", "b");
+            TestCase.assertEquals("ok", request.execute().getBody());
+            TestCase.assertEquals(server.url("/item/{id}"), request.getContext().getUrl());
+            TestCase.assertEquals(2, uris.size());
+            TestCase.assertTrue(uris.get(0), uris.get(0).startsWith("/item/1?"));
+            TestCase.assertTrue(uris.get(1), uris.get(1).startsWith("/item/2?"));
+            TestCase.assertTrue(uris.get(1), uris.get(1).contains("q=b") && !uris.get(1).contains("q=a"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testSession() throws Exception {
+        HttpTransportFactory.register(new CookieTransport());
+        CookieRequest request = new CookieRequest();
+        WSSession session = new WSSession().addCookie("old", "y").addCookie("gone", "y");
+        TestCase.assertEquals("{gone=y, old=y}", request.newInvocation(session).execute().getBody());
+        // Expires中的逗号不拆分cookie
+        TestCase.assertEquals("1", session.getCookie("n"));
+        TestCase.assertEquals(1, session.getCookieMap().size());
+        WSRequestInvocation invocation = request.newInvocation(session);
+        invocation.addCookie("a", "b");
+        TestCase.assertEquals("{a=b, n=1}", invocation.execute().getBody());
+        TestCase.assertEquals("2", session.getCookie("n"));
+        // 本次添加的cookie不保存到会话
+        TestCase.assertNull(session.getCookie("a"));
+        TestCase.assertEquals("{n=2}", request.newInvocation(session).execute().getBody());
+        // 没有会话时不带上其他调用的cookie
+        TestCase.assertEquals("{}", request.newInvocation().execute().getBody());
+    }
+}
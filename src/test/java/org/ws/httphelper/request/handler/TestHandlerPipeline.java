@@ -0,0 +1,71 @@
+package org.ws.httphelper.request.handler;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 测试处理器链：按请求类缓存，按级别合并请求对象的处理器
+ */
+public class TestHandlerPipeline extends TestCase {
+
+    /**
+     * 记录执行顺序的后处理器
+     */
+    static class Recorder implements ResponseProHandler {
+        private final String name;
+        private final int level;
+        private final List<String> calls;
+
+        Recorder(String name, int level, List<String> calls) {
+            this.name = name;
+            this.level = level;
+            this.calls = calls;
+        }
+
+        @Override
+        public ResponseResult handler(WSRequestContext context, ResponseResult result) throws WSException {
+            calls.add(name);
+            return result;
+        }
+
+        @Override
+        public int level() {
+            return level;
+        }
+    }
+
+    public void testCached() throws Exception {
+        HandlerPipeline pipeline = HandlerPipeline.forClass(TestHandlerPipeline.class);
+        TestCase.assertSame(pipeline, HandlerPipeline.forClass(TestHandlerPipeline.class));
+        TestCase.assertEquals(4, pipeline.getPreHandlerCount());
+        TestCase.assertEquals(1, pipeline.getProHandlerCount());
+        List<RequestPreHandler> pre = Collections.emptyList();
+        List<ResponseProHandler> pro = Collections.emptyList();
+        TestCase.assertSame(pipeline, pipeline.with(pre, pro));
+    }
+
+    public void testMerge() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        HandlerPipeline base = HandlerPipeline.forClass(TestHandlerPipeline.class)
+                .with(Collections.<RequestPreHandler>emptyList(),
+                        Collections.<ResponseProHandler>singletonList(new Recorder("base", 1, calls)));
+        List<ResponseProHandler> pro = new ArrayList<ResponseProHandler>();
+        pro.add(new Recorder("a", 0, calls));
+        pro.add(new Recorder("b", 1, calls));
+        pro.add(new Recorder("c", 2, calls));
+        HandlerPipeline merged = base.with(Collections.<RequestPreHandler>emptyList(), pro);
+        TestCase.assertEquals(5, merged.getProHandlerCount());
+        ResponseResult result = new ResponseResult();
+        result.setStatus(404);
+        TestCase.assertSame(result, merged.pro(new WSRequestContext(), result));
+        // 同级别先执行合并进来的处理器
+        TestCase.assertEquals("[a, b, base, c]", calls.toString());
+        TestCase.assertEquals(2, base.getProHandlerCount());
+    }
+}
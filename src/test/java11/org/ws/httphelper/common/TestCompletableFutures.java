@@ -0,0 +1,38 @@
+package org.ws.httphelper.common;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 测试WSFuture与CompletableFuture的转换
+ */
+public class TestCompletableFutures extends TestCase {
+
+    public void testToCompletableFuture() throws Exception {
+        WSFuture<String> future = new WSFuture<String>();
+        CompletableFuture<Integer> length = CompletableFutures.toCompletableFuture(future).thenApply(String::length);
+        future.set("hello");
+        TestCase.assertEquals(Integer.valueOf(5), length.get());
+    }
+
+    public void testToWSFutureFailure() throws Exception {
+        CompletableFuture<String> completable = new CompletableFuture<String>();
+        WSFuture<String> future = CompletableFutures.toWSFuture(completable.thenApply(s -> s));
+        completable.completeExceptionally(new IOException("io"));
+        try {
+            future.get();
+            TestCase.fail();
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    public void testCancel() throws Exception {
+        WSFuture<String> future = new WSFuture<String>();
+        CompletableFutures.toCompletableFuture(future).cancel(false);
+        TestCase.assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,113 @@
+package org.ws.httphelper.http.h2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.ws.httphelper.LocalHttpServer;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.annotation.WSRequest;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试HTTP/2实现：本地服务只支持HTTP/1.1，验证请求映射和协议回退
+ */
+public class TestHttp2Transport extends TestCase {
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalHttpServer().start();
+        server.handle("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StringBuilder body = new StringBuilder();
+                body.append(exchange.getRequestMethod()).append(' ').append(exchange.getRequestURI()).append('\n');
+                body.append("Cookie=").append(exchange.getRequestHeaders().getFirst("Cookie")).append('\n');
+                body.append("X-Test=").append(exchange.getRequestHeaders().getFirst("X-Test")).append('\n');
+                body.append("Content-Type=").append(exchange.getRequestHeaders().getFirst("Content-Type")).append('\n');
+                body.append(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                LocalHttpServer.write(exchange, 200, body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private WSRequestContext context(WSRequest.MethodType method, String url) {
+        WSRequestContext context = new WSRequestContext()
+                .setMethod(method)
+                .setUrl(url)
+                .setResponseType(WSRequest.ResponseType.TEXT)
+                .setTransport(WSHttpHelperConstant.TRANSPORT_HTTP2);
+        context.setCharset("UTF-8");
+        return context;
+    }
+
+    private ResponseResult execute(WSRequestContext context) throws Exception {
+        return HttpTransportFactory.getTransport(context).execute(context, null).get(5, TimeUnit.SECONDS);
+    }
+
+    public void testServiceLoader() throws Exception {
+        TestCase.assertTrue(HttpTransportFactory.getTransport(WSHttpHelperConstant.TRANSPORT_HTTP2) instanceof Http2Transport);
+    }
+
+    public void testGet() throws Exception {
+        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+        nvps.add(new BasicNameValuePair("q", "中文"));
+        WSRequestContext context = context(WSRequest.MethodType.GET, server.url("/echo"))
+                .setNameValuePairList(nvps)
+                .addHeader("X-Test", "1")
+                .addCookie("sid", "abc");
+        String body = (String) execute(context).getBody();
+        TestCase.assertTrue(body, body.startsWith("GET /echo?q=%E4%B8%AD%E6%96%87\n"));
+        TestCase.assertTrue(body, body.contains("Cookie=sid=abc;"));
+        TestCase.assertTrue(body, body.contains("X-Test=1"));
+    }
+
+    public void testPostForm() throws Exception {
+        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+        nvps.add(new BasicNameValuePair("name", "value"));
+        WSRequestContext context = context(WSRequest.MethodType.POST, server.url("/echo")).setNameValuePairList(nvps);
+        String body = (String) execute(context).getBody();
+        TestCase.assertTrue(body, body.startsWith("POST /echo\n"));
+        TestCase.assertTrue(body, body.contains("Content-Type=application/x-www-form-urlencoded;charset=UTF-8"));
+        TestCase.assertTrue(body, body.endsWith("name=value"));
+    }
+
+    public void testPostMultipart() throws Exception {
+        File file = File.createTempFile("http2", ".txt");
+        try {
+            Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+            Map<String, Object> multipart = new HashMap<String, Object>();
+            multipart.put("file", file);
+            WSRequestContext context = context(WSRequest.MethodType.POST, server.url("/echo")).setMultipartDataMap(multipart);
+            String body = (String) execute(context).getBody();
+            TestCase.assertTrue(body, body.contains("Content-Type=multipart/form-data; boundary="));
+            TestCase.assertTrue(body, body.contains("file content"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testDelete() throws Exception {
+        String body = (String) execute(context(WSRequest.MethodType.DELETE, server.url("/echo"))).getBody();
+        TestCase.assertTrue(body, body.startsWith("DELETE /echo\n"));
+    }
+}
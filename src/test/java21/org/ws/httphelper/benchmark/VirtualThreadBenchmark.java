@@ -0,0 +1,113 @@
+package org.ws.httphelper.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ws.httphelper.WSHttpHelperConfig;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.http.ConcurrencyLimiter;
+import org.ws.httphelper.http.HttpTaskExecutor;
+import org.ws.httphelper.http.HttpTransport;
+import org.ws.httphelper.http.HttpTransportFactory;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 10000个并发慢请求的吞吐量对比：线程池(pool) 与 虚拟线程(virtual)。<br/>
+ * 慢请求在executor中阻塞200ms，模拟等待上游响应；不使用真实连接，避免连接池(conn.MaxTotal)和本地服务成为瓶颈。<br/>
+ * 运行：JDK21下 mvn test-compile 后执行 java -cp target/classes:target/test-classes:依赖 org.ws.httphelper.benchmark.VirtualThreadBenchmark
+ */
+public class VirtualThreadBenchmark {
+    private static final String TRANSPORT = "slow";
+    private static final int REQUESTS = 10000;
+    private static final long DELAY = 200;
+    private static final int ROUNDS = 2;
+
+    /**
+     * 与阻塞实现一样在executor中执行，阻塞DELAY毫秒后返回
+     */
+    static class SlowTransport implements HttpTransport {
+        @Override
+        public String getName() {
+            return TRANSPORT;
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(DELAY);
+                } catch (InterruptedException ignore) {
+                }
+                ResponseResult result = new ResponseResult();
+                result.setStatus(200);
+                future.set(result);
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 关闭调试日志，避免日志输出影响结果
+        Logger.getLogger("org.ws.httphelper").setLevel(Level.INFO);
+        HttpTransportFactory.register(new SlowTransport());
+        HttpTaskExecutor executor = HttpTaskExecutor.getInstance();
+        System.out.println(REQUESTS + "个并发请求，每个阻塞" + DELAY + "ms：");
+
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_POOL);
+        for (int round = 0; round < ROUNDS; round++) {
+            report("pool(" + WSHttpHelperConstant.POOL_MAX_POOL_SIZE + "="
+                    + WSHttpHelperConfig.getInt(WSHttpHelperConstant.POOL_MAX_POOL_SIZE) + ")", executor);
+        }
+
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL);
+        if (!WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL.equals(executor.getMode())) {
+            System.out.println("虚拟线程不可用");
+            System.exit(1);
+        }
+        int[] limits = {1000, 0};
+        for (int limit : limits) {
+            executor.setLimiter(new ConcurrencyLimiter(limit, 0));
+            for (int round = 0; round < ROUNDS; round++) {
+                report("virtual(" + WSHttpHelperConstant.VIRTUAL_MAX_CONCURRENCY + "=" + limit + ")", executor);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void report(String name, HttpTaskExecutor executor) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        WSRequestContext context = new WSRequestContext().setUrl("http://127.0.0.1/slow").setTransport(TRANSPORT);
+        long begin = System.nanoTime();
+        List<WSFuture<ResponseResult>> futures = new ArrayList<WSFuture<ResponseResult>>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.execute(context));
+        }
+        for (WSFuture<ResponseResult> future : futures) {
+            if (future.get().getStatus() != 200) {
+                throw new IllegalStateException("请求失败");
+            }
+        }
+        long millis = (System.nanoTime() - begin) / 1000000;
+        System.out.println(String.format("  %-40s %6d ms  %8.0f 次/秒  平台线程峰值 %d",
+                name, millis, REQUESTS * 1000.0 / millis, threads.getPeakThreadCount()));
+    }
+}
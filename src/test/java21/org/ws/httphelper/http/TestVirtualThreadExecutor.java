@@ -0,0 +1,103 @@
+package org.ws.httphelper.http;
+
+import junit.framework.TestCase;
+import org.ws.httphelper.WSHttpHelperConstant;
+import org.ws.httphelper.common.WSFuture;
+import org.ws.httphelper.exception.WSException;
+import org.ws.httphelper.model.ResponseResult;
+import org.ws.httphelper.model.WSRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试虚拟线程执行方式
+ */
+public class TestVirtualThreadExecutor extends TestCase {
+
+    /**
+     * 阻塞100ms，结果为执行线程是否为虚拟线程，同时记录最大并发数
+     */
+    static class SlowTransport implements HttpTransport {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "virtualSlow";
+        }
+
+        @Override
+        public boolean supports(WSRequestContext context) {
+            return true;
+        }
+
+        @Override
+        public WSFuture<ResponseResult> execute(WSRequestContext context, Executor executor) throws WSException {
+            WSFuture<ResponseResult> future = new WSFuture<ResponseResult>();
+            executor.execute(() -> {
+                max.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                }
+                active.decrementAndGet();
+                ResponseResult result = new ResponseResult();
+                result.setStatus(200);
+                result.setBody(Thread.currentThread().isVirtual());
+                future.set(result);
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private SlowTransport transport;
+    private HttpTaskExecutor executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new SlowTransport();
+        HttpTransportFactory.register(transport);
+        executor = new HttpTaskExecutor();
+        executor.setMode(WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL);
+    }
+
+    public void testVirtual() throws Exception {
+        TestCase.assertEquals(WSHttpHelperConstant.EXECUTOR_MODE_VIRTUAL, executor.getMode());
+        TestCase.assertEquals(Boolean.TRUE, executor.executeSync(context("http://a.com/")).getBody());
+        TestCase.assertEquals(Boolean.TRUE, executor.execute(context("http://a.com/")).get(5, TimeUnit.SECONDS).getBody());
+    }
+
+    public void testGlobalLimit() throws Exception {
+        executor.setLimiter(new ConcurrencyLimiter(20, 0));
+        TestCase.assertEquals(20, runAll(200));
+    }
+
+    public void testPerHostLimit() throws Exception {
+        executor.setLimiter(new ConcurrencyLimiter(0, 5));
+        // 所有请求同一个host
+        TestCase.assertEquals(5, runAll(50));
+    }
+
+    private int runAll(int count) throws Exception {
+        List<WSFuture<ResponseResult>> futures = new ArrayList<WSFuture<ResponseResult>>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.execute(context("http://a.com/" + i)));
+        }
+        for (WSFuture<ResponseResult> future : futures) {
+            TestCase.assertEquals(200, future.get(30, TimeUnit.SECONDS).getStatus());
+        }
+        return transport.max.get();
+    }
+
+    private static WSRequestContext context(String url) {
+        return new WSRequestContext().setUrl(url).setTransport("virtualSlow");
+    }
+}